@@ -0,0 +1,335 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
+/**
+ * Solves a {@link SeparableProblem}, minimize sum(f[i](x[i])) subject to sum(A[i]x[i]) = b,
+ * by the sharing form of ADMM (7.3 of Boyd et al., Distributed Optimization and Statistical Learning via
+ * the Alternating Direction Method of Multipliers, 2011).
+ * <p>
+ * Each iteration solves every block subproblem
+ * <p>
+ * minimize f[i](x[i]) + (rho/2)||A[i]x[i] - z[i] + u||^2
+ * <p>
+ * with {@link BarrierOptimizer}, in parallel on an {@link Executor}, and then projects the (over-relaxed)
+ * block products A[i]x[i] onto the coupling constraints, to update the targets z[i] and the scaled dual u.
+ * Block subproblems only involve the dimension of their own block, and each one is warm started from the
+ * solution of its previous iteration. The penalty rho and the stopping rule are configured by {@link ADMMSettings}.
+ * <p>
+ * {@link ADMMOptimizer} supports the following {@link OptimizationData} parameters as arguments
+ * to {@link #optimize(OptimizationData...)}:
+ * <ul>
+ *   <li>separable problem: {@link SeparableProblem} - mandatory </li>
+ *   <li>ADMM parameters: {@link ADMMSettings} - optional </li>
+ *   <li>wall-clock deadline: {@link Deadline} - optional: also applies to block solves </li>
+ *   <li>cancellation token: {@link Cancellation} - optional: also applies to block solves </li>
+ * </ul>
+ * All other parameters are passed to every block solve, before the arguments of the block itself.
+ * Unless a {@link ConvergenceEpsilon} is given, blocks are solved to the square of
+ * {@link ADMMSettings#absoluteTolerance}, or to the default epsilon if that is smaller.
+ * <p>
+ * The point of the result is the concatenation of the block variables, and its equality duals are
+ * the duals (rho)u of the coupling constraints. ADMM does not bound the duality gap, which is reported as NaN.
+ */
+public class ADMMOptimizer {
+    private final Executor executor;
+    private int iterations;
+    private double rho;
+    private double primalResidual;
+    private double dualResidual;
+
+    /** Construct an {@link ADMMOptimizer} that solves blocks on {@link ForkJoinPool#commonPool()} */
+    public ADMMOptimizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct an {@link ADMMOptimizer} that solves blocks on an executor
+     * @param executor the executor for block solves
+     */
+    public ADMMOptimizer(Executor executor) {
+        if (executor == null) throw new IllegalArgumentException("executor must not be null");
+        this.executor = executor;
+    }
+
+    /** @return the number of ADMM iterations of the most recent solve */
+    public int getIterations() { return iterations; }
+
+    /** @return the final penalty rho of the most recent solve */
+    public double getPenalty() { return rho; }
+
+    /** @return the primal residual ||A[i]x[i] - z[i]|| of the most recent solve */
+    public double getPrimalResidual() { return primalResidual; }
+
+    /** @return the dual residual (rho)||(A[i]^T)(z[i] - z'[i])|| of the most recent solve */
+    public double getDualResidual() { return dualResidual; }
+
+    /**
+     * Solve a separable problem
+     * @param optData list of {@link OptimizationData} arguments
+     * @return the solution point and objective value, with coupling duals, status and the work counts of all block solves
+     */
+    public ConvexSolveResult optimize(OptimizationData... optData) {
+        SeparableProblem problem = null;
+        ADMMSettings settings = new ADMMSettings();
+        Deadline deadline = null;
+        Cancellation cancellation = null;
+        boolean hasEpsilon = false;
+        final ArrayList<OptimizationData> common = new ArrayList<OptimizationData>();
+        for (OptimizationData data: optData) {
+            if (data instanceof SeparableProblem) {
+                problem = (SeparableProblem)data;
+                continue;
+            }
+            if (data instanceof ADMMSettings) {
+                settings = (ADMMSettings)data;
+                continue;
+            }
+            if (data instanceof ConvergenceEpsilon) hasEpsilon = true;
+            if (data instanceof Deadline) deadline = (Deadline)data;
+            if (data instanceof Cancellation) cancellation = (Cancellation)data;
+            common.add(data);
+        }
+        if (problem == null) throw new IllegalStateException("Expected a SeparableProblem argument");
+        if (!hasEpsilon) {
+            // blocks stop when their Newton decrement is below epsilon, which must be fine enough
+            // to resolve the changes of x[i] that the residual tolerances require
+            final double a = settings.absoluteTolerance;
+            common.add(0, new ConvergenceEpsilon(Math.min(ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT, a * a)));
+        }
+        final int N = problem.blockCount();
+        if (N < 1) throw new IllegalStateException("SeparableProblem has no blocks");
+        final int p = problem.b.getDimension();
+        final double[] bN = problem.b.mapDivide(N).toArray();
+        final double alpha = settings.relaxation;
+        // block variables, their products A[i]x[i], targets z[i], and the common scaled dual u
+        final double[][] x = new double[N][];
+        double[][] ax = new double[N][];
+        double[][] z;
+        double[] u = new double[p];
+        for (int i = 0; i < N; ++i) {
+            SeparableProblem.Block bk = problem.blocks.get(i);
+            x[i] = bk.x0.clone();
+            ax[i] = bk.A.operate(x[i]);
+        }
+        z = project(ax, bN);
+        rho = settings.rho;
+        iterations = 0;
+        primalResidual = Double.POSITIVE_INFINITY;
+        dualResidual = Double.POSITIVE_INFINITY;
+        SolveStatus status = SolveStatus.HALTED;
+        SolveStatistics statistics = SolveStatistics.NONE;
+        ArrayList<CompletableFuture<ConvexSolveResult>> solves = new ArrayList<CompletableFuture<ConvexSolveResult>>(N);
+        while (iterations < settings.maxIterations) {
+            if (ConvexOptimizer.stopRequested(deadline, cancellation)) {
+                status = ConvexOptimizer.stopStatus(cancellation);
+                break;
+            }
+            ++iterations;
+            solves.clear();
+            for (int i = 0; i < N; ++i) {
+                final SeparableProblem.Block bk = problem.blocks.get(i);
+                double[] c = z[i].clone();
+                axpy(-1.0, u, c, p);
+                final OptimizationData[] args = blockArgs(common, bk, new PenalizedFunction(bk, rho, c), x[i]);
+                try {
+                    solves.add(CompletableFuture.supplyAsync(new Supplier<ConvexSolveResult>() {
+                        @Override
+                        public ConvexSolveResult get() {
+                            return (new BarrierOptimizer()).optimize(args);
+                        }
+                    }, executor));
+                } catch (RuntimeException e) {
+                    for (CompletableFuture<ConvexSolveResult> solve: solves) solve.cancel(false);
+                    throw e;
+                }
+            }
+            SolveStatus blockStatus = SolveStatus.CONVERGED;
+            for (int i = 0; i < N; ++i) {
+                ConvexSolveResult r = join(solves.get(i));
+                statistics = statistics.plus(r.getStatistics());
+                if (ConvexOptimizer.isStopped(r.getStatus())) blockStatus = r.getStatus();
+                x[i] = r.getPoint();
+                ax[i] = problem.blocks.get(i).A.operate(x[i]);
+            }
+            // over-relaxed products, projected onto sum(z[i]) = b
+            double[][] h = new double[N][];
+            for (int i = 0; i < N; ++i) {
+                h[i] = ax[i].clone();
+                scal(alpha, h[i], p);
+                axpy(1.0 - alpha, z[i], h[i], p);
+            }
+            double[][] zPrev = z;
+            z = project(h, bN);
+            // u = u + mean(h) - b/N, which is the same for all blocks
+            for (int i = 0; i < N; ++i) axpy(1.0 / N, h[i], u, p);
+            axpy(-1.0, bN, u, p);
+            // residuals and tolerances (3.3.1)
+            double rr = 0.0;
+            double ss = 0.0;
+            double axNorm = 0.0;
+            double zNorm = 0.0;
+            double atu = 0.0;
+            int n = 0;
+            for (int i = 0; i < N; ++i) {
+                RealMatrix A = problem.blocks.get(i).A;
+                double[] ri = ax[i].clone();
+                axpy(-1.0, z[i], ri, p);
+                rr += dot(ri, ri, p);
+                double[] dz = z[i].clone();
+                axpy(-1.0, zPrev[i], dz, p);
+                double[] si = A.preMultiply(dz);
+                ss += dot(si, si, si.length);
+                axNorm += dot(ax[i], ax[i], p);
+                zNorm += dot(z[i], z[i], p);
+                double[] ati = A.preMultiply(u);
+                atu += dot(ati, ati, ati.length);
+                n += si.length;
+            }
+            primalResidual = Math.sqrt(rr);
+            dualResidual = rho * Math.sqrt(ss);
+            if (ConvexOptimizer.isStopped(blockStatus)) {
+                status = blockStatus;
+                break;
+            }
+            final double epsPrimal = (Math.sqrt((double)N * p) * settings.absoluteTolerance) +
+                (settings.relativeTolerance * Math.sqrt(Math.max(axNorm, zNorm)));
+            final double epsDual = (Math.sqrt((double)n) * settings.absoluteTolerance) +
+                (settings.relativeTolerance * rho * Math.sqrt(atu));
+            if ((primalResidual <= epsPrimal) && (dualResidual <= epsDual)) {
+                status = SolveStatus.CONVERGED;
+                break;
+            }
+            // residual balancing, which rescales the scaled dual u = y/rho
+            if (primalResidual > (settings.balance * dualResidual)) {
+                rho *= settings.factor;
+                scal(1.0 / settings.factor, u, p);
+            } else if (dualResidual > (settings.balance * primalResidual)) {
+                rho /= settings.factor;
+                scal(settings.factor, u, p);
+            }
+        }
+        double[] point = new double[problem.dim()];
+        double v = 0.0;
+        int offset = 0;
+        for (int i = 0; i < N; ++i) {
+            SeparableProblem.Block bk = problem.blocks.get(i);
+            System.arraycopy(x[i], 0, point, offset, bk.n);
+            offset += bk.n;
+            v += bk.f.value(new ArrayRealVector(x[i], false));
+        }
+        double[] y = u.clone();
+        scal(rho, y, p);
+        return new ConvexSolveResult(point, v, status, Double.NaN, Double.NaN,
+            null, null, null, y, statistics);
+    }
+
+    // z[i] = h[i] - mean(h) + b/N, the projection of (h) onto sum(z[i]) = b
+    private static double[][] project(double[][] h, double[] bN) {
+        final int N = h.length;
+        final int p = bN.length;
+        double[] shift = bN.clone();
+        for (int i = 0; i < N; ++i) axpy(-1.0 / N, h[i], shift, p);
+        double[][] z = new double[N][];
+        for (int i = 0; i < N; ++i) {
+            z[i] = h[i].clone();
+            axpy(1.0, shift, z[i], p);
+        }
+        return z;
+    }
+
+    private static OptimizationData[] blockArgs(
+        ArrayList<OptimizationData> common, SeparableProblem.Block bk, PenalizedFunction f, double[] x) {
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>(common);
+        for (OptimizationData d: bk.data) args.add(d);
+        args.add(new ObjectiveFunction(f));
+        args.add(new InitialGuess(x));
+        return args.toArray(new OptimizationData[0]);
+    }
+
+    private static ConvexSolveResult join(CompletableFuture<ConvexSolveResult> solve) {
+        try {
+            return solve.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw e;
+        }
+    }
+
+    // f(x) + (rho/2)||Ax - c||^2
+    private static final class PenalizedFunction extends TwiceDifferentiableFunction {
+        private final SeparableProblem.Block bk;
+        private final double rho;
+        private final double[] c;
+
+        PenalizedFunction(SeparableProblem.Block bk, double rho, double[] c) {
+            this.bk = bk;
+            this.rho = rho;
+            this.c = c;
+        }
+
+        private double[] residual(final RealVector x) {
+            double[] r = bk.A.operate(data(x));
+            axpy(-1.0, c, r, c.length);
+            return r;
+        }
+
+        @Override
+        public int dim() { return bk.n; }
+
+        @Override
+        public double value(final RealVector x) {
+            double[] r = residual(x);
+            return bk.f.value(x) + (0.5 * rho * dot(r, r, r.length));
+        }
+
+        @Override
+        public RealVector gradient(final RealVector x) {
+            double[] g = bk.f.gradient(x).toArray();
+            axpy(rho, bk.A.preMultiply(residual(x)), g, bk.n);
+            return new ArrayRealVector(g, false);
+        }
+
+        @Override
+        public RealMatrix hessian(final RealVector x) {
+            double[][] h = bk.f.hessian(x).getData();
+            for (int j = 0; j < bk.n; ++j) axpy(rho, bk.gram[j], h[j], bk.n);
+            return new Array2DRowRealMatrix(h, false);
+        }
+
+        @Override
+        public double maxStep(final RealVector x, final RealVector dx) {
+            return bk.f.maxStep(x, dx);
+        }
+    }
+}
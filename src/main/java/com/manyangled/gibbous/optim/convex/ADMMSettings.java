@@ -0,0 +1,99 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Parameters of the ADMM iteration of {@link ADMMOptimizer}.
+ * <p>
+ * The penalty rho is adapted by residual balancing (3.4.1 of Boyd et al., Distributed Optimization and
+ * Statistical Learning via the Alternating Direction Method of Multipliers, 2011): when the primal residual
+ * exceeds {@link #balance} times the dual residual, rho is multiplied by {@link #factor}, and when the dual
+ * residual exceeds {@link #balance} times the primal residual, rho is divided by {@link #factor}.
+ * A factor of 1 keeps rho fixed. The iteration stops when both residuals are within tolerances combined
+ * from {@link #absoluteTolerance} and {@link #relativeTolerance} (3.3.1).
+ */
+public class ADMMSettings implements OptimizationData {
+    /** The initial penalty rho */
+    public final double rho;
+    /** The over-relaxation parameter alpha (3.4.3), where 1 is no relaxation */
+    public final double relaxation;
+    /** The ratio of residuals that triggers a change of rho */
+    public final double balance;
+    /** The factor by which rho is changed */
+    public final double factor;
+    /** The absolute tolerance of the residuals */
+    public final double absoluteTolerance;
+    /** The tolerance of the residuals relative to the iterates */
+    public final double relativeTolerance;
+    /** The largest number of ADMM iterations */
+    public final int maxIterations;
+
+    /**
+     * Construct ADMM parameters
+     * @param rho the initial penalty. Must be &gt; 0.
+     * @param relaxation the over-relaxation parameter. Must be in (0, 2).
+     * @param balance the ratio of residuals that triggers a change of rho. Must be &gt; 1.
+     * @param factor the factor by which rho is changed. Must be &gt;= 1.
+     * @param absoluteTolerance the absolute tolerance of the residuals. Must be &gt; 0.
+     * @param relativeTolerance the relative tolerance of the residuals. Must be &gt;= 0.
+     * @param maxIterations the largest number of iterations. Must be &gt; 0.
+     */
+    public ADMMSettings(
+        double rho, double relaxation,
+        double balance, double factor,
+        double absoluteTolerance, double relativeTolerance,
+        int maxIterations) {
+        if (!(rho > 0.0)) throw new IllegalArgumentException("rho must be > 0");
+        if (!((relaxation > 0.0) && (relaxation < 2.0)))
+            throw new IllegalArgumentException("relaxation must be in (0, 2)");
+        if (!(balance > 1.0)) throw new IllegalArgumentException("balance must be > 1");
+        if (!(factor >= 1.0)) throw new IllegalArgumentException("factor must be >= 1");
+        if (!(absoluteTolerance > 0.0)) throw new IllegalArgumentException("absoluteTolerance must be > 0");
+        if (!(relativeTolerance >= 0.0)) throw new IllegalArgumentException("relativeTolerance must be >= 0");
+        if (maxIterations < 1) throw new IllegalArgumentException("maxIterations must be > 0");
+        this.rho = rho;
+        this.relaxation = relaxation;
+        this.balance = balance;
+        this.factor = factor;
+        this.absoluteTolerance = absoluteTolerance;
+        this.relativeTolerance = relativeTolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /** Construct ADMM parameters with default values */
+    public ADMMSettings() {
+        this(
+            RHO_DEFAULT, RELAXATION_DEFAULT,
+            BALANCE_DEFAULT, FACTOR_DEFAULT,
+            ABSOLUTE_TOLERANCE_DEFAULT, RELATIVE_TOLERANCE_DEFAULT,
+            MAX_ITERATIONS_DEFAULT);
+    }
+
+    /** Default initial penalty */
+    public static final double RHO_DEFAULT = 1.0;
+    /** Default over-relaxation parameter */
+    public static final double RELAXATION_DEFAULT = 1.6;
+    /** Default ratio of residuals that triggers a change of rho */
+    public static final double BALANCE_DEFAULT = 10.0;
+    /** Default factor by which rho is changed */
+    public static final double FACTOR_DEFAULT = 2.0;
+    /** Default absolute tolerance */
+    public static final double ABSOLUTE_TOLERANCE_DEFAULT = 1e-6;
+    /** Default relative tolerance */
+    public static final double RELATIVE_TOLERANCE_DEFAULT = 1e-4;
+    /** Default largest number of iterations */
+    public static final int MAX_ITERATIONS_DEFAULT = 1000;
+}
@@ -0,0 +1,111 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * An inexact centering policy for {@link BarrierOptimizer}.
+ * <p>
+ * By default, each centering step of the barrier method is solved to the full
+ * {@link ConvergenceEpsilon}, although only the final center is returned. When this
+ * policy is supplied, the inner convergence epsilon starts at a loose value and is
+ * tightened geometrically as (t) approaches its final value, and the last centering
+ * step is always solved to the full epsilon.
+ * <p>
+ * The policy also adapts the barrier parameter mu from the number of inner iterations
+ * taken by each centering step: mu is increased when centering was cheap, and decreased
+ * when it was expensive. The initial mu is taken from {@link BarrierMu}.
+ */
+public class AdaptiveCentering implements OptimizationData {
+    /** The inner convergence epsilon used for the first centering step */
+    public final double looseEpsilon;
+    /** Increase mu if a centering step takes at most this many inner iterations */
+    public final int fastIterations;
+    /** Decrease mu if a centering step takes at least this many inner iterations */
+    public final int slowIterations;
+    /** The factor used to increase or decrease mu */
+    public final double muFactor;
+    /** The smallest allowed mu */
+    public final double muMin;
+    /** The largest allowed mu */
+    public final double muMax;
+
+    /**
+     * Construct an inexact centering policy
+     * @param looseEpsilon the inner convergence epsilon for the first centering step. Must be &gt; 0.
+     * @param fastIterations increase mu when centering takes at most this many inner iterations. Must be &gt;= 0.
+     * @param slowIterations decrease mu when centering takes at least this many inner iterations.
+     * Must be &gt; fastIterations.
+     * @param muFactor the factor used to increase or decrease mu. Must be &gt; 1.
+     * @param muMin the smallest allowed value of mu. Must be &gt; 1.
+     * @param muMax the largest allowed value of mu. Must be &gt;= muMin.
+     */
+    public AdaptiveCentering(
+        double looseEpsilon,
+        int fastIterations, int slowIterations,
+        double muFactor, double muMin, double muMax) {
+        if (looseEpsilon <= 0.0) throw new IllegalArgumentException("looseEpsilon must be > 0");
+        if (fastIterations < 0) throw new IllegalArgumentException("fastIterations must be >= 0");
+        if (slowIterations <= fastIterations)
+            throw new IllegalArgumentException("slowIterations must be > fastIterations");
+        if (muFactor <= 1.0) throw new IllegalArgumentException("muFactor must be > 1");
+        if (muMin <= 1.0) throw new IllegalArgumentException("muMin must be > 1");
+        if (muMax < muMin) throw new IllegalArgumentException("muMax must be >= muMin");
+        this.looseEpsilon = looseEpsilon;
+        this.fastIterations = fastIterations;
+        this.slowIterations = slowIterations;
+        this.muFactor = muFactor;
+        this.muMin = muMin;
+        this.muMax = muMax;
+    }
+
+    /** Construct an inexact centering policy with default parameters */
+    public AdaptiveCentering() {
+        this(
+            LOOSE_EPSILON_DEFAULT,
+            FAST_ITERATIONS_DEFAULT, SLOW_ITERATIONS_DEFAULT,
+            MU_FACTOR_DEFAULT, MU_MIN_DEFAULT, MU_MAX_DEFAULT);
+    }
+
+    // The inner epsilon for a centering step at (t), interpolated geometrically from
+    // looseEpsilon at t0 to epsilon at the final t = m/epsilon
+    double innerEpsilon(double t, double t0, double mu, double m, double epsilon) {
+        final double tEnd = m / epsilon;
+        if (((t * mu) > tEnd) || (looseEpsilon <= epsilon) || (tEnd <= t0)) return epsilon;
+        double p = Math.log(t / t0) / Math.log(tEnd / t0);
+        p = Math.max(0.0, Math.min(1.0, p));
+        return Math.max(epsilon, Math.exp(((1.0 - p) * Math.log(looseEpsilon)) + (p * Math.log(epsilon))));
+    }
+
+    // The value of mu for the next centering step, given the inner iterations of the last one
+    double nextMu(double mu, int iterations) {
+        if (iterations <= fastIterations) return Math.min(muMax, mu * muFactor);
+        if (iterations >= slowIterations) return Math.max(muMin, mu / muFactor);
+        return mu;
+    }
+
+    /** Default inner epsilon for the first centering step */
+    public static final double LOOSE_EPSILON_DEFAULT = 1e-3;
+    /** Default inner iteration count at or below which mu is increased */
+    public static final int FAST_ITERATIONS_DEFAULT = 3;
+    /** Default inner iteration count at or above which mu is decreased */
+    public static final int SLOW_ITERATIONS_DEFAULT = 12;
+    /** Default factor for adjusting mu */
+    public static final double MU_FACTOR_DEFAULT = 2.0;
+    /** Default smallest mu */
+    public static final double MU_MIN_DEFAULT = 2.0;
+    /** Default largest mu */
+    public static final double MU_MAX_DEFAULT = 1000.0;
+}
@@ -0,0 +1,307 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DiagonalMatrix;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
+/**
+ * The composition g(x) = f(Gx + h) of a function f on k-vectors with an affine map from n-vectors.
+ * <p>
+ * The gradient is (G^T)grad(f), and the Hessian is (G^T)H(f)G, where H(f) is the k x k Hessian of f.
+ * The Hessian is assembled according to the form of G:
+ * <ul>
+ *   <li>{@link CSRRealMatrix}: (G^T)(H(f)G) is accumulated from the sparse rows of G, in O(k nnz(G) + n nnz(G)),
+ *   or with {@link CSRRealMatrix#addWeightedGram(double[], double[][])} when H(f) is diagonal </li>
+ *   <li>low rank, G = U(V^T): V((U^T)H(f)U)(V^T), where the inner factor is only r x r </li>
+ *   <li>dense: (G^T)(H(f)G), or a weighted sum of outer products of the rows of G when H(f) is diagonal </li>
+ * </ul>
+ * Zero Hessians of {@link LinearFunction} are skipped. Since affine maps preserve convexity, g is convex when f is.
+ * This is the building block for norms, least squares and log-sum-exp over linear maps.
+ */
+public class AffineCompositionFunction extends TwiceDifferentiableFunction {
+    private final TwiceDifferentiableFunction f;
+    private final AffineMap map;
+    private final double[] h;
+    private final int n;
+    private final int k;
+
+    /**
+     * Construct the composition f(Gx + h)
+     * @param f a function on k-vectors
+     * @param G a k x n matrix, which may be a {@link CSRRealMatrix}
+     * @param h a k-vector, or null for zero
+     */
+    public AffineCompositionFunction(TwiceDifferentiableFunction f, RealMatrix G, RealVector h) {
+        this(f, (G instanceof CSRRealMatrix) ? new SparseMap((CSRRealMatrix)G) : new DenseMap(G), h);
+    }
+
+    /**
+     * Construct the composition f(Gx + h)
+     * @param f a function on k-vectors
+     * @param G a k x n matrix
+     * @param h a k-vector, or null for zero
+     */
+    public AffineCompositionFunction(TwiceDifferentiableFunction f, double[][] G, double[] h) {
+        this(f, new Array2DRowRealMatrix(G), (h == null) ? null : new ArrayRealVector(h));
+    }
+
+    /**
+     * Construct the composition f(U(V^T)x + h), with a low rank map G = U(V^T)
+     * @param f a function on k-vectors
+     * @param U a k x r matrix
+     * @param V an n x r matrix
+     * @param h a k-vector, or null for zero
+     */
+    public AffineCompositionFunction(TwiceDifferentiableFunction f, RealMatrix U, RealMatrix V, RealVector h) {
+        this(f, new LowRankMap(U, V), h);
+    }
+
+    private AffineCompositionFunction(TwiceDifferentiableFunction f, AffineMap map, RealVector h) {
+        this.f = f;
+        this.k = map.rows;
+        this.n = map.cols;
+        if (f.dim() != k) throw new DimensionMismatchException(f.dim(), k);
+        if ((h != null) && (h.getDimension() != k)) throw new DimensionMismatchException(h.getDimension(), k);
+        this.map = map;
+        this.h = (h == null) ? null : h.toArray();
+    }
+
+    @Override
+    public int dim() { return n; }
+
+    @Override
+    public double value(final RealVector x) {
+        return f.value(apply(data(x)));
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        double[] g = data(f.gradient(apply(data(x))));
+        return new ArrayRealVector(map.transposeOperate(g), false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        double[][] H = new double[n][n];
+        if (f instanceof LinearFunction) return new Array2DRowRealMatrix(H, false);
+        RealMatrix Hf = f.hessian(apply(data(x)));
+        if (Hf instanceof DiagonalMatrix) {
+            map.addWeightedGram(((DiagonalMatrix)Hf).getDataRef(), H);
+        } else {
+            map.addCongruence(
+                (Hf instanceof Array2DRowRealMatrix) ? ((Array2DRowRealMatrix)Hf).getDataRef() : Hf.getData(), H);
+        }
+        return new Array2DRowRealMatrix(H, false);
+    }
+
+    @Override
+    public double maxStep(final RealVector x, final RealVector dx) {
+        double[] dy = map.operate(data(dx));
+        return f.maxStep(apply(data(x)), new ArrayRealVector(dy, false));
+    }
+
+    // y = Gx + h
+    private RealVector apply(double[] x) {
+        if (x.length != n) throw new DimensionMismatchException(x.length, n);
+        double[] y = map.operate(x);
+        if (h != null) axpy(1.0, h, y, k);
+        return new ArrayRealVector(y, false);
+    }
+
+    // the linear map G, and the products needed for derivatives
+    private static abstract class AffineMap {
+        final int rows;
+        final int cols;
+
+        AffineMap(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+        }
+
+        // Gx
+        abstract double[] operate(double[] x);
+
+        // (G^T)y
+        abstract double[] transposeOperate(double[] y);
+
+        // H = H + (G^T)diag(d)G
+        abstract void addWeightedGram(double[] d, double[][] H);
+
+        // H = H + (G^T)MG, for symmetric k x k M
+        abstract void addCongruence(double[][] M, double[][] H);
+    }
+
+    private static final class DenseMap extends AffineMap {
+        private final double[][] G;
+
+        DenseMap(RealMatrix G) {
+            super(G.getRowDimension(), G.getColumnDimension());
+            this.G = G.getData();
+        }
+
+        @Override
+        double[] operate(double[] x) {
+            double[] y = new double[rows];
+            for (int i = 0; i < rows; ++i) y[i] = dot(G[i], x, cols);
+            return y;
+        }
+
+        @Override
+        double[] transposeOperate(double[] y) {
+            double[] x = new double[cols];
+            for (int i = 0; i < rows; ++i) axpy(y[i], G[i], x, cols);
+            return x;
+        }
+
+        @Override
+        void addWeightedGram(double[] d, double[][] H) {
+            syrk(d, G, rows, H, cols);
+        }
+
+        @Override
+        void addCongruence(double[][] M, double[][] H) {
+            // B = MG, then H = H + (G^T)B
+            double[][] B = new double[rows][cols];
+            for (int i = 0; i < rows; ++i)
+                for (int l = 0; l < rows; ++l) axpy(M[i][l], G[l], B[i], cols);
+            for (int i = 0; i < rows; ++i) {
+                final double[] gi = G[i];
+                for (int p = 0; p < cols; ++p) axpy(gi[p], B[i], H[p], cols);
+            }
+        }
+    }
+
+    private static final class SparseMap extends AffineMap {
+        private final CSRRealMatrix G;
+        private final IntBuffer rowPtr;
+        private final IntBuffer colIdx;
+        private final DoubleBuffer values;
+
+        SparseMap(CSRRealMatrix G) {
+            super(G.getRowDimension(), G.getColumnDimension());
+            this.G = G;
+            this.rowPtr = G.getRowPointers();
+            this.colIdx = G.getColumnIndices();
+            this.values = G.getValues();
+        }
+
+        @Override
+        double[] operate(double[] x) {
+            return G.operate(x);
+        }
+
+        @Override
+        double[] transposeOperate(double[] y) {
+            return G.preMultiply(y);
+        }
+
+        @Override
+        void addWeightedGram(double[] d, double[][] H) {
+            G.addWeightedGram(d, H);
+        }
+
+        @Override
+        void addCongruence(double[][] M, double[][] H) {
+            // B = MG is k x n, accumulated from the sparse rows of G, and then H = H + (G^T)B
+            double[][] B = new double[rows][cols];
+            for (int l = 0; l < rows; ++l) {
+                final int e = rowPtr.get(l + 1);
+                for (int q = rowPtr.get(l); q < e; ++q) {
+                    final int c = colIdx.get(q);
+                    final double v = values.get(q);
+                    for (int i = 0; i < rows; ++i) B[i][c] += M[i][l] * v;
+                }
+            }
+            for (int i = 0; i < rows; ++i) {
+                final int e = rowPtr.get(i + 1);
+                for (int q = rowPtr.get(i); q < e; ++q) axpy(values.get(q), B[i], H[colIdx.get(q)], cols);
+            }
+        }
+    }
+
+    private static final class LowRankMap extends AffineMap {
+        private final double[][] U;
+        private final double[][] V;
+        private final int r;
+
+        LowRankMap(RealMatrix U, RealMatrix V) {
+            super(U.getRowDimension(), V.getRowDimension());
+            if (V.getColumnDimension() != U.getColumnDimension())
+                throw new DimensionMismatchException(V.getColumnDimension(), U.getColumnDimension());
+            this.U = U.getData();
+            this.V = V.getData();
+            this.r = U.getColumnDimension();
+        }
+
+        @Override
+        double[] operate(double[] x) {
+            // U((V^T)x)
+            double[] z = new double[r];
+            for (int p = 0; p < cols; ++p) axpy(x[p], V[p], z, r);
+            double[] y = new double[rows];
+            for (int i = 0; i < rows; ++i) y[i] = dot(U[i], z, r);
+            return y;
+        }
+
+        @Override
+        double[] transposeOperate(double[] y) {
+            // V((U^T)y)
+            double[] z = new double[r];
+            for (int i = 0; i < rows; ++i) axpy(y[i], U[i], z, r);
+            double[] x = new double[cols];
+            for (int p = 0; p < cols; ++p) x[p] = dot(V[p], z, r);
+            return x;
+        }
+
+        @Override
+        void addWeightedGram(double[] d, double[][] H) {
+            double[][] C = new double[r][r];
+            syrk(d, U, rows, C, r);
+            addOuter(C, H);
+        }
+
+        @Override
+        void addCongruence(double[][] M, double[][] H) {
+            // C = (U^T)MU is r x r
+            double[][] MU = new double[rows][r];
+            for (int i = 0; i < rows; ++i)
+                for (int l = 0; l < rows; ++l) axpy(M[i][l], U[l], MU[i], r);
+            double[][] C = new double[r][r];
+            for (int i = 0; i < rows; ++i)
+                for (int a = 0; a < r; ++a) axpy(U[i][a], MU[i], C[a], r);
+            addOuter(C, H);
+        }
+
+        // H = H + VC(V^T)
+        private void addOuter(double[][] C, double[][] H) {
+            double[][] VC = new double[cols][r];
+            for (int p = 0; p < cols; ++p)
+                for (int a = 0; a < r; ++a) axpy(V[p][a], C[a], VC[p], r);
+            for (int p = 0; p < cols; ++p) {
+                final double[] hp = H[p];
+                for (int q = 0; q < cols; ++q) hp[q] += dot(VC[p], V[q], r);
+            }
+        }
+    }
+}
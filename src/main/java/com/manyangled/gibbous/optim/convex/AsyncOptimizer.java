@@ -0,0 +1,134 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Runs {@link ConvexOptimizer} solves asynchronously on an {@link Executor}, returning a {@link CompletableFuture}.
+ * <p>
+ * Each solve is given a {@link Cancellation} token, or uses the one given in its arguments.
+ * Cancelling the returned future cancels the token, which stops the solve at its next iteration or
+ * line search step, and releases the executor thread. A solve that fails completes the future exceptionally.
+ * Cancelling a dependent stage, such as one returned by {@link CompletableFuture#thenApply}, does not
+ * cancel the solve.
+ * <p>
+ * An optimizer holds the state of its current solve, so an optimizer instance should not be
+ * passed to {@link #optimize(ConvexOptimizer, OptimizationData...)} again until its future is done.
+ */
+public final class AsyncOptimizer {
+    private final Executor executor;
+
+    /** Construct an {@link AsyncOptimizer} that runs solves on {@link ForkJoinPool#commonPool()} */
+    public AsyncOptimizer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct an {@link AsyncOptimizer} that runs solves on an executor
+     * @param executor the executor for solves
+     */
+    public AsyncOptimizer(Executor executor) {
+        if (executor == null) throw new IllegalArgumentException("executor must not be null");
+        this.executor = executor;
+    }
+
+    /**
+     * Construct an {@link AsyncOptimizer} that runs each solve on a new virtual thread.
+     * @return an {@link AsyncOptimizer} using virtual threads
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    public static AsyncOptimizer virtualThreads() {
+        return new AsyncOptimizer(virtualThreadExecutor());
+    }
+
+    /**
+     * Start a solve on the executor.
+     * @param optimizer the optimizer for the solve
+     * @param optData the arguments to {@link ConvexOptimizer#optimize(OptimizationData...)}
+     * @return a future for the result of the solve
+     */
+    public CompletableFuture<ConvexSolveResult> optimize(
+        final ConvexOptimizer optimizer,
+        OptimizationData... optData) {
+        if (optimizer == null) throw new IllegalArgumentException("optimizer must not be null");
+        Cancellation token = null;
+        final ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        for (OptimizationData data: optData) {
+            if (data instanceof Cancellation) token = (Cancellation)data;
+            args.add(data);
+        }
+        if (token == null) {
+            token = new Cancellation();
+            args.add(token);
+        }
+        final SolveFuture future = new SolveFuture(token);
+        final OptimizationData[] solveArgs = args.toArray(new OptimizationData[0]);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // a future cancelled before the solve started has nothing to stop
+                    if (future.isDone()) return;
+                    try {
+                        future.complete(optimizer.optimize(solveArgs));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is resolved at run time, so that the library still targets Java 8
+    static Executor virtualThreadExecutor() {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads are not supported by this runtime");
+        }
+        try {
+            return (Executor)factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("failed to create a virtual thread executor", e);
+        }
+    }
+
+    // a future whose cancellation also cancels its solve
+    private static final class SolveFuture extends CompletableFuture<ConvexSolveResult> {
+        private final Cancellation token;
+
+        SolveFuture(Cancellation token) {
+            this.token = token;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            token.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
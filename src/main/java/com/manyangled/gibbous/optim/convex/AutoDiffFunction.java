@@ -0,0 +1,90 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.data;
+
+/**
+ * A {@link TwiceDifferentiableFunction} whose gradient and Hessian are derived by automatic differentiation.
+ * <p>
+ * Subclasses implement only {@link #value(Tape, Tape.Var[])}, using the operations of {@link Tape.Var}.
+ * The gradient is computed by reverse mode, at a cost of a small multiple of one evaluation, and the Hessian
+ * by forward-over-reverse, at a cost of (n) sweeps over one recorded evaluation. The function is recorded
+ * again for each point, so it may branch on the values of its arguments.
+ * <pre>
+ * TwiceDifferentiableFunction f = new AutoDiffFunction(2) {
+ *     protected Tape.Var value(Tape tape, Tape.Var[] x) {
+ *         return x[0].exp().plus(x[1].exp()).log();
+ *     }
+ * };
+ * </pre>
+ * Each thread that evaluates the function reuses its own {@link Tape}.
+ */
+public abstract class AutoDiffFunction extends TwiceDifferentiableFunction {
+    private final int n;
+    private final ThreadLocal<Tape> tapes = new ThreadLocal<Tape>() {
+        @Override
+        protected Tape initialValue() {
+            return new Tape();
+        }
+    };
+
+    /**
+     * @param n the dimension of the function domain
+     */
+    protected AutoDiffFunction(int n) {
+        if (n < 1) throw new IllegalArgumentException("n must be > 0");
+        this.n = n;
+    }
+
+    /**
+     * Record the value of this function on a tape.
+     * @param tape the tape, for creating constants
+     * @param x the arguments, recorded on the tape
+     * @return the value of the function, recorded on the tape
+     */
+    protected abstract Tape.Var value(Tape tape, Tape.Var[] x);
+
+    @Override
+    public int dim() { return n; }
+
+    @Override
+    public double value(final RealVector x) {
+        Tape tape = tapes.get();
+        return record(tape, x).value();
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        Tape tape = tapes.get();
+        return new ArrayRealVector(tape.gradient(record(tape, x)), false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        Tape tape = tapes.get();
+        return new Array2DRowRealMatrix(tape.hessian(record(tape, x)), false);
+    }
+
+    private Tape.Var record(Tape tape, RealVector x) {
+        if (x.getDimension() != n) throw new DimensionMismatchException(x.getDimension(), n);
+        return value(tape, tape.reset(data(x)));
+    }
+}
@@ -19,7 +19,6 @@ import org.apache.commons.math3.util.Pair;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
 import org.apache.commons.math3.optim.InitialGuess;
-import org.apache.commons.math3.optim.PointValuePair;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -41,11 +40,22 @@ import org.apache.commons.math3.linear.ArrayRealVector;
  *   <li>convex inequality constraints: {@link InequalityConstraintSet} - optional </li>
  *   <li>linear inequality constraints: {@link LinearInequalityConstraint} - optional </li>
  *   <li>linear equality constraints: {@link LinearEqualityConstraint} - optional </li>
+ *   <li>bound constraints: {@link BoxConstraint} - optional </li>
  *   <li>convergence epsilon: {@link ConvergenceEpsilon} - optional </li>
  *   <li>objective scale factor: {@link BarrierMu} - optional </li>
+ *   <li>inexact centering policy: {@link AdaptiveCentering} - optional </li>
+ *   <li>central path prediction: {@link CentralPathPredictor} - optional </li>
+ *   <li>presolve of linear constraints: {@link Presolve} - optional </li>
+ *   <li>screening of far-from-active constraints: {@link ConstraintScreening} - optional </li>
+ *   <li>problem scaling: {@link RuizScaling} - optional </li>
+ *   <li>wall-clock deadline: {@link Deadline} - optional: also applies to inner solves </li>
+ *   <li>cancellation token: {@link Cancellation} - optional: also applies to inner solves </li>
  *   <li>inner optimizer parameters: {@link InnerOptimizationData} - optional: passed down to {@link NewtonOptimizer} inner calls. </li>
  * </ul>
  * <p>
+ * Inner centering steps use {@link NewtonOptimizer} by default. A different inner optimizer, such as
+ * {@link QuasiNewtonOptimizer}, may be selected by passing an {@link InnerOptimizer} via {@link InnerOptimizationData}.
+ * <p>
  * NOTE: all parameters to {@link #optimize(OptimizationData...)} are also passed to {@link NewtonOptimizer}, and so
  * for example setting {@link ConvergenceEpsilon} here will also set it for inner calls to {@link NewtonOptimizer}. However, any
  * settings passed via {@link InnerOptimizationData} are applied last for {@link NewtonOptimizer}, and so will have precedence.
@@ -53,12 +63,20 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 public class BarrierOptimizer extends ConvexOptimizer {
     private ArrayList<TwiceDifferentiableFunction> constraintFunctions =
         new ArrayList<TwiceDifferentiableFunction>();
+    private ArrayList<LinearBlock> linearBlocks = new ArrayList<LinearBlock>();
+    private BoxConstraint box;
     private RealVector xStart;
     private double epsilon = ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
     private double mu = BarrierMu.BARRIER_MU_DEFAULT;
     private double t0 = BarrierMu.BARRIER_T0_DEFAULT;
     private OptimizationData[] odType = new OptimizationData[0];
     private HaltingCondition halting;
+    private AdaptiveCentering adaptive;
+    private CentralPathPredictor predictor;
+    private ConstraintScreening screening;
+    private LinearEqualityConstraint eqConstraint;
+    private KKTSolver kktSolver;
+    private InnerOptimizer.Method innerMethod = InnerOptimizer.INNER_OPTIMIZER_DEFAULT;
     private ArrayList<OptimizationData> newtonArgs = new ArrayList<OptimizationData>();
     private ArrayList<OptimizationData> innerArgs = new ArrayList<OptimizationData>();
 
@@ -67,7 +85,7 @@ public class BarrierOptimizer extends ConvexOptimizer {
     }
 
     @Override
-    public PointValuePair optimize(OptimizationData... optData) {
+    public ConvexSolveResult optimize(OptimizationData... optData) {
         return super.optimize(optData);
     }
 
@@ -99,27 +117,49 @@ public class BarrierOptimizer extends ConvexOptimizer {
                 mu = ((BarrierMu)data).mu;
                 t0 = ((BarrierMu)data).t0;
             }
+            if (data instanceof AdaptiveCentering) {
+                adaptive = (AdaptiveCentering)data;
+                continue;
+            }
+            if (data instanceof CentralPathPredictor) {
+                predictor = (CentralPathPredictor)data;
+                continue;
+            }
+            if (data instanceof ConstraintScreening) {
+                screening = (ConstraintScreening)data;
+                continue;
+            }
             if (data instanceof LinearInequalityConstraint) {
-                for (TwiceDifferentiableFunction f: ((LinearInequalityConstraint)data).lcf)
-                    constraintFunctions.add(f);
+                // linear constraints are evaluated as a block, rather than as individual functions
+                LinearInequalityConstraint lic = (LinearInequalityConstraint)data;
+                linearBlocks.add(new LinearBlock(lic.A, lic.b));
                 continue;
             }
             if (data instanceof InequalityConstraintSet) {
                 constraintFunctions.addAll(((InequalityConstraintSet)data).constraints);
                 continue;
             }
+            if (data instanceof BoxConstraint) {
+                box = (box == null) ? (BoxConstraint)data : box.intersect((BoxConstraint)data);
+                continue;
+            }
             if (data instanceof HaltingCondition) {
                 halting = (HaltingCondition)data;
                 continue;
             }
             if (data instanceof InnerOptimizationData) {
-                for (OptimizationData d: ((InnerOptimizationData)data).optData.toArray(odType))
+                for (OptimizationData d: ((InnerOptimizationData)data).optData.toArray(odType)) {
                     if (canPassFromInner(d)) innerArgs.add(d);
+                    if (d instanceof InnerOptimizer) innerMethod = ((InnerOptimizer)d).method;
+                }
                 continue;
             }
         }
         // if we got here, convexObjective exists
         int n = convexObjective.dim();
+        if ((box != null) && (box.dim() != n)) throw new DimensionMismatchException(box.dim(), n);
+        for (LinearBlock lb: linearBlocks)
+            if (lb.dim() != n) throw new DimensionMismatchException(lb.dim(), n);
         if (this.getStartPoint() != null) {
             xStart = new ArrayRealVector(this.getStartPoint());
             if (xStart.getDimension() != n)
@@ -129,37 +169,222 @@ public class BarrierOptimizer extends ConvexOptimizer {
         }
         // append any "inner" args - this overrides anything currently in newtonArgs
         newtonArgs.addAll(innerArgs);
+        // the equality constraints and KKT solver in effect for inner solves are also used for prediction
+        for (OptimizationData data: newtonArgs) {
+            if (data instanceof LinearEqualityConstraint) eqConstraint = (LinearEqualityConstraint)data;
+            if (data instanceof KKTSolver) kktSolver = (KKTSolver)data;
+        }
     }
 
     @Override
-    public PointValuePair doOptimize() {
+    public ConvexSolveResult doOptimize() {
         double m = (double)((constraintFunctions != null) ? constraintFunctions.size() : 0);
+        for (LinearBlock lb: linearBlocks) m += (double)lb.size();
+        if (box != null) m += (double)box.count();
         if (m == 0.0) {
             // if there are no inequality constraints, invoke newton's method directly
             ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)newtonArgs.clone();
             args.add(new ObjectiveFunction(convexObjective));
             args.add(new InitialGuess(xStart.toArray()));
-            NewtonOptimizer newton = new NewtonOptimizer();
-            return newton.optimize(args.toArray(odType));
+            ConvexOptimizer newton = InnerOptimizer.newOptimizer(innerMethod);
+            ConvexSolveResult r = newton.optimize(args.toArray(odType));
+            status = r.getStatus();
+            dualityGap = r.getDualityGap();
+            addStatistics(r.getStatistics());
+            return new ConvexSolveResult(r.getPoint(), r.getValue(), status, dualityGap, Double.NaN,
+                null, null, null, r.getEqualityDuals(), getStatistics());
         }
         RealVector x = xStart;
+        double mu = this.mu;
+        double tLast = t0;
+        double epsLast = epsilon;
+        boolean halted = false;
+        // the best dual bound from the central points so far (11.2.2)
+        double dualBound = Double.NEGATIVE_INFINITY;
+        // the status of the most recent centering step
+        SolveStatus centerStatus = null;
+        // the value of (t), and the equality duals of the centering step, for the current (x)
+        double tx = Double.NaN;
+        double[] nux = null;
+        // recent centers, and their values of (t), for predicting the next center
+        ArrayList<RealVector> centers = new ArrayList<RealVector>();
+        ArrayList<Double> ts = new ArrayList<Double>();
         for (double t = t0; (t * epsilon) <= m ; t *= mu) {
-            TwiceDifferentiableFunction bf = new LogBarrierFunction(t, convexObjective, constraintFunctions);
-            NewtonOptimizer newton = new NewtonOptimizer();
-            ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)newtonArgs.clone();
-            args.add(new ObjectiveFunction(bf));
-            args.add(new InitialGuess(x.toArray()));
-            PointValuePair pvp = newton.optimize(args.toArray(odType));
+            if (stopRequested()) {
+                status = stopStatus();
+                break;
+            }
+            double innerEps = (adaptive != null) ? adaptive.innerEpsilon(t, t0, mu, m, epsilon) : epsilon;
+            RealVector xGuess = ((predictor != null) && !ts.isEmpty()) ? predictCenter(t, ts, centers) : x;
+            ConvexOptimizer newton = InnerOptimizer.newOptimizer(innerMethod);
+            ConvexSolveResult pvp = center(newton, t, xGuess, innerEps, screening);
+            addStatistics(pvp.getStatistics());
             // update for next iteration
+            if (adaptive != null) mu = adaptive.nextMu(mu, newton.getIterations());
+            tLast = t;
+            epsLast = innerEps;
             RealVector xprv = x;
             x = new ArrayRealVector(pvp.getFirst());
+            if (isStopped(newton.getStatus())) {
+                // (x) is strictly feasible, but not central, so it only replaces the previous center if it is better
+                status = newton.getStatus();
+                if (Double.isNaN(tx) || (convexObjective.value(x) <= convexObjective.value(xprv))) {
+                    tx = t;
+                    nux = pvp.getEqualityDuals();
+                } else {
+                    x = xprv;
+                }
+                break;
+            }
+            tx = t;
+            nux = pvp.getEqualityDuals();
+            centerStatus = pvp.getStatus();
+            // only a center solved to the full epsilon gives a dual bound
+            if ((innerEps <= epsilon) && (centerStatus == SolveStatus.CONVERGED))
+                dualBound = Math.max(dualBound, convexObjective.value(x) - (m / t));
+            if (predictor != null) {
+                if (ts.size() == PREDICTOR_HISTORY) {
+                    ts.remove(0);
+                    centers.remove(0);
+                }
+                ts.add(t);
+                centers.add(x);
+            }
             if ((halting != null) && halting.checker.converged(
                     getIterations(),
                     new Pair<RealVector, Double>(xprv, convexObjective.value(xprv)),
                     new Pair<RealVector, Double>(x, convexObjective.value(x)))) {
+                status = SolveStatus.HALTED;
+                halted = true;
                 break;
             }
         }
-        return new PointValuePair(x.toArray(), convexObjective.value(x));
+        if (!halted && !isStopped(status) && ((epsLast > epsilon) || (screening != null))) {
+            // an increase in mu can end the schedule on a loosely solved center,
+            // in which case the final center is polished to full precision,
+            // and a center found with screened constraints is re-validated with the exact Hessian
+            ConvexOptimizer newton = InnerOptimizer.newOptimizer(innerMethod);
+            ConvexSolveResult pvp = center(newton, tLast, x, epsilon, null);
+            addStatistics(pvp.getStatistics());
+            x = new ArrayRealVector(pvp.getFirst());
+            nux = pvp.getEqualityDuals();
+            if (isStopped(newton.getStatus())) {
+                status = newton.getStatus();
+            } else {
+                centerStatus = pvp.getStatus();
+                if (centerStatus == SolveStatus.CONVERGED)
+                    dualBound = Math.max(dualBound, convexObjective.value(x) - (m / tLast));
+            }
+        }
+        // a final center whose line search failed is not a converged solution
+        if (!halted && !isStopped(status) && (centerStatus == SolveStatus.HALTED)) status = SolveStatus.HALTED;
+        final double v = convexObjective.value(x);
+        // if the only centers reached were inexact, there is no valid bound
+        dualityGap = ((dualBound == Double.NEGATIVE_INFINITY) && (centerStatus != null)) ? Double.NaN : (v - dualBound);
+        return result(x.toArray(), v, tx, nux);
     }
+
+    // the solution, with dual variables at (x) for barrier parameter (t), if (x) resulted from centering
+    private ConvexSolveResult result(double[] x, double v, double t, double[] nuHat) {
+        if (Double.isNaN(t)) {
+            return new ConvexSolveResult(x, v, status, dualityGap, t, null, null, null, null, getStatistics());
+        }
+        // lambda[k] = -1/(t f[k](x))
+        int mi = constraintFunctions.size();
+        for (LinearBlock lb: linearBlocks) mi += lb.size();
+        double[] lambda = null;
+        if (mi > 0) {
+            lambda = new double[mi];
+            int k = 0;
+            for (TwiceDifferentiableFunction f: constraintFunctions) lambda[k++] = -1.0 / (t * f.value(x));
+            for (LinearBlock lb: linearBlocks)
+                for (double sk: lb.slacks(x)) lambda[k++] = 1.0 / (t * sk);
+        }
+        double[] lower = null;
+        double[] upper = null;
+        if (box != null) {
+            lower = new double[x.length];
+            upper = new double[x.length];
+            for (int j = 0; j < x.length; ++j) {
+                if (!Double.isInfinite(box.lower[j])) lower[j] = 1.0 / (t * (x[j] - box.lower[j]));
+                if (!Double.isInfinite(box.upper[j])) upper[j] = 1.0 / (t * (box.upper[j] - x[j]));
+            }
+        }
+        double[] nu = null;
+        if (nuHat != null) {
+            nu = nuHat.clone();
+            for (int i = 0; i < nu.length; ++i) nu[i] /= t;
+        }
+        return new ConvexSolveResult(x, v, status, dualityGap, t, lambda, lower, upper, nu, getStatistics());
+    }
+
+    private ConvexSolveResult center(
+        ConvexOptimizer newton, double t, RealVector x, double innerEps, ConstraintScreening screening) {
+        TwiceDifferentiableFunction bf = barrierFunction(t, screening);
+        ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)newtonArgs.clone();
+        args.add(new ObjectiveFunction(bf));
+        args.add(new InitialGuess(x.toArray()));
+        if (adaptive != null) args.add(new ConvergenceEpsilon(innerEps));
+        return newton.optimize(args.toArray(odType));
+    }
+
+    private LogBarrierFunction barrierFunction(double t, ConstraintScreening screening) {
+        return new LogBarrierFunction(
+            t, convexObjective,
+            constraintFunctions.toArray(new TwiceDifferentiableFunction[0]),
+            linearBlocks.toArray(new LinearBlock[0]),
+            box, screening);
+    }
+
+    // Predict the center at (t) from previous centers, by extrapolating in (1/t)
+    private RealVector predictCenter(double t, ArrayList<Double> ts, ArrayList<RealVector> centers) {
+        final int k = ts.size();
+        final RealVector xc = centers.get(k - 1);
+        final double tc = ts.get(k - 1);
+        RealVector step;
+        if (predictor.mode == CentralPathPredictor.Mode.TANGENT) {
+            // Differentiating the centering conditions w.r.t. (t) gives the KKT system
+            // H(dx/dt) + (A^T)(dnu/dt) = -grad(f0), A(dx/dt) = 0
+            RealMatrix H = barrierFunction(tc, null).hessian(xc);
+            RealVector g = convexObjective.gradient(xc);
+            KKTSolution sol;
+            if ((eqConstraint == null) || (eqConstraint.b.getDimension() < 1)) {
+                sol = KKTSolver.solve(kktSolver, H, g);
+            } else {
+                sol = KKTSolver.solve(kktSolver, H, eqConstraint.A, eqConstraint.A.transpose(), g,
+                    new ArrayRealVector(eqConstraint.b.getDimension(), 0.0));
+            }
+            ++kktSolves;
+            // w.r.t. s = 1/t, dx/ds = -(t^2)(dx/dt)
+            step = sol.xDelta.mapMultiply(tc * tc * ((1.0 / tc) - (1.0 / t)));
+        } else {
+            if (k < 2) return xc;
+            // Lagrange polynomial in s = 1/t through previous centers. Weights sum to 1,
+            // so the prediction satisfies any equality constraints that the centers satisfy.
+            final double s = 1.0 / t;
+            RealVector xp = new ArrayRealVector(xc.getDimension(), 0.0);
+            for (int i = 0; i < k; ++i) {
+                double si = 1.0 / ts.get(i);
+                double li = 1.0;
+                for (int j = 0; j < k; ++j)
+                    if (j != i) li *= (s - (1.0 / ts.get(j))) / (si - (1.0 / ts.get(j)));
+                xp.combineToSelf(1.0, li, centers.get(i));
+            }
+            step = xp.subtract(xc);
+        }
+        // safeguard: the prediction must be inside the barrier domain, and improve on the previous center
+        TwiceDifferentiableFunction bf = barrierFunction(t, null);
+        final double vc = bf.value(xc);
+        for (int j = 0; j < PREDICTOR_BACKTRACKS; ++j) {
+            RealVector xp = xc.add(step);
+            if (bf.value(xp) < vc) return xp;
+            step.mapMultiplyToSelf(0.5);
+        }
+        return xc;
+    }
+
+    // the number of previous centers used for prediction
+    private static final int PREDICTOR_HISTORY = 3;
+    // the number of times a prediction is shortened before falling back to the previous center
+    private static final int PREDICTOR_BACKTRACKS = 4;
 }
@@ -0,0 +1,326 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import static com.manyangled.gibbous.optim.convex.DenseLinearAlgebra.toArray;
+import static com.manyangled.gibbous.optim.convex.DenseLinearAlgebra.toVector;
+
+/**
+ * Solves KKT conditions for {@link NewtonOptimizer} when the Hessian H is block diagonal, as it is
+ * for separable objectives, using Schur block factorization and Cholesky decomposition of each block.
+ * <p>
+ * With a partition of the variables into blocks k such that H has no entries between blocks,
+ * each block H[k] is factored independently, and the equality constraints A enter only through
+ * the p x p Schur complement S = sum(A[k](H[k]^-1)(A[k]^T)), where A[k] holds the columns of A
+ * for block k. Blocks whose columns of A are all zero do not contribute to S. This covers both
+ * block diagonal and arrow structured KKT systems, at a cost of roughly sum(n[k]^3) + n(p^2) + p^3,
+ * rather than the n^3 of {@link CholeskySchurKKTSolver}. Blocks are factored in parallel on an
+ * {@link Executor}, when there is enough work to pay for it.
+ * <p>
+ * The partition may be declared, or detected at each solve from the connected components of
+ * the nonzero entries of H. A declared partition is assumed to be correct: entries of H between
+ * declared blocks are ignored.
+ * <p>
+ * Implements (Algorithm 10.3) and Step 1 of (Algorithm 9.5) from
+ * Convex Optimization, Boyd and Vandenberghe, Cambridge University Press, 2008.
+ * <p>
+ * See also {@link CholeskySchurKKTSolver}
+ */
+public class BlockDiagonalKKTSolver extends KKTSolver {
+    private final int[][] partition;
+    private final DenseLinearAlgebra la;
+    private final Executor executor;
+
+    // below this many flops, per-block tasks cost more than they save
+    private static final double PARALLEL_WORK = 1e6;
+
+    /**
+     * Construct a solver that detects blocks at each solve, using the default
+     * {@link BlockedDenseLinearAlgebra} backend and {@link ForkJoinPool#commonPool()}
+     */
+    public BlockDiagonalKKTSolver() {
+        this((int[][])null, new BlockedDenseLinearAlgebra(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a solver for contiguous blocks of variables, using the default
+     * {@link BlockedDenseLinearAlgebra} backend and {@link ForkJoinPool#commonPool()}
+     * @param blockSizes the sizes of the blocks, in order. Each size must be &gt; 0.
+     */
+    public BlockDiagonalKKTSolver(int[] blockSizes) {
+        this(contiguous(blockSizes), new BlockedDenseLinearAlgebra(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a solver for a given partition of the variables
+     * @param partition the variable indices of each block, or null to detect blocks at each solve.
+     * Each index must appear in exactly one block.
+     * @param la the backend to use for factorizations and matrix products
+     * @param executor the executor for block factorizations
+     */
+    public BlockDiagonalKKTSolver(int[][] partition, DenseLinearAlgebra la, Executor executor) {
+        if (la == null) throw new IllegalArgumentException("la must not be null");
+        if (executor == null) throw new IllegalArgumentException("executor must not be null");
+        this.partition = (partition != null) ? validated(partition) : null;
+        this.la = la;
+        this.executor = executor;
+    }
+
+    /**
+     * The partition of the variables into the connected components of the nonzero entries of H,
+     * ordered by their smallest index
+     * @param H a symmetric matrix
+     * @return the variable indices of each block, in increasing order
+     */
+    public static int[][] detectBlocks(RealMatrix H) {
+        final int n = H.getRowDimension();
+        final double[][] h = rows(H);
+        int[] parent = new int[n];
+        for (int i = 0; i < n; ++i) parent[i] = i;
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j) {
+                if ((h[i][j] == 0.0) && (h[j][i] == 0.0)) continue;
+                int ri = root(parent, i);
+                int rj = root(parent, j);
+                if (ri < rj) parent[rj] = ri; else parent[ri] = rj;
+            }
+        // roots are the smallest index of their component
+        int[] block = new int[n];
+        int[] size = new int[n];
+        int nb = 0;
+        for (int i = 0; i < n; ++i) {
+            int r = root(parent, i);
+            block[i] = (r == i) ? nb++ : block[r];
+            ++size[block[i]];
+        }
+        int[][] partition = new int[nb][];
+        for (int k = 0; k < nb; ++k) partition[k] = new int[size[k]];
+        int[] fill = new int[nb];
+        for (int i = 0; i < n; ++i) partition[block[i]][fill[block[i]]++] = i;
+        return partition;
+    }
+
+    // step 1 of algorithm 9.5, for each block
+    public KKTSolution solve(final RealMatrix H, final RealVector g) {
+        final int n = g.getDimension();
+        final Factor[] factors = factors(H, n);
+        final double[] gd = toArray(g);
+        run(factors, new BlockTask() {
+            void apply(Factor f) {
+                f.factor(la);
+                f.u = f.gather(gd);
+                la.choleskySolve(f.L, f.n, f.u, 1);
+            }
+        });
+        double lsq = 0.0;
+        double[] v = new double[n];
+        for (Factor f: factors)
+            for (int i = 0; i < f.n; ++i) {
+                lsq += gd[f.idx[i]] * f.u[i];
+                v[f.idx[i]] = -f.u[i];
+            }
+        return new KKTSolution(toVector(v), lsq);
+    }
+
+    // Algorithm 10.3, with H[k] = L[k](L[k]^T), Y[k] = (L[k]^-1)(A[k]^T) and u[k] = (L[k]^-1)g[k],
+    // so that S = sum((Y[k]^T)Y[k]) and A(H^-1)g = sum((Y[k]^T)u[k]), as in CholeskySchurKKTSolver
+    public KKTSolution solve(
+        final RealMatrix H,
+        final RealMatrix A, final RealMatrix AT,
+        final RealVector g, final RealVector h) {
+        final int n = g.getDimension();
+        final int p = h.getDimension();
+        final Factor[] factors = factors(H, n);
+        final double[] gd = toArray(g);
+        final double[][] at = rows(AT);
+        run(factors, new BlockTask() {
+            void apply(Factor f) {
+                f.factor(la);
+                f.u = f.gather(gd);
+                la.solveLower(f.L, f.n, false, f.u, 1);
+                f.Y = f.gatherRows(at, p);
+                if (f.Y != null) la.solveLower(f.L, f.n, false, f.Y, p);
+            }
+        });
+        double[] S = new double[p * p];
+        final double[] w = toArray(h);
+        for (Factor f: factors) {
+            if (f.Y == null) continue;
+            la.syrk(true, p, f.n, 1.0, f.Y, 1.0, S); // -S relative to 10.3
+            la.gemm(true, false, p, 1, f.n, -1.0, f.Y, f.u, 1.0, w); // h - A(H^-1)g
+        }
+        la.cholesky(S, p);
+        la.choleskySolve(S, p, w, 1); // both sides neg, so w same
+        final double[] v = new double[n];
+        run(factors, new BlockTask() {
+            void apply(Factor f) {
+                if (f.Y != null) la.gemm(false, false, f.n, 1, p, 1.0, f.Y, w, 1.0, f.u);
+                la.solveLower(f.L, f.n, true, f.u, 1); // this yields -v[k]
+                for (int i = 0; i < f.n; ++i) v[f.idx[i]] = -f.u[i];
+            }
+        });
+        return new KKTSolution(toVector(v), toVector(w));
+    }
+
+    private Factor[] factors(RealMatrix H, int n) {
+        int[][] blocks = partition;
+        if (blocks == null) {
+            blocks = detectBlocks(H);
+        } else {
+            int m = 0;
+            for (int[] b: blocks) m += b.length;
+            if (m != n) throw new DimensionMismatchException(m, n);
+        }
+        final double[][] h = rows(H);
+        Factor[] factors = new Factor[blocks.length];
+        for (int k = 0; k < blocks.length; ++k) factors[k] = new Factor(blocks[k], h);
+        return factors;
+    }
+
+    // apply a task to every block, in parallel if the blocks are worth it
+    private void run(Factor[] factors, final BlockTask task) {
+        double work = 0.0;
+        for (Factor f: factors) work += (double)f.n * f.n * f.n;
+        if ((factors.length < 2) || (work < PARALLEL_WORK)) {
+            for (Factor f: factors) task.apply(f);
+            return;
+        }
+        ArrayList<CompletableFuture<Void>> tasks = new ArrayList<CompletableFuture<Void>>();
+        try {
+            for (final Factor f: factors)
+                tasks.add(CompletableFuture.runAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.apply(f);
+                    }
+                }, executor));
+        } catch (RuntimeException e) {
+            for (CompletableFuture<Void> t: tasks) t.cancel(false);
+            throw e;
+        }
+        for (CompletableFuture<Void> t: tasks) {
+            try {
+                t.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw e;
+            }
+        }
+    }
+
+    private static abstract class BlockTask {
+        abstract void apply(Factor f);
+    }
+
+    // the working arrays of one block, each touched by one task at a time
+    private static final class Factor {
+        final int[] idx;
+        final int n;
+        final double[] L;
+        double[] Y;
+        double[] u;
+
+        Factor(int[] idx, double[][] h) {
+            this.idx = idx;
+            this.n = idx.length;
+            this.L = new double[n * n];
+            for (int i = 0; i < n; ++i) {
+                final double[] hi = h[idx[i]];
+                for (int j = 0; j < n; ++j) L[i * n + j] = hi[idx[j]];
+            }
+        }
+
+        void factor(DenseLinearAlgebra la) {
+            la.cholesky(L, n);
+        }
+
+        double[] gather(double[] x) {
+            double[] r = new double[n];
+            for (int i = 0; i < n; ++i) r[i] = x[idx[i]];
+            return r;
+        }
+
+        // rows (idx) of an (n x p) matrix, or null if they are all zero
+        double[] gatherRows(double[][] m, int p) {
+            double[] r = new double[n * p];
+            boolean zero = true;
+            for (int i = 0; i < n; ++i) {
+                final double[] mi = m[idx[i]];
+                for (int j = 0; j < p; ++j) {
+                    r[i * p + j] = mi[j];
+                    if (mi[j] != 0.0) zero = false;
+                }
+            }
+            return zero ? null : r;
+        }
+    }
+
+    private static double[][] rows(RealMatrix M) {
+        if (M instanceof Array2DRowRealMatrix) return ((Array2DRowRealMatrix)M).getDataRef();
+        return M.getData();
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static int[][] contiguous(int[] blockSizes) {
+        if (blockSizes == null) throw new IllegalArgumentException("blockSizes must not be null");
+        int[][] partition = new int[blockSizes.length][];
+        int m = 0;
+        for (int k = 0; k < blockSizes.length; ++k) {
+            if (blockSizes[k] < 1) throw new IllegalArgumentException("block sizes must be > 0");
+            partition[k] = new int[blockSizes[k]];
+            for (int i = 0; i < blockSizes[k]; ++i) partition[k][i] = m++;
+        }
+        return partition;
+    }
+
+    private static int[][] validated(int[][] partition) {
+        if (partition.length < 1) throw new IllegalArgumentException("partition must be non-empty");
+        int m = 0;
+        for (int[] b: partition) {
+            if ((b == null) || (b.length < 1)) throw new IllegalArgumentException("blocks must be non-empty");
+            m += b.length;
+        }
+        boolean[] seen = new boolean[m];
+        int[][] copy = new int[partition.length][];
+        for (int k = 0; k < partition.length; ++k) {
+            for (int i: partition[k]) {
+                if ((i < 0) || (i >= m) || seen[i])
+                    throw new IllegalArgumentException("each index must appear in exactly one block");
+                seen[i] = true;
+            }
+            copy[k] = partition[k].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+/**
+ * A pure-java {@link DenseLinearAlgebra} backend, operating on flat row-major arrays.
+ * <p>
+ * Factorizations and products are cache-blocked: work is organized in tiles of
+ * {@link #blockSize()} rows or columns, and all inner loops are unit-stride
+ * row segments. This is the default backend used by {@link CholeskySchurKKTSolver}.
+ */
+public class BlockedDenseLinearAlgebra extends DenseLinearAlgebra {
+    private final int nb;
+
+    /** Construct a backend with the default block size */
+    public BlockedDenseLinearAlgebra() {
+        this(BLOCK_SIZE_DEFAULT);
+    }
+
+    /**
+     * Construct a backend with a given block size
+     * @param blockSize the tile size used for blocking. Must be &gt; 0.
+     */
+    public BlockedDenseLinearAlgebra(int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("block size must be > 0");
+        this.nb = blockSize;
+    }
+
+    /** @return the tile size used for blocking */
+    public int blockSize() { return nb; }
+
+    @Override
+    public void cholesky(double[] a, int n) {
+        // right-looking blocked factorization
+        for (int kb = 0; kb < n; kb += nb) {
+            final int ke = Math.min(kb + nb, n);
+            // factor the diagonal block, and solve the panel below it
+            for (int i = kb; i < n; ++i) {
+                final int ri = i * n;
+                final int je = Math.min(i + 1, ke);
+                for (int j = kb; j < je; ++j) {
+                    final int rj = j * n;
+                    double s = a[ri + j];
+                    for (int k = kb; k < j; ++k) s -= a[ri + k] * a[rj + k];
+                    if (i == j) {
+                        if (s <= POSITIVITY_THRESHOLD)
+                            throw new NonPositiveDefiniteMatrixException(s, i, POSITIVITY_THRESHOLD);
+                        a[ri + i] = Math.sqrt(s);
+                    } else {
+                        a[ri + j] = s / a[rj + j];
+                    }
+                }
+            }
+            // update the trailing lower triangle, tiled over column blocks
+            for (int jb = ke; jb < n; jb += nb) {
+                final int jbe = Math.min(jb + nb, n);
+                for (int i = jb; i < n; ++i) {
+                    final int ri = i * n;
+                    final int je = Math.min(i + 1, jbe);
+                    for (int j = jb; j < je; ++j) {
+                        final int rj = j * n;
+                        double s = 0.0;
+                        for (int k = kb; k < ke; ++k) s += a[ri + k] * a[rj + k];
+                        a[ri + j] -= s;
+                    }
+                }
+            }
+        }
+        zeroUpper(a, n);
+    }
+
+    @Override
+    public void ldlt(double[] a, double[] d, int n) {
+        double[] w = new double[n];
+        for (int i = 0; i < n; ++i) {
+            final int ri = i * n;
+            for (int j = 0; j < i; ++j) {
+                final int rj = j * n;
+                double s = a[ri + j];
+                for (int k = 0; k < j; ++k) s -= w[k] * a[rj + k];
+                a[ri + j] = s / d[j];
+                w[j] = s;
+            }
+            double s = a[ri + i];
+            for (int k = 0; k < i; ++k) s -= w[k] * a[ri + k];
+            if (s == 0.0) throw new SingularMatrixException();
+            d[i] = s;
+            a[ri + i] = 1.0;
+        }
+        zeroUpper(a, n);
+    }
+
+    @Override
+    public void solveLower(double[] l, int n, boolean transpose, double[] b, int nrhs) {
+        if (!transpose) {
+            for (int i = 0; i < n; ++i) {
+                final int ri = i * n;
+                final int bi = i * nrhs;
+                for (int k = 0; k < i; ++k) {
+                    final double lik = l[ri + k];
+                    if (lik == 0.0) continue;
+                    final int bk = k * nrhs;
+                    for (int j = 0; j < nrhs; ++j) b[bi + j] -= lik * b[bk + j];
+                }
+                final double z = 1.0 / l[ri + i];
+                for (int j = 0; j < nrhs; ++j) b[bi + j] *= z;
+            }
+        } else {
+            for (int i = n - 1; i >= 0; --i) {
+                final int ri = i * n;
+                final int bi = i * nrhs;
+                final double z = 1.0 / l[ri + i];
+                for (int j = 0; j < nrhs; ++j) b[bi + j] *= z;
+                for (int k = 0; k < i; ++k) {
+                    final double lik = l[ri + k];
+                    if (lik == 0.0) continue;
+                    final int bk = k * nrhs;
+                    for (int j = 0; j < nrhs; ++j) b[bk + j] -= lik * b[bi + j];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void gemm(
+        boolean transA, boolean transB,
+        int m, int n, int k,
+        double alpha, double[] a, double[] b,
+        double beta, double[] c) {
+        // pack operands so that op(A) is m x k and op(B) is k x n, both row-major
+        final double[] pa = transA ? transpose(a, k, m) : a;
+        final double[] pb = transB ? transpose(b, n, k) : b;
+        scale(beta, c, m * n);
+        if (alpha == 0.0) return;
+        for (int kb = 0; kb < k; kb += nb) {
+            final int ke = Math.min(kb + nb, k);
+            for (int jb = 0; jb < n; jb += JB) {
+                final int je = Math.min(jb + JB, n);
+                for (int i = 0; i < m; ++i) {
+                    final int ci = i * n;
+                    final int ai = i * k;
+                    for (int q = kb; q < ke; ++q) {
+                        final double aiq = alpha * pa[ai + q];
+                        if (aiq == 0.0) continue;
+                        final int bq = q * n;
+                        for (int j = jb; j < je; ++j) c[ci + j] += aiq * pb[bq + j];
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void syrk(boolean trans, int n, int k, double alpha, double[] a, double beta, double[] c) {
+        // pack A so that it is n x k, row-major; C[i][j] is then a dot product of rows i and j
+        final double[] pa = trans ? transpose(a, k, n) : a;
+        scale(beta, c, n * n);
+        if (alpha != 0.0) {
+            for (int jb = 0; jb < n; jb += nb) {
+                final int jbe = Math.min(jb + nb, n);
+                for (int i = jb; i < n; ++i) {
+                    final int ai = i * k;
+                    final int je = Math.min(i + 1, jbe);
+                    for (int j = jb; j < je; ++j) {
+                        final int aj = j * k;
+                        double s = 0.0;
+                        for (int q = 0; q < k; ++q) s += pa[ai + q] * pa[aj + q];
+                        c[i * n + j] += alpha * s;
+                    }
+                }
+            }
+        }
+        // fill in the upper triangle
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < i; ++j)
+                c[j * n + i] = c[i * n + j];
+    }
+
+    private static double[] transpose(double[] a, int r, int c) {
+        double[] t = new double[r * c];
+        for (int i = 0; i < r; ++i)
+            for (int j = 0; j < c; ++j)
+                t[j * r + i] = a[i * c + j];
+        return t;
+    }
+
+    private static void scale(double beta, double[] c, int len) {
+        if (beta == 1.0) return;
+        if (beta == 0.0) {
+            java.util.Arrays.fill(c, 0, len, 0.0);
+        } else {
+            for (int j = 0; j < len; ++j) c[j] *= beta;
+        }
+    }
+
+    private static void zeroUpper(double[] a, int n) {
+        for (int i = 0; i < n; ++i)
+            java.util.Arrays.fill(a, i * n + i + 1, (i + 1) * n, 0.0);
+    }
+
+    /** Default tile size used for blocking */
+    public static final int BLOCK_SIZE_DEFAULT = 64;
+
+    // column tile width for gemm
+    private static final int JB = 256;
+
+    // same default as CholeskyDecomposition.DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD
+    private static final double POSITIVITY_THRESHOLD = 1e-10;
+}
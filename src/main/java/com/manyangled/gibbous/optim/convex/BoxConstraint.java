@@ -0,0 +1,181 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.OpenMapRealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * A set of bound constraints l[j] &lt; x[j] &lt; u[j].
+ * <p>
+ * Bounds may be infinite, in which case they are ignored. {@link BarrierOptimizer} applies bounds
+ * directly as a term of its barrier function, costing O(n) per evaluation, instead of as
+ * {@link LinearFunction} constraints, each with a dense gradient and Hessian.
+ * If more than one {@link BoxConstraint} is given, their intersection applies.
+ */
+public class BoxConstraint implements OptimizationData {
+    /** The lower bounds, possibly negative infinity */
+    public final double[] lower;
+    /** The upper bounds, possibly positive infinity */
+    public final double[] upper;
+
+    /**
+     * Construct a set of bound constraints l[j] &lt; x[j] &lt; u[j]
+     * @param lower the lower bounds l[j]. May be negative infinity.
+     * @param upper the upper bounds u[j]. May be positive infinity. Must satisfy l[j] &lt; u[j]
+     */
+    public BoxConstraint(final double[] lower, final double[] upper) {
+        if (upper.length != lower.length)
+            throw new DimensionMismatchException(upper.length, lower.length);
+        for (int j = 0; j < lower.length; ++j) {
+            if (Double.isNaN(lower[j]) || Double.isNaN(upper[j]) || !(lower[j] < upper[j]))
+                throw new IllegalArgumentException(String.format("bounds must satisfy l[%d] < u[%d]", j, j));
+            if (lower[j] == Double.POSITIVE_INFINITY || upper[j] == Double.NEGATIVE_INFINITY)
+                throw new IllegalArgumentException(String.format("bounds on x[%d] are empty", j));
+        }
+        this.lower = lower.clone();
+        this.upper = upper.clone();
+    }
+
+    /** @return the dimension of the bounded domain */
+    public int dim() { return lower.length; }
+
+    /** @return the number of finite bounds */
+    public int count() {
+        int c = 0;
+        for (int j = 0; j < lower.length; ++j) {
+            if (lower[j] > Double.NEGATIVE_INFINITY) ++c;
+            if (upper[j] < Double.POSITIVE_INFINITY) ++c;
+        }
+        return c;
+    }
+
+    /**
+     * @param that another set of bounds
+     * @return the intersection of these bounds and (that)
+     */
+    public BoxConstraint intersect(BoxConstraint that) {
+        if (that.dim() != dim()) throw new DimensionMismatchException(that.dim(), dim());
+        double[] l = new double[dim()];
+        double[] u = new double[dim()];
+        for (int j = 0; j < l.length; ++j) {
+            l[j] = Math.max(lower[j], that.lower[j]);
+            u[j] = Math.min(upper[j], that.upper[j]);
+        }
+        return new BoxConstraint(l, u);
+    }
+
+    /**
+     * Express the finite bounds as constraint functions, x[j] - u[j] &lt; 0 and l[j] - x[j] &lt; 0
+     * @return the list of constraint functions
+     */
+    public ArrayList<TwiceDifferentiableFunction> constraintFunctions() {
+        final int n = dim();
+        ArrayList<TwiceDifferentiableFunction> fk = new ArrayList<TwiceDifferentiableFunction>();
+        for (int j = 0; j < n; ++j) {
+            if (upper[j] < Double.POSITIVE_INFINITY) {
+                RealVector a = new OpenMapRealVector(n);
+                a.setEntry(j, 1.0);
+                fk.add(new LinearFunction(a, -upper[j]));
+            }
+            if (lower[j] > Double.NEGATIVE_INFINITY) {
+                RealVector a = new OpenMapRealVector(n);
+                a.setEntry(j, -1.0);
+                fk.add(new LinearFunction(a, lower[j]));
+            }
+        }
+        return fk;
+    }
+
+    /**
+     * Move a point strictly inside the bounds, if necessary. Coordinates already strictly inside are unchanged.
+     * Coordinates outside are moved inside by a fraction of the interval width, or by 1 for half-infinite intervals.
+     * @param x the point
+     * @return a point strictly inside the bounds
+     */
+    public double[] interior(final double[] x) {
+        double[] y = x.clone();
+        for (int j = 0; j < y.length; ++j) {
+            final double l = lower[j];
+            final double u = upper[j];
+            if ((y[j] > l) && (y[j] < u)) continue;
+            final double w = u - l;
+            final double margin = (w < Double.POSITIVE_INFINITY) ? (INTERIOR_FRACTION * w) : 1.0;
+            y[j] = (y[j] <= l) ? (l + margin) : (u - margin);
+        }
+        return y;
+    }
+
+    /**
+     * The value of the log barrier -sum(log(u[j] - x[j]) + log(x[j] - l[j])) over finite bounds.
+     * @param x the point
+     * @return the barrier value, or +inf if x is not strictly inside the bounds
+     */
+    double barrierValue(final double[] x) {
+        double v = 0.0;
+        for (int j = 0; j < lower.length; ++j) {
+            final double sl = x[j] - lower[j];
+            final double su = upper[j] - x[j];
+            if (!(sl > 0.0) || !(su > 0.0)) return Double.POSITIVE_INFINITY;
+            if (sl < Double.POSITIVE_INFINITY) v -= Math.log(sl);
+            if (su < Double.POSITIVE_INFINITY) v -= Math.log(su);
+        }
+        return v;
+    }
+
+    /**
+     * Add the gradient of the log barrier to (g)
+     */
+    void addBarrierGradient(final double[] x, final double[] g) {
+        for (int j = 0; j < lower.length; ++j) {
+            // 1/inf is zero, so infinite bounds contribute nothing
+            g[j] += (1.0 / (upper[j] - x[j])) - (1.0 / (x[j] - lower[j]));
+        }
+    }
+
+    /**
+     * Add the diagonal Hessian of the log barrier to (h)
+     */
+    void addBarrierHessian(final double[] x, final double[][] h) {
+        for (int j = 0; j < lower.length; ++j) {
+            final double zu = 1.0 / (upper[j] - x[j]);
+            final double zl = 1.0 / (x[j] - lower[j]);
+            h[j][j] += (zu * zu) + (zl * zl);
+        }
+    }
+
+    /**
+     * The largest step (a) such that x + (a)dx remains strictly inside the bounds, assuming (x) is inside.
+     * @return the largest step, possibly +inf
+     */
+    double maxStep(final double[] x, final double[] dx) {
+        double a = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < lower.length; ++j) {
+            final double d = dx[j];
+            if (d > 0.0) {
+                a = Math.min(a, (upper[j] - x[j]) / d);
+            } else if (d < 0.0) {
+                a = Math.min(a, (lower[j] - x[j]) / d);
+            }
+        }
+        return a;
+    }
+
+    // fraction of the interval width used when moving a point inside the bounds
+    private static final double INTERIOR_FRACTION = 0.01;
+}
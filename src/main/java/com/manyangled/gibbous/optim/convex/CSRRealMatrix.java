@@ -0,0 +1,408 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.Arrays;
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.linear.OpenMapRealVector;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.exception.MathUnsupportedOperationException;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.data;
+
+/**
+ * A sparse matrix in compressed sparse row (CSR) format.
+ * <p>
+ * The nonzero entries of row i are values[k], at columns colIdx[k], for k in rowPtr[i] to rowPtr[i+1]-1.
+ * Column indices within a row are strictly increasing. Storage is O(rows + nonzeros), and
+ * {@link #operate(double[])}, {@link #preMultiply(double[])} and {@link #addWeightedGram(double[], double[][])}
+ * cost O(nonzeros).
+ * <p>
+ * The compressed arrays are held in {@link IntBuffer} and {@link DoubleBuffer} storage, which may wrap
+ * heap arrays or be direct buffers, such as the memory-mapped sections read by {@link ProblemFile}.
+ * <p>
+ * The sparsity structure is fixed: {@link #setEntry(int, int, double)} may only modify existing nonzeros.
+ * The transpose of a CSR matrix is also returned in CSR format, which is equivalent to
+ * compressed sparse column (CSC) format of the original.
+ */
+public class CSRRealMatrix extends AbstractRealMatrix implements SparseRealMatrix {
+    private final int rows;
+    private final int cols;
+    private final IntBuffer rowPtr;
+    private final IntBuffer colIdx;
+    private final DoubleBuffer values;
+    private final int nnz;
+
+    /**
+     * Construct a CSR matrix from its compressed arrays, which are not copied
+     * @param rows the row dimension
+     * @param cols the column dimension
+     * @param rowPtr row pointers, of length (rows + 1)
+     * @param colIdx column index of each nonzero, strictly increasing within each row
+     * @param values the value of each nonzero
+     */
+    public CSRRealMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        this(rows, cols, IntBuffer.wrap(rowPtr), IntBuffer.wrap(colIdx), DoubleBuffer.wrap(values), true);
+    }
+
+    /**
+     * Construct a CSR matrix from compressed buffers, which are not copied.
+     * Entries are read with absolute indexing, starting from index 0 of each buffer.
+     * @param rows the row dimension
+     * @param cols the column dimension
+     * @param rowPtr row pointers, of length (rows + 1)
+     * @param colIdx column index of each nonzero, strictly increasing within each row
+     * @param values the value of each nonzero
+     */
+    public CSRRealMatrix(int rows, int cols, IntBuffer rowPtr, IntBuffer colIdx, DoubleBuffer values) {
+        this(rows, cols, rowPtr, colIdx, values, true);
+    }
+
+    // structure validation reads every entry, which may be skipped for storage that is already validated
+    CSRRealMatrix(int rows, int cols, IntBuffer rowPtr, IntBuffer colIdx, DoubleBuffer values, boolean validate) {
+        super(rows, cols);
+        if (rowPtr.limit() != rows + 1) throw new DimensionMismatchException(rowPtr.limit(), rows + 1);
+        if (colIdx.limit() != values.limit()) throw new DimensionMismatchException(colIdx.limit(), values.limit());
+        if ((rowPtr.get(0) != 0) || (rowPtr.get(rows) != values.limit()))
+            throw new IllegalArgumentException("row pointers must span the nonzero entries");
+        if (validate) {
+            for (int i = 0; i < rows; ++i) {
+                final int b = rowPtr.get(i);
+                final int e = rowPtr.get(i + 1);
+                if (e < b) throw new IllegalArgumentException("row pointers must be nondecreasing");
+                for (int k = b; k < e; ++k) {
+                    final int c = colIdx.get(k);
+                    if ((c < 0) || (c >= cols)) throw new OutOfRangeException(c, 0, cols - 1);
+                    if ((k > b) && (c <= colIdx.get(k - 1)))
+                        throw new IllegalArgumentException("column indices must be increasing within each row");
+                }
+            }
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+        this.nnz = values.limit();
+    }
+
+    /**
+     * Construct a CSR matrix holding the nonzero entries of another matrix
+     * @param M the matrix to copy
+     */
+    public CSRRealMatrix(RealMatrix M) {
+        this(compress(M));
+    }
+
+    /**
+     * Construct a CSR matrix holding the nonzero entries of a two dimensional array
+     * @param d the matrix entries
+     */
+    public CSRRealMatrix(double[][] d) {
+        this(new Array2DRowRealMatrix(d, false));
+    }
+
+    private CSRRealMatrix(CSRRealMatrix M) {
+        this(M.rows, M.cols, M.rowPtr, M.colIdx, M.values, false);
+    }
+
+    /**
+     * Construct a CSR matrix from (row, column, value) triplets, in any order. Values of duplicate
+     * entries are summed.
+     * @param rows the row dimension
+     * @param cols the column dimension
+     * @param ri the row index of each entry
+     * @param ci the column index of each entry
+     * @param v the value of each entry
+     * @return the CSR matrix
+     */
+    public static CSRRealMatrix fromTriplets(int rows, int cols, int[] ri, int[] ci, double[] v) {
+        if (ci.length != ri.length) throw new DimensionMismatchException(ci.length, ri.length);
+        if (v.length != ri.length) throw new DimensionMismatchException(v.length, ri.length);
+        final int nt = ri.length;
+        // counting sort by row, then sort and merge columns within each row
+        int[] ptr = new int[rows + 1];
+        for (int k = 0; k < nt; ++k) {
+            if ((ri[k] < 0) || (ri[k] >= rows)) throw new OutOfRangeException(ri[k], 0, rows - 1);
+            if ((ci[k] < 0) || (ci[k] >= cols)) throw new OutOfRangeException(ci[k], 0, cols - 1);
+            ++ptr[ri[k] + 1];
+        }
+        for (int i = 0; i < rows; ++i) ptr[i + 1] += ptr[i];
+        int[] next = Arrays.copyOf(ptr, rows);
+        long[] keyed = new long[nt];
+        int[] order = new int[nt];
+        for (int k = 0; k < nt; ++k) order[next[ri[k]]++] = k;
+        int[] cIdx = new int[nt];
+        double[] vals = new double[nt];
+        int[] rPtr = new int[rows + 1];
+        int nz = 0;
+        for (int i = 0; i < rows; ++i) {
+            final int b = ptr[i];
+            final int e = ptr[i + 1];
+            // sort the entries of row i by column, carrying the original entry index in the low bits
+            for (int q = b; q < e; ++q) keyed[q] = (((long)ci[order[q]]) << 32) | order[q];
+            Arrays.sort(keyed, b, e);
+            for (int q = b; q < e; ++q) {
+                final int k = (int)(keyed[q] & 0xffffffffL);
+                final int c = (int)(keyed[q] >>> 32);
+                if ((nz > rPtr[i]) && (cIdx[nz - 1] == c)) {
+                    vals[nz - 1] += v[k];
+                } else {
+                    cIdx[nz] = c;
+                    vals[nz] = v[k];
+                    ++nz;
+                }
+            }
+            rPtr[i + 1] = nz;
+        }
+        return new CSRRealMatrix(rows, cols, rPtr, Arrays.copyOf(cIdx, nz), Arrays.copyOf(vals, nz));
+    }
+
+    private static CSRRealMatrix compress(RealMatrix M) {
+        if (M instanceof CSRRealMatrix) return (CSRRealMatrix)M;
+        final int r = M.getRowDimension();
+        final int c = M.getColumnDimension();
+        int[] rPtr = new int[r + 1];
+        int nz = 0;
+        for (int i = 0; i < r; ++i)
+            for (int j = 0; j < c; ++j)
+                if (M.getEntry(i, j) != 0.0) ++nz;
+        int[] cIdx = new int[nz];
+        double[] vals = new double[nz];
+        nz = 0;
+        for (int i = 0; i < r; ++i) {
+            for (int j = 0; j < c; ++j) {
+                double v = M.getEntry(i, j);
+                if (v == 0.0) continue;
+                cIdx[nz] = j;
+                vals[nz] = v;
+                ++nz;
+            }
+            rPtr[i + 1] = nz;
+        }
+        return new CSRRealMatrix(r, c, rPtr, cIdx, vals);
+    }
+
+    /** @return the number of stored nonzero entries */
+    public int getNonZeroCount() { return nnz; }
+
+    /** @return a read-only view of the row pointers */
+    public IntBuffer getRowPointers() { return rowPtr.asReadOnlyBuffer(); }
+
+    /** @return a read-only view of the column indices */
+    public IntBuffer getColumnIndices() { return colIdx.asReadOnlyBuffer(); }
+
+    /** @return a read-only view of the nonzero values */
+    public DoubleBuffer getValues() { return values.asReadOnlyBuffer(); }
+
+    @Override
+    public int getRowDimension() { return rows; }
+
+    @Override
+    public int getColumnDimension() { return cols; }
+
+    @Override
+    public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+        return new OpenMapRealMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    public CSRRealMatrix copy() {
+        int[] p = new int[rows + 1];
+        int[] c = new int[nnz];
+        double[] v = new double[nnz];
+        rowPtr.duplicate().get(p);
+        colIdx.duplicate().get(c);
+        values.duplicate().get(v);
+        return new CSRRealMatrix(rows, cols, IntBuffer.wrap(p), IntBuffer.wrap(c), DoubleBuffer.wrap(v), false);
+    }
+
+    @Override
+    public double getEntry(int row, int column) {
+        final int k = find(row, column);
+        return (k < 0) ? 0.0 : values.get(k);
+    }
+
+    @Override
+    public void setEntry(int row, int column, double value) {
+        final int k = find(row, column);
+        if (k >= 0) {
+            values.put(k, value);
+        } else if (value != 0.0) {
+            throw new MathUnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public void addToEntry(int row, int column, double increment) {
+        setEntry(row, column, getEntry(row, column) + increment);
+    }
+
+    @Override
+    public void multiplyEntry(int row, int column, double factor) {
+        setEntry(row, column, getEntry(row, column) * factor);
+    }
+
+    // index of entry (row, column) in the nonzero arrays, or negative if it is not stored
+    private int find(int row, int column) {
+        if ((row < 0) || (row >= rows)) throw new OutOfRangeException(row, 0, rows - 1);
+        if ((column < 0) || (column >= cols)) throw new OutOfRangeException(column, 0, cols - 1);
+        int lo = rowPtr.get(row);
+        int hi = rowPtr.get(row + 1) - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int c = colIdx.get(mid);
+            if (c < column) {
+                lo = mid + 1;
+            } else if (c > column) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public RealVector getRowVector(int row) {
+        if ((row < 0) || (row >= rows)) throw new OutOfRangeException(row, 0, rows - 1);
+        OpenMapRealVector v = new OpenMapRealVector(cols);
+        for (int k = rowPtr.get(row); k < rowPtr.get(row + 1); ++k) v.setEntry(colIdx.get(k), values.get(k));
+        return v;
+    }
+
+    @Override
+    public double[] getRow(int row) {
+        if ((row < 0) || (row >= rows)) throw new OutOfRangeException(row, 0, rows - 1);
+        double[] r = new double[cols];
+        for (int k = rowPtr.get(row); k < rowPtr.get(row + 1); ++k) r[colIdx.get(k)] = values.get(k);
+        return r;
+    }
+
+    @Override
+    public double[][] getData() {
+        double[][] d = new double[rows][];
+        for (int i = 0; i < rows; ++i) d[i] = getRow(i);
+        return d;
+    }
+
+    @Override
+    public CSRRealMatrix transpose() {
+        int[] tPtr = new int[cols + 1];
+        for (int k = 0; k < nnz; ++k) ++tPtr[colIdx.get(k) + 1];
+        for (int j = 0; j < cols; ++j) tPtr[j + 1] += tPtr[j];
+        int[] next = Arrays.copyOf(tPtr, cols);
+        int[] tIdx = new int[nnz];
+        double[] tVal = new double[nnz];
+        // rows are visited in order, so row indices are increasing within each transposed row
+        for (int i = 0; i < rows; ++i) {
+            final int e = rowPtr.get(i + 1);
+            for (int k = rowPtr.get(i); k < e; ++k) {
+                final int q = next[colIdx.get(k)]++;
+                tIdx[q] = i;
+                tVal[q] = values.get(k);
+            }
+        }
+        return new CSRRealMatrix(cols, rows, IntBuffer.wrap(tPtr), IntBuffer.wrap(tIdx), DoubleBuffer.wrap(tVal), false);
+    }
+
+    @Override
+    public double[] operate(double[] v) {
+        if (v.length != cols) throw new DimensionMismatchException(v.length, cols);
+        double[] r = new double[rows];
+        int b = rowPtr.get(0);
+        for (int i = 0; i < rows; ++i) {
+            final int e = rowPtr.get(i + 1);
+            double s = 0.0;
+            for (int k = b; k < e; ++k) s += values.get(k) * v[colIdx.get(k)];
+            r[i] = s;
+            b = e;
+        }
+        return r;
+    }
+
+    @Override
+    public RealVector operate(RealVector v) {
+        return new ArrayRealVector(operate(data(v)), false);
+    }
+
+    /**
+     * Computes (v^T)A, which is the same as (A^T)v
+     */
+    @Override
+    public double[] preMultiply(double[] v) {
+        if (v.length != rows) throw new DimensionMismatchException(v.length, rows);
+        double[] r = new double[cols];
+        for (int i = 0; i < rows; ++i) {
+            final double vi = v[i];
+            if (vi == 0.0) continue;
+            final int e = rowPtr.get(i + 1);
+            for (int k = rowPtr.get(i); k < e; ++k) r[colIdx.get(k)] += vi * values.get(k);
+        }
+        return r;
+    }
+
+    @Override
+    public RealVector preMultiply(RealVector v) {
+        return new ArrayRealVector(preMultiply(data(v)), false);
+    }
+
+    /**
+     * Computes (this)M, as a dense matrix, in O(nonzeros x columns of M)
+     */
+    @Override
+    public RealMatrix multiply(RealMatrix M) {
+        if (M.getRowDimension() != cols) throw new DimensionMismatchException(M.getRowDimension(), cols);
+        final int p = M.getColumnDimension();
+        final double[][] m = (M instanceof Array2DRowRealMatrix) ?
+            ((Array2DRowRealMatrix)M).getDataRef() : M.getData();
+        double[][] r = new double[rows][p];
+        for (int i = 0; i < rows; ++i) {
+            final int e = rowPtr.get(i + 1);
+            for (int k = rowPtr.get(i); k < e; ++k)
+                VectorKernels.axpy(values.get(k), m[colIdx.get(k)], r[i], p);
+        }
+        return new Array2DRowRealMatrix(r, false);
+    }
+
+    /**
+     * Add (A^T)DA to H, where D = diag(d), in O(sum of squared row nonzero counts)
+     * @param d the diagonal weights, one per row of A
+     * @param H an n x n matrix, where n is the column dimension of A
+     */
+    public void addWeightedGram(double[] d, double[][] H) {
+        if (d.length != rows) throw new DimensionMismatchException(d.length, rows);
+        for (int i = 0; i < rows; ++i) {
+            final double di = d[i];
+            if (di == 0.0) continue;
+            final int b = rowPtr.get(i);
+            final int e = rowPtr.get(i + 1);
+            for (int k = b; k < e; ++k) {
+                final double[] hk = H[colIdx.get(k)];
+                final double w = di * values.get(k);
+                for (int q = b; q < e; ++q) hk[colIdx.get(q)] += w * values.get(q);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.data;
+
+/**
+ * Caches the value, gradient and Hessian of a function at its most recently used points.
+ * <p>
+ * Optimizers evaluate the objective at the same point more than once: for example, a line search
+ * evaluates the value and gradient at the accepted point, and the next Newton iteration evaluates the
+ * gradient and Hessian there again. {@link ConvexOptimizer} applies this cache to its objective
+ * automatically, so user code does not normally construct it.
+ * <p>
+ * Points are matched by exact equality of their entries, which costs O(n), and usually stops at the first
+ * entry of a point that does not match. Cached gradients and Hessians are returned as copies, so that
+ * callers may modify them. A cache must only be used by one thread at a time.
+ */
+public class CachedFunction extends TwiceDifferentiableFunction {
+    private final TwiceDifferentiableFunction f;
+    private final Entry[] entries;
+    private long clock = 0L;
+
+    /**
+     * Cache a function at its {@link #CACHE_SIZE_DEFAULT} most recently used points
+     * @param f the function
+     */
+    public CachedFunction(TwiceDifferentiableFunction f) {
+        this(f, CACHE_SIZE_DEFAULT);
+    }
+
+    /**
+     * Cache a function at its most recently used points
+     * @param f the function
+     * @param size the number of points to cache. Must be &gt; 0.
+     */
+    public CachedFunction(TwiceDifferentiableFunction f, int size) {
+        if (size < 1) throw new IllegalArgumentException("size must be > 0");
+        this.f = f;
+        this.entries = new Entry[size];
+        for (int k = 0; k < size; ++k) entries[k] = new Entry();
+    }
+
+    /**
+     * @param f a function
+     * @return f, if it is already cached or is a {@link LinearFunction}, which is cheaper to evaluate
+     * than to look up, and otherwise a new cache of f
+     */
+    public static TwiceDifferentiableFunction of(TwiceDifferentiableFunction f) {
+        if ((f instanceof CachedFunction) || (f instanceof LinearFunction)) return f;
+        return new CachedFunction(f);
+    }
+
+    @Override
+    public int dim() { return f.dim(); }
+
+    @Override
+    public double value(final RealVector x) {
+        Entry e = lookup(data(x));
+        if (!e.hasValue) {
+            e.value = f.value(x);
+            e.hasValue = true;
+        }
+        return e.value;
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        Entry e = lookup(data(x));
+        if (e.gradient == null) e.gradient = f.gradient(x);
+        return e.gradient.copy();
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        Entry e = lookup(data(x));
+        if (e.hessian == null) e.hessian = f.hessian(x);
+        return e.hessian.copy();
+    }
+
+    @Override
+    public double maxStep(final RealVector x, final RealVector dx) {
+        return f.maxStep(x, dx);
+    }
+
+    // the entry for (x), which is the least recently used entry, reset to (x), if (x) is not cached
+    private Entry lookup(final double[] x) {
+        Entry lru = entries[0];
+        for (Entry e: entries) {
+            if ((e.x != null) && Arrays.equals(e.x, x)) {
+                e.used = ++clock;
+                return e;
+            }
+            if (e.used < lru.used) lru = e;
+        }
+        if ((lru.x == null) || (lru.x.length != x.length)) lru.x = new double[x.length];
+        System.arraycopy(x, 0, lru.x, 0, x.length);
+        lru.hasValue = false;
+        lru.gradient = null;
+        lru.hessian = null;
+        lru.used = ++clock;
+        return lru;
+    }
+
+    private static final class Entry {
+        double[] x;
+        long used = 0L;
+        boolean hasValue = false;
+        double value;
+        RealVector gradient;
+        RealMatrix hessian;
+    }
+
+    /** Default number of cached points: the current iterate, and the most recent line search trials */
+    public static final int CACHE_SIZE_DEFAULT = 3;
+}
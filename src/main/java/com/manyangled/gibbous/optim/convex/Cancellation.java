@@ -0,0 +1,39 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * A cancellation token for {@link ConvexOptimizer} solves, which may be cancelled from any thread.
+ * <p>
+ * The token is polled at the same points as a {@link Deadline}. Once it is cancelled, the solve returns
+ * the best iterate found so far, and {@link ConvexOptimizer#getStatus()} returns {@link SolveStatus#CANCELLED}.
+ * An interrupt of the solving thread has the same effect, and the interrupt status is left set.
+ * <p>
+ * {@link AsyncOptimizer} cancels the token of a solve when its future is cancelled.
+ */
+public class Cancellation implements OptimizationData {
+    private volatile boolean cancelled = false;
+
+    /** Request that any solve using this token stop. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** @return true if {@link #cancel()} has been called */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
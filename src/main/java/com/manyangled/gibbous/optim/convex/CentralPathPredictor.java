@@ -0,0 +1,63 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Configures {@link BarrierOptimizer} to predict the next point on the central path,
+ * and use it as the initial guess for the next centering step, instead of the previous center.
+ * <p>
+ * Central path points x(t) converge to the optimum roughly as (1/t), and so predictions are made
+ * by extrapolating linearly, or polynomially, in (1/t):
+ * <ul>
+ *   <li>{@link Mode#TANGENT}: follows the tangent dx/dt to the central path, obtained from one
+ *   additional KKT solve with the barrier Hessian at the previous center. </li>
+ *   <li>{@link Mode#EXTRAPOLATION}: fits a polynomial through up to three previous centers. No
+ *   Hessian or KKT solve is needed. </li>
+ * </ul>
+ * <p>
+ * If a predicted point is outside the barrier domain, or does not improve the barrier function
+ * at the next (t), it is shortened toward the previous center, and if that also fails the
+ * previous center is used as before.
+ */
+public class CentralPathPredictor implements OptimizationData {
+    /** Available prediction modes */
+    public enum Mode {
+        /** Linear extrapolation along the central path tangent */
+        TANGENT,
+        /** Polynomial extrapolation through previous centers */
+        EXTRAPOLATION
+    }
+
+    /** The prediction mode */
+    public final Mode mode;
+
+    /**
+     * Construct a central path predictor
+     * @param mode the prediction mode
+     */
+    public CentralPathPredictor(Mode mode) {
+        if (mode == null) throw new IllegalArgumentException("mode must be non-null");
+        this.mode = mode;
+    }
+
+    /** Construct a central path predictor using the default mode */
+    public CentralPathPredictor() {
+        this(PREDICTOR_MODE_DEFAULT);
+    }
+
+    /** Default prediction mode */
+    public static final Mode PREDICTOR_MODE_DEFAULT = Mode.TANGENT;
+}
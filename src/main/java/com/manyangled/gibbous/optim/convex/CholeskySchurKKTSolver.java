@@ -15,9 +15,9 @@ package com.manyangled.gibbous.optim.convex;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.CholeskyDecomposition;
-import org.apache.commons.math3.linear.DecompositionSolver;
+
+import static com.manyangled.gibbous.optim.convex.DenseLinearAlgebra.toArray;
+import static com.manyangled.gibbous.optim.convex.DenseLinearAlgebra.toVector;
 
 /**
  * Solves KKT conditions for {@link NewtonOptimizer}, using Schur block factorization and
@@ -26,33 +26,69 @@ import org.apache.commons.math3.linear.DecompositionSolver;
  * Implements (Algorithm 10.3) and Step 1 of (Algorithm 9.5) from
  * Convex Optimization, Boyd and Vandenberghe, Cambridge University Press, 2008.
  * <p>
+ * Dense factorizations and products are performed by a {@link DenseLinearAlgebra} backend,
+ * which defaults to {@link BlockedDenseLinearAlgebra}.
+ * <p>
  * This is currently the default {@link KKTSolver} for {@link NewtonOptimizer}.
  * <p>
- * See also {@link SVDSchurKKTSolver}
+ * See also {@link SVDSchurKKTSolver} and {@link BlockDiagonalKKTSolver}
  */
 public class CholeskySchurKKTSolver extends KKTSolver {
+    private final DenseLinearAlgebra la;
+
+    /** Construct a solver using the default {@link BlockedDenseLinearAlgebra} backend */
+    public CholeskySchurKKTSolver() {
+        this(new BlockedDenseLinearAlgebra());
+    }
+
+    /**
+     * Construct a solver using a given dense linear algebra backend
+     * @param la the backend to use for factorizations and matrix products
+     */
+    public CholeskySchurKKTSolver(DenseLinearAlgebra la) {
+        this.la = la;
+    }
+
     // step 1 of algorithm 9.5
     public KKTSolution solve(final RealMatrix H, final RealVector g) {
-        DecompositionSolver dsH = (new CholeskyDecomposition(H)).getSolver();
-        RealVector v = dsH.solve(g);
-        double lsq = g.dotProduct(v);
-        v.mapMultiplyToSelf(-1.0);
-        return new KKTSolution(v, lsq);
+        final int n = g.getDimension();
+        double[] L = toArray(H);
+        la.cholesky(L, n);
+        double[] v = toArray(g);
+        la.choleskySolve(L, n, v, 1);
+        double lsq = 0.0;
+        for (int j = 0; j < n; ++j) {
+            lsq += g.getEntry(j) * v[j];
+            v[j] = -v[j];
+        }
+        return new KKTSolution(toVector(v), lsq);
     }
 
     // Algorithm 10.3
+    // With H = L(L^T), Y = (L^-1)(A^T) and u = (L^-1)g, the Schur complement is
+    // S = A(H^-1)(A^T) = (Y^T)Y, and both A(H^-1)g and (H^-1)(g + (A^T)w) are
+    // computed from Y and u without another factorization or product with A.
     public KKTSolution solve(
         final RealMatrix H,
         final RealMatrix A, final RealMatrix AT,
         final RealVector g, final RealVector h) {
-        DecompositionSolver dsH = (new CholeskyDecomposition(H)).getSolver();
-        RealMatrix m1 = dsH.solve(AT);
-        RealVector v1 = dsH.solve(g);
-        RealMatrix S = A.multiply(m1); // -S relative to 10.3
-        DecompositionSolver dsS = (new CholeskyDecomposition(S)).getSolver();
-        RealVector w = dsS.solve(h.subtract(A.operate(v1))); // both sides neg, so w same
-        RealVector v = dsH.solve(g.add(AT.operate(w))); // this yields -v
-        v.mapMultiplyToSelf(-1.0); // correct -v to +v
-        return new KKTSolution(v, w);
+        final int n = g.getDimension();
+        final int p = h.getDimension();
+        double[] L = toArray(H);
+        la.cholesky(L, n);
+        double[] Y = toArray(AT);
+        la.solveLower(L, n, false, Y, p);
+        double[] u = toArray(g);
+        la.solveLower(L, n, false, u, 1);
+        double[] S = new double[p * p];
+        la.syrk(true, p, n, 1.0, Y, 0.0, S); // -S relative to 10.3
+        la.cholesky(S, p);
+        double[] w = toArray(h);
+        la.gemm(true, false, p, 1, n, -1.0, Y, u, 1.0, w); // h - A(H^-1)g
+        la.choleskySolve(S, p, w, 1); // both sides neg, so w same
+        la.gemm(false, false, n, 1, p, 1.0, Y, w, 1.0, u);
+        la.solveLower(L, n, true, u, 1); // this yields -v
+        for (int j = 0; j < n; ++j) u[j] = -u[j]; // correct -v to +v
+        return new KKTSolution(toVector(u), toVector(w));
     }
 }
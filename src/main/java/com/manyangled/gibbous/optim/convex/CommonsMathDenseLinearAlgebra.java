@@ -0,0 +1,98 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+/**
+ * A {@link DenseLinearAlgebra} backend that delegates to Apache Commons Math
+ * decompositions and matrix products.
+ * <p>
+ * This backend is not optimized, and is intended as a reference implementation for
+ * validating other backends. See also {@link BlockedDenseLinearAlgebra}
+ */
+public class CommonsMathDenseLinearAlgebra extends DenseLinearAlgebra {
+    @Override
+    public void cholesky(double[] a, int n) {
+        RealMatrix L = (new CholeskyDecomposition(lowerSymmetric(a, n))).getL();
+        copyInto(L, a);
+    }
+
+    @Override
+    public void ldlt(double[] a, double[] d, int n) {
+        // derived from the Cholesky factors, so this reference requires A to be positive definite
+        RealMatrix L = (new CholeskyDecomposition(lowerSymmetric(a, n))).getL();
+        for (int j = 0; j < n; ++j) {
+            double ljj = L.getEntry(j, j);
+            if (ljj == 0.0) throw new SingularMatrixException();
+            d[j] = ljj * ljj;
+            for (int i = j; i < n; ++i) L.setEntry(i, j, L.getEntry(i, j) / ljj);
+        }
+        copyInto(L, a);
+    }
+
+    @Override
+    public void solveLower(double[] l, int n, boolean transpose, double[] b, int nrhs) {
+        RealMatrix L = toMatrix(l, n, n);
+        if (transpose) L = L.transpose();
+        RealMatrix B = toMatrix(b, n, nrhs);
+        for (int j = 0; j < nrhs; ++j) {
+            ArrayRealVector x = new ArrayRealVector(B.getColumnVector(j));
+            if (transpose) {
+                MatrixUtils.solveUpperTriangularSystem(L, x);
+            } else {
+                MatrixUtils.solveLowerTriangularSystem(L, x);
+            }
+            for (int i = 0; i < n; ++i) b[i * nrhs + j] = x.getEntry(i);
+        }
+    }
+
+    @Override
+    public void gemm(
+        boolean transA, boolean transB,
+        int m, int n, int k,
+        double alpha, double[] a, double[] b,
+        double beta, double[] c) {
+        RealMatrix A = transA ? toMatrix(a, k, m).transpose() : toMatrix(a, m, k);
+        RealMatrix B = transB ? toMatrix(b, n, k).transpose() : toMatrix(b, k, n);
+        RealMatrix P = A.multiply(B).scalarMultiply(alpha);
+        if (beta != 0.0) P = P.add(toMatrix(c, m, n).scalarMultiply(beta));
+        copyInto(P, c);
+    }
+
+    @Override
+    public void syrk(boolean trans, int n, int k, double alpha, double[] a, double beta, double[] c) {
+        RealMatrix A = trans ? toMatrix(a, k, n).transpose() : toMatrix(a, n, k);
+        RealMatrix P = A.multiply(A.transpose()).scalarMultiply(alpha);
+        if (beta != 0.0) P = P.add(toMatrix(c, n, n).scalarMultiply(beta));
+        copyInto(P, c);
+    }
+
+    // CholeskyDecomposition checks for symmetry, but only the lower triangle is defined
+    private static RealMatrix lowerSymmetric(double[] a, int n) {
+        RealMatrix A = toMatrix(a, n, n);
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < i; ++j)
+                A.setEntry(j, i, A.getEntry(i, j));
+        return A;
+    }
+
+    private static void copyInto(RealMatrix M, double[] a) {
+        System.arraycopy(toArray(M), 0, a, 0, M.getRowDimension() * M.getColumnDimension());
+    }
+}
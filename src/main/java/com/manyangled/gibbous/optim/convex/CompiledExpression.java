@@ -0,0 +1,434 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
+/**
+ * An {@link Expr} compiled to a flat program over arrays, by {@link Model#compile(Expr)}.
+ * <p>
+ * Affine subexpressions are collapsed to sparse coefficient vectors, and the remaining atoms are
+ * numbered so that arguments precede their uses. A forward pass computes the value and gradient of every
+ * node. The Hessian is accumulated in a reverse pass: each node adds its own second order terms,
+ * weighted by the derivative of the result with respect to the node, since the Hessians of sums and of
+ * log-sum-exp are linear in the Hessians of their arguments. Quadratic forms and norms in affine arguments
+ * have the constant curvature matrices (A^T)PA and (A^T)A, which are computed once, over the union of the
+ * variables of their arguments, and scattered into the Hessian.
+ * <p>
+ * Node values and gradients are kept in a workspace per thread, so that evaluations allocate only their results.
+ */
+final class CompiledExpression extends TwiceDifferentiableFunction {
+    private static final int AFFINE = 0;
+    private static final int SUM = 1;
+    private static final int QUAD_FORM = 2;
+    private static final int NORM2 = 3;
+    private static final int LOG_SUM_EXP = 4;
+
+    private final int n;
+    private final int nodes;
+    private final int[] op;
+    // constant of AFFINE, and offset of SUM
+    private final double[] offset;
+    // sparse coefficients of AFFINE, which are also their gradients
+    private final int[][] varIdx;
+    private final double[][] varCoef;
+    // arguments of SUM and the atoms, and the weights of SUM
+    private final int[][] args;
+    private final double[][] weights;
+    // matrix of QUAD_FORM
+    private final double[][][] form;
+    // variables of the arguments of QUAD_FORM and NORM2, in increasing order
+    private final int[][] support;
+    // constant curvature of QUAD_FORM and NORM2, 2(A^T)PA and (A^T)A, restricted to the support
+    private final double[][][] curvature;
+    private final int maxArgs;
+
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    CompiledExpression(Model model, Expr root) {
+        this.n = model.dim();
+        Compiler c = new Compiler(model);
+        c.compile(root);
+        this.nodes = c.op.size();
+        this.op = new int[nodes];
+        this.offset = new double[nodes];
+        this.varIdx = new int[nodes][];
+        this.varCoef = new double[nodes][];
+        this.args = new int[nodes][];
+        this.weights = new double[nodes][];
+        this.form = new double[nodes][][];
+        this.support = new int[nodes][];
+        this.curvature = new double[nodes][][];
+        int ma = 1;
+        for (int i = 0; i < nodes; ++i) {
+            op[i] = c.op.get(i);
+            offset[i] = c.offset.get(i);
+            varIdx[i] = c.varIdx.get(i);
+            varCoef[i] = c.varCoef.get(i);
+            args[i] = c.args.get(i);
+            weights[i] = c.weights.get(i);
+            form[i] = c.form.get(i);
+            if (args[i] != null) ma = Math.max(ma, args[i].length);
+        }
+        this.maxArgs = ma;
+        final int[] pos = new int[n];
+        for (int i = 0; i < nodes; ++i) {
+            if ((op[i] != QUAD_FORM) && (op[i] != NORM2)) continue;
+            support[i] = argumentSupport(args[i]);
+            curvature[i] = formCurvature(args[i], form[i], support[i], pos);
+        }
+    }
+
+    @Override
+    public int dim() { return n; }
+
+    @Override
+    public double value(final RealVector x) {
+        Workspace ws = workspace.get();
+        forward(data(x), ws, false);
+        return ws.val[nodes - 1];
+    }
+
+    @Override
+    public RealVector gradient(final RealVector x) {
+        Workspace ws = workspace.get();
+        forward(data(x), ws, true);
+        double[] g = new double[n];
+        addGradient(1.0, nodes - 1, ws.grad, g);
+        return new ArrayRealVector(g, false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector x) {
+        Workspace ws = workspace.get();
+        forward(data(x), ws, true);
+        final double[] val = ws.val;
+        final double[][] grad = ws.grad;
+        final double[] hw = ws.hw;
+        double[][] H = new double[n][n];
+        Arrays.fill(hw, 0.0);
+        hw[nodes - 1] = 1.0;
+        for (int i = nodes - 1; i >= 0; --i) {
+            final double w = hw[i];
+            if (w == 0.0) continue;
+            final int[] a = args[i];
+            switch (op[i]) {
+            case SUM:
+                for (int k = 0; k < a.length; ++k) hw[a[k]] += w * weights[i][k];
+                break;
+            case QUAD_FORM:
+                scatter(w, support[i], curvature[i], H);
+                break;
+            case NORM2: {
+                // ((A^T)A - (A^T)y(y^T)A/|y|^2)/|y|, where the gradient is (A^T)y/|y|
+                final double v = val[i];
+                if (v <= 0.0) break;
+                scatter(w / v, support[i], curvature[i], H);
+                // the gradient is zero outside the support
+                final int[] s = support[i];
+                final double[] g = grad[i];
+                for (int r = 0; r < s.length; ++r) {
+                    final double gr = -(w / v) * g[s[r]];
+                    if (gr == 0.0) continue;
+                    for (int c = 0; c < s.length; ++c) H[s[r]][s[c]] += gr * g[s[c]];
+                }
+                break;
+            }
+            case LOG_SUM_EXP: {
+                // sum(p[k](H[k] + g[k](g[k]^T))) - g(g^T), with weights p[k] = e^(f[k] - f)
+                final double v = val[i];
+                for (int k = 0; k < a.length; ++k) {
+                    final double p = Math.exp(val[a[k]] - v);
+                    hw[a[k]] += w * p;
+                    if (op[a[k]] == AFFINE) {
+                        final int[] idx = varIdx[a[k]];
+                        final double[] coef = varCoef[a[k]];
+                        for (int r = 0; r < idx.length; ++r) {
+                            final double cr = w * p * coef[r];
+                            for (int c = 0; c < idx.length; ++c) H[idx[r]][idx[c]] += cr * coef[c];
+                        }
+                    } else {
+                        syr(w * p, grad[a[k]], H, n);
+                    }
+                }
+                syr(-w, grad[i], H, n);
+                break;
+            }
+            default:
+                break;
+            }
+        }
+        return new Array2DRowRealMatrix(H, false);
+    }
+
+    // evaluate node values, and optionally gradients, in order
+    private void forward(final double[] x, final Workspace ws, final boolean gradients) {
+        final double[] val = ws.val;
+        final double[][] grad = ws.grad;
+        final double[] y = ws.y;
+        final double[] py = ws.py;
+        for (int i = 0; i < nodes; ++i) {
+            final int[] a = args[i];
+            final double[] g = grad[i];
+            switch (op[i]) {
+            case AFFINE: {
+                final int[] idx = varIdx[i];
+                final double[] coef = varCoef[i];
+                double v = offset[i];
+                for (int k = 0; k < idx.length; ++k) v += coef[k] * x[idx[k]];
+                val[i] = v;
+                break;
+            }
+            case SUM: {
+                final double[] w = weights[i];
+                double v = offset[i];
+                for (int k = 0; k < a.length; ++k) v += w[k] * val[a[k]];
+                val[i] = v;
+                if (gradients) {
+                    Arrays.fill(g, 0.0);
+                    for (int k = 0; k < a.length; ++k) addGradient(w[k], a[k], grad, g);
+                }
+                break;
+            }
+            case QUAD_FORM: {
+                final int k = a.length;
+                final double[][] P = form[i];
+                for (int r = 0; r < k; ++r) y[r] = val[a[r]];
+                double v = 0.0;
+                for (int r = 0; r < k; ++r) {
+                    py[r] = dot(P[r], y, k);
+                    v += y[r] * py[r];
+                }
+                val[i] = v;
+                if (gradients) {
+                    Arrays.fill(g, 0.0);
+                    for (int r = 0; r < k; ++r) addGradient(2.0 * py[r], a[r], grad, g);
+                }
+                break;
+            }
+            case NORM2: {
+                double ss = 0.0;
+                for (int r = 0; r < a.length; ++r) ss += val[a[r]] * val[a[r]];
+                final double v = Math.sqrt(ss);
+                val[i] = v;
+                if (gradients) {
+                    // the norm is not differentiable at zero, where the gradient is taken as zero
+                    Arrays.fill(g, 0.0);
+                    if (v > 0.0) for (int r = 0; r < a.length; ++r) addGradient(val[a[r]] / v, a[r], grad, g);
+                }
+                break;
+            }
+            case LOG_SUM_EXP: {
+                double z = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < a.length; ++k) z = Math.max(z, val[a[k]]);
+                double s = 0.0;
+                for (int k = 0; k < a.length; ++k) s += Math.exp(val[a[k]] - z);
+                final double v = z + Math.log(s);
+                val[i] = v;
+                if (gradients) {
+                    Arrays.fill(g, 0.0);
+                    for (int k = 0; k < a.length; ++k) addGradient(Math.exp(val[a[k]] - v), a[k], grad, g);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown node type " + op[i]);
+            }
+        }
+    }
+
+    // g = g + (alpha)(gradient of node j), where the gradients of affine nodes are their sparse coefficients
+    private void addGradient(final double alpha, final int j, final double[][] grad, final double[] g) {
+        if (op[j] == AFFINE) {
+            final int[] idx = varIdx[j];
+            final double[] coef = varCoef[j];
+            for (int k = 0; k < idx.length; ++k) g[idx[k]] += alpha * coef[k];
+        } else {
+            axpy(alpha, grad[j], g, n);
+        }
+    }
+
+    // H[s[r]][s[c]] = H[s[r]][s[c]] + (alpha)C[r][c]
+    private static void scatter(final double alpha, final int[] s, final double[][] C, final double[][] H) {
+        for (int r = 0; r < s.length; ++r) {
+            final double[] Cr = C[r];
+            final double[] Hr = H[s[r]];
+            for (int c = 0; c < s.length; ++c) Hr[s[c]] += alpha * Cr[c];
+        }
+    }
+
+    // the sorted union of the variables of affine arguments
+    private int[] argumentSupport(int[] a) {
+        int[] s = new int[0];
+        for (int j: a) {
+            int[] u = new int[s.length + varIdx[j].length];
+            int m = 0;
+            for (int k = 0; k < s.length; ++k) u[m++] = s[k];
+            for (int k = 0; k < varIdx[j].length; ++k) u[m++] = varIdx[j][k];
+            Arrays.sort(u);
+            m = 0;
+            for (int k = 0; k < u.length; ++k) if ((k == 0) || (u[k] != u[k - 1])) u[m++] = u[k];
+            s = Arrays.copyOf(u, m);
+        }
+        return s;
+    }
+
+    // 2(A^T)PA, or (A^T)A if P is null, where the rows of A are the gradients of affine arguments,
+    // restricted to the support (s). (pos) is workspace of length n.
+    private double[][] formCurvature(int[] a, double[][] P, int[] s, int[] pos) {
+        final int k = a.length;
+        final int m = s.length;
+        for (int r = 0; r < m; ++r) pos[s[r]] = r;
+        // the argument gradients, over the support
+        double[][] G = new double[k][m];
+        for (int r = 0; r < k; ++r) {
+            final int[] idx = varIdx[a[r]];
+            for (int j = 0; j < idx.length; ++j) G[r][pos[idx[j]]] = varCoef[a[r]][j];
+        }
+        double[][] B = new double[k][];
+        for (int r = 0; r < k; ++r) {
+            if (P == null) {
+                B[r] = G[r];
+            } else {
+                B[r] = new double[m];
+                for (int c = 0; c < k; ++c) axpy(2.0 * P[r][c], G[c], B[r], m);
+            }
+        }
+        double[][] C = new double[m][m];
+        for (int r = 0; r < k; ++r) {
+            final double[] gr = G[r];
+            for (int i = 0; i < m; ++i) if (gr[i] != 0.0) axpy(gr[i], B[r], C[i], m);
+        }
+        return C;
+    }
+
+    private final class Workspace {
+        final double[] val = new double[nodes];
+        final double[][] grad = new double[nodes][];
+        final double[] hw = new double[nodes];
+        final double[] y = new double[maxArgs];
+        final double[] py = new double[maxArgs];
+
+        Workspace() {
+            // gradients of affine nodes are their sparse coefficients
+            for (int i = 0; i < nodes; ++i) if (op[i] != AFFINE) grad[i] = new double[n];
+        }
+    }
+
+    // Numbers the nodes of an expression so that arguments precede their uses,
+    // collapsing affine subexpressions. Shared subexpressions are compiled once.
+    private static final class Compiler {
+        final Model model;
+        final int n;
+        final IdentityHashMap<Expr, Integer> ids = new IdentityHashMap<Expr, Integer>();
+        final ArrayList<Integer> op = new ArrayList<Integer>();
+        final ArrayList<Double> offset = new ArrayList<Double>();
+        final ArrayList<int[]> varIdx = new ArrayList<int[]>();
+        final ArrayList<double[]> varCoef = new ArrayList<double[]>();
+        final ArrayList<int[]> args = new ArrayList<int[]>();
+        final ArrayList<double[]> weights = new ArrayList<double[]>();
+        final ArrayList<double[][]> form = new ArrayList<double[][]>();
+
+        Compiler(Model model) {
+            this.model = model;
+            this.n = model.dim();
+        }
+
+        int compile(Expr e) {
+            Integer id = ids.get(e);
+            if (id != null) return id;
+            int node;
+            if ((e.curvature == Expr.Curvature.AFFINE) || (e.curvature == Expr.Curvature.CONSTANT)) {
+                double[] coef = new double[n];
+                double[] c = new double[1];
+                accumulate(e, 1.0, coef, c);
+                int nnz = 0;
+                for (int j = 0; j < n; ++j) if (coef[j] != 0.0) ++nnz;
+                int[] idx = new int[nnz];
+                double[] v = new double[nnz];
+                nnz = 0;
+                for (int j = 0; j < n; ++j) {
+                    if (coef[j] == 0.0) continue;
+                    idx[nnz] = j;
+                    v[nnz++] = coef[j];
+                }
+                node = add(AFFINE, c[0], idx, v, null, null, null);
+            } else if (e.op == Expr.Op.SUM) {
+                int nz = 0;
+                for (double w: e.weights) if (w != 0.0) ++nz;
+                int[] a = new int[nz];
+                double[] w = new double[nz];
+                nz = 0;
+                for (int k = 0; k < e.args.length; ++k) {
+                    if (e.weights[k] == 0.0) continue;
+                    a[nz] = compile(e.args[k]);
+                    w[nz++] = e.weights[k];
+                }
+                node = add(SUM, e.constant, null, null, a, w, null);
+            } else {
+                int[] a = new int[e.args.length];
+                for (int k = 0; k < a.length; ++k) a[k] = compile(e.args[k]);
+                int type = (e.op == Expr.Op.QUAD_FORM) ? QUAD_FORM : ((e.op == Expr.Op.NORM2) ? NORM2 : LOG_SUM_EXP);
+                node = add(type, 0.0, null, null, a, null, e.P);
+            }
+            ids.put(e, node);
+            return node;
+        }
+
+        // coef = coef + (w)e, c = c + (w)e(0), for an affine expression e
+        private void accumulate(Expr e, double w, double[] coef, double[] c) {
+            if (w == 0.0) return;
+            switch (e.op) {
+            case CONSTANT:
+                c[0] += w * e.constant;
+                break;
+            case VARIABLE:
+                if (e.model != model) throw new IllegalArgumentException("expression uses variables of another model");
+                coef[e.index] += w;
+                break;
+            case SUM:
+                c[0] += w * e.constant;
+                for (int k = 0; k < e.args.length; ++k) accumulate(e.args[k], w * e.weights[k], coef, c);
+                break;
+            default:
+                throw new IllegalStateException("expected an affine expression");
+            }
+        }
+
+        private int add(int type, double c, int[] idx, double[] coef, int[] a, double[] w, double[][] P) {
+            op.add(type);
+            offset.add(c);
+            varIdx.add(idx);
+            varCoef.add(coef);
+            args.add(a);
+            weights.add(w);
+            form.add(P);
+            return op.size() - 1;
+        }
+    }
+}
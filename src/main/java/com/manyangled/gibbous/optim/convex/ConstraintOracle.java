@@ -0,0 +1,38 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.List;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Generates convex constraints f(x) &lt; 0 on demand, from a family that is too large to materialize
+ * as an {@link InequalityConstraintSet}, such as robust constraints over a large set of scenarios.
+ * <p>
+ * {@link CuttingPlaneOptimizer} solves with a working set of constraints, and asks the oracle for the
+ * constraints most violated by each solution, which are added to the working set. An oracle only needs
+ * to materialize the constraints that it returns.
+ */
+public abstract class ConstraintOracle implements OptimizationData {
+    /**
+     * Find the constraints of the family that are most violated at a point.
+     * @param x a point
+     * @param maxCuts the largest number of constraints to return
+     * @return at most maxCuts constraints of the family, having the largest values f(x). Constraints
+     * that are satisfied at (x) may be included, and are ignored by {@link CuttingPlaneOptimizer}.
+     * An empty list indicates that no constraint is violated.
+     */
+    public abstract List<TwiceDifferentiableFunction> mostViolated(double[] x, int maxCuts);
+}
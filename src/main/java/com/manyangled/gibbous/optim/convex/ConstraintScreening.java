@@ -0,0 +1,67 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Configures {@link BarrierOptimizer} to screen out inequality constraints that are far from active.
+ * <p>
+ * At barrier parameter (t), a constraint with slack s has estimated dual variable 1/(ts), and its
+ * contribution to the barrier Hessian has weight 1/(s^2). When there are many more constraints than
+ * variables, most constraints have small dual estimates for the whole solve, yet each one costs an
+ * update of the n x n Hessian in every Newton step. With screening, the Hessian contribution of every
+ * constraint whose dual estimate is at most {@link #dualThreshold} is frozen: it is computed once, and
+ * reused until it is refreshed.
+ * <p>
+ * The frozen contribution is refreshed when any screened constraint's dual estimate rises above the
+ * threshold, and otherwise after {@link #refreshInterval} Hessian evaluations. Values and gradients of
+ * the barrier are always exact, so centering converges to the same central points, and the final center
+ * is re-validated with the exact Hessian before the solve terminates.
+ */
+public class ConstraintScreening implements OptimizationData {
+    /** Constraints with an estimated dual variable at most this value are screened */
+    public final double dualThreshold;
+    /** The number of Hessian evaluations after which screened contributions are recomputed */
+    public final int refreshInterval;
+
+    /**
+     * Construct a constraint screening policy
+     * @param dualThreshold screen constraints whose estimated dual variable is at most this value.
+     * Must be &gt; 0.
+     * @param refreshInterval recompute the screened Hessian contributions after this many Hessian
+     * evaluations. Must be &gt; 0.
+     */
+    public ConstraintScreening(double dualThreshold, int refreshInterval) {
+        if (!(dualThreshold > 0.0)) throw new IllegalArgumentException("dualThreshold must be > 0");
+        if (refreshInterval < 1) throw new IllegalArgumentException("refreshInterval must be > 0");
+        this.dualThreshold = dualThreshold;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /** Construct a constraint screening policy with default parameters */
+    public ConstraintScreening() {
+        this(DUAL_THRESHOLD_DEFAULT, REFRESH_INTERVAL_DEFAULT);
+    }
+
+    // true if a constraint with slack (s) is screened at barrier parameter (t)
+    boolean screened(double t, double s) {
+        return (t * s * dualThreshold) >= 1.0;
+    }
+
+    /** Default dual estimate at or below which constraints are screened */
+    public static final double DUAL_THRESHOLD_DEFAULT = 1e-3;
+    /** Default number of Hessian evaluations between refreshes of screened contributions */
+    public static final int REFRESH_INTERVAL_DEFAULT = 4;
+}
@@ -35,6 +35,19 @@ import org.apache.commons.math3.linear.ArrayRealVector;
  */
 public abstract class ConvexOptimizer extends MultivariateOptimizer {
     protected TwiceDifferentiableFunction convexObjective;
+    /** The termination status of the most recent solve, set by subclasses */
+    protected SolveStatus status = SolveStatus.CONVERGED;
+    /** The bound or estimate of suboptimality of the most recent solution, set by subclasses */
+    protected double dualityGap = Double.NaN;
+    /** The deadline for the current solve, or null */
+    protected Deadline deadline;
+    /** The cancellation token for the current solve, or null */
+    protected Cancellation cancellation;
+    /** Work counts for the current solve, maintained by subclasses */
+    protected int newtonSteps;
+    protected int backtracks;
+    protected int evaluations;
+    protected int kktSolves;
 
     protected ConvexOptimizer() {
         super(null);
@@ -43,11 +56,27 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
     @Override
     protected void parseOptimizationData(OptimizationData... optData) {
         super.parseOptimizationData(optData);
+        status = SolveStatus.CONVERGED;
+        dualityGap = Double.NaN;
+        deadline = null;
+        cancellation = null;
+        newtonSteps = 0;
+        backtracks = 0;
+        evaluations = 0;
+        kktSolves = 0;
         for (OptimizationData data: optData) {
+            if (data instanceof Deadline) {
+                deadline = (Deadline)data;
+                continue;
+            }
+            if (data instanceof Cancellation) {
+                cancellation = (Cancellation)data;
+                continue;
+            }
             if (data instanceof ObjectiveFunction) {
                 MultivariateFunction f = ((ObjectiveFunction)data).getObjectiveFunction();
                 if (f instanceof TwiceDifferentiableFunction) {
-                  convexObjective = (TwiceDifferentiableFunction)f;
+                    convexObjective = CachedFunction.of((TwiceDifferentiableFunction)f);
                 } else {
                     throw new IllegalArgumentException("TwiceDifferentiableFunction objective required");
                 }
@@ -58,9 +87,123 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
             throw new IllegalStateException("Expected a TwiceDifferentiableFunction argument");
     }
 
+    /** @return the reason that the most recent solve terminated */
+    public SolveStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the suboptimality of the most recent solution.
+     * For {@link BarrierOptimizer} with inequality constraints, this is the duality gap bound f0(x) - g,
+     * where g is the dual bound (f0(x*) - m/t) from the most recent central point x* (11.2.2), which
+     * equals m/t when the solve converges, and is infinite if no central point was reached.
+     * Only central points solved to the full {@link ConvergenceEpsilon}, without a line search failure, give a
+     * bound. With {@link AdaptiveCentering} the loosely solved central points are not used, and the gap is NaN
+     * if central points were reached but none was solved to the full epsilon.
+     * For unconstrained and equality constrained Newton solves, it is the estimate (lambda^2)/2 of
+     * f(x) - p* from the most recent Newton decrement (9.5.1).
+     * @return the duality gap of the most recent solution, in units of the objective function
+     */
+    public double getDualityGap() {
+        return dualityGap;
+    }
+
+    /** @return the work counts of the most recent solve, including any inner solves */
+    public SolveStatistics getStatistics() {
+        return new SolveStatistics(newtonSteps, backtracks, evaluations, kktSolves);
+    }
+
+    /**
+     * Add the work counts of an inner solve to this solve
+     * @param stats the work counts to add
+     */
+    protected void addStatistics(SolveStatistics stats) {
+        newtonSteps += stats.newtonSteps;
+        backtracks += stats.backtracks;
+        evaluations += stats.evaluations;
+        kktSolves += stats.kktSolves;
+    }
+
+    /** @return true if the solve was cancelled, or a {@link Deadline} was given and it has passed */
+    protected boolean stopRequested() {
+        return stopRequested(deadline, cancellation);
+    }
+
+    /** @return the status for a solve that stopped because {@link #stopRequested()} */
+    protected SolveStatus stopStatus() {
+        return stopStatus(cancellation);
+    }
+
+    static boolean stopRequested(Deadline deadline, Cancellation cancellation) {
+        return cancelled(cancellation) || ((deadline != null) && deadline.expired());
+    }
+
+    // cancellation takes precedence, since the caller no longer wants the result
+    static SolveStatus stopStatus(Cancellation cancellation) {
+        return cancelled(cancellation) ? SolveStatus.CANCELLED : SolveStatus.DEADLINE;
+    }
+
+    /**
+     * @param status a solve status
+     * @return true if the status is {@link SolveStatus#DEADLINE} or {@link SolveStatus#CANCELLED}
+     */
+    static boolean isStopped(SolveStatus status) {
+        return (status == SolveStatus.DEADLINE) || (status == SolveStatus.CANCELLED);
+    }
+
+    private static boolean cancelled(Cancellation cancellation) {
+        return ((cancellation != null) && cancellation.isCancelled()) || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Optimize the problem given by a list of {@link OptimizationData} arguments.
+     * <p>
+     * If a {@link Presolve} argument is present, the problem is first reduced, and if a {@link RuizScaling}
+     * argument is present, the problem is scaled. The solution of the transformed problem
+     * is mapped back to the original variables, and {@link #getDualityGap()} is mapped back to the original objective.
+     * @param optData list of {@link OptimizationData} arguments
+     * @return the solution point and objective value, with duals, duality gap, status and work counts
+     */
     @Override
-    public PointValuePair optimize(OptimizationData... optData) {
-        return super.optimize(optData);
+    public ConvexSolveResult optimize(OptimizationData... optData) {
+        ProblemTransform presolver = null;
+        ProblemTransform scaler = null;
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        for (OptimizationData data: optData) {
+            if (data instanceof Presolve) {
+                presolver = new Presolver((Presolve)data);
+                continue;
+            }
+            if (data instanceof RuizScaling) {
+                scaler = new RuizScaler((RuizScaling)data);
+                continue;
+            }
+            args.add(data);
+        }
+        // presolve reduces the problem before it is scaled
+        ArrayList<ProblemTransform> transforms = new ArrayList<ProblemTransform>();
+        if (presolver != null) transforms.add(presolver);
+        if (scaler != null) transforms.add(scaler);
+        if (transforms.isEmpty()) return asResult(super.optimize(optData));
+        OptimizationData[] tData = args.toArray(new OptimizationData[0]);
+        int applied = 0;
+        for (ProblemTransform pt: transforms) {
+            tData = pt.presolve(tData);
+            ++applied;
+            if (tData == null) break;
+        }
+        ConvexSolveResult result = (tData == null) ? null : asResult(super.optimize(tData));
+        for (int j = applied - 1; j >= 0; --j) result = transforms.get(j).postsolveResult(result);
+        status = result.getStatus();
+        dualityGap = result.getDualityGap();
+        return result;
+    }
+
+    // subclasses return a ConvexSolveResult from doOptimize(), but a plain PointValuePair is also accepted
+    private ConvexSolveResult asResult(PointValuePair pvp) {
+        if (pvp instanceof ConvexSolveResult) return (ConvexSolveResult)pvp;
+        return new ConvexSolveResult(pvp.getPoint(), pvp.getValue(), status, dualityGap, Double.NaN,
+            null, null, null, null, getStatistics());
     }
 
     /**
@@ -96,8 +239,13 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
      *   <li>convex inequality constraints: {@link InequalityConstraintSet} - optional </li>
      *   <li>linear inequality constraints: {@link LinearInequalityConstraint} - optional </li>
      *   <li>linear equality constraints: {@link LinearEqualityConstraint} - optional </li>
+     *   <li>bound constraints: {@link BoxConstraint} - optional: the initial guess is first moved inside the bounds </li>
      *   <li>convergence epsilon: {@link ConvergenceEpsilon} - optional </li>
      *   <li>inner optimizer parameters: {@link InnerOptimizationData} - optional: passed down to {@link NewtonOptimizer} inner calls. </li>
+     *   <li>feasible point algorithm: {@link FeasibilityMethod} - optional: defaults to smooth-max minimization. </li>
+     *   <li>barrier parameters for phase I methods: {@link BarrierMu} - optional </li>
+     *   <li>wall-clock deadline: {@link Deadline} - optional: when it passes, the current iterate is returned </li>
+     *   <li>cancellation token: {@link Cancellation} - optional: when it is cancelled, the current iterate is returned </li>
      * </ul>
      * <p>
      * NOTE: There must be at least one inequality constraint provided, via {@link LinearInequalityConstraint},
@@ -108,12 +256,13 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
      * settings passed via {@link InnerOptimizationData} are applied last for {@link NewtonOptimizer}, and so will have precedence.
      * <p>
      * @param optData list of {@link OptimizationData} arguments
-     * @return a {@link PointValuePair} where the first element is a feasible point (x), or the point "nearest to feasible"
+     * @return a {@link FeasibilityResult}, which is a {@link PointValuePair} where the first element is a feasible point (x), or the point "nearest to feasible"
      * in the sense of minimizing the maximum distance to a constraint surface. The second value is the maximum
      * value f[k](x) over all given constraint functions f[k]. If this value is negative, then (x) is feasible. If the value
-     * is &gt; 0, then the constraints cannot be satisfied simultaneously.
+     * is &gt; 0, then the constraints cannot be satisfied simultaneously. The barrier phase I methods halt early
+     * when infeasibility is proven, and return a certificate via {@link FeasibilityResult#getCertificate()}.
      */
-    public static PointValuePair feasiblePoint(OptimizationData... optData) {
+    public static FeasibilityResult feasiblePoint(OptimizationData... optData) {
         double epsilon = ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
         RealVector initialGuess = null;
         ArrayList<OptimizationData> barrierArgs = new ArrayList<OptimizationData>();
@@ -123,30 +272,53 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
         final OptimizationData[] odType = new OptimizationData[0];
         final ArrayList<OptimizationData> solverArgs = new ArrayList<OptimizationData>();
         final ArrayList<OptimizationData> innerArgs = new ArrayList<OptimizationData>();
+        InnerOptimizer.Method innerMethod = InnerOptimizer.INNER_OPTIMIZER_DEFAULT;
+        FeasibilityMethod.Method method = FeasibilityMethod.FEASIBILITY_METHOD_DEFAULT;
+        BoxConstraint box = null;
+        Deadline deadline = null;
+        Cancellation cancellation = null;
         for (OptimizationData data: optData) {
             if (canPassFromMain(data)) {
                 solverArgs.add(data);
             }
+            if (data instanceof Deadline) {
+                deadline = (Deadline)data;
+                continue;
+            }
+            if (data instanceof Cancellation) {
+                cancellation = (Cancellation)data;
+                continue;
+            }
             if (data instanceof InitialGuess) {
                 initialGuess = new ArrayRealVector(((InitialGuess)data).getInitialGuess());
                 continue;
             }
             if (data instanceof LinearInequalityConstraint) {
-                for (TwiceDifferentiableFunction f: ((LinearInequalityConstraint)data).lcf)
-                    ineqConstraints.add(f);
+                ineqConstraints.addAll(((LinearInequalityConstraint)data).constraintFunctions());
                 continue;
             }
             if (data instanceof InequalityConstraintSet) {
                 ineqConstraints.addAll(((InequalityConstraintSet)data).constraints);
                 continue;
             }
+            if (data instanceof BoxConstraint) {
+                ineqConstraints.addAll(((BoxConstraint)data).constraintFunctions());
+                box = (box == null) ? (BoxConstraint)data : box.intersect((BoxConstraint)data);
+                continue;
+            }
             if (data instanceof ConvergenceEpsilon) {
                 epsilon = ((ConvergenceEpsilon)data).epsilon;
                 continue;
             }
+            if (data instanceof FeasibilityMethod) {
+                method = ((FeasibilityMethod)data).method;
+                continue;
+            }
             if (data instanceof InnerOptimizationData) {
-                for (OptimizationData d: ((InnerOptimizationData)data).optData.toArray(odType))
+                for (OptimizationData d: ((InnerOptimizationData)data).optData.toArray(odType)) {
                     if (canPassFromInner(d)) innerArgs.add(d);
+                    if (d instanceof InnerOptimizer) innerMethod = ((InnerOptimizer)d).method;
+                }
                 continue;
             }
         }
@@ -160,7 +332,13 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
             throw new IllegalStateException("set of inequality constraints was empty");
         final int n = ineqConstraints.get(0).dim();
         if (initialGuess == null) initialGuess = new ArrayRealVector(n, 0.0);
+        // bounds are satisfied directly, which leaves only the other constraints to solve
+        if (box != null) initialGuess = new ArrayRealVector(box.interior(initialGuess.toArray()), false);
         final TwiceDifferentiableFunction[] fk = ineqConstraints.toArray(fType);
+        if (method != FeasibilityMethod.Method.SMOOTH_MAX) {
+            boolean sum = (method == FeasibilityMethod.Method.SUM_OF_INFEASIBILITIES);
+            return (new PhaseOneSolver(sum, fk, solverArgs, epsilon, innerMethod)).solve(initialGuess);
+        }
         // These are free parameters, and might be exposed to a user, but I'm not currently
         // convinced there's a lot of value to tweaking them.
         final double minNBallFactor = Math.log(1e-3);
@@ -170,7 +348,10 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
         // If our point is already feasible we are done, unless we need to satisfy
         // linear equality constraints, in which case just run it through the Newton algorithm to make
         // sure they are satisfied
-        if (s < 0.0 && !hasLinearInequalityConstraint) return new PointValuePair(x.toArray(), s);
+        if (s < 0.0 && !hasLinearInequalityConstraint)
+            return feasibilityResult(x.toArray(), fk, SolveStatus.CONVERGED, SolveStatistics.NONE);
+        SolveStatus status = SolveStatus.CONVERGED;
+        SolveStatistics statistics = SolveStatistics.NONE;
         double alpha = 1.0;
         while (true) {
             // Add the n-ball constraint, to guarantee a non-singular hessian
@@ -198,13 +379,18 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
             args.add(new InitialGuess(x.toArray()));
             args.add(new ObjectiveFunction(new SmoothMaxFunction(alpha, augConstraints.toArray(fType))));
             args.add(new HaltingCondition(new NegChecker()));
-            PointValuePair spvp = (new NewtonOptimizer()).optimize(args.toArray(odType));
+            ConvexSolveResult spvp = InnerOptimizer.newOptimizer(innerMethod).optimize(args.toArray(odType));
+            statistics = statistics.plus(spvp.getStatistics());
             RealVector xprv = x;
             // update our solution x, and the true maximum of constraint functions
             x = new ArrayRealVector(spvp.getFirst());
             s = fkMax(spvp.getFirst(), fk);
             // if our latest x satisfies all contstraints, we can stop
             if (s < 0.0) break;
+            if (stopRequested(deadline, cancellation)) {
+                status = stopStatus(cancellation);
+                break;
+            }
             RealVector xdelta = x.subtract(xprv);
             // if we are no longer moving, our augmented n-ball constraint is no longer
             // influencing the result, and we've identified our mini-max point, whether
@@ -214,7 +400,7 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
             // see: http://erikerlandson.github.io/blog/2019/01/02/the-smooth-max-minimum-incident-of-december-2018/
             alpha *= 10.0;
         }
-        return new PointValuePair(x.toArray(), s);
+        return feasibilityResult(x.toArray(), fk, status, statistics);
     }
 
     private static boolean canPassFromMain(OptimizationData data) {
@@ -228,6 +414,13 @@ public abstract class ConvexOptimizer extends MultivariateOptimizer {
         return canPassFromMain(data);
     }
 
+    private static FeasibilityResult feasibilityResult(
+        double[] x, TwiceDifferentiableFunction[] fk, SolveStatus status, SolveStatistics statistics) {
+        double[] v = new double[fk.length];
+        for (int k = 0; k < fk.length; ++k) v[k] = fk[k].value(x);
+        return new FeasibilityResult(x, v, null, Double.NaN, status, statistics);
+    }
+
     private static double fkMax(double[] x, TwiceDifferentiableFunction[] fk) {
         double s = Double.NEGATIVE_INFINITY;
         for (TwiceDifferentiableFunction f: fk) {
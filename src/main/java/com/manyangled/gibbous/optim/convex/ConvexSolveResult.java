@@ -0,0 +1,163 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.Serializable;
+
+import org.apache.commons.math3.optim.PointValuePair;
+
+/**
+ * The result of a {@link ConvexOptimizer} solve: the solution point and objective value, together with
+ * dual variables, the duality gap, the reason for termination, and work counts.
+ * <p>
+ * At a solution of the barrier method for parameter (t), the inequality duals are
+ * lambda[k] = -1/(t f[k](x)), and the equality duals are the Newton duals of the centering step,
+ * divided by (t) (11.2.2). These are exact at an exact center, so their accuracy is that of the
+ * centering steps. Inequality duals are given in the order of the {@link InequalityConstraintSet}
+ * constraints, followed by the rows of each {@link LinearInequalityConstraint}, in the order supplied.
+ * Bound duals are given per variable, and are zero for infinite bounds.
+ * Dual arrays are null when the problem has no constraints of that kind, or when the duals are not
+ * available. With {@link Presolve}, duals are given for the original constraints.
+ */
+public class ConvexSolveResult extends PointValuePair {
+    private static final long serialVersionUID = 1L;
+
+    private final SolveStatus status;
+    private final double dualityGap;
+    private final double barrierT;
+    private final double[] inequalityDuals;
+    private final double[] lowerBoundDuals;
+    private final double[] upperBoundDuals;
+    private final double[] equalityDuals;
+    private final SolveStatistics statistics;
+
+    /**
+     * Construct a solve result
+     * @param x the solution point
+     * @param v the objective value at (x)
+     * @param status the reason the solve terminated
+     * @param dualityGap the duality gap, or estimate of suboptimality, of (x)
+     * @param barrierT the final barrier parameter (t), or NaN if the barrier method was not used
+     * @param inequalityDuals the inequality constraint duals, or null
+     * @param lowerBoundDuals the lower bound duals, or null
+     * @param upperBoundDuals the upper bound duals, or null
+     * @param equalityDuals the equality constraint duals, or null
+     * @param statistics work counts for the solve
+     */
+    public ConvexSolveResult(
+        double[] x, double v,
+        SolveStatus status, double dualityGap, double barrierT,
+        double[] inequalityDuals, double[] lowerBoundDuals, double[] upperBoundDuals, double[] equalityDuals,
+        SolveStatistics statistics) {
+        super(x, v);
+        if (status == null) throw new IllegalArgumentException("status must be non-null");
+        if (statistics == null) throw new IllegalArgumentException("statistics must be non-null");
+        this.status = status;
+        this.dualityGap = dualityGap;
+        this.barrierT = barrierT;
+        this.inequalityDuals = copy(inequalityDuals);
+        this.lowerBoundDuals = copy(lowerBoundDuals);
+        this.upperBoundDuals = copy(upperBoundDuals);
+        this.equalityDuals = copy(equalityDuals);
+        this.statistics = statistics;
+    }
+
+    /** @return the reason that the solve terminated */
+    public SolveStatus getStatus() { return status; }
+
+    /** @return the duality gap, as described by {@link ConvexOptimizer#getDualityGap()} */
+    public double getDualityGap() { return dualityGap; }
+
+    /** @return the final value of the barrier parameter (t), or NaN if the barrier method was not used */
+    public double getBarrierT() { return barrierT; }
+
+    /** @return the inequality constraint duals lambda[k], or null */
+    public double[] getInequalityDuals() { return copy(inequalityDuals); }
+
+    /** @return the duals of the lower bounds of each variable, or null */
+    public double[] getLowerBoundDuals() { return copy(lowerBoundDuals); }
+
+    /** @return the duals of the upper bounds of each variable, or null */
+    public double[] getUpperBoundDuals() { return copy(upperBoundDuals); }
+
+    /** @return the equality constraint duals nu[i], or null */
+    public double[] getEqualityDuals() { return copy(equalityDuals); }
+
+    /** @return the work counts of the solve */
+    public SolveStatistics getStatistics() { return statistics; }
+
+    /** @return the number of Newton or quasi-Newton steps taken */
+    public int getNewtonSteps() { return statistics.newtonSteps; }
+
+    /** @return the number of rejected backtracking line search steps */
+    public int getBacktracks() { return statistics.backtracks; }
+
+    /** @return the number of objective function value evaluations */
+    public int getEvaluations() { return statistics.evaluations; }
+
+    /** @return the number of KKT systems solved */
+    public int getKKTSolves() { return statistics.kktSolves; }
+
+    /**
+     * Replace the instance with a data transfer object for serialization,
+     * since the {@link org.apache.commons.math3.util.Pair} base class is not serializable.
+     * @return data transfer object that will be serialized
+     */
+    private Object writeReplace() {
+        return new DataTransferObject(this);
+    }
+
+    /** Internal class used only for serialization. */
+    private static class DataTransferObject implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] point;
+        private final double value;
+        private final SolveStatus status;
+        private final double dualityGap;
+        private final double barrierT;
+        private final double[] inequalityDuals;
+        private final double[] lowerBoundDuals;
+        private final double[] upperBoundDuals;
+        private final double[] equalityDuals;
+        private final SolveStatistics statistics;
+
+        DataTransferObject(ConvexSolveResult r) {
+            this.point = r.getPointRef();
+            this.value = r.getValue();
+            this.status = r.status;
+            this.dualityGap = r.dualityGap;
+            this.barrierT = r.barrierT;
+            this.inequalityDuals = r.inequalityDuals;
+            this.lowerBoundDuals = r.lowerBoundDuals;
+            this.upperBoundDuals = r.upperBoundDuals;
+            this.equalityDuals = r.equalityDuals;
+            this.statistics = r.statistics;
+        }
+
+        /**
+         * Replace the deserialized data transfer object with a {@link ConvexSolveResult}.
+         * @return replacement {@link ConvexSolveResult}
+         */
+        private Object readResolve() {
+            return new ConvexSolveResult(
+                point, value, status, dualityGap, barrierT,
+                inequalityDuals, lowerBoundDuals, upperBoundDuals, equalityDuals, statistics);
+        }
+    }
+
+    static double[] copy(double[] v) {
+        return (v == null) ? null : v.clone();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Configures the generation of constraints from a {@link ConstraintOracle} by {@link CuttingPlaneOptimizer}.
+ */
+public class CutGeneration implements OptimizationData {
+    /** The largest number of constraints added to the working set in each round */
+    public final int maxCuts;
+    /** A generated constraint f is added only if f(x) is greater than this tolerance */
+    public final double tolerance;
+    /**
+     * The largest number of working set solves. If violated constraints remain after this many rounds,
+     * the last solution is returned with status {@link SolveStatus#HALTED}.
+     */
+    public final int maxRounds;
+
+    /**
+     * Construct a constraint generation configuration
+     * @param maxCuts the largest number of constraints added in each round. Must be &gt; 0.
+     * @param tolerance the violation f(x) above which a constraint is added. Must be &gt;= 0.
+     * @param maxRounds the largest number of working set solves. Must be &gt; 0.
+     */
+    public CutGeneration(int maxCuts, double tolerance, int maxRounds) {
+        if (maxCuts < 1) throw new IllegalArgumentException("maxCuts must be > 0");
+        if (!(tolerance >= 0.0)) throw new IllegalArgumentException("tolerance must be >= 0");
+        if (maxRounds < 1) throw new IllegalArgumentException("maxRounds must be > 0");
+        this.maxCuts = maxCuts;
+        this.tolerance = tolerance;
+        this.maxRounds = maxRounds;
+    }
+
+    /** Construct a constraint generation configuration with default parameters */
+    public CutGeneration() {
+        this(MAX_CUTS_DEFAULT, TOLERANCE_DEFAULT, MAX_ROUNDS_DEFAULT);
+    }
+
+    /** Default largest number of constraints added in each round */
+    public static final int MAX_CUTS_DEFAULT = 10;
+    /** Default violation tolerance */
+    public static final double TOLERANCE_DEFAULT = 1e-9;
+    /** Default largest number of working set solves */
+    public static final int MAX_ROUNDS_DEFAULT = 100;
+}
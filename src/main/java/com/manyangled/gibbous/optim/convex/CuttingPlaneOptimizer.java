@@ -0,0 +1,201 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * Minimizes a convex function subject to a family of convex constraints that is generated lazily
+ * by a {@link ConstraintOracle}, by an outer cutting-plane loop over {@link BarrierOptimizer} solves.
+ * <p>
+ * Each round solves the problem with a working set of constraints, then asks the oracle for the
+ * constraints most violated by the solution, and adds those to the working set. The next round is
+ * warm started from the previous solution, which is first moved inside the new constraints with
+ * {@link ConvexOptimizer#feasiblePoint(OptimizationData...)}. The loop ends when the oracle returns no
+ * constraint violated by more than {@link CutGeneration#tolerance}, and so memory and time scale with
+ * the working set, rather than with the whole family.
+ * <p>
+ * {@link CuttingPlaneOptimizer} supports the following {@link OptimizationData} parameters as arguments
+ * to {@link #optimize(OptimizationData...)}:
+ * <ul>
+ *   <li>convex objective function: {@link ObjectiveFunction} - mandatory: must contain a {@link TwiceDifferentiableFunction} </li>
+ *   <li>constraint oracle: {@link ConstraintOracle} - mandatory </li>
+ *   <li>initial guess: {@link InitialGuess} - mandatory: must be strictly feasible w.r.t. all materialized inequality constraints. </li>
+ *   <li>initial working set: {@link InequalityConstraintSet} - optional </li>
+ *   <li>constraint generation: {@link CutGeneration} - optional </li>
+ *   <li>wall-clock deadline: {@link Deadline} - optional: also applies to each round </li>
+ *   <li>cancellation token: {@link Cancellation} - optional: also applies to each round </li>
+ * </ul>
+ * All other parameters, such as {@link LinearInequalityConstraint}, {@link BoxConstraint},
+ * {@link LinearEqualityConstraint}, {@link Presolve} and {@link RuizScaling}, are passed to the
+ * {@link BarrierOptimizer} solve of each round.
+ * <p>
+ * The inequality duals of the result are those of the last round, for the constraints of
+ * {@link #getWorkingSet()}, followed by any {@link LinearInequalityConstraint} rows.
+ */
+public class CuttingPlaneOptimizer extends ConvexOptimizer {
+    private ConstraintOracle oracle;
+    private CutGeneration generation;
+    private ArrayList<TwiceDifferentiableFunction> workingSet = new ArrayList<TwiceDifferentiableFunction>();
+    private ArrayList<OptimizationData> barrierArgs = new ArrayList<OptimizationData>();
+    private ArrayList<OptimizationData> transforms = new ArrayList<OptimizationData>();
+    private double[] xStart;
+    private int rounds;
+    private OptimizationData[] odType = new OptimizationData[0];
+
+    public CuttingPlaneOptimizer() {
+        super();
+    }
+
+    /**
+     * Optimize the problem given by a list of {@link OptimizationData} arguments.
+     * <p>
+     * Generated constraints are defined on the original variables, and so any {@link Presolve}
+     * and {@link RuizScaling} arguments are applied to the solve of each round, rather than to the
+     * problem as a whole.
+     * @param optData list of {@link OptimizationData} arguments
+     * @return the solution of the last round, with duals, duality gap, status and the work counts of all rounds
+     */
+    @Override
+    public ConvexSolveResult optimize(OptimizationData... optData) {
+        transforms.clear();
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        for (OptimizationData data: optData) {
+            if ((data instanceof Presolve) || (data instanceof RuizScaling)) {
+                transforms.add(data);
+                continue;
+            }
+            args.add(data);
+        }
+        return super.optimize(args.toArray(odType));
+    }
+
+    @Override
+    protected void parseOptimizationData(OptimizationData... optData) {
+        super.parseOptimizationData(optData);
+        oracle = null;
+        generation = new CutGeneration();
+        workingSet.clear();
+        barrierArgs.clear();
+        barrierArgs.addAll(transforms);
+        for (OptimizationData data: optData) {
+            if (data instanceof ConstraintOracle) {
+                oracle = (ConstraintOracle)data;
+                continue;
+            }
+            if (data instanceof CutGeneration) {
+                generation = (CutGeneration)data;
+                continue;
+            }
+            if (data instanceof InequalityConstraintSet) {
+                workingSet.addAll(((InequalityConstraintSet)data).constraints);
+                continue;
+            }
+            if ((data instanceof ObjectiveFunction) || (data instanceof InitialGuess)) continue;
+            barrierArgs.add(data);
+        }
+        if (oracle == null) throw new IllegalStateException("Expected a ConstraintOracle argument");
+        // if we got here, convexObjective exists
+        final int n = convexObjective.dim();
+        xStart = (getStartPoint() != null) ? getStartPoint() : new double[n];
+        if (xStart.length != n) throw new DimensionMismatchException(xStart.length, n);
+    }
+
+    /**
+     * @return the working set of constraints of the most recent solve: the constraints of any
+     * {@link InequalityConstraintSet} arguments, followed by generated constraints in the order they were added
+     */
+    public List<TwiceDifferentiableFunction> getWorkingSet() {
+        return new ArrayList<TwiceDifferentiableFunction>(workingSet);
+    }
+
+    /** @return the number of working set solves in the most recent solve */
+    public int getRounds() {
+        return rounds;
+    }
+
+    @Override
+    public ConvexSolveResult doOptimize() {
+        double[] x = xStart;
+        ConvexSolveResult r = null;
+        rounds = 0;
+        while (true) {
+            if (stopRequested()) {
+                status = stopStatus();
+                break;
+            }
+            if (rounds > 0) {
+                // the previous solution violates the new constraints, and is moved inside them
+                FeasibilityResult fr = feasiblePoint(feasibilityArgs(x));
+                addStatistics(fr.getStatistics());
+                if (isStopped(fr.getStatus())) {
+                    status = fr.getStatus();
+                    break;
+                }
+                if (!fr.isFeasible())
+                    throw new IllegalStateException("generated constraints are not strictly feasible");
+                x = fr.getPoint();
+            }
+            incrementIterationCount();
+            ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)barrierArgs.clone();
+            args.add(new ObjectiveFunction(convexObjective));
+            args.add(new InequalityConstraintSet(workingSet));
+            args.add(new InitialGuess(x));
+            r = (new BarrierOptimizer()).optimize(args.toArray(odType));
+            addStatistics(r.getStatistics());
+            ++rounds;
+            x = r.getPoint();
+            status = r.getStatus();
+            if (isStopped(status)) break;
+            int added = 0;
+            for (TwiceDifferentiableFunction f: oracle.mostViolated(x, generation.maxCuts)) {
+                if (added >= generation.maxCuts) break;
+                if (f.value(x) <= generation.tolerance) continue;
+                workingSet.add(f);
+                ++added;
+            }
+            if (added == 0) break;
+            if (rounds >= generation.maxRounds) {
+                status = SolveStatus.HALTED;
+                break;
+            }
+        }
+        if (r == null) {
+            dualityGap = Double.POSITIVE_INFINITY;
+            return new ConvexSolveResult(x, convexObjective.value(x), status, dualityGap, Double.NaN,
+                null, null, null, null, getStatistics());
+        }
+        // the duality gap only bounds suboptimality if no generated constraint remains violated
+        dualityGap = (status == SolveStatus.CONVERGED) ? r.getDualityGap() : Double.POSITIVE_INFINITY;
+        return new ConvexSolveResult(r.getPoint(), r.getValue(), status, dualityGap, r.getBarrierT(),
+            r.getInequalityDuals(), r.getLowerBoundDuals(), r.getUpperBoundDuals(), r.getEqualityDuals(),
+            getStatistics());
+    }
+
+    // arguments for a feasible point of the working set, starting at (x)
+    private OptimizationData[] feasibilityArgs(double[] x) {
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        for (OptimizationData data: barrierArgs)
+            if (!(data instanceof Presolve) && !(data instanceof RuizScaling)) args.add(data);
+        args.add(new InequalityConstraintSet(workingSet));
+        args.add(new InitialGuess(x));
+        return args.toArray(odType);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * A wall-clock deadline for {@link ConvexOptimizer} solves.
+ * <p>
+ * The deadline is checked at each Newton or quasi-Newton iteration, at each backtracking
+ * line search step, and at each outer iteration of {@link BarrierOptimizer} and
+ * {@link ConvexOptimizer#feasiblePoint(OptimizationData...)}. When it passes, the solve returns the best
+ * iterate found so far, {@link ConvexOptimizer#getStatus()} returns {@link SolveStatus#DEADLINE}, and
+ * {@link ConvexOptimizer#getDualityGap()} returns the current bound on its suboptimality.
+ * For {@link BarrierOptimizer}, the returned iterate is always strictly feasible.
+ * <p>
+ * A time budget starts when the {@link Deadline} is constructed, so a new instance should be used for each solve.
+ */
+public class Deadline implements OptimizationData {
+    /** The deadline, as a value of {@link System#nanoTime()} */
+    public final long nanoTime;
+
+    /**
+     * Construct a deadline from a time budget, starting now
+     * @param budget the time budget. Must be &gt;= 0.
+     * @param unit the unit of the budget
+     */
+    public Deadline(long budget, TimeUnit unit) {
+        if (budget < 0) throw new IllegalArgumentException("budget must be >= 0");
+        this.nanoTime = System.nanoTime() + Math.min(unit.toNanos(budget), MAX_BUDGET_NANOS);
+    }
+
+    /**
+     * Construct a deadline from a time budget, starting now
+     * @param budget the time budget. Must not be negative.
+     */
+    public Deadline(Duration budget) {
+        this(toNanos(budget), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Construct a deadline at an instant. An instant in the past is already expired.
+     * @param instant the deadline
+     */
+    public Deadline(Instant instant) {
+        this(Math.max(0L, toNanos(Duration.between(Instant.now(), instant))), TimeUnit.NANOSECONDS);
+    }
+
+    /** @return true if the deadline has passed */
+    public boolean expired() {
+        return (System.nanoTime() - nanoTime) >= 0L;
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the time remaining until the deadline, or zero if it has passed
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(Math.max(0L, nanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    // saturates durations that overflow a long count of nanoseconds
+    private static long toNanos(Duration d) {
+        if (d.getSeconds() >= (MAX_BUDGET_NANOS / 1000000000L)) return MAX_BUDGET_NANOS;
+        if (d.getSeconds() <= -(MAX_BUDGET_NANOS / 1000000000L)) return -MAX_BUDGET_NANOS;
+        return d.toNanos();
+    }
+
+    // keeps (System.nanoTime() - nanoTime) free of overflow, while allowing budgets of over 70 years
+    private static final long MAX_BUDGET_NANOS = Long.MAX_VALUE / 4;
+}
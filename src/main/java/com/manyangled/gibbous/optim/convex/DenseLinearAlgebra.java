@@ -0,0 +1,174 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+/**
+ * A backend for the dense linear algebra operations used by {@link KKTSolver} implementations.
+ * <p>
+ * All matrices are stored as flat row-major arrays: entry (i, j) of an r x c matrix
+ * M is stored at M[i*c + j]. Operations that produce a result overwrite one of their
+ * arguments in place, so that solvers can manage their own workspace.
+ * <p>
+ * The default backend is {@link BlockedDenseLinearAlgebra}.
+ * {@link CommonsMathDenseLinearAlgebra} delegates to Apache Commons Math, and
+ * is intended as a reference for validation.
+ */
+public abstract class DenseLinearAlgebra {
+    /**
+     * Cholesky factorization A = L(L^T), in place.
+     * <p>
+     * On return the lower triangle of (a) holds L, and the strict upper triangle is zeroed.
+     * Only the lower triangle of A is referenced.
+     * @param a the n x n symmetric positive definite matrix A
+     * @param n the dimension of A
+     * @throws org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException if A is
+     * not positive definite.
+     */
+    public abstract void cholesky(double[] a, int n);
+
+    /**
+     * Factorization A = L(D)(L^T), in place, where L is unit lower triangular and D is diagonal.
+     * <p>
+     * On return the strict lower triangle of (a) holds L, the diagonal is set to 1 and the
+     * strict upper triangle is zeroed. Only the lower triangle of A is referenced.
+     * No pivoting is performed.
+     * @param a the n x n symmetric matrix A
+     * @param d on return, holds the n entries of the diagonal D
+     * @param n the dimension of A
+     * @throws org.apache.commons.math3.linear.SingularMatrixException if a zero pivot is encountered
+     */
+    public abstract void ldlt(double[] a, double[] d, int n);
+
+    /**
+     * Solve the triangular system L(X) = B, or (L^T)X = B, in place.
+     * @param l the n x n lower triangular matrix L
+     * @param n the dimension of L
+     * @param transpose if true, solve (L^T)X = B
+     * @param b the n x nrhs right-hand side B. Overwritten by the solution X.
+     * @param nrhs the number of columns of B
+     */
+    public abstract void solveLower(double[] l, int n, boolean transpose, double[] b, int nrhs);
+
+    /**
+     * General matrix multiply C = (alpha)op(A)op(B) + (beta)C,
+     * where op(M) is M or M^T. The product op(A)op(B) is m x n, with inner dimension k.
+     * @param transA if true, op(A) = A^T, and A is stored as k x m
+     * @param transB if true, op(B) = B^T, and B is stored as n x k
+     * @param m the row dimension of C
+     * @param n the column dimension of C
+     * @param k the inner dimension
+     * @param alpha scaling for op(A)op(B)
+     * @param a the matrix A
+     * @param b the matrix B
+     * @param beta scaling for C. If zero, C need not be initialized.
+     * @param c the m x n matrix C, overwritten by the result
+     */
+    public abstract void gemm(
+        boolean transA, boolean transB,
+        int m, int n, int k,
+        double alpha, double[] a, double[] b,
+        double beta, double[] c);
+
+    /**
+     * Symmetric rank-k update C = (alpha)(A)(A^T) + (beta)C, or C = (alpha)(A^T)(A) + (beta)C.
+     * The full symmetric result is stored in C.
+     * @param trans if true, compute (A^T)(A), and A is stored as k x n. Otherwise A is n x k.
+     * @param n the dimension of C
+     * @param k the inner dimension
+     * @param alpha scaling for the product
+     * @param a the matrix A
+     * @param beta scaling for C. If zero, C need not be initialized.
+     * @param c the n x n matrix C, overwritten by the result
+     */
+    public abstract void syrk(boolean trans, int n, int k, double alpha, double[] a, double beta, double[] c);
+
+    /**
+     * Solve L(L^T)X = B in place, given a Cholesky factor L from {@link #cholesky(double[], int)}
+     * @param l the n x n Cholesky factor L
+     * @param n the dimension of L
+     * @param b the n x nrhs right-hand side B. Overwritten by the solution X.
+     * @param nrhs the number of columns of B
+     */
+    public void choleskySolve(double[] l, int n, double[] b, int nrhs) {
+        solveLower(l, n, false, b, nrhs);
+        solveLower(l, n, true, b, nrhs);
+    }
+
+    /**
+     * Copy a matrix into a new flat row-major array
+     * @param M the matrix to copy
+     * @return the entries of M in row-major order
+     */
+    public static double[] toArray(RealMatrix M) {
+        final int r = M.getRowDimension();
+        final int c = M.getColumnDimension();
+        double[] a = new double[r * c];
+        if (M instanceof Array2DRowRealMatrix) {
+            double[][] m = ((Array2DRowRealMatrix)M).getDataRef();
+            for (int i = 0; i < r; ++i) System.arraycopy(m[i], 0, a, i * c, c);
+        } else if (M instanceof CSRRealMatrix) {
+            CSRRealMatrix S = (CSRRealMatrix)M;
+            final IntBuffer rowPtr = S.getRowPointers();
+            final IntBuffer colIdx = S.getColumnIndices();
+            final DoubleBuffer values = S.getValues();
+            for (int i = 0; i < r; ++i)
+                for (int k = rowPtr.get(i); k < rowPtr.get(i + 1); ++k)
+                    a[i * c + colIdx.get(k)] = values.get(k);
+        } else {
+            for (int i = 0; i < r; ++i)
+                for (int j = 0; j < c; ++j)
+                    a[i * c + j] = M.getEntry(i, j);
+        }
+        return a;
+    }
+
+    /**
+     * Copy a vector into a new array
+     * @param v the vector to copy
+     * @return the entries of v
+     */
+    public static double[] toArray(RealVector v) {
+        return v.toArray();
+    }
+
+    /**
+     * Copy a flat row-major array into a new matrix
+     * @param a the entries of the matrix in row-major order
+     * @param r the row dimension
+     * @param c the column dimension
+     * @return the r x c matrix
+     */
+    public static RealMatrix toMatrix(double[] a, int r, int c) {
+        double[][] m = new double[r][c];
+        for (int i = 0; i < r; ++i) System.arraycopy(a, i * c, m[i], 0, c);
+        return new Array2DRowRealMatrix(m, false);
+    }
+
+    /**
+     * Wrap an array as a vector, without copying
+     * @param a the vector entries
+     * @return a vector backed by (a)
+     */
+    public static RealVector toVector(double[] a) {
+        return new ArrayRealVector(a, false);
+    }
+}
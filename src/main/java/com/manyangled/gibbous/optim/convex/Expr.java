@@ -0,0 +1,272 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * An immutable scalar expression over the variables of a {@link Model}.
+ * <p>
+ * Expressions are built from variables and constants with affine operations, and the atoms
+ * {@link #quadForm(Expr[], double[][])}, {@link #norm2(Expr...)} and {@link #logSumExp(Expr...)}.
+ * Each expression has a {@link Curvature}, derived by the disciplined convex programming rules:
+ * <ul>
+ *   <li>a nonnegative weighted sum of convex expressions is convex, and negation exchanges convex and concave </li>
+ *   <li>quadForm is convex when its arguments are affine and its matrix is positive semidefinite </li>
+ *   <li>norm2 is convex when its arguments are affine </li>
+ *   <li>logSumExp is convex and nondecreasing, and so is convex when its arguments are convex </li>
+ * </ul>
+ * Expressions that do not follow these rules have curvature {@link Curvature#UNKNOWN},
+ * and are rejected by {@link Model#compile(Expr)}.
+ */
+public final class Expr {
+    /** The curvature of an expression, as derived by the disciplined convex programming rules */
+    public enum Curvature {
+        /** the expression has no variables */
+        CONSTANT,
+        /** the expression is affine in its variables */
+        AFFINE,
+        /** the expression is convex */
+        CONVEX,
+        /** the expression is concave */
+        CONCAVE,
+        /** convexity could not be established */
+        UNKNOWN
+    }
+
+    enum Op { CONSTANT, VARIABLE, SUM, QUAD_FORM, NORM2, LOG_SUM_EXP }
+
+    final Op op;
+    final Curvature curvature;
+    // arguments of SUM and the atoms
+    final Expr[] args;
+    // weights of SUM arguments
+    final double[] weights;
+    // value of CONSTANT, and the offset of SUM
+    final double constant;
+    // the model and index of VARIABLE
+    final Model model;
+    final int index;
+    // symmetric matrix of QUAD_FORM
+    final double[][] P;
+
+    private Expr(
+        Op op, Curvature curvature, Expr[] args, double[] weights, double constant,
+        Model model, int index, double[][] P) {
+        this.op = op;
+        this.curvature = curvature;
+        this.args = args;
+        this.weights = weights;
+        this.constant = constant;
+        this.model = model;
+        this.index = index;
+        this.P = P;
+    }
+
+    static Expr variable(Model model, int index) {
+        return new Expr(Op.VARIABLE, Curvature.AFFINE, null, null, 0.0, model, index, null);
+    }
+
+    /** @return the curvature of this expression */
+    public Curvature curvature() {
+        return curvature;
+    }
+
+    /**
+     * @param c a constant
+     * @return the constant expression (c)
+     */
+    public static Expr constant(double c) {
+        return new Expr(Op.CONSTANT, Curvature.CONSTANT, null, null, c, null, -1, null);
+    }
+
+    /**
+     * @param e an expression
+     * @return this + e
+     */
+    public Expr plus(Expr e) {
+        return weightedSum(new Expr[] { this, e }, new double[] { 1.0, 1.0 }, 0.0);
+    }
+
+    /**
+     * @param c a constant
+     * @return this + c
+     */
+    public Expr plus(double c) {
+        return weightedSum(new Expr[] { this }, new double[] { 1.0 }, c);
+    }
+
+    /**
+     * @param e an expression
+     * @return this - e
+     */
+    public Expr minus(Expr e) {
+        return weightedSum(new Expr[] { this, e }, new double[] { 1.0, -1.0 }, 0.0);
+    }
+
+    /**
+     * @param c a constant
+     * @return this - c
+     */
+    public Expr minus(double c) {
+        return plus(-c);
+    }
+
+    /**
+     * @param a a constant
+     * @return (a)this
+     */
+    public Expr times(double a) {
+        return weightedSum(new Expr[] { this }, new double[] { a }, 0.0);
+    }
+
+    /** @return -this */
+    public Expr negate() {
+        return times(-1.0);
+    }
+
+    /**
+     * @param terms a list of expressions
+     * @return the sum of the expressions
+     */
+    public static Expr sum(Expr... terms) {
+        double[] w = new double[terms.length];
+        Arrays.fill(w, 1.0);
+        return weightedSum(terms.clone(), w, 0.0);
+    }
+
+    /**
+     * @param a a vector of coefficients
+     * @param x a vector of expressions
+     * @return the affine combination a.x
+     */
+    public static Expr dot(double[] a, Expr[] x) {
+        if (a.length != x.length) throw new DimensionMismatchException(a.length, x.length);
+        return weightedSum(x.clone(), a.clone(), 0.0);
+    }
+
+    /**
+     * The quadratic form (x^T)Px. Only the symmetric part of P contributes to the form.
+     * @param x a vector of expressions, which must be affine for the form to be convex
+     * @param P a square matrix, which must be positive semidefinite for the form to be convex
+     * @return the quadratic form
+     */
+    public static Expr quadForm(Expr[] x, double[][] P) {
+        final int k = x.length;
+        if (k < 1) throw new IllegalArgumentException("list of expressions must be nonempty");
+        if (P.length != k) throw new DimensionMismatchException(P.length, k);
+        double[][] S = new double[k][k];
+        for (int i = 0; i < k; ++i) {
+            if (P[i].length != k) throw new DimensionMismatchException(P[i].length, k);
+            for (int j = 0; j < k; ++j) S[i][j] = 0.5 * (P[i][j] + P[j][i]);
+        }
+        // a form in affine arguments has the curvature of its matrix
+        Curvature c = Curvature.UNKNOWN;
+        if (affine(x)) {
+            double[] ev = (new EigenDecomposition(new Array2DRowRealMatrix(S, false))).getRealEigenvalues();
+            double emin = Double.POSITIVE_INFINITY;
+            double emax = Double.NEGATIVE_INFINITY;
+            double scale = 1.0;
+            for (double e: ev) {
+                emin = Math.min(emin, e);
+                emax = Math.max(emax, e);
+                scale = Math.max(scale, Math.abs(e));
+            }
+            if (emin >= -(PSD_TOLERANCE * scale)) c = Curvature.CONVEX;
+            else if (emax <= (PSD_TOLERANCE * scale)) c = Curvature.CONCAVE;
+        }
+        return new Expr(Op.QUAD_FORM, c, x.clone(), null, 0.0, null, -1, S);
+    }
+
+    /**
+     * @param e an expression, which must be affine for the square to be convex
+     * @return (e^2)
+     */
+    public static Expr square(Expr e) {
+        return sumSquares(e);
+    }
+
+    /**
+     * @param x a list of expressions, which must be affine for the sum to be convex
+     * @return the sum of squares of the expressions
+     */
+    public static Expr sumSquares(Expr... x) {
+        double[][] I = new double[x.length][x.length];
+        for (int i = 0; i < x.length; ++i) I[i][i] = 1.0;
+        return quadForm(x, I);
+    }
+
+    /**
+     * The Euclidean norm of a list of expressions.
+     * The norm is not differentiable where all of its arguments are zero, where its gradient
+     * and Hessian are evaluated as zero.
+     * @param x a list of expressions, which must be affine for the norm to be convex
+     * @return the Euclidean norm of the expressions
+     */
+    public static Expr norm2(Expr... x) {
+        if (x.length < 1) throw new IllegalArgumentException("list of expressions must be nonempty");
+        Curvature c = affine(x) ? Curvature.CONVEX : Curvature.UNKNOWN;
+        return new Expr(Op.NORM2, c, x.clone(), null, 0.0, null, -1, null);
+    }
+
+    /**
+     * @param x a list of expressions, which must be convex for the result to be convex
+     * @return log(sum(e^x[k]))
+     */
+    public static Expr logSumExp(Expr... x) {
+        if (x.length < 1) throw new IllegalArgumentException("list of expressions must be nonempty");
+        Curvature c = Curvature.CONVEX;
+        for (Expr e: x) {
+            if ((e.curvature == Curvature.CONCAVE) || (e.curvature == Curvature.UNKNOWN)) c = Curvature.UNKNOWN;
+        }
+        return new Expr(Op.LOG_SUM_EXP, c, x.clone(), null, 0.0, null, -1, null);
+    }
+
+    private static Expr weightedSum(Expr[] terms, double[] w, double c) {
+        if (terms.length < 1) throw new IllegalArgumentException("list of expressions must be nonempty");
+        Curvature cv = Curvature.CONSTANT;
+        for (int k = 0; k < terms.length; ++k) cv = add(cv, scale(terms[k].curvature, w[k]));
+        return new Expr(Op.SUM, cv, terms, w, c, null, -1, null);
+    }
+
+    private static Curvature scale(Curvature c, double a) {
+        if (a == 0.0) return Curvature.CONSTANT;
+        if (a > 0.0) return c;
+        if (c == Curvature.CONVEX) return Curvature.CONCAVE;
+        if (c == Curvature.CONCAVE) return Curvature.CONVEX;
+        return c;
+    }
+
+    private static Curvature add(Curvature a, Curvature b) {
+        if ((a == Curvature.UNKNOWN) || (b == Curvature.UNKNOWN)) return Curvature.UNKNOWN;
+        if (a == Curvature.CONSTANT) return b;
+        if (b == Curvature.CONSTANT) return a;
+        if (a == Curvature.AFFINE) return b;
+        if (b == Curvature.AFFINE) return a;
+        return (a == b) ? a : Curvature.UNKNOWN;
+    }
+
+    private static boolean affine(Expr[] x) {
+        for (Expr e: x)
+            if ((e.curvature != Curvature.AFFINE) && (e.curvature != Curvature.CONSTANT)) return false;
+        return true;
+    }
+
+    // relative tolerance on negative eigenvalues of a positive semidefinite matrix
+    private static final double PSD_TOLERANCE = 1e-12;
+}
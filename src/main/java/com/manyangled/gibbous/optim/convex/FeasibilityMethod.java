@@ -0,0 +1,61 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Selects the algorithm used by {@link ConvexOptimizer#feasiblePoint(OptimizationData... optData)}.
+ * <ul>
+ *   <li>{@link Method#SMOOTH_MAX}: iterated minimization of the smooth-max over constraint functions,
+ *   described <a href="http://erikerlandson.github.io/blog/2018/06/03/solving-feasible-points-with-smooth-max/">here.</a>
+ *   This is the default.</li>
+ *   <li>{@link Method#BARRIER}: the standard phase I method, (11.4.1) of
+ *   Convex Optimization, Boyd and Vandenberghe, Cambridge University Press, 2008.
+ *   Minimizes (s) subject to f[k](x) &lt;= s with the barrier method, halting as soon as (s) &lt; 0.</li>
+ *   <li>{@link Method#SUM_OF_INFEASIBILITIES}: the sum of infeasibilities phase I method, (11.4.1) of
+ *   Convex Optimization, Boyd and Vandenberghe. Minimizes sum(s[k]) subject to f[k](x) &lt;= s[k], s[k] &gt;= 0.
+ *   When the constraints are infeasible, the solution tends to satisfy as many constraints as possible,
+ *   which helps identify the subset of constraints that conflict. The problem dimension is
+ *   increased by the number of constraints, so this method is intended mostly for diagnostics.</li>
+ * </ul>
+ * The barrier methods also halt as soon as the constraints are proven infeasible, and return a certificate
+ * via {@link FeasibilityResult#getCertificate()}.
+ */
+public class FeasibilityMethod implements OptimizationData {
+    /** Available feasible point algorithms */
+    public enum Method {
+        /** iterated smooth-max minimization */
+        SMOOTH_MAX,
+        /** barrier method phase I, minimizing the maximum infeasibility */
+        BARRIER,
+        /** barrier method phase I, minimizing the sum of infeasibilities */
+        SUM_OF_INFEASIBILITIES
+    }
+
+    /** The selected algorithm */
+    public final Method method;
+
+    /**
+     * Construct a feasible point algorithm selection
+     * @param method the algorithm to use
+     */
+    public FeasibilityMethod(Method method) {
+        if (method == null) throw new IllegalArgumentException("method must be non-null");
+        this.method = method;
+    }
+
+    /** Default feasible point algorithm */
+    public static final Method FEASIBILITY_METHOD_DEFAULT = Method.SMOOTH_MAX;
+}
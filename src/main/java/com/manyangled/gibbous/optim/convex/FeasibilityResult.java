@@ -0,0 +1,198 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * The result of {@link ConvexOptimizer#feasiblePoint(OptimizationData... optData)}.
+ * <p>
+ * As a {@link org.apache.commons.math3.optim.PointValuePair}, the point is a feasible point (x), or the point "nearest to feasible"
+ * found by the solver, and the value is the maximum f[k](x) over all constraint functions f[k].
+ * If this value is negative, then (x) is feasible.
+ * <p>
+ * The barrier phase I methods of {@link FeasibilityMethod} may also return a certificate of infeasibility:
+ * nonnegative weights lambda[k], summing to 1, such that the weighted sum over lambda[k]f[k](x) is positive
+ * everywhere (subject to any equality constraints), which is impossible if all f[k](x) &lt; 0 can be satisfied.
+ * For linear constraints these are Farkas multipliers. Constraints with non-negligible weight
+ * form the subset of constraints responsible for the infeasibility.
+ * <p>
+ * As a {@link ConvexSolveResult}, the status is {@link SolveStatus#DEADLINE} if a {@link Deadline} stopped
+ * the search, {@link SolveStatus#CANCELLED} if a {@link Cancellation} stopped it, or {@link SolveStatus#HALTED}
+ * if a barrier phase I solve found neither a feasible point nor a certificate, and the work counts
+ * include all inner solves. Duals and the duality gap are not defined.
+ */
+public class FeasibilityResult extends ConvexSolveResult {
+    private static final long serialVersionUID = 1L;
+
+    private final double[] constraintValues;
+    private final double[] certificate;
+    private final double dualBound;
+
+    /**
+     * Construct a feasibility result
+     * @param x the solved point
+     * @param constraintValues the values f[k](x) of each constraint function, in the order they were supplied
+     */
+    public FeasibilityResult(double[] x, double[] constraintValues) {
+        this(x, constraintValues, null, Double.NaN, SolveStatus.CONVERGED, SolveStatistics.NONE);
+    }
+
+    /**
+     * Construct a feasibility result, with a certificate of infeasibility
+     * @param x the solved point
+     * @param constraintValues the values f[k](x) of each constraint function, in the order they were supplied
+     * @param certificate the dual weights lambda[k] for each constraint function
+     * @param dualBound a positive lower bound on the optimal value of the phase I problem
+     */
+    public FeasibilityResult(double[] x, double[] constraintValues, double[] certificate, double dualBound) {
+        this(x, constraintValues, certificate, dualBound, SolveStatus.CONVERGED, SolveStatistics.NONE);
+        if (certificate == null) throw new IllegalArgumentException("certificate must be non-null");
+    }
+
+    // the certificate may be null, in which case the dual bound is ignored
+    FeasibilityResult(
+        double[] x, double[] constraintValues, double[] certificate, double dualBound,
+        SolveStatus status, SolveStatistics statistics) {
+        super(x, max(constraintValues), status, Double.NaN, Double.NaN, null, null, null, null, statistics);
+        if (certificate != null) {
+            if (certificate.length != constraintValues.length)
+                throw new DimensionMismatchException(certificate.length, constraintValues.length);
+            if (!(dualBound > 0.0)) throw new IllegalArgumentException("dual bound must be > 0");
+        }
+        this.constraintValues = constraintValues.clone();
+        this.certificate = (certificate == null) ? null : certificate.clone();
+        this.dualBound = (certificate == null) ? Double.NaN : dualBound;
+    }
+
+    /**
+     * Replace the instance with a data transfer object for serialization,
+     * since the {@link org.apache.commons.math3.util.Pair} base class is not serializable.
+     * @return data transfer object that will be serialized
+     */
+    private Object writeReplace() {
+        return new DataTransferObject(this);
+    }
+
+    /** Internal class used only for serialization. */
+    private static class DataTransferObject implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] point;
+        private final double[] constraintValues;
+        private final double[] certificate;
+        private final double dualBound;
+        private final SolveStatus status;
+        private final SolveStatistics statistics;
+
+        DataTransferObject(FeasibilityResult r) {
+            this.point = r.getPointRef();
+            this.constraintValues = r.constraintValues;
+            this.certificate = r.certificate;
+            this.dualBound = r.dualBound;
+            this.status = r.getStatus();
+            this.statistics = r.getStatistics();
+        }
+
+        /**
+         * Replace the deserialized data transfer object with a {@link FeasibilityResult}.
+         * @return replacement {@link FeasibilityResult}
+         */
+        private Object readResolve() {
+            return new FeasibilityResult(point, constraintValues, certificate, dualBound, status, statistics);
+        }
+    }
+
+    /**
+     * @return true if the solved point satisfies all inequality constraints
+     */
+    public boolean isFeasible() {
+        return getValue() < 0.0;
+    }
+
+    /**
+     * @return the values f[k](x) of each constraint function at the solved point,
+     * in the order the constraints were supplied.
+     */
+    public double[] getConstraintValues() {
+        return constraintValues.clone();
+    }
+
+    /**
+     * @return the indices k of constraints that are not satisfied at the solved point, that is f[k](x) &gt;= 0.
+     * Indices refer to the order in which constraints were supplied.
+     */
+    public int[] getViolatedConstraints() {
+        ArrayList<Integer> v = new ArrayList<Integer>();
+        for (int k = 0; k < constraintValues.length; ++k)
+            if (constraintValues[k] >= 0.0) v.add(k);
+        return toArray(v);
+    }
+
+    /**
+     * @return true if the constraints were proven infeasible, in which case a certificate is available
+     */
+    public boolean isInfeasible() {
+        return certificate != null;
+    }
+
+    /**
+     * @return the dual weights lambda[k] that certify infeasibility, in the order constraints were supplied,
+     * or null if no certificate was established.
+     */
+    public double[] getCertificate() {
+        return (certificate == null) ? null : certificate.clone();
+    }
+
+    /**
+     * @return a positive lower bound on the optimal value of the phase I problem, which
+     * proves infeasibility, or NaN if no certificate was established.
+     */
+    public double getDualBound() {
+        return dualBound;
+    }
+
+    /**
+     * @return the indices k of constraints that carry weight in the infeasibility certificate, that is
+     * lambda[k] &gt;= {@link #CONFLICT_WEIGHT_THRESHOLD} times the largest weight. If no certificate
+     * was established, returns an empty array.
+     */
+    public int[] getConflictingConstraints() {
+        if (certificate == null) return new int[0];
+        double lmax = max(certificate);
+        ArrayList<Integer> v = new ArrayList<Integer>();
+        for (int k = 0; k < certificate.length; ++k)
+            if (certificate[k] >= CONFLICT_WEIGHT_THRESHOLD * lmax) v.add(k);
+        return toArray(v);
+    }
+
+    /** Relative dual weight at which a constraint is considered part of an infeasible subset */
+    public static final double CONFLICT_WEIGHT_THRESHOLD = 1e-2;
+
+    private static int[] toArray(ArrayList<Integer> v) {
+        int[] r = new int[v.size()];
+        for (int j = 0; j < r.length; ++j) r[j] = v.get(j);
+        return r;
+    }
+
+    private static double max(double[] v) {
+        double s = Double.NEGATIVE_INFINITY;
+        for (double y: v) if (s < y) s = y;
+        return s;
+    }
+}
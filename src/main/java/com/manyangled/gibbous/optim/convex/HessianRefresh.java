@@ -0,0 +1,42 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * The Hessian refresh period for {@link QuasiNewtonOptimizer}. Every (period) iterations,
+ * the optimizer evaluates the true Hessian and takes an exact Newton step instead of
+ * a quasi-Newton step. A period of zero disables refreshes, in which case
+ * {@link TwiceDifferentiableFunction#hessian(org.apache.commons.math3.linear.RealVector)}
+ * is never called.
+ */
+public class HessianRefresh implements OptimizationData {
+    /** The refresh period, in iterations, or zero for no refreshes */
+    public final int period;
+
+    /**
+     * Construct a Hessian refresh parameter
+     *
+     * @param period the refresh period in iterations, or zero to disable refreshes. Must be &gt;= 0.
+     */
+    public HessianRefresh(int period) {
+        if (period < 0)
+            throw new IllegalArgumentException("period must be >= 0");
+        this.period = period;
+    }
+
+    /** Default refresh period: no refreshes */
+    public static final int HESSIAN_REFRESH_DEFAULT = 0;
+}
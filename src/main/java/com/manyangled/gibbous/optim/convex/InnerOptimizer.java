@@ -0,0 +1,69 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Selects the optimizer used for inner (centering) solves by {@link BarrierOptimizer}
+ * and {@link ConvexOptimizer#feasiblePoint(OptimizationData... optData)}.
+ * <p>
+ * This parameter should be passed via {@link InnerOptimizationData}. For example:
+ * <pre>
+ * barrier.optimize(
+ *     objective, constraints, initialGuess,
+ *     new InnerOptimizationData(
+ *         new InnerOptimizer(InnerOptimizer.Method.QUASI_NEWTON),
+ *         new QuasiNewtonMemory(20)));
+ * </pre>
+ */
+public class InnerOptimizer implements OptimizationData {
+    /** Available inner optimization methods */
+    public enum Method {
+        /** {@link NewtonOptimizer} */
+        NEWTON,
+        /** {@link QuasiNewtonOptimizer} */
+        QUASI_NEWTON
+    }
+
+    /** The selected inner optimization method */
+    public final Method method;
+
+    /**
+     * Construct an inner optimizer selection
+     * @param method the inner optimization method
+     */
+    public InnerOptimizer(Method method) {
+        if (method == null) throw new IllegalArgumentException("method must be non-null");
+        this.method = method;
+    }
+
+    /**
+     * Create a new instance of the selected optimizer
+     * @return a new optimizer
+     */
+    public ConvexOptimizer newOptimizer() {
+        return newOptimizer(method);
+    }
+
+    static ConvexOptimizer newOptimizer(Method method) {
+        switch (method) {
+            case QUASI_NEWTON: return new QuasiNewtonOptimizer();
+            default: return new NewtonOptimizer();
+        }
+    }
+
+    /** Default inner optimization method */
+    public static final Method INNER_OPTIMIZER_DEFAULT = Method.NEWTON;
+}
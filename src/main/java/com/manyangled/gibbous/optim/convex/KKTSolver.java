@@ -15,6 +15,7 @@ package com.manyangled.gibbous.optim.convex;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
 import org.apache.commons.math3.optim.OptimizationData;
 
 /**
@@ -56,4 +57,32 @@ public abstract class KKTSolver implements OptimizationData {
      * @return solution delta-x with lambda-squared
      */
     public abstract KKTSolution solve(final RealMatrix H, final RealVector g);
+
+    // Solve with (kkts) if non-null. Otherwise solve with the default CholeskySchurKKTSolver,
+    // falling back to SVDSchurKKTSolver when a matrix is not positive definite.
+    static KKTSolution solve(KKTSolver kkts, final RealMatrix H, final RealVector g) {
+        if (kkts != null) return kkts.solve(H, g);
+        try {
+            return CHOLESKY_KKT.solve(H, g);
+        } catch (NonPositiveDefiniteMatrixException e) {
+            return SVD_KKT.solve(H, g);
+        }
+    }
+
+    static KKTSolution solve(
+        KKTSolver kkts,
+        final RealMatrix H,
+        final RealMatrix A, final RealMatrix AT,
+        final RealVector g, final RealVector h) {
+        if (kkts != null) return kkts.solve(H, A, AT, g, h);
+        try {
+            return CHOLESKY_KKT.solve(H, A, AT, g, h);
+        } catch (NonPositiveDefiniteMatrixException e) {
+            return SVD_KKT.solve(H, A, AT, g, h);
+        }
+    }
+
+    // default KKT solvers are stateless, and so can be shared
+    private static final KKTSolver CHOLESKY_KKT = new CholeskySchurKKTSolver();
+    private static final KKTSolver SVD_KKT = new SVDSchurKKTSolver();
 }
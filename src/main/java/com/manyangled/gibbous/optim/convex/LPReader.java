@@ -0,0 +1,392 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.IOException;
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads models in CPLEX LP format into {@link ProblemData}.
+ * See {@link ModelReader} for the form of the converted problem.
+ * <p>
+ * Supported sections are the objective (MINIMIZE or MAXIMIZE, and their aliases), SUBJECT TO, BOUNDS
+ * and END. The objective may contain constants and a quadratic term [ ... ] or [ ... ] / 2, with terms
+ * of the form c x ^ 2 and c x * y. Constraints are linear, and may be ranged, as in
+ * lo &lt;= a.x &lt;= hi. Unnamed constraints are named R1, R2, ... in order.
+ * Bounds have the forms x free, x relop v, v relop x, and lo &lt;= x &lt;= hi, where bound values may be
+ * infinite. Comments begin with a backslash. Names may not contain the characters
+ * '/', '[', ']', '^', '*', ':', '+', '-', '&lt;', '&gt;' or '='.
+ * Non-empty integer sections (GENERALS, BINARIES, SEMI-CONTINUOUS) raise IllegalArgumentException.
+ */
+public class LPReader extends ModelReader {
+    @Override
+    void parse(BufferedReader in, ModelBuilder builder, Map<String, String> metadata) throws IOException {
+        Lexer lex = new Lexer(in);
+        Token t = lex.next();
+        if (t.kind != Token.SECTION) throw error(t.line, "expected an objective section");
+        boolean objective = false;
+        while (t.kind != Token.EOF) {
+            if (t.kind != Token.SECTION) throw error(t.line, "unexpected token: " + t.text);
+            final String s = t.text;
+            if (s.equals(MIN) || s.equals(MAX)) {
+                if (objective) throw error(t.line, "duplicate objective section");
+                objective = true;
+                builder.setMaximize(s.equals(MAX));
+                parseObjective(lex, builder, metadata);
+            } else if (s.equals(ST)) {
+                while (lex.peek(0).kind != Token.SECTION && lex.peek(0).kind != Token.EOF)
+                    parseConstraint(lex, builder);
+            } else if (s.equals(BOUNDS)) {
+                while (lex.peek(0).kind != Token.SECTION && lex.peek(0).kind != Token.EOF)
+                    parseBound(lex, builder);
+            } else if (s.equals(INTEGER)) {
+                Token p = lex.peek(0);
+                if (p.kind != Token.SECTION && p.kind != Token.EOF)
+                    throw error(p.line, "integer variables are not supported");
+            } else {
+                // END
+                return;
+            }
+            t = lex.next();
+        }
+        throw error(t.line, "missing END");
+    }
+
+    private void parseObjective(Lexer lex, ModelBuilder builder, Map<String, String> metadata) throws IOException {
+        if (isLabel(lex)) {
+            metadata.put("objective", lex.next().text);
+            lex.next();
+        }
+        Terms terms = new Terms();
+        while (lex.peek(0).kind != Token.SECTION && lex.peek(0).kind != Token.EOF) {
+            final double s = sign(lex);
+            if (lex.peek(0).is("[")) {
+                parseQuadratic(lex, builder, s);
+            } else {
+                parseTerm(lex, builder, terms, s);
+            }
+        }
+        for (int k = 0; k < terms.size(); ++k) builder.addObjective(terms.cols.get(k), terms.vals.get(k));
+        builder.addConstant(terms.constant);
+    }
+
+    // "[ c x ^ 2 + c x * y ... ]", optionally followed by "/ 2"
+    private void parseQuadratic(Lexer lex, ModelBuilder builder, double s) throws IOException {
+        lex.next();
+        ModelBuilder.IntList qi = new ModelBuilder.IntList();
+        ModelBuilder.IntList qj = new ModelBuilder.IntList();
+        ModelBuilder.DoubleList qv = new ModelBuilder.DoubleList();
+        while (!lex.peek(0).is("]")) {
+            double c = sign(lex) * coefficient(lex);
+            Token x = lex.next();
+            if (x.kind != Token.NAME) throw error(x.line, "expected a variable");
+            Token op = lex.next();
+            int j;
+            if (op.is("^")) {
+                Token p = lex.next();
+                if ((p.kind != Token.NUMBER) || (p.value != 2.0)) throw error(p.line, "expected exponent 2");
+                j = builder.variable(x.text);
+            } else if (op.is("*")) {
+                Token y = lex.next();
+                if (y.kind != Token.NAME) throw error(y.line, "expected a variable");
+                j = builder.variable(y.text);
+            } else {
+                throw error(op.line, "expected a quadratic term");
+            }
+            qi.add(builder.variable(x.text));
+            qj.add(j);
+            qv.add(c);
+        }
+        lex.next();
+        double scale = s;
+        if (lex.peek(0).is("/")) {
+            lex.next();
+            Token d = lex.next();
+            if (d.kind != Token.NUMBER || d.value == 0.0) throw error(d.line, "expected a nonzero divisor");
+            scale /= d.value;
+        }
+        for (int k = 0; k < qv.size(); ++k) builder.addQuadratic(qi.get(k), qj.get(k), scale * qv.get(k));
+    }
+
+    private void parseConstraint(Lexer lex, ModelBuilder builder) throws IOException {
+        final int line = lex.peek(0).line;
+        String name = null;
+        if (isLabel(lex)) {
+            name = lex.next().text;
+            lex.next();
+        }
+        if (name == null) name = "R" + (builder.rows() + 1);
+        // a ranged constraint begins with a constant and a relation
+        double lo = Double.NaN;
+        char rlo = 0;
+        int k = (lex.peek(0).is("+") || lex.peek(0).is("-")) ? 1 : 0;
+        if ((lex.peek(k).kind == Token.NUMBER) && (lex.peek(k + 1).kind == Token.RELATION)) {
+            lo = sign(lex) * lex.next().value;
+            rlo = lex.next().text.charAt(0);
+        }
+        Terms terms = new Terms();
+        while (lex.peek(0).kind != Token.RELATION) {
+            Token p = lex.peek(0);
+            if (p.kind == Token.SECTION || p.kind == Token.EOF) throw error(p.line, "incomplete constraint " + name);
+            if (p.is("[")) throw error(p.line, "quadratic constraints are not supported");
+            parseTerm(lex, builder, terms, sign(lex));
+        }
+        final char rel = lex.next().text.charAt(0);
+        double rhs = sign(lex) * number(lex);
+        rhs -= terms.constant;
+        int i;
+        if (rlo == 0) {
+            i = builder.row(name, rel);
+            builder.setRhs(i, rhs);
+        } else {
+            // lo <= a.x <= hi, or hi >= a.x >= lo
+            if ((rlo != rel) || (rel == 'E')) throw error(line, "invalid ranged constraint " + name);
+            lo -= terms.constant;
+            final double l = (rel == 'L') ? lo : rhs;
+            final double u = (rel == 'L') ? rhs : lo;
+            if (l > u) throw error(line, "empty range in constraint " + name);
+            i = builder.row(name, 'L');
+            builder.setRhs(i, u);
+            builder.setRange(i, u - l);
+        }
+        for (int q = 0; q < terms.size(); ++q) builder.addCoefficient(i, terms.cols.get(q), terms.vals.get(q));
+    }
+
+    private void parseBound(Lexer lex, ModelBuilder builder) throws IOException {
+        Token t = lex.peek(0);
+        if (t.kind == Token.NAME) {
+            final int j = builder.variable(lex.next().text);
+            Token r = lex.next();
+            if ((r.kind == Token.NAME) && r.text.equalsIgnoreCase("free")) {
+                builder.setLower(j, Double.NEGATIVE_INFINITY);
+                builder.setUpper(j, Double.POSITIVE_INFINITY);
+                return;
+            }
+            if (r.kind != Token.RELATION) throw error(r.line, "expected a bound relation");
+            bound(builder, j, r.text.charAt(0), sign(lex) * number(lex));
+            return;
+        }
+        // v relop x [relop v]
+        final double v = sign(lex) * number(lex);
+        Token r = lex.next();
+        if (r.kind != Token.RELATION) throw error(r.line, "expected a bound relation");
+        Token x = lex.next();
+        if (x.kind != Token.NAME) throw error(x.line, "expected a variable");
+        final int j = builder.variable(x.text);
+        final char rel = r.text.charAt(0);
+        // v <= x is x >= v
+        bound(builder, j, (rel == 'L') ? 'G' : ((rel == 'G') ? 'L' : 'E'), v);
+        if (lex.peek(0).kind == Token.RELATION) {
+            Token r2 = lex.next();
+            bound(builder, j, r2.text.charAt(0), sign(lex) * number(lex));
+        }
+    }
+
+    private static void bound(ModelBuilder builder, int j, char rel, double v) {
+        if (rel != 'L') builder.setLower(j, v);
+        if (rel != 'G') builder.setUpper(j, v);
+    }
+
+    // [coefficient] (variable | constant), following a sign (s)
+    private void parseTerm(Lexer lex, ModelBuilder builder, Terms terms, double s) throws IOException {
+        Token t = lex.next();
+        if (t.kind == Token.NUMBER) {
+            Token p = lex.peek(0);
+            if (p.kind == Token.NAME) {
+                terms.add(builder.variable(lex.next().text), s * t.value);
+            } else {
+                terms.constant += s * t.value;
+            }
+        } else if (t.kind == Token.NAME) {
+            terms.add(builder.variable(t.text), s);
+        } else {
+            throw error(t.line, "unexpected token: " + t.text);
+        }
+    }
+
+    // a sequence of signs, which may be empty
+    private static double sign(Lexer lex) throws IOException {
+        double s = 1.0;
+        while (lex.peek(0).is("+") || lex.peek(0).is("-")) {
+            if (lex.next().is("-")) s = -s;
+        }
+        return s;
+    }
+
+    private static double coefficient(Lexer lex) throws IOException {
+        return (lex.peek(0).kind == Token.NUMBER) ? lex.next().value : 1.0;
+    }
+
+    private static double number(Lexer lex) throws IOException {
+        Token t = lex.next();
+        if (t.kind != Token.NUMBER) throw error(t.line, "expected a number");
+        return t.value;
+    }
+
+    private static boolean isLabel(Lexer lex) throws IOException {
+        return (lex.peek(0).kind == Token.NAME) && lex.peek(1).is(":");
+    }
+
+    // the linear terms and constant of one expression
+    private static final class Terms {
+        final ModelBuilder.IntList cols = new ModelBuilder.IntList();
+        final ModelBuilder.DoubleList vals = new ModelBuilder.DoubleList();
+        double constant = 0.0;
+
+        void add(int j, double v) {
+            cols.add(j);
+            vals.add(v);
+        }
+
+        int size() { return cols.size(); }
+    }
+
+    private static final class Token {
+        static final int NUMBER = 0;
+        static final int NAME = 1;
+        static final int OPERATOR = 2;
+        static final int RELATION = 3;
+        static final int SECTION = 4;
+        static final int EOF = 5;
+
+        final int kind;
+        final String text;
+        final double value;
+        final int line;
+
+        Token(int kind, String text, double value, int line) {
+            this.kind = kind;
+            this.text = text;
+            this.value = value;
+            this.line = line;
+        }
+
+        boolean is(String op) {
+            return (kind == OPERATOR) && text.equals(op);
+        }
+    }
+
+    // splits lines into tokens, with lookahead. Section keywords are recognized at the start of a line.
+    private static final class Lexer {
+        private final BufferedReader in;
+        private final ArrayList<Token> pending = new ArrayList<Token>();
+        private String line = "";
+        private int pos = 0;
+        private int lineNo = 0;
+        private boolean eof = false;
+
+        Lexer(BufferedReader in) {
+            this.in = in;
+        }
+
+        Token next() throws IOException {
+            Token t = peek(0);
+            pending.remove(0);
+            return t;
+        }
+
+        Token peek(int k) throws IOException {
+            while (pending.size() <= k) pending.add(scan());
+            return pending.get(k);
+        }
+
+        private Token scan() throws IOException {
+            while (true) {
+                if (eof) return new Token(Token.EOF, "", 0.0, lineNo);
+                while ((pos < line.length()) && Character.isWhitespace(line.charAt(pos))) ++pos;
+                if (pos < line.length()) break;
+                String l = in.readLine();
+                ++lineNo;
+                if (l == null) {
+                    eof = true;
+                    continue;
+                }
+                final int c = l.indexOf('\\');
+                line = (c >= 0) ? l.substring(0, c) : l;
+                pos = 0;
+                Matcher m = SECTION_PATTERN.matcher(line);
+                if (m.lookingAt()) {
+                    pos = m.end();
+                    return new Token(Token.SECTION, section(m), 0.0, lineNo);
+                }
+            }
+            final char c = line.charAt(pos);
+            final int start = pos;
+            if (Character.isDigit(c) || ((c == '.') && (pos + 1 < line.length()) && Character.isDigit(line.charAt(pos + 1)))) {
+                Matcher m = NUMBER_PATTERN.matcher(line);
+                m.region(pos, line.length());
+                m.lookingAt();
+                pos = m.end();
+                final String s = line.substring(start, pos);
+                return new Token(Token.NUMBER, s, number(s, lineNo), lineNo);
+            }
+            if ((c == '<') || (c == '>') || (c == '=')) {
+                ++pos;
+                if ((pos < line.length()) && ((line.charAt(pos) == '=') || (line.charAt(pos) == '<') || (line.charAt(pos) == '>'))) ++pos;
+                final String s = line.substring(start, pos);
+                final String rel = RELATIONS.get(s);
+                if (rel == null) throw error(lineNo, "invalid relation: " + s);
+                return new Token(Token.RELATION, rel, 0.0, lineNo);
+            }
+            if (OPERATORS.indexOf(c) >= 0) {
+                ++pos;
+                return new Token(Token.OPERATOR, String.valueOf(c), 0.0, lineNo);
+            }
+            while ((pos < line.length()) && !Character.isWhitespace(line.charAt(pos)) &&
+                   (DELIMITERS.indexOf(line.charAt(pos)) < 0)) ++pos;
+            final String s = line.substring(start, pos);
+            if (s.equalsIgnoreCase("inf") || s.equalsIgnoreCase("infinity"))
+                return new Token(Token.NUMBER, s, Double.POSITIVE_INFINITY, lineNo);
+            return new Token(Token.NAME, s, 0.0, lineNo);
+        }
+
+        private static String section(Matcher m) {
+            for (int g = 1; g <= SECTIONS.length; ++g)
+                if (m.group(g) != null) return SECTIONS[g - 1];
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final String MIN = "MIN";
+    private static final String MAX = "MAX";
+    private static final String ST = "ST";
+    private static final String BOUNDS = "BOUNDS";
+    private static final String INTEGER = "INTEGER";
+    private static final String END = "END";
+    // in the order of the groups of SECTION_PATTERN
+    private static final String[] SECTIONS = { MIN, MAX, ST, BOUNDS, INTEGER, END };
+
+    private static final Pattern SECTION_PATTERN = Pattern.compile(
+        "\\s*(?:(minimi[sz]e|minimum|min)|(maximi[sz]e|maximum|max)|(subject\\s+to|such\\s+that|s\\.t\\.|st\\.?)|" +
+        "(bounds?)|(generals?|gen|integers?|binary|binaries|bin|semi-continuous|semis?)|(end))(?=\\s|$)",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d*\\.?\\d*(?:[eE][+-]?\\d+)?");
+    private static final String OPERATORS = "+-*^[]/:";
+    private static final String DELIMITERS = OPERATORS + "<>=";
+    private static final Map<String, String> RELATIONS = new HashMap<String, String>();
+    static {
+        RELATIONS.put("<", "L");
+        RELATIONS.put("<=", "L");
+        RELATIONS.put("=<", "L");
+        RELATIONS.put(">", "G");
+        RELATIONS.put(">=", "G");
+        RELATIONS.put("=>", "G");
+        RELATIONS.put("=", "E");
+    }
+}
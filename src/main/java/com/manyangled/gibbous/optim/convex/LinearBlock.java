@@ -0,0 +1,131 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
+/**
+ * A block of linear inequality constraints Ax &lt; b, evaluated as a unit in a log barrier:
+ * the barrier -sum(log(s[i])) over slacks s = b - Ax has gradient (A^T)(1/s)
+ * and Hessian (A^T)diag(1/s^2)A.
+ * <p>
+ * {@link CSRRealMatrix} constraints are evaluated with sparse kernels, and any other
+ * {@link SparseRealMatrix} is first compressed to one. Other matrices are evaluated with dense row kernels.
+ */
+final class LinearBlock {
+    private final double[] b;
+    private final int m;
+    private final int n;
+    private final CSRRealMatrix csr;
+    private final double[][] rows;
+
+    LinearBlock(RealMatrix A, RealVector b) {
+        this.b = b.toArray();
+        this.m = A.getRowDimension();
+        this.n = A.getColumnDimension();
+        if (A instanceof SparseRealMatrix) {
+            this.csr = (A instanceof CSRRealMatrix) ? (CSRRealMatrix)A : new CSRRealMatrix(A);
+            this.rows = null;
+        } else {
+            this.csr = null;
+            this.rows = (A instanceof Array2DRowRealMatrix) ? ((Array2DRowRealMatrix)A).getDataRef() : A.getData();
+        }
+    }
+
+    /** @return the number of constraints */
+    int size() { return m; }
+
+    /** @return the dimension of the constraint domain */
+    int dim() { return n; }
+
+    private double[] operate(final double[] x) {
+        if (csr != null) return csr.operate(x);
+        double[] r = new double[m];
+        for (int i = 0; i < m; ++i) r[i] = dot(rows[i], x, n);
+        return r;
+    }
+
+    /** @return the slacks b - Ax */
+    double[] slacks(final double[] x) {
+        double[] s = operate(x);
+        for (int i = 0; i < m; ++i) s[i] = b[i] - s[i];
+        return s;
+    }
+
+    /** @return -sum(log(b - Ax)), or +inf if any slack is not positive */
+    double barrierValue(final double[] x) {
+        double[] s = slacks(x);
+        double v = 0.0;
+        for (int i = 0; i < m; ++i) {
+            if (!(s[i] > 0.0)) return Double.POSITIVE_INFINITY;
+            v -= Math.log(s[i]);
+        }
+        return v;
+    }
+
+    /** g = g + (A^T)(1/s) */
+    void addBarrierGradient(final double[] x, final double[] g) {
+        double[] s = slacks(x);
+        for (int i = 0; i < m; ++i) s[i] = 1.0 / s[i];
+        if (csr != null) {
+            axpy(1.0, csr.preMultiply(s), g, n);
+        } else {
+            for (int i = 0; i < m; ++i) axpy(s[i], rows[i], g, n);
+        }
+    }
+
+    /** H = H + (A^T)diag(1/s^2)A */
+    void addBarrierHessian(final double[] x, final double[][] H) {
+        double[] s = slacks(x);
+        for (int i = 0; i < m; ++i) s[i] = 1.0 / (s[i] * s[i]);
+        if (csr != null) {
+            csr.addWeightedGram(s, H);
+        } else {
+            syrk(s, rows, m, H, n);
+        }
+    }
+
+    /** H = H + (A^T)diag(w)A, where rows with zero weight are skipped */
+    void addWeightedGram(final double[] w, final double[][] H) {
+        if (csr != null) {
+            csr.addWeightedGram(w, H);
+            return;
+        }
+        int k = 0;
+        for (int i = 0; i < m; ++i) if (w[i] != 0.0) ++k;
+        double[] wk = new double[k];
+        double[][] gk = new double[k][];
+        k = 0;
+        for (int i = 0; i < m; ++i) {
+            if (w[i] == 0.0) continue;
+            wk[k] = w[i];
+            gk[k++] = rows[i];
+        }
+        syrk(wk, gk, k, H, n);
+    }
+
+    /** @return the largest step (a) such that x + (a)dx satisfies all constraints */
+    double maxStep(final double[] x, final double[] dx) {
+        double[] s = slacks(x);
+        double[] ad = operate(dx);
+        double a = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < m; ++i) if (ad[i] > 0.0) a = Math.min(a, s[i] / ad[i]);
+        return a;
+    }
+}
@@ -17,11 +17,16 @@ import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.SparseRealMatrix;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 
 /**
  * Represents a set of linear equality constraints given as Ax = b.
+ * <p>
+ * A may be a {@link CSRRealMatrix}, in which case products with A and its transpose are sparse.
+ * Any other {@link SparseRealMatrix}, such as an
+ * {@link org.apache.commons.math3.linear.OpenMapRealMatrix}, is stored as a {@link CSRRealMatrix}.
  */
 public class LinearEqualityConstraint implements OptimizationData {
     public final RealMatrix A;
@@ -37,7 +42,7 @@ public class LinearEqualityConstraint implements OptimizationData {
         int k = A.getRowDimension();
         if (b.getDimension() != k)
             throw new DimensionMismatchException(b.getDimension(), k);
-        this.A = A;
+        this.A = ((A instanceof SparseRealMatrix) && !(A instanceof CSRRealMatrix)) ? new CSRRealMatrix(A) : A;
         this.b = b;
     }
 
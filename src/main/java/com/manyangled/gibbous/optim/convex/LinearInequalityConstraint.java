@@ -13,19 +13,29 @@ limitations under the License.
 
 package com.manyangled.gibbous.optim.convex;
 
+import java.util.ArrayList;
+
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.SparseRealMatrix;
 import org.apache.commons.math3.optim.OptimizationData;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 
 /**
  * A set of linear inequality constraints expressed as Ax &lt; b
+ * <p>
+ * A may be a {@link CSRRealMatrix}, in which case {@link BarrierOptimizer} evaluates the constraints
+ * with sparse kernels, and the individual constraint functions have sparse coefficient vectors.
+ * Any other {@link SparseRealMatrix}, such as an
+ * {@link org.apache.commons.math3.linear.OpenMapRealMatrix}, is stored as a {@link CSRRealMatrix}.
  */
 public class LinearInequalityConstraint implements OptimizationData {
-    /** The corresponding set of individual linear constraint functions */
-    public final LinearFunction[] lcf;
+    /** The matrix of linear coefficients */
+    public final RealMatrix A;
+    /** The vector of constants */
+    public final RealVector b;
 
     /**
      * Construct a set of linear inequality constraints from Ax &lt; B
@@ -36,9 +46,8 @@ public class LinearInequalityConstraint implements OptimizationData {
         int k = A.getRowDimension();
         if (b.getDimension() != k)
             throw new DimensionMismatchException(b.getDimension(), k);
-        this.lcf = new LinearFunction[k];
-        for (int j = 0; j < k; ++j)
-            lcf[j] = new LinearFunction(A.getRowVector(j), -b.getEntry(j));
+        this.A = ((A instanceof SparseRealMatrix) && !(A instanceof CSRRealMatrix)) ? new CSRRealMatrix(A) : A;
+        this.b = b.copy();
     }
 
     /**
@@ -49,4 +58,31 @@ public class LinearInequalityConstraint implements OptimizationData {
     public LinearInequalityConstraint(final double[][] A, final double[] b) {
         this(new Array2DRowRealMatrix(A), new ArrayRealVector(b));
     }
+
+    /**
+     * Express the constraints as individual linear constraint functions, A[j].x - b[j] &lt; 0.
+     * The functions are built on each call, and are not held by this object.
+     * @return the list of constraint functions
+     */
+    public ArrayList<TwiceDifferentiableFunction> constraintFunctions() {
+        final int k = A.getRowDimension();
+        ArrayList<TwiceDifferentiableFunction> fk = new ArrayList<TwiceDifferentiableFunction>(k);
+        for (int j = 0; j < k; ++j)
+            fk.add(new LinearFunction(A.getRowVector(j), -b.getEntry(j)));
+        return fk;
+    }
+
+    /**
+     * The individual linear constraint functions, A[j].x - b[j] &lt; 0, built on each call.
+     * @return the array of constraint functions
+     * @deprecated the constraint functions are no longer held by this object; use {@link #constraintFunctions()}
+     */
+    @Deprecated
+    public LinearFunction[] lcf() {
+        final int k = A.getRowDimension();
+        LinearFunction[] lcf = new LinearFunction[k];
+        for (int j = 0; j < k; ++j)
+            lcf[j] = new LinearFunction(A.getRowVector(j), -b.getEntry(j));
+        return lcf;
+    }
 }
@@ -23,17 +23,34 @@ import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
 /**
  * Given a convex objective function f0 and convex constraints f[k],
  * computes the log barrier function: <p>
  * b(x) = (t)f0(x) - sum(log(f[k](x))) <p>
  * returns +inf if any f[k](x) &gt;= 0
+ * <p>
+ * Bounds given by a {@link BoxConstraint} contribute -sum(log(u[j] - x[j]) + log(x[j] - l[j])),
+ * with a diagonal Hessian.
+ * <p>
+ * When created by {@link BarrierOptimizer} with {@link ConstraintScreening}, the Hessian contributions of
+ * constraints far from active are frozen between refreshes, and the function is not safe for concurrent use.
  */
 public class LogBarrierFunction extends TwiceDifferentiableFunction {
     private final double t;
     private final TwiceDifferentiableFunction f0;
     private final TwiceDifferentiableFunction[] f;
+    private final LinearBlock[] blocks;
+    private final BoxConstraint box;
     private final int n;
+    private final ConstraintScreening screening;
+    // the Hessian contributions of screened constraints, which constraints are screened,
+    // and the number of Hessian evaluations since the contributions were computed
+    private double[][] screenedH;
+    private boolean[] screenedF;
+    private boolean[][] screenedRows;
+    private int sinceRefresh;
 
     /**
      * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x)))
@@ -42,14 +59,57 @@ public class LogBarrierFunction extends TwiceDifferentiableFunction {
      * @param f a list of convex constraint functions
      */
     public LogBarrierFunction(double t, TwiceDifferentiableFunction f0, TwiceDifferentiableFunction[] f) {
+        this(t, f0, f, null);
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x))), including barrier terms for bounds
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param f a list of convex constraint functions
+     * @param box bound constraints, or null if there are none
+     */
+    public LogBarrierFunction(
+        double t,
+        TwiceDifferentiableFunction f0,
+        TwiceDifferentiableFunction[] f,
+        BoxConstraint box) {
+        this(t, f0, f, new LinearBlock[0], box);
+    }
+
+    // linear inequality constraints may also be given as blocks, which are evaluated with matrix kernels
+    LogBarrierFunction(
+        double t,
+        TwiceDifferentiableFunction f0,
+        TwiceDifferentiableFunction[] f,
+        LinearBlock[] blocks,
+        BoxConstraint box) {
+        this(t, f0, f, blocks, box, null);
+    }
+
+    // screening, if non-null, freezes the Hessian contributions of constraints that are far from active
+    LogBarrierFunction(
+        double t,
+        TwiceDifferentiableFunction f0,
+        TwiceDifferentiableFunction[] f,
+        LinearBlock[] blocks,
+        BoxConstraint box,
+        ConstraintScreening screening) {
         if (t <= 0.0) throw new IllegalArgumentException("t must be > 0");
         this.t = t;
         this.f0 = f0;
         this.n = f0.dim();
         this.f = f;
+        this.blocks = blocks;
+        this.box = box;
+        this.screening = screening;
         for (TwiceDifferentiableFunction fi: f) {
             if (fi.dim() != n) throw new DimensionMismatchException(fi.dim(), n);
         }
+        for (LinearBlock lb: blocks) {
+            if (lb.dim() != n) throw new DimensionMismatchException(lb.dim(), n);
+        }
+        if ((box != null) && (box.dim() != n)) throw new DimensionMismatchException(box.dim(), n);
     }
 
     /**
@@ -59,7 +119,22 @@ public class LogBarrierFunction extends TwiceDifferentiableFunction {
      * @param f a list of convex constraint functions
      */
     public LogBarrierFunction(double t, TwiceDifferentiableFunction f0, Collection<TwiceDifferentiableFunction> f) {
-        this(t, f0, f.toArray(new TwiceDifferentiableFunction[0]));
+        this(t, f0, f.toArray(new TwiceDifferentiableFunction[0]), null);
+    }
+
+    /**
+     * construct a log-barrier function b(x) = (t)f0(x) - sum(log(f[k](x))), including barrier terms for bounds
+     * @param t multiplier constant for f0, must be &gt; 0
+     * @param f0 a convex objective function
+     * @param f a list of convex constraint functions
+     * @param box bound constraints, or null if there are none
+     */
+    public LogBarrierFunction(
+        double t,
+        TwiceDifferentiableFunction f0,
+        Collection<TwiceDifferentiableFunction> f,
+        BoxConstraint box) {
+        this(t, f0, f.toArray(new TwiceDifferentiableFunction[0]), box);
     }
 
     @Override
@@ -69,7 +144,17 @@ public class LogBarrierFunction extends TwiceDifferentiableFunction {
 
     @Override
     public double value(final RealVector x) {
-        double v = t * f0.value(x);
+        double v = 0.0;
+        if (box != null) {
+            // check the bounds first, since f0 may not be defined outside them
+            v = box.barrierValue(data(x));
+            if (v == Double.POSITIVE_INFINITY) return v;
+        }
+        for (LinearBlock lb: blocks) {
+            v += lb.barrierValue(data(x));
+            if (v == Double.POSITIVE_INFINITY) return v;
+        }
+        v += t * f0.value(x);
         for (TwiceDifferentiableFunction fi: f) {
             double ti = fi.value(x);
             if (ti >= 0.0) {
@@ -83,32 +168,125 @@ public class LogBarrierFunction extends TwiceDifferentiableFunction {
     @Override
     public RealVector gradient(final RealVector x) {
         // g should be dense, due to contributions of barrier functions
-        RealVector g = new ArrayRealVector(f0.gradient(x).toArray(), false);
-        g.mapMultiplyToSelf(t);
+        double[] g = f0.gradient(x).toArray();
+        scal(t, g, n);
         for (TwiceDifferentiableFunction fi: f) {
             double zi = -1.0 / fi.value(x);
-            g.combineToSelf(1.0, zi, fi.gradient(x));
+            axpy(zi, data(fi.gradient(x)), g, n);
         }
-        return g;
+        for (LinearBlock lb: blocks) lb.addBarrierGradient(data(x), g);
+        if (box != null) box.addBarrierGradient(data(x), g);
+        return new ArrayRealVector(g, false);
     }
 
     @Override
     public RealMatrix hessian(final RealVector x) {
+        if (screening != null) return screenedHessian(x);
         // h should be dense, due to contributions of barrier functions
-        RealMatrix h = new Array2DRowRealMatrix(f0.hessian(x).getData(), false);
-        for (int j = 0; j < n; ++j)
-            for (int k = 0; k < n; ++k)
-                h.multiplyEntry(j, k, t);
-        for (TwiceDifferentiableFunction fi: f) {
+        double[][] h = f0.hessian(x).getData();
+        for (int j = 0; j < n; ++j) scal(t, h[j], n);
+        // gradient terms are accumulated as a single rank-k update
+        final int m = f.length;
+        double[] w = new double[m];
+        double[][] g = new double[m][];
+        for (int k = 0; k < m; ++k) {
+            TwiceDifferentiableFunction fi = f[k];
             double vi = fi.value(x);
-            RealVector gi = fi.gradient(x);
-            RealMatrix hi = fi.hessian(x);
-            for (int j = 0; j < n; ++j) {
-                for (int k = 0; k < n; ++k) {
-                    h.addToEntry(j, k, (gi.getEntry(j)*gi.getEntry(k)/(vi*vi)) - hi.getEntry(j, k)/vi);
-                }
+            w[k] = 1.0 / (vi * vi);
+            g[k] = data(fi.gradient(x));
+            // the Hessian of a linear function is zero, so skip it
+            if (!(fi instanceof LinearFunction)) addScaled(-1.0 / vi, fi.hessian(x), h, n);
+        }
+        syrk(w, g, m, h, n);
+        for (LinearBlock lb: blocks) lb.addBarrierHessian(data(x), h);
+        if (box != null) box.addBarrierHessian(data(x), h);
+        return new Array2DRowRealMatrix(h, false);
+    }
+
+    private RealMatrix screenedHessian(final RealVector x) {
+        final double[] xd = data(x);
+        double[][] h = f0.hessian(x).getData();
+        for (int j = 0; j < n; ++j) scal(t, h[j], n);
+        // values and slacks are needed for all constraints, to check whether the screened set is still valid
+        double[] vf = new double[f.length];
+        for (int k = 0; k < f.length; ++k) vf[k] = f[k].value(x);
+        double[][] s = new double[blocks.length][];
+        for (int j = 0; j < blocks.length; ++j) s[j] = blocks[j].slacks(xd);
+        if (screeningExpired(vf, s)) {
+            screenedF = new boolean[f.length];
+            for (int k = 0; k < f.length; ++k) screenedF[k] = screening.screened(t, -vf[k]);
+            screenedRows = new boolean[blocks.length][];
+            for (int j = 0; j < blocks.length; ++j) {
+                screenedRows[j] = new boolean[s[j].length];
+                for (int i = 0; i < s[j].length; ++i) screenedRows[j][i] = screening.screened(t, s[j][i]);
             }
+            screenedH = new double[n][n];
+            addHessians(x, vf, s, true, screenedH);
+            sinceRefresh = 0;
+        }
+        ++sinceRefresh;
+        for (int j = 0; j < n; ++j) axpy(1.0, screenedH[j], h[j], n);
+        addHessians(x, vf, s, false, h);
+        if (box != null) box.addBarrierHessian(xd, h);
+        return new Array2DRowRealMatrix(h, false);
+    }
+
+    // true if screened contributions must be recomputed, because they are stale, or because
+    // a screened constraint has moved toward its boundary
+    private boolean screeningExpired(final double[] vf, final double[][] s) {
+        if ((screenedH == null) || (sinceRefresh >= screening.refreshInterval)) return true;
+        for (int k = 0; k < vf.length; ++k)
+            if (screenedF[k] && !screening.screened(t, -vf[k])) return true;
+        for (int j = 0; j < s.length; ++j) {
+            final boolean[] sr = screenedRows[j];
+            final double[] sj = s[j];
+            for (int i = 0; i < sj.length; ++i) if (sr[i] && !screening.screened(t, sj[i])) return true;
+        }
+        return false;
+    }
+
+    // h = h + the Hessian contributions of the constraints that are screened, or not screened
+    private void addHessians(
+        final RealVector x, final double[] vf, final double[][] s, final boolean screened, final double[][] h) {
+        int m = 0;
+        for (boolean sf: screenedF) if (sf == screened) ++m;
+        double[] w = new double[m];
+        double[][] g = new double[m][];
+        m = 0;
+        for (int k = 0; k < f.length; ++k) {
+            if (screenedF[k] != screened) continue;
+            TwiceDifferentiableFunction fi = f[k];
+            final double vi = vf[k];
+            w[m] = 1.0 / (vi * vi);
+            g[m++] = data(fi.gradient(x));
+            if (!(fi instanceof LinearFunction)) addScaled(-1.0 / vi, fi.hessian(x), h, n);
+        }
+        syrk(w, g, m, h, n);
+        for (int j = 0; j < blocks.length; ++j) {
+            final boolean[] sr = screenedRows[j];
+            final double[] sj = s[j];
+            double[] wj = new double[sj.length];
+            for (int i = 0; i < sj.length; ++i) if (sr[i] == screened) wj[i] = 1.0 / (sj[i] * sj[i]);
+            blocks[j].addWeightedGram(wj, h);
+        }
+    }
+
+    /**
+     * The largest step to the boundary of the bounds and linear constraints.
+     * Steps are not limited by nonlinear constraints, whose boundaries are found by backtracking.
+     */
+    @Override
+    public double maxStep(final RealVector x, final RealVector dx) {
+        final double[] xd = data(x);
+        final double[] dxd = data(dx);
+        double a = (box != null) ? box.maxStep(xd, dxd) : Double.POSITIVE_INFINITY;
+        for (LinearBlock lb: blocks) a = Math.min(a, lb.maxStep(xd, dxd));
+        for (TwiceDifferentiableFunction fi: f) {
+            if (!(fi instanceof LinearFunction)) continue;
+            // f(x + (a)dx) = f(x) + (a)(grad.dx) reaches zero at a = -f(x)/(grad.dx)
+            final double gd = dot(data(fi.gradient(x)), dxd, n);
+            if (gd > 0.0) a = Math.min(a, -fi.value(x) / gd);
         }
-        return h;
+        return a;
     }
 }
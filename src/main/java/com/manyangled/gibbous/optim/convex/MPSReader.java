@@ -0,0 +1,210 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.IOException;
+import java.io.BufferedReader;
+import java.util.Map;
+
+/**
+ * Reads models in MPS format, fixed or free, into {@link ProblemData}.
+ * See {@link ModelReader} for the form of the converted problem.
+ * <p>
+ * Supported sections are NAME, OBJSENSE, ROWS, COLUMNS, RHS, RANGES, BOUNDS and ENDATA, with quadratic
+ * objective terms in QUADOBJ (upper triangle) or QMATRIX and QSECTION (full matrix) sections.
+ * Fields are separated by whitespace, so names may not contain spaces. The first N row is the objective,
+ * and a right-hand side on the objective row is the negated objective constant. Only the first
+ * RHS, RANGES and BOUNDS vector is used. Bound types UP, LO, FX, FR, MI and PL are supported; following
+ * common practice, an UP bound below zero on a variable whose lower bound is zero sets the lower bound
+ * to negative infinity. Integer markers and bound types BV, LI, UI and SC raise IllegalArgumentException.
+ */
+public class MPSReader extends ModelReader {
+    private enum Section { NONE, ROWS, COLUMNS, RHS, RANGES, BOUNDS, QUADOBJ, QMATRIX, OBJSENSE, END }
+
+    @Override
+    void parse(BufferedReader in, ModelBuilder builder, Map<String, String> metadata) throws IOException {
+        Section section = Section.NONE;
+        String objective = null;
+        String rhsSet = null;
+        String rangeSet = null;
+        String boundSet = null;
+        int lineNo = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            ++lineNo;
+            if (line.isEmpty() || (line.charAt(0) == '*')) continue;
+            String[] f = line.trim().split("\\s+");
+            if (f[0].isEmpty()) continue;
+            if (!Character.isWhitespace(line.charAt(0))) {
+                // section header
+                final String h = f[0].toUpperCase();
+                if (h.equals("NAME")) {
+                    if (f.length > 1) metadata.put("name", f[1]);
+                    section = Section.NONE;
+                } else if (h.equals("OBJSENSE")) {
+                    section = Section.OBJSENSE;
+                    if (f.length > 1) objSense(builder, f[1], lineNo);
+                } else if (h.equals("ROWS")) {
+                    section = Section.ROWS;
+                } else if (h.equals("COLUMNS")) {
+                    section = Section.COLUMNS;
+                } else if (h.equals("RHS")) {
+                    section = Section.RHS;
+                } else if (h.equals("RANGES")) {
+                    section = Section.RANGES;
+                } else if (h.equals("BOUNDS")) {
+                    section = Section.BOUNDS;
+                } else if (h.equals("QUADOBJ")) {
+                    section = Section.QUADOBJ;
+                } else if (h.equals("QMATRIX") || h.equals("QSECTION")) {
+                    if (h.equals("QSECTION") && (f.length > 1) && !f[1].equals(objective))
+                        throw error(lineNo, "quadratic constraints are not supported");
+                    section = Section.QMATRIX;
+                } else if (h.equals("ENDATA")) {
+                    section = Section.END;
+                    break;
+                } else {
+                    throw error(lineNo, "unsupported section: " + f[0]);
+                }
+                continue;
+            }
+            switch (section) {
+            case OBJSENSE:
+                objSense(builder, f[0], lineNo);
+                break;
+            case ROWS: {
+                if (f.length != 2) throw error(lineNo, "expected row type and name");
+                final char s = Character.toUpperCase(f[0].charAt(0));
+                if ((f[0].length() != 1) || ("LGEN".indexOf(s) < 0)) throw error(lineNo, "invalid row type: " + f[0]);
+                if ((s == 'N') && (objective == null)) {
+                    objective = f[1];
+                } else if (!f[1].equals(objective)) {
+                    builder.row(f[1], s);
+                }
+                break;
+            }
+            case COLUMNS: {
+                if ((f.length >= 3) && f[1].equals("'MARKER'"))
+                    throw error(lineNo, "integer variables are not supported");
+                if ((f.length != 3) && (f.length != 5)) throw error(lineNo, "expected column entries");
+                final int j = builder.variable(f[0]);
+                for (int k = 1; k < f.length; k += 2) {
+                    final double v = number(f[k + 1], lineNo);
+                    if (f[k].equals(objective)) {
+                        builder.addObjective(j, v);
+                    } else {
+                        builder.addCoefficient(rowOf(builder, f[k], lineNo), j, v);
+                    }
+                }
+                break;
+            }
+            case RHS:
+            case RANGES: {
+                // the vector name is optional in free MPS
+                final int b = f.length % 2;
+                if (f.length < 2 || f.length > 5) throw error(lineNo, "expected row values");
+                if (b == 1) {
+                    if (section == Section.RHS) {
+                        if (rhsSet == null) rhsSet = f[0];
+                        if (!rhsSet.equals(f[0])) break;
+                    } else {
+                        if (rangeSet == null) rangeSet = f[0];
+                        if (!rangeSet.equals(f[0])) break;
+                    }
+                }
+                for (int k = b; k < f.length; k += 2) {
+                    final double v = number(f[k + 1], lineNo);
+                    if (f[k].equals(objective)) {
+                        if (section == Section.RANGES) throw error(lineNo, "range on objective row");
+                        builder.addConstant(-v);
+                    } else if (section == Section.RHS) {
+                        builder.setRhs(rowOf(builder, f[k], lineNo), v);
+                    } else {
+                        builder.setRange(rowOf(builder, f[k], lineNo), v);
+                    }
+                }
+                break;
+            }
+            case BOUNDS: {
+                final String type = f[0].toUpperCase();
+                final boolean valued = !(type.equals("FR") || type.equals("MI") || type.equals("PL") || type.equals("BV"));
+                final int nf = valued ? 3 : 2;
+                if ((f.length != nf) && (f.length != nf + 1)) throw error(lineNo, "expected bound fields");
+                if (f.length == nf + 1) {
+                    if (boundSet == null) boundSet = f[1];
+                    if (!boundSet.equals(f[1])) break;
+                }
+                final String col = f[f.length - nf + 1];
+                final int j = builder.findVariable(col);
+                if (j < 0) throw error(lineNo, "unknown column: " + col);
+                final double v = valued ? number(f[f.length - 1], lineNo) : 0.0;
+                if (type.equals("UP")) {
+                    if ((v < 0.0) && (builder.getLower(j) == 0.0)) builder.setLower(j, Double.NEGATIVE_INFINITY);
+                    builder.setUpper(j, v);
+                } else if (type.equals("LO")) {
+                    builder.setLower(j, v);
+                } else if (type.equals("FX")) {
+                    builder.setLower(j, v);
+                    builder.setUpper(j, v);
+                } else if (type.equals("FR")) {
+                    builder.setLower(j, Double.NEGATIVE_INFINITY);
+                    builder.setUpper(j, Double.POSITIVE_INFINITY);
+                } else if (type.equals("MI")) {
+                    builder.setLower(j, Double.NEGATIVE_INFINITY);
+                } else if (type.equals("PL")) {
+                    builder.setUpper(j, Double.POSITIVE_INFINITY);
+                } else if (type.equals("BV") || type.equals("LI") || type.equals("UI") || type.equals("SC")) {
+                    throw error(lineNo, "integer variables are not supported");
+                } else {
+                    throw error(lineNo, "invalid bound type: " + f[0]);
+                }
+                break;
+            }
+            case QUADOBJ:
+            case QMATRIX: {
+                if (f.length != 3) throw error(lineNo, "expected quadratic entry");
+                final int i = builder.findVariable(f[0]);
+                final int j = builder.findVariable(f[1]);
+                if (i < 0) throw error(lineNo, "unknown column: " + f[0]);
+                if (j < 0) throw error(lineNo, "unknown column: " + f[1]);
+                final double v = number(f[2], lineNo);
+                // QUADOBJ lists each off-diagonal entry of Q once, and QMATRIX lists both
+                final boolean once = (section == Section.QUADOBJ) && (i != j);
+                builder.addQuadratic(i, j, once ? v : (0.5 * v));
+                break;
+            }
+            default:
+                throw error(lineNo, "data outside of a section");
+            }
+        }
+        if (section != Section.END) throw error(lineNo, "missing ENDATA");
+        if (objective != null) metadata.put("objective", objective);
+    }
+
+    private static void objSense(ModelBuilder builder, String s, int lineNo) {
+        final String u = s.toUpperCase();
+        if (u.equals("MAX") || u.equals("MAXIMIZE")) {
+            builder.setMaximize(true);
+        } else if (u.equals("MIN") || u.equals("MINIMIZE")) {
+            builder.setMaximize(false);
+        } else {
+            throw error(lineNo, "invalid objective sense: " + s);
+        }
+    }
+
+    private static int rowOf(ModelBuilder builder, String name, int lineNo) {
+        final int i = builder.findRow(name);
+        if (i < 0) throw error(lineNo, "unknown row: " + name);
+        return i;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A set of named variables, and a compiler from {@link Expr} expressions over them to
+ * {@link TwiceDifferentiableFunction} objectives and constraints.
+ * <p>
+ * Variables are numbered in the order they are declared, which is their index in the
+ * domain of compiled functions. A compiled function takes the dimension of the model at the time
+ * it is compiled.
+ * <pre>
+ * Model m = new Model();
+ * Expr x = m.variable("x");
+ * Expr y = m.variable("y");
+ * TwiceDifferentiableFunction f = m.compile(Expr.sumSquares(x.minus(1.0), y).plus(Expr.logSumExp(x, y)));
+ * InequalityConstraintSet c = m.constraints(Expr.norm2(x, y).minus(2.0));
+ * </pre>
+ */
+public final class Model {
+    private final ArrayList<String> names = new ArrayList<String>();
+    private final HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+    /**
+     * Declare a variable
+     * @param name the name of the variable, which must be unique in this model
+     * @return the variable
+     */
+    public Expr variable(String name) {
+        if (indexes.containsKey(name)) throw new IllegalArgumentException("duplicate variable " + name);
+        int j = names.size();
+        names.add(name);
+        indexes.put(name, j);
+        return Expr.variable(this, j);
+    }
+
+    /**
+     * Declare a vector of variables, named name[0], name[1], ...
+     * @param name the base name of the variables
+     * @param n the number of variables
+     * @return the variables
+     */
+    public Expr[] variables(String name, int n) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        Expr[] x = new Expr[n];
+        for (int j = 0; j < n; ++j) x[j] = variable(name + "[" + j + "]");
+        return x;
+    }
+
+    /** @return the number of variables in this model */
+    public int dim() {
+        return names.size();
+    }
+
+    /** @return the names of the variables, in order of their indexes */
+    public List<String> getVariableNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param name a variable name
+     * @return the index of the variable, or -1 if there is no such variable
+     */
+    public int index(String name) {
+        Integer j = indexes.get(name);
+        return (j == null) ? -1 : j;
+    }
+
+    /**
+     * Compile an expression to a function that evaluates its value, gradient and Hessian.
+     * @param e a convex, affine or constant expression
+     * @return the compiled function
+     * @throws IllegalArgumentException if the expression is not convex by the rules of {@link Expr},
+     * or it uses variables of another model
+     */
+    public TwiceDifferentiableFunction compile(Expr e) {
+        if ((e.curvature == Expr.Curvature.CONCAVE) || (e.curvature == Expr.Curvature.UNKNOWN))
+            throw new IllegalArgumentException("expression is not convex: curvature " + e.curvature);
+        return new CompiledExpression(this, e);
+    }
+
+    /**
+     * Compile a list of constraints f[k](x) &lt; 0.
+     * @param fk a list of convex expressions
+     * @return the compiled constraints
+     * @throws IllegalArgumentException if any expression is not convex
+     */
+    public InequalityConstraintSet constraints(Expr... fk) {
+        ArrayList<TwiceDifferentiableFunction> c = new ArrayList<TwiceDifferentiableFunction>();
+        for (Expr e: fk) c.add(compile(e));
+        return new InequalityConstraintSet(c);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+/**
+ * Accumulates a linear or quadratic model by name, as read by a {@link ModelReader}, and
+ * converts it to {@link ProblemData}. Coefficients are kept as (row, column, value) triplets in
+ * growable primitive arrays, so memory is proportional to the number of nonzeros.
+ * <p>
+ * Rows have a sense of 'L' (a.x &lt;= b), 'G' (a.x &gt;= b), 'E' (a.x = b) or 'N' (free).
+ * As with MPS RANGES, a range R on a row converts it to two-sided constraints:
+ * [b - |R|, b] for 'L', [b, b + |R|] for 'G', and for 'E', [b, b + R] if R &gt; 0 or [b + R, b] otherwise.
+ * Variables default to bounds [0, +inf).
+ */
+final class ModelBuilder {
+    private final HashMap<String, Integer> varIndex = new HashMap<String, Integer>();
+    private final ArrayList<String> varNames = new ArrayList<String>();
+    private final HashMap<String, Integer> rowIndex = new HashMap<String, Integer>();
+    private final ArrayList<String> rowNames = new ArrayList<String>();
+    private final StringBuilder sense = new StringBuilder();
+    private DoubleList rhs = new DoubleList();
+    private DoubleList range = new DoubleList();
+    private IntList ri = new IntList();
+    private IntList ci = new IntList();
+    private DoubleList cv = new DoubleList();
+    private DoubleList q = new DoubleList();
+    private IntList qi = new IntList();
+    private IntList qj = new IntList();
+    private DoubleList qv = new DoubleList();
+    private DoubleList lower = new DoubleList();
+    private DoubleList upper = new DoubleList();
+    private double constant = 0.0;
+    private boolean maximize = false;
+
+    /** @return the index of the named variable, adding it if it does not exist */
+    int variable(String name) {
+        Integer j = varIndex.get(name);
+        if (j != null) return j;
+        final int k = varNames.size();
+        varIndex.put(name, k);
+        varNames.add(name);
+        q.add(0.0);
+        lower.add(0.0);
+        upper.add(Double.POSITIVE_INFINITY);
+        return k;
+    }
+
+    /** @return the index of the named variable, or -1 if it does not exist */
+    int findVariable(String name) {
+        Integer j = varIndex.get(name);
+        return (j == null) ? -1 : j;
+    }
+
+    /** Add a named row with the given sense; row names must be unique */
+    int row(String name, char s) {
+        if (rowIndex.containsKey(name)) throw new IllegalArgumentException("duplicate row name: " + name);
+        if ("LGEN".indexOf(s) < 0) throw new IllegalArgumentException("invalid row sense: " + s);
+        final int k = rowNames.size();
+        rowIndex.put(name, k);
+        rowNames.add(name);
+        sense.append(s);
+        rhs.add(0.0);
+        range.add(Double.NaN);
+        return k;
+    }
+
+    /** @return the index of the named row, or -1 if it does not exist */
+    int findRow(String name) {
+        Integer i = rowIndex.get(name);
+        return (i == null) ? -1 : i;
+    }
+
+    int rows() { return rowNames.size(); }
+
+    void addCoefficient(int row, int col, double v) {
+        if (v == 0.0) return;
+        ri.add(row);
+        ci.add(col);
+        cv.add(v);
+    }
+
+    void setRhs(int row, double v) { rhs.set(row, v); }
+
+    void setRange(int row, double r) { range.set(row, r); }
+
+    void addObjective(int col, double v) { q.set(col, q.get(col) + v); }
+
+    /** Add the term v*x[i]*x[j] to the objective */
+    void addQuadratic(int i, int j, double v) {
+        if (v == 0.0) return;
+        if (i == j) {
+            qi.add(i);
+            qj.add(i);
+            qv.add(2.0 * v);
+        } else {
+            qi.add(i);
+            qj.add(j);
+            qv.add(v);
+            qi.add(j);
+            qj.add(i);
+            qv.add(v);
+        }
+    }
+
+    void addConstant(double v) { constant += v; }
+
+    void setMaximize(boolean max) { maximize = max; }
+
+    void setLower(int col, double v) { lower.set(col, v); }
+
+    void setUpper(int col, double v) { upper.set(col, v); }
+
+    double getLower(int col) { return lower.get(col); }
+
+    String[] variableNames() { return varNames.toArray(new String[0]); }
+
+    /**
+     * Convert to {@link ProblemData}. Variables with equal lower and upper bounds are fixed with
+     * equality constraints, and 'N' rows are dropped.
+     */
+    ProblemData build(Map<String, String> metadata) {
+        final int n = varNames.size();
+        if (n < 1) throw new IllegalArgumentException("model has no variables");
+        final int m = rowNames.size();
+        // assign each row to the inequality or equality block, with the sign of its coefficients
+        int[] ineqRow = new int[m];
+        int[] rangeRow = new int[m];
+        int[] eqRow = new int[m];
+        DoubleList bIneq = new DoubleList();
+        DoubleList bEq = new DoubleList();
+        int mi = 0;
+        int me = 0;
+        for (int i = 0; i < m; ++i) {
+            ineqRow[i] = -1;
+            rangeRow[i] = -1;
+            eqRow[i] = -1;
+            final double b = rhs.get(i);
+            final double r = range.get(i);
+            switch (sense.charAt(i)) {
+            case 'L':
+                ineqRow[i] = mi++;
+                bIneq.add(b);
+                if (!Double.isNaN(r)) {
+                    rangeRow[i] = mi++;
+                    bIneq.add(-(b - Math.abs(r)));
+                }
+                break;
+            case 'G':
+                rangeRow[i] = mi++;
+                bIneq.add(-b);
+                if (!Double.isNaN(r)) {
+                    ineqRow[i] = mi++;
+                    bIneq.add(b + Math.abs(r));
+                }
+                break;
+            case 'E':
+                if (Double.isNaN(r)) {
+                    eqRow[i] = me++;
+                    bEq.add(b);
+                } else {
+                    ineqRow[i] = mi++;
+                    bIneq.add((r > 0.0) ? (b + r) : b);
+                    rangeRow[i] = mi++;
+                    bIneq.add(-((r > 0.0) ? b : (b + r)));
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        // variables with equal bounds are fixed by equality rows
+        double[] lb = lower.toArray();
+        double[] ub = upper.toArray();
+        IntList fixed = new IntList();
+        for (int j = 0; j < n; ++j) {
+            if (lb[j] > ub[j])
+                throw new IllegalArgumentException("inconsistent bounds on variable " + varNames.get(j));
+            if (lb[j] == ub[j]) {
+                fixed.add(j);
+                bEq.add(lb[j]);
+                lb[j] = Double.NEGATIVE_INFINITY;
+                ub[j] = Double.POSITIVE_INFINITY;
+            }
+        }
+        // split the coefficient triplets into the two blocks, releasing them as we go
+        IntList iri = new IntList();
+        IntList ici = new IntList();
+        DoubleList icv = new DoubleList();
+        IntList eri = new IntList();
+        IntList eci = new IntList();
+        DoubleList ecv = new DoubleList();
+        for (int k = 0; k < ri.size(); ++k) {
+            final int i = ri.get(k);
+            final int j = ci.get(k);
+            final double v = cv.get(k);
+            if (ineqRow[i] >= 0) {
+                iri.add(ineqRow[i]);
+                ici.add(j);
+                icv.add(v);
+            }
+            if (rangeRow[i] >= 0) {
+                iri.add(rangeRow[i]);
+                ici.add(j);
+                icv.add(-v);
+            }
+            if (eqRow[i] >= 0) {
+                eri.add(eqRow[i]);
+                eci.add(j);
+                ecv.add(v);
+            }
+        }
+        ri = null;
+        ci = null;
+        cv = null;
+        for (int k = 0; k < fixed.size(); ++k) {
+            eri.add(me + k);
+            eci.add(fixed.get(k));
+            ecv.add(1.0);
+        }
+        me += fixed.size();
+        LinearInequalityConstraint ineq = (mi == 0) ? null : new LinearInequalityConstraint(
+            CSRRealMatrix.fromTriplets(mi, n, iri.toArray(), ici.toArray(), icv.toArray()),
+            new ArrayRealVector(bIneq.toArray(), false));
+        iri = null;
+        ici = null;
+        icv = null;
+        LinearEqualityConstraint eq = (me == 0) ? null : new LinearEqualityConstraint(
+            CSRRealMatrix.fromTriplets(me, n, eri.toArray(), eci.toArray(), ecv.toArray()),
+            new ArrayRealVector(bEq.toArray(), false));
+        boolean bounded = false;
+        for (int j = 0; j < n; ++j)
+            if (!Double.isInfinite(lb[j]) || !Double.isInfinite(ub[j])) bounded = true;
+        BoxConstraint box = bounded ? new BoxConstraint(lb, ub) : null;
+        // maximization is minimization of the negated objective
+        final double sign = maximize ? -1.0 : 1.0;
+        double[] qa = q.toArray();
+        double[] qva = qv.toArray();
+        for (int j = 0; j < n; ++j) qa[j] *= sign;
+        for (int k = 0; k < qva.length; ++k) qva[k] *= sign;
+        CSRRealMatrix P = (qva.length == 0) ? null :
+            CSRRealMatrix.fromTriplets(n, n, qi.toArray(), qj.toArray(), qva);
+        return new ProblemData(P, new ArrayRealVector(qa, false), sign * constant, ineq, eq, box, metadata);
+    }
+
+    // growable primitive arrays, avoiding boxed values for large models
+    static final class IntList {
+        private int[] a = new int[16];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, 2 * size);
+            a[size++] = v;
+        }
+
+        int get(int k) { return a[k]; }
+
+        int size() { return size; }
+
+        int[] toArray() { return Arrays.copyOf(a, size); }
+    }
+
+    static final class DoubleList {
+        private double[] a = new double[16];
+        private int size = 0;
+
+        void add(double v) {
+            if (size == a.length) a = Arrays.copyOf(a, 2 * size);
+            a[size++] = v;
+        }
+
+        double get(int k) { return a[k]; }
+
+        void set(int k, double v) { a[k] = v; }
+
+        int size() { return size; }
+
+        double[] toArray() { return Arrays.copyOf(a, size); }
+    }
+}
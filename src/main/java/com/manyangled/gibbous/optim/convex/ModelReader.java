@@ -0,0 +1,108 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+/**
+ * Reads linear and quadratic models from a text format into {@link ProblemData}.
+ * <p>
+ * Models are read in a single streaming pass, without dense intermediates: constraint coefficients
+ * are accumulated as sparse triplets and converted to {@link CSRRealMatrix} constraints, so memory
+ * is proportional to the number of nonzeros and names, not to the size of the file.
+ * The converted problem has the following form:
+ * <ul>
+ *   <li>a {@link LinearFunction} objective, or a {@link QuadraticFunction} if the model has quadratic terms.
+ *   Maximization models are converted to minimization of the negated objective.</li>
+ *   <li>one {@link LinearInequalityConstraint} holding all inequality rows as a.x &lt; b,
+ *   with ranged rows split into two inequalities</li>
+ *   <li>one {@link LinearEqualityConstraint} holding all equality rows, and any fixed variables</li>
+ *   <li>a {@link BoxConstraint} holding any other finite variable bounds</li>
+ * </ul>
+ * Variables are indexed in order of first appearance, and their names are available from
+ * {@link #getVariableNames()} after reading.
+ * Integer variables are not supported. Malformed input raises IllegalArgumentException.
+ */
+public abstract class ModelReader {
+    private String[] variableNames = new String[0];
+
+    /**
+     * Read a model from a UTF-8 text file.
+     * @param file the file to read
+     * @return the model
+     * @throws IOException if the file cannot be read
+     */
+    public ProblemData read(File file) throws IOException {
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a model from a stream of text
+     * @param in the text to read
+     * @return the model
+     * @throws IOException if the text cannot be read
+     */
+    public ProblemData read(Reader in) throws IOException {
+        BufferedReader br = (in instanceof BufferedReader) ? (BufferedReader)in : new BufferedReader(in, BUFFER_SIZE);
+        ModelBuilder builder = new ModelBuilder();
+        Map<String, String> metadata = new LinkedHashMap<String, String>();
+        parse(br, builder, metadata);
+        ProblemData problem = builder.build(metadata);
+        variableNames = builder.variableNames();
+        return problem;
+    }
+
+    /** @return the names of the variables of the most recently read model, in index order */
+    public String[] getVariableNames() {
+        return variableNames.clone();
+    }
+
+    /**
+     * Parse a model into a builder
+     * @param in the text to parse
+     * @param builder accumulates the model
+     * @param metadata receives model attributes, such as its name
+     * @throws IOException if the text cannot be read
+     */
+    abstract void parse(BufferedReader in, ModelBuilder builder, Map<String, String> metadata) throws IOException;
+
+    /** Parse a numeric field, reporting the line number if it is malformed */
+    static double number(String s, int line) {
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw error(line, "invalid number: " + s);
+        }
+    }
+
+    static IllegalArgumentException error(int line, String msg) {
+        return new IllegalArgumentException(String.format("line %d: %s", line, msg));
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+}
@@ -15,7 +15,6 @@ package com.manyangled.gibbous.optim.convex;
 
 import org.apache.commons.math3.util.Pair;
 import org.apache.commons.math3.optim.OptimizationData;
-import org.apache.commons.math3.optim.PointValuePair;
 import org.apache.commons.math3.exception.DimensionMismatchException;
 import org.apache.commons.math3.exception.ConvergenceException;
 import org.apache.commons.math3.linear.RealMatrix;
@@ -23,6 +22,8 @@ import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
 /**
  * Implements convex optimization, using Newton's method.
  * Supports linear equality constraints and infeasible starting point<p>
@@ -37,12 +38,17 @@ import org.apache.commons.math3.linear.ArrayRealVector;
  *   <li>convergence epsilon: {@link ConvergenceEpsilon} - optional </li>
  *   <li>backtracking alpha: {@link BacktrackAlpha} - optional </li>
  *   <li>backtracking beta: {@link BacktrackBeta} - optional </li>
- *   <li>KKT equations solver: {@link KKTSolver} - optional </li>
+ *   <li>presolve of linear constraints: {@link Presolve} - optional </li>
+ *   <li>problem scaling: {@link RuizScaling} - optional </li>
+ *   <li>wall-clock deadline: {@link Deadline} - optional </li>
+ *   <li>cancellation token: {@link Cancellation} - optional </li>
+ *   <li>KKT equations solver: {@link KKTSolver} - optional: defaults to {@link CholeskySchurKKTSolver},
+ *   falling back to {@link SVDSchurKKTSolver} when a matrix is not positive definite. </li>
  * </ul>
  */
 public class NewtonOptimizer extends ConvexOptimizer {
     private LinearEqualityConstraint eqConstraint;
-    private KKTSolver kktSolver = new SVDSchurKKTSolver();
+    private KKTSolver kktSolver;
     private RealVector xStart;
     private double epsilon = ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
     private double alpha = BacktrackAlpha.BACKTRACK_ALPHA_DEFAULT;
@@ -54,7 +60,7 @@ public class NewtonOptimizer extends ConvexOptimizer {
     }
 
     @Override
-    public PointValuePair optimize(OptimizationData... optData) {
+    public ConvexSolveResult optimize(OptimizationData... optData) {
         return super.optimize(optData);
     }
 
@@ -107,27 +113,37 @@ public class NewtonOptimizer extends ConvexOptimizer {
     }
 
     @Override
-    public PointValuePair doOptimize() {
+    public ConvexSolveResult doOptimize() {
         final int n = convexObjective.dim();
         if ((eqConstraint == null) || (eqConstraint.b.getDimension() < 1)) {
             // constraints Ax = b are empty
             // Algorithm 9.5: Newton's method (unconstrained)
             RealVector x = xStart;
             double v = convexObjective.value(x);
+            ++evaluations;
             while (true) {
+                if (stopRequested()) {
+                    status = stopStatus();
+                    break;
+                }
                 incrementIterationCount();
                 RealVector grad = convexObjective.gradient(x);
                 RealMatrix hess = convexObjective.hessian(x);
-                KKTSolution sol = kktSolver.solve(hess, grad);
+                KKTSolution sol = KKTSolver.solve(kktSolver, hess, grad);
+                ++kktSolves;
+                dualityGap = 0.5 * sol.lambdaSquared;
                 if (sol.lambdaSquared <= (2.0 * epsilon)) break;
                 RealVector xDelta = sol.xDelta;
                 double gdd = grad.dotProduct(xDelta);
                 RealVector tx = null;
                 double tv = 0.0;
                 boolean foundStep = false;
-                for (double t = 1.0; t >= BT_T_LB; t *= beta) {
+                int trials = 0;
+                for (double t = initialStep(convexObjective, x, xDelta); t >= BT_T_LB; t *= beta) {
+                    if (stopRequested()) break;
                     tx = x.add(xDelta.mapMultiply(t));
                     tv = convexObjective.value(tx);
+                    ++trials;
                     if (Double.isInfinite(tv)) {
                         // this is barrier convention for "outside the feasible domain",
                         // so try a smaller step
@@ -145,8 +161,16 @@ public class NewtonOptimizer extends ConvexOptimizer {
                         break;
                     }
                 }
-                // If there was no forward step to make, that indicates minimum
-                if (!foundStep) break;
+                evaluations += trials;
+                backtracks += foundStep ? (trials - 1) : trials;
+                // If there was no forward step to make, that indicates minimum,
+                // unless the predicted decrease is above the rounding error of (v) and so the line search failed
+                if (!foundStep) {
+                    if (stopRequested()) status = stopStatus();
+                    else if (!atPrecision(dualityGap, v)) status = SolveStatus.HALTED;
+                    break;
+                }
+                ++newtonSteps;
                 // Update x,v for next iteration
                 RealVector xprv = x;
                 double vprv = v;
@@ -159,10 +183,12 @@ public class NewtonOptimizer extends ConvexOptimizer {
                         getIterations(),
                         new Pair<RealVector, Double>(xprv, vprv),
                         new Pair<RealVector, Double>(x, v))) {
+                    status = SolveStatus.HALTED;
                     break;
                 }
             }
-            return new PointValuePair(x.toArray(), v);
+            return new ConvexSolveResult(x.toArray(), v, status, dualityGap, Double.NaN,
+                null, null, null, null, getStatistics());
         } else {
             // constraints Ax = b are non-empty
             // Algorithm 10.2: Newton's method with equality constraints
@@ -172,23 +198,47 @@ public class NewtonOptimizer extends ConvexOptimizer {
             final int nDual = b.getDimension();
             RealVector x = xStart;
             RealVector nu = new ArrayRealVector(nDual, 0.0);
+            // the duals for a full step from the last KKT solve, which (nu) only reaches if the step is undamped
+            RealVector nuPlus = nu;
+            // the residual terms Ax - b and (A^T)nu, which are updated along each step rather than recomputed
+            double[] rPrimal = A.operate(x).subtract(b).toArray();
+            double[] atNu = new double[x.getDimension()];
             double v = convexObjective.value(x);
+            ++evaluations;
             while (true) {
+                if (stopRequested()) {
+                    status = stopStatus();
+                    break;
+                }
                 incrementIterationCount();
                 RealVector grad = convexObjective.gradient(x);
-                double rNorm = residualNorm(x, nu, grad, A, AT, b);
-                if (rNorm <= epsilon) break;
+                double rNorm = residualNorm(0.0, rPrimal, null, atNu, null, data(grad));
+                if (rNorm <= epsilon) {
+                    nuPlus = nu;
+                    break;
+                }
                 RealMatrix hess = convexObjective.hessian(x);
-                KKTSolution sol = kktSolver.solve(hess, A, AT, grad, A.operate(x).subtract(b));
+                KKTSolution sol = KKTSolver.solve(kktSolver, hess, A, AT, grad, new ArrayRealVector(rPrimal));
+                ++kktSolves;
                 RealVector xDelta = sol.xDelta;
-                RealVector nuDelta = sol.nuPlus.subtract(nu);
+                // the Newton decrement estimates the gap only once (x) is feasible
+                dualityGap = (Math.sqrt(dot(rPrimal, rPrimal, nDual)) <= epsilon) ?
+                    (0.5 * Math.max(0.0, -grad.dotProduct(xDelta))) : Double.POSITIVE_INFINITY;
+                nuPlus = sol.nuPlus;
+                RealVector nuDelta = nuPlus.subtract(nu);
+                // the residuals are linear in the step size, so each backtracking trial needs no products with A
+                final double[] aDelta = data(A.operate(xDelta));
+                final double[] atNuDelta = data(AT.operate(nuDelta));
                 RealVector tx = null;
                 RealVector tnu = null;
                 double tv = 0.0;
                 boolean foundStep = false;
-                for (double t = 1.0; t >= BT_T_LB; t *= beta) {
+                int trials = 0;
+                for (double t = initialStep(convexObjective, x, xDelta); t >= BT_T_LB; t *= beta) {
+                    if (stopRequested()) break;
                     tx = x.add(xDelta.mapMultiply(t));
                     tv = convexObjective.value(tx);
+                    ++trials;
                     if (Double.isInfinite(tv)) {
                         // this is barrier convention for "outside the feasible domain",
                         // so try a smaller step
@@ -202,15 +252,25 @@ public class NewtonOptimizer extends ConvexOptimizer {
                     }
                     tnu = nu.add(nuDelta.mapMultiply(t));
                     RealVector tgrad = convexObjective.gradient(tx);
-                    double tNorm = residualNorm(tx, tnu, tgrad, A, AT, b);
+                    double tNorm = residualNorm(t, rPrimal, aDelta, atNu, atNuDelta, data(tgrad));
                     if (tNorm <= ftt * rNorm) {
                         // This step resulted in an improvement, so halt with success
                         foundStep = true;
+                        axpy(t, aDelta, rPrimal, nDual);
+                        axpy(t, atNuDelta, atNu, atNu.length);
                         break;
                     }
                 }
-                // If there was no forward step to make, that indicates minimum
-                if (!foundStep) break;
+                evaluations += trials;
+                backtracks += foundStep ? (trials - 1) : trials;
+                // If there was no forward step to make, that indicates minimum,
+                // unless the predicted decrease is above the rounding error of (v) and so the line search failed
+                if (!foundStep) {
+                    if (stopRequested()) status = stopStatus();
+                    else if (!atPrecision(dualityGap, v)) status = SolveStatus.HALTED;
+                    break;
+                }
+                ++newtonSteps;
                 // update for next iteration
                 RealVector xprv = x;
                 double vprv = v;
@@ -224,24 +284,49 @@ public class NewtonOptimizer extends ConvexOptimizer {
                         getIterations(),
                         new Pair<RealVector, Double>(xprv, vprv),
                         new Pair<RealVector, Double>(x, v))) {
+                    status = SolveStatus.HALTED;
                     break;
                 }
             }
-            return new PointValuePair(x.toArray(), v);
+            return new ConvexSolveResult(x.toArray(), v, status, dualityGap, Double.NaN,
+                null, null, null, nuPlus.toArray(), getStatistics());
         }
     }
 
-    private double residualNorm(
-        RealVector x, RealVector nu, RealVector grad,
-        RealMatrix A, RealMatrix AT, RealVector b) {
-        RealVector r = A.operate(x).subtract(b);
-        RealVector rDual = grad.add(AT.operate(nu));
-        double rr = r.dotProduct(r) + rDual.dotProduct(rDual);
+    // true if the predicted decrease (gap) is within the rounding error of objective value (v)
+    static boolean atPrecision(double gap, double v) {
+        return gap <= (PRECISION_FLOOR * Math.max(1.0, Math.abs(v)));
+    }
+
+    // the initial backtracking step: 1, or a fraction of the step to the boundary of the objective's domain
+    static double initialStep(TwiceDifferentiableFunction f, RealVector x, RealVector xDelta) {
+        return Math.min(1.0, STEP_TO_BOUNDARY * f.maxStep(x, xDelta));
+    }
+
+    // the norm of the residual (r + (t)dr, s + (t)ds + g), where r = Ax - b, s = (A^T)nu and g = grad(x),
+    // and dr, ds are the changes in r and s along a step, or null at t = 0
+    private static double residualNorm(
+        double t, double[] r, double[] dr, double[] s, double[] ds, double[] g) {
+        double rr = 0.0;
+        for (int i = 0; i < r.length; ++i) {
+            final double ri = (dr == null) ? r[i] : r[i] + (t * dr[i]);
+            rr += ri * ri;
+        }
+        for (int j = 0; j < s.length; ++j) {
+            final double sj = ((ds == null) ? s[j] : s[j] + (t * ds[j])) + g[j];
+            rr += sj * sj;
+        }
         return Math.sqrt(rr);
     }
 
     // I used to use a "> 0" lower bound for t in backtracking, but I noticed a
     // case where t never underflowed to zero, so I am going to set it a bit higher
     // than the minimum positive value
-    private static final double BT_T_LB = 1e-300;
+    static final double BT_T_LB = 1e-300;
+
+    // relative size of a predicted decrease that is lost in rounding the objective value
+    static final double PRECISION_FLOOR = 1e-12;
+
+    // fraction of the step to the boundary of the domain, used as an initial backtracking step
+    static final double STEP_TO_BOUNDARY = 0.99;
 }
@@ -0,0 +1,220 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.util.Pair;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.ConvergenceChecker;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+/**
+ * Barrier method phase I solvers, used by
+ * {@link ConvexOptimizer#feasiblePoint(OptimizationData... optData)} for
+ * {@link FeasibilityMethod.Method#BARRIER} and {@link FeasibilityMethod.Method#SUM_OF_INFEASIBILITIES}.
+ * <p>
+ * The problem is lifted to z = (x, s), with one slack (s) for the maximum infeasibility or one
+ * slack s[k] per constraint for the sum of infeasibilities, and solved with the same outer
+ * loop as {@link BarrierOptimizer}. The solve halts as soon as (x) satisfies all constraints,
+ * and returns a strictly feasible initial guess unchanged.
+ * <p>
+ * After each centering step, the barrier central point yields dual weights
+ * lambda[k] = 1/(t(s - f[k](x))) (11.2.2), and a lower bound (v - m/t) on the optimal phase I value,
+ * where v is the phase I objective and m is the number of lifted constraints. If this bound
+ * is positive, the constraints are certified infeasible and the solve halts.
+ * The solve also halts when a {@link Deadline} passes or a {@link Cancellation} is cancelled,
+ * returning the current iterate. If the barrier parameter reaches its limit with neither a feasible
+ * point nor a certificate, the status is {@link SolveStatus#HALTED}.
+ */
+final class PhaseOneSolver {
+    private final boolean sum;
+    private final TwiceDifferentiableFunction[] fk;
+    private final LinearEqualityConstraint eqConstraint;
+    private final ArrayList<OptimizationData> solverArgs = new ArrayList<OptimizationData>();
+    private final double epsilon;
+    private final InnerOptimizer.Method innerMethod;
+    private double mu = BarrierMu.BARRIER_MU_DEFAULT;
+    private double t0 = BarrierMu.BARRIER_T0_DEFAULT;
+    private Deadline deadline;
+    private Cancellation cancellation;
+    private SolveStatus status = SolveStatus.CONVERGED;
+    private SolveStatistics statistics = SolveStatistics.NONE;
+    private final int n;
+    private final int dim;
+
+    PhaseOneSolver(
+        boolean sum,
+        TwiceDifferentiableFunction[] fk,
+        ArrayList<OptimizationData> args,
+        double epsilon,
+        InnerOptimizer.Method innerMethod) {
+        this.sum = sum;
+        this.fk = fk;
+        this.epsilon = epsilon;
+        this.innerMethod = innerMethod;
+        this.n = fk[0].dim();
+        this.dim = n + (sum ? fk.length : 1);
+        LinearEqualityConstraint eqc = null;
+        for (OptimizationData data: args) {
+            if (data instanceof LinearEqualityConstraint) {
+                eqc = (LinearEqualityConstraint)data;
+                continue;
+            }
+            if (data instanceof BarrierMu) {
+                mu = ((BarrierMu)data).mu;
+                t0 = ((BarrierMu)data).t0;
+                continue;
+            }
+            // also passed to inner solves
+            if (data instanceof Deadline) deadline = (Deadline)data;
+            if (data instanceof Cancellation) cancellation = (Cancellation)data;
+            // constraints are handled by the lifted problem
+            if (data instanceof LinearInequalityConstraint) continue;
+            if (data instanceof InequalityConstraintSet) continue;
+            if (data instanceof BoxConstraint) continue;
+            solverArgs.add(data);
+        }
+        this.eqConstraint = eqc;
+    }
+
+    FeasibilityResult solve(RealVector x0) {
+        if (isFeasible(x0)) return result(x0, null, Double.NaN);
+        final int m = fk.length;
+        // lifted constraints f[k](x) - s < 0, and bounds on the slacks
+        ArrayList<TwiceDifferentiableFunction> lifted = new ArrayList<TwiceDifferentiableFunction>();
+        double[] z0 = new double[dim];
+        System.arraycopy(x0.toArray(), 0, z0, 0, n);
+        double[] obj = new double[dim];
+        double fmax = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < m; ++k) {
+            int slack = sum ? (n + k) : n;
+            lifted.add(SlackFunction.lift(fk[k], dim, slack));
+            double v = fk[k].value(x0);
+            fmax = Math.max(fmax, v);
+            if (sum) {
+                // s[k] > 0, starting strictly above the infeasibility of f[k]
+                double[] a = new double[dim];
+                a[slack] = -1.0;
+                lifted.add(new LinearFunction(a, 0.0));
+                z0[slack] = Math.max(v, 0.0) + 1.0;
+                obj[slack] = 1.0;
+            }
+        }
+        if (!sum) {
+            // s > -1, which keeps the problem bounded below when the feasible set has an interior
+            double[] a = new double[dim];
+            a[n] = -1.0;
+            lifted.add(new LinearFunction(a, -1.0));
+            z0[n] = Math.max(fmax, -1.0) + 1.0;
+            obj[n] = 1.0;
+        }
+        final TwiceDifferentiableFunction objective = new LinearFunction(obj, 0.0);
+        final double mb = (double)lifted.size();
+        final OptimizationData[] odType = new OptimizationData[0];
+        // lift equality constraints to [A 0]z = b
+        final LinearEqualityConstraint liftedEq = (eqConstraint == null) ? null : liftEquality(eqConstraint);
+        final HaltingCondition halting = new HaltingCondition(new FeasibleChecker());
+        RealVector z = new ArrayRealVector(z0, false);
+        double[] lambda = null;
+        double dualBound = Double.NaN;
+        for (double t = t0; (t * epsilon) <= mb; t *= mu) {
+            if (ConvexOptimizer.stopRequested(deadline, cancellation)) {
+                status = ConvexOptimizer.stopStatus(cancellation);
+                break;
+            }
+            TwiceDifferentiableFunction bf = new LogBarrierFunction(t, objective, lifted);
+            ArrayList<OptimizationData> args = (ArrayList<OptimizationData>)solverArgs.clone();
+            if (liftedEq != null) args.add(liftedEq);
+            args.add(new ObjectiveFunction(bf));
+            args.add(new InitialGuess(z.toArray()));
+            args.add(halting);
+            ConvexSolveResult pvp = InnerOptimizer.newOptimizer(innerMethod).optimize(args.toArray(odType));
+            statistics = statistics.plus(pvp.getStatistics());
+            z = new ArrayRealVector(pvp.getFirst(), false);
+            if (isFeasible(z.getSubVector(0, n))) return result(z.getSubVector(0, n), null, Double.NaN);
+            // the dual value at the central point is the phase I objective, minus the duality gap
+            double bound = objective.value(z) - (mb / t);
+            if (bound > 0.0) {
+                lambda = dualWeights(z, t);
+                dualBound = bound;
+                break;
+            }
+        }
+        // neither feasible nor certified infeasible, for example when the constraints are only weakly feasible
+        if ((lambda == null) && (status == SolveStatus.CONVERGED)) status = SolveStatus.HALTED;
+        return result(z.getSubVector(0, n), lambda, dualBound);
+    }
+
+    // dual weights for the constraints f[k] at central point (z), normalized to sum to 1
+    private double[] dualWeights(RealVector z, double t) {
+        final RealVector x = z.getSubVector(0, n);
+        double[] lambda = new double[fk.length];
+        double ls = 0.0;
+        for (int k = 0; k < fk.length; ++k) {
+            double s = z.getEntry(sum ? (n + k) : n);
+            lambda[k] = 1.0 / (t * (s - fk[k].value(x)));
+            ls += lambda[k];
+        }
+        for (int k = 0; k < fk.length; ++k) lambda[k] /= ls;
+        return lambda;
+    }
+
+    private FeasibilityResult result(RealVector x, double[] lambda, double dualBound) {
+        double[] v = new double[fk.length];
+        for (int k = 0; k < fk.length; ++k) v[k] = fk[k].value(x);
+        return new FeasibilityResult(x.toArray(), v, lambda, dualBound, status, statistics);
+    }
+
+    private LinearEqualityConstraint liftEquality(LinearEqualityConstraint eqc) {
+        RealMatrix A = eqc.A;
+        if (A instanceof CSRRealMatrix) {
+            // the lifted columns are all zero, and so the compressed arrays are shared
+            CSRRealMatrix S = (CSRRealMatrix)A;
+            return new LinearEqualityConstraint(
+                new CSRRealMatrix(A.getRowDimension(), dim, S.getRowPointers(), S.getColumnIndices(), S.getValues(), false),
+                eqc.b);
+        }
+        RealMatrix LA = new Array2DRowRealMatrix(A.getRowDimension(), dim);
+        LA.setSubMatrix(A.getData(), 0, 0);
+        return new LinearEqualityConstraint(LA, eqc.b);
+    }
+
+    private boolean isFeasible(RealVector x) {
+        for (TwiceDifferentiableFunction f: fk)
+            if (f.value(x) >= 0.0) return false;
+        if (eqConstraint != null) {
+            RealVector r = eqConstraint.A.operate(x).subtract(eqConstraint.b);
+            if (r.getLInfNorm() > (EQUALITY_EPSILON * Math.max(1.0, eqConstraint.b.getLInfNorm())))
+                return false;
+        }
+        return true;
+    }
+
+    // halts inner solves as soon as (x) is feasible
+    private class FeasibleChecker implements ConvergenceChecker<Pair<RealVector, Double> > {
+        @Override
+        public boolean converged(int iter, Pair<RealVector, Double> prv, Pair<RealVector, Double> cur) {
+            return isFeasible(cur.getFirst().getSubVector(0, n));
+        }
+    }
+
+    // relative tolerance for considering equality constraints satisfied
+    private static final double EQUALITY_EPSILON = 1e-9;
+}
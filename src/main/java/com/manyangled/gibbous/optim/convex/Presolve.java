@@ -0,0 +1,63 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Enables a presolve pass over linear constraints, applied by {@link ConvexOptimizer} subclasses
+ * before optimization. The presolved problem is solved, and its solution is mapped back
+ * to the original variables.
+ * <p>
+ * Presolve applies the following reductions to {@link LinearEqualityConstraint} and
+ * {@link LinearInequalityConstraint} arguments, repeating until no more apply:
+ * <ul>
+ *   <li>empty rows are removed, after checking that they are satisfied</li>
+ *   <li>equality rows with a single nonzero fix a variable, which is substituted out of the problem</li>
+ *   <li>duplicate rows, up to a scaling factor, are removed. Of parallel inequality rows, the tightest is kept.</li>
+ *   <li>inequality rows with a single nonzero are collected as bounds on their variable, which
+ *   are merged with any {@link BoxConstraint} and passed on as a single {@link BoxConstraint}</li>
+ *   <li>inequality rows that cannot be active, given variable bounds, are removed</li>
+ * </ul>
+ * If presolve detects that the constraints are infeasible, an IllegalStateException is thrown.
+ * <p>
+ * The duals of a {@link ConvexSolveResult} are mapped back to the original constraints. Removed redundant
+ * rows have zero duals, rows that became bounds take the duals of those bounds, and equality rows that
+ * fixed variables take the duals that satisfy stationarity at the fixed variables.
+ * <p>
+ * NOTE: convex objective and constraint functions, the {@link org.apache.commons.math3.optim.InitialGuess}
+ * and any {@link HaltingCondition} operate on the reduced variables.
+ * Constraints passed via {@link InnerOptimizationData} are not presolved.
+ */
+public class Presolve implements OptimizationData {
+    /** Relative tolerance for comparing coefficients */
+    public final double tolerance;
+
+    /**
+     * Enable presolve
+     * @param tolerance relative tolerance for comparing coefficients. Must be &gt;= 0.
+     */
+    public Presolve(double tolerance) {
+        if (tolerance < 0.0) throw new IllegalArgumentException("tolerance must be >= 0");
+        this.tolerance = tolerance;
+    }
+
+    /** Enable presolve, with default tolerance */
+    public Presolve() {
+        this(PRESOLVE_TOLERANCE_DEFAULT);
+    }
+
+    /** Default tolerance for comparing coefficients */
+    public static final double PRESOLVE_TOLERANCE_DEFAULT = 1e-9;
+}
@@ -0,0 +1,616 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+
+/**
+ * Implements the reductions configured by {@link Presolve}
+ * <p>
+ * Constraint rows are held in sparse form, as column indices and values, so that presolve costs
+ * O(nonzeros) in time and memory, and the reduced constraints are {@link CSRRealMatrix}.
+ */
+final class Presolver extends ProblemTransform {
+    private final double tol;
+    private int n;
+    // values of fixed variables, and indices of free variables
+    private double[] fixed;
+    private boolean[] isFixed;
+    private int[] free;
+    // the original objective, for evaluating solutions
+    private TwiceDifferentiableFunction objective;
+    // the original constraints, for mapping duals back to them
+    private LinearEqualityConstraint eqc;
+    private ArrayList<LinearInequalityConstraint> ineqcs = new ArrayList<LinearInequalityConstraint>();
+    private ArrayList<TwiceDifferentiableFunction> constraintFunctions = new ArrayList<TwiceDifferentiableFunction>();
+    private boolean hasBox;
+    // original indices of the rows that remain, and of the rows that became bounds or fixed variables
+    private int[] eqOrigin;
+    private int[] ineqOrigin;
+    private int[] lowerRow;
+    private int[] upperRow;
+    private int[] fixRow;
+    private ArrayList<Integer> fixOrder = new ArrayList<Integer>();
+
+    Presolver(Presolve config) {
+        this.tol = config.tolerance;
+    }
+
+    @Override
+    OptimizationData[] presolve(OptimizationData[] optData) {
+        ArrayList<OptimizationData> rest = new ArrayList<OptimizationData>();
+        double[] x0 = null;
+        BoxConstraint box = null;
+        for (OptimizationData data: optData) {
+            if (data instanceof BoxConstraint) {
+                box = (box == null) ? (BoxConstraint)data : box.intersect((BoxConstraint)data);
+                continue;
+            }
+            if (data instanceof ObjectiveFunction) {
+                objective = (TwiceDifferentiableFunction)((ObjectiveFunction)data).getObjectiveFunction();
+                continue;
+            }
+            if (data instanceof InitialGuess) {
+                x0 = ((InitialGuess)data).getInitialGuess();
+                continue;
+            }
+            if (data instanceof LinearEqualityConstraint) {
+                // the last equality constraint in effect, consistent with option parsing
+                eqc = (LinearEqualityConstraint)data;
+                continue;
+            }
+            if (data instanceof LinearInequalityConstraint) {
+                ineqcs.add((LinearInequalityConstraint)data);
+                continue;
+            }
+            if (data instanceof InequalityConstraintSet)
+                constraintFunctions.addAll(((InequalityConstraintSet)data).constraints);
+            rest.add(data);
+        }
+        hasBox = (box != null);
+        if (objective == null)
+            throw new IllegalStateException("Expected a TwiceDifferentiableFunction argument");
+        n = objective.dim();
+        ArrayList<Row> eqRows = new ArrayList<Row>();
+        ArrayList<Double> eqB = new ArrayList<Double>();
+        ArrayList<Row> ineqRows = new ArrayList<Row>();
+        ArrayList<Double> ineqB = new ArrayList<Double>();
+        if (eqc != null) addRows(eqc.A, eqc.b, eqRows, eqB);
+        for (LinearInequalityConstraint ineqc: ineqcs) addRows(ineqc.A, ineqc.b, ineqRows, ineqB);
+        fixed = new double[n];
+        isFixed = new boolean[n];
+        fixRow = new int[n];
+        lowerRow = new int[n];
+        upperRow = new int[n];
+        Arrays.fill(lowerRow, -1);
+        Arrays.fill(upperRow, -1);
+        if (x0 != null) System.arraycopy(x0, 0, fixed, 0, n);
+
+        double[] beq = reduceEqualities(eqRows, eqB);
+        eqOrigin = origins(eqRows);
+        double[] lower = new double[n];
+        double[] upper = new double[n];
+        Arrays.fill(lower, Double.NEGATIVE_INFINITY);
+        Arrays.fill(upper, Double.POSITIVE_INFINITY);
+        if (box != null) {
+            if (box.dim() != n) throw new DimensionMismatchException(box.dim(), n);
+            System.arraycopy(box.lower, 0, lower, 0, n);
+            System.arraycopy(box.upper, 0, upper, 0, n);
+        }
+        double[] bineq = reduceInequalities(ineqRows, ineqB, lower, upper);
+        ineqOrigin = origins(ineqRows);
+        for (int j = 0; j < n; ++j) {
+            if (isFixed[j] && !((lower[j] < fixed[j]) && (fixed[j] < upper[j])))
+                throw new IllegalStateException(
+                    String.format("presolve: fixed variable %d is outside its bounds", j));
+        }
+
+        int nFree = 0;
+        for (int j = 0; j < n; ++j) if (!isFixed[j]) ++nFree;
+        free = new int[nFree];
+        for (int j = 0, k = 0; j < n; ++j) if (!isFixed[j]) free[k++] = j;
+        if (nFree == 0) {
+            // every variable is fixed, and linear constraints were verified above
+            RealVector xf = new ArrayRealVector(fixed, false);
+            for (OptimizationData data: rest) {
+                if (!(data instanceof InequalityConstraintSet)) continue;
+                int k = 0;
+                for (TwiceDifferentiableFunction f: ((InequalityConstraintSet)data).constraints) {
+                    if (!(f.value(xf) < 0.0))
+                        throw new IllegalStateException(
+                            String.format("presolve: fixed variables violate nonlinear constraint %d", k));
+                    ++k;
+                }
+            }
+            return null;
+        }
+
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        args.add(new ObjectiveFunction(restrict(objective)));
+        if (x0 != null) args.add(new InitialGuess(RestrictedFunction.restrict(x0, free)));
+        if (!eqRows.isEmpty())
+            args.add(new LinearEqualityConstraint(restrictRows(eqRows), new ArrayRealVector(beq, false)));
+        double[] zl = RestrictedFunction.restrict(lower, free);
+        double[] zu = RestrictedFunction.restrict(upper, free);
+        boolean bounded = false;
+        for (int k = 0; k < nFree; ++k)
+            if ((zl[k] > Double.NEGATIVE_INFINITY) || (zu[k] < Double.POSITIVE_INFINITY)) bounded = true;
+        if (bounded) args.add(new BoxConstraint(zl, zu));
+        if (!ineqRows.isEmpty())
+            args.add(new LinearInequalityConstraint(restrictRows(ineqRows), new ArrayRealVector(bineq, false)));
+        for (OptimizationData data: rest) {
+            if (data instanceof InequalityConstraintSet) {
+                ArrayList<TwiceDifferentiableFunction> fk = new ArrayList<TwiceDifferentiableFunction>();
+                for (TwiceDifferentiableFunction f: ((InequalityConstraintSet)data).constraints)
+                    fk.add(restrict(f));
+                args.add(new InequalityConstraintSet(fk));
+                continue;
+            }
+            args.add(data);
+        }
+        return args.toArray(new OptimizationData[0]);
+    }
+
+    @Override
+    PointValuePair postsolve(PointValuePair pvp) {
+        double[] x = (pvp == null) ? fixed.clone() : RestrictedFunction.expand(pvp.getPoint(), free, fixed);
+        return new PointValuePair(x, objective.value(x));
+    }
+
+    // Duals of remaining rows are mapped to their original rows, and removed redundant rows have zero duals.
+    // A singleton inequality row a[j]x[j] < b that set a bound takes the bound dual, divided by |a[j]|.
+    // Equality rows that fixed variables take the duals that satisfy stationarity,
+    // grad(f) + sum(lambda[k]grad(f[k])) + (A^T)nu = 0, at the fixed variables. These are solved
+    // in the reverse order that variables were fixed, since a row that fixed x[j] involves x[j]
+    // and only variables that were fixed before it.
+    @Override
+    ConvexSolveResult postsolveResult(ConvexSolveResult result) {
+        PointValuePair pvp = postsolve(result);
+        final double[] x = pvp.getPoint();
+        final int mf = constraintFunctions.size();
+        int mi = mf;
+        for (LinearInequalityConstraint c: ineqcs) mi += c.b.getDimension();
+        double[] lambda = (mi > 0) ? new double[mi] : null;
+        double[] lower = hasBox ? new double[n] : null;
+        double[] upper = hasBox ? new double[n] : null;
+        double[] nu = (eqc != null) ? new double[eqc.b.getDimension()] : null;
+        if (result != null) {
+            double[] lr = result.getInequalityDuals();
+            if (lr != null) {
+                System.arraycopy(lr, 0, lambda, 0, mf);
+                for (int k = 0; k < ineqOrigin.length; ++k) lambda[mf + ineqOrigin[k]] = lr[mf + k];
+            }
+            mapBoundDuals(result.getLowerBoundDuals(), lowerRow, lower, lambda);
+            mapBoundDuals(result.getUpperBoundDuals(), upperRow, upper, lambda);
+            double[] nr = result.getEqualityDuals();
+            if (nr != null) for (int k = 0; k < eqOrigin.length; ++k) nu[eqOrigin[k]] = nr[k];
+        }
+        if ((nu != null) && !fixOrder.isEmpty()) {
+            RealVector xv = new ArrayRealVector(x, false);
+            double[] g = objective.gradient(xv).toArray();
+            for (int k = 0; k < mf; ++k)
+                if (lambda[k] != 0.0) axpy(lambda[k], constraintFunctions.get(k).gradient(xv).toArray(), g);
+            int row = mf;
+            for (LinearInequalityConstraint c: ineqcs) {
+                for (int i = 0; i < c.b.getDimension(); ++i) addRow(c.A, i, lambda[row + i], g);
+                row += c.b.getDimension();
+            }
+            if (hasBox) for (int j = 0; j < n; ++j) g[j] += upper[j] - lower[j];
+            for (int i = 0; i < nu.length; ++i) addRow(eqc.A, i, nu[i], g);
+            for (int q = fixOrder.size() - 1; q >= 0; --q) {
+                final int j = fixOrder.get(q);
+                final int i = fixRow[j];
+                nu[i] = -g[j] / eqc.A.getEntry(i, j);
+                addRow(eqc.A, i, nu[i], g);
+            }
+        }
+        if (result == null) {
+            return new ConvexSolveResult(x, pvp.getValue(), SolveStatus.CONVERGED, 0.0, Double.NaN,
+                lambda, lower, upper, nu, SolveStatistics.NONE);
+        }
+        return new ConvexSolveResult(x, pvp.getValue(), result.getStatus(), result.getDualityGap(),
+            result.getBarrierT(), lambda, lower, upper, nu, result.getStatistics());
+    }
+
+    // map bound duals of the free variables to the original bounds, or to the rows that set them
+    private void mapBoundDuals(double[] zd, int[] source, double[] bd, double[] lambda) {
+        if (zd == null) return;
+        for (int k = 0; k < free.length; ++k) {
+            final int j = free[k];
+            if (source[j] >= 0) {
+                lambda[constraintFunctions.size() + source[j]] = zd[k] / boundScale(source[j], j);
+            } else if (bd != null) {
+                bd[j] = zd[k];
+            }
+        }
+    }
+
+    // |a[j]| of stacked inequality row i
+    private double boundScale(int i, int j) {
+        for (LinearInequalityConstraint c: ineqcs) {
+            final int m = c.b.getDimension();
+            if (i < m) return Math.abs(c.A.getEntry(i, j));
+            i -= m;
+        }
+        throw new IllegalStateException("inequality row out of range");
+    }
+
+    // g = g + (alpha)A[i]
+    private static void addRow(RealMatrix A, int i, double alpha, double[] g) {
+        if (alpha == 0.0) return;
+        if (A instanceof CSRRealMatrix) {
+            CSRRealMatrix S = (CSRRealMatrix)A;
+            final IntBuffer rowPtr = S.getRowPointers();
+            final IntBuffer colIdx = S.getColumnIndices();
+            final DoubleBuffer values = S.getValues();
+            for (int k = rowPtr.get(i); k < rowPtr.get(i + 1); ++k) g[colIdx.get(k)] += alpha * values.get(k);
+            return;
+        }
+        double[] a = (A instanceof Array2DRowRealMatrix) ? ((Array2DRowRealMatrix)A).getDataRef()[i] : A.getRow(i);
+        axpy(alpha, a, g);
+    }
+
+    private static void axpy(double alpha, double[] x, double[] y) {
+        for (int j = 0; j < y.length; ++j) y[j] += alpha * x[j];
+    }
+
+    private static int[] origins(ArrayList<Row> rows) {
+        int[] o = new int[rows.size()];
+        for (int i = 0; i < o.length; ++i) o[i] = rows.get(i).origin;
+        return o;
+    }
+
+    // Remove empty and duplicate equality rows, and substitute variables fixed by singleton rows.
+    // Reduced rows remain in (rows), with fixed columns zeroed, and their constants are returned.
+    private double[] reduceEqualities(ArrayList<Row> rows, ArrayList<Double> bs) {
+        double[] b = unbox(bs);
+        boolean[] removed = new boolean[rows.size()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < rows.size(); ++i) {
+                if (removed[i]) continue;
+                Row row = rows.get(i);
+                substituteFixed(row, b, i);
+                final int count = row.idx.length;
+                if (count == 0) {
+                    if (Math.abs(b[i]) > tol * Math.max(1.0, Math.abs(b[i])))
+                        throw new IllegalStateException(
+                            String.format("presolve: equality constraint %d is infeasible", i));
+                    removed[i] = true;
+                } else if (count == 1) {
+                    fix(row.idx[0], b[i] / row.val[0], row.origin);
+                    removed[i] = true;
+                    changed = true;
+                }
+            }
+        }
+        // duplicate rows, up to a nonzero scale factor
+        HashMap<RowKey, Integer> seen = new HashMap<RowKey, Integer>();
+        for (int i = 0; i < rows.size(); ++i) {
+            if (removed[i]) continue;
+            Row row = rows.get(i);
+            double s = scale(row, true);
+            RowKey key = new RowKey(row, s);
+            Integer i0 = seen.get(key);
+            if ((i0 == null) || !parallel(row, s, rows.get(i0), scale(rows.get(i0), true))) {
+                seen.put(key, i);
+                continue;
+            }
+            double b0 = b[i0] * scale(rows.get(i0), true);
+            double b1 = b[i] * s;
+            if (Math.abs(b1 - b0) > tol * Math.max(1.0, Math.abs(b0)))
+                throw new IllegalStateException(
+                    String.format("presolve: equality constraints %d and %d are inconsistent", i0, i));
+            removed[i] = true;
+        }
+        return compact(rows, b, removed);
+    }
+
+    // Substitute fixed variables, collect singleton rows as bounds, and remove empty,
+    // duplicate and redundant rows. Returns the constants of the remaining rows.
+    private double[] reduceInequalities(ArrayList<Row> rows, ArrayList<Double> bs,
+                                        double[] lower, double[] upper) {
+        double[] b = unbox(bs);
+        boolean[] removed = new boolean[rows.size()];
+        HashMap<RowKey, Integer> seen = new HashMap<RowKey, Integer>();
+        for (int i = 0; i < rows.size(); ++i) {
+            Row row = rows.get(i);
+            substituteFixed(row, b, i);
+            final int count = row.idx.length;
+            if (count == 0) {
+                // 0 < b
+                if (!(b[i] > 0.0))
+                    throw new IllegalStateException(
+                        String.format("presolve: inequality constraint %d is infeasible", i));
+                removed[i] = true;
+            } else if (count == 1) {
+                final int nz = row.idx[0];
+                double v = b[i] / row.val[0];
+                if (row.val[0] > 0.0) {
+                    if (v < upper[nz]) {
+                        upper[nz] = v;
+                        upperRow[nz] = row.origin;
+                    }
+                } else {
+                    if (v > lower[nz]) {
+                        lower[nz] = v;
+                        lowerRow[nz] = row.origin;
+                    }
+                }
+                if (!(lower[nz] < upper[nz]))
+                    throw new IllegalStateException(
+                        String.format("presolve: bounds on variable %d are infeasible", nz));
+                removed[i] = true;
+            } else {
+                // parallel rows with the same orientation: keep the tightest
+                double s = scale(row, false);
+                RowKey key = new RowKey(row, s);
+                Integer i0 = seen.get(key);
+                if ((i0 == null) || !parallel(row, s, rows.get(i0), scale(rows.get(i0), false))) {
+                    seen.put(key, i);
+                    continue;
+                }
+                if (b[i] * s < b[i0] * scale(rows.get(i0), false)) {
+                    removed[i0] = true;
+                    seen.put(key, i);
+                } else {
+                    removed[i] = true;
+                }
+            }
+        }
+        // rows whose activity is bounded below b by the variable bounds can never be active
+        for (int i = 0; i < rows.size(); ++i) {
+            if (removed[i]) continue;
+            Row row = rows.get(i);
+            double amax = 0.0;
+            double amin = 0.0;
+            for (int k = 0; k < row.idx.length; ++k) {
+                final int j = row.idx[k];
+                final double a = row.val[k];
+                if (a > 0.0) {
+                    amax += a * upper[j];
+                    amin += a * lower[j];
+                } else if (a < 0.0) {
+                    amax += a * lower[j];
+                    amin += a * upper[j];
+                }
+            }
+            if (amin >= b[i])
+                throw new IllegalStateException(
+                    String.format("presolve: inequality constraint %d is infeasible within variable bounds", i));
+            if (amax <= b[i]) removed[i] = true;
+        }
+        return compact(rows, b, removed);
+    }
+
+    private void fix(int j, double v, int row) {
+        if (isFixed[j]) {
+            if (Math.abs(v - fixed[j]) > tol * Math.max(1.0, Math.abs(v)))
+                throw new IllegalStateException(
+                    String.format("presolve: equality constraint %d is inconsistent with variable %d", row, j));
+            return;
+        }
+        isFixed[j] = true;
+        fixed[j] = v;
+        fixRow[j] = row;
+        fixOrder.add(j);
+    }
+
+    // move the contribution of fixed variables in row i to the constant
+    private void substituteFixed(Row row, double[] b, int i) {
+        int nz = 0;
+        for (int k = 0; k < row.idx.length; ++k) {
+            final int j = row.idx[k];
+            if (isFixed[j]) {
+                b[i] -= row.val[k] * fixed[j];
+            } else {
+                row.idx[nz] = j;
+                row.val[nz] = row.val[k];
+                ++nz;
+            }
+        }
+        if (nz < row.idx.length) {
+            row.idx = Arrays.copyOf(row.idx, nz);
+            row.val = Arrays.copyOf(row.val, nz);
+        }
+    }
+
+    private TwiceDifferentiableFunction restrict(TwiceDifferentiableFunction f) {
+        if (free.length == n) return f;
+        if (f instanceof LinearFunction) {
+            // keep linear functions linear, so their zero Hessians remain recognizable
+            double[] x = fixed.clone();
+            for (int j: free) x[j] = 0.0;
+            RealVector xv = new ArrayRealVector(x, false);
+            double[] a = RestrictedFunction.restrict(f.gradient(xv).toArray(), free);
+            return new LinearFunction(a, f.value(xv));
+        }
+        return new RestrictedFunction(f, free, fixed);
+    }
+
+    // the rows over the free variables, which are the only nonzero columns after substitution
+    private CSRRealMatrix restrictRows(ArrayList<Row> rows) {
+        int[] col = new int[n];
+        Arrays.fill(col, -1);
+        for (int k = 0; k < free.length; ++k) col[free[k]] = k;
+        final int m = rows.size();
+        int[] rowPtr = new int[m + 1];
+        for (int i = 0; i < m; ++i) rowPtr[i + 1] = rowPtr[i] + rows.get(i).idx.length;
+        int[] colIdx = new int[rowPtr[m]];
+        double[] values = new double[rowPtr[m]];
+        for (int i = 0; i < m; ++i) {
+            Row row = rows.get(i);
+            for (int k = 0; k < row.idx.length; ++k) {
+                colIdx[rowPtr[i] + k] = col[row.idx[k]];
+                values[rowPtr[i] + k] = row.val[k];
+            }
+        }
+        return new CSRRealMatrix(m, free.length, rowPtr, colIdx, values);
+    }
+
+    // Normalizing scale for a row: 1/(max |a[j]|), with the sign of the first nonzero if (signed)
+    private static double scale(Row row, boolean signed) {
+        double m = 0.0;
+        for (double a: row.val) m = Math.max(m, Math.abs(a));
+        return (signed && (row.val[0] < 0.0)) ? (-1.0 / m) : (1.0 / m);
+    }
+
+    // true if rows are equal after normalizing by their scales
+    private boolean parallel(Row row1, double s1, Row row0, double s0) {
+        int k1 = 0;
+        int k0 = 0;
+        while ((k1 < row1.idx.length) || (k0 < row0.idx.length)) {
+            final int j1 = (k1 < row1.idx.length) ? row1.idx[k1] : Integer.MAX_VALUE;
+            final int j0 = (k0 < row0.idx.length) ? row0.idx[k0] : Integer.MAX_VALUE;
+            final double a1 = (j1 <= j0) ? row1.val[k1++] * s1 : 0.0;
+            final double a0 = (j0 <= j1) ? row0.val[k0++] * s0 : 0.0;
+            if (Math.abs(a1 - a0) > tol) return false;
+        }
+        return true;
+    }
+
+    private static double[] compact(ArrayList<Row> rows, double[] b, boolean[] removed) {
+        ArrayList<Row> r = new ArrayList<Row>();
+        double[] br = new double[b.length];
+        for (int i = 0; i < rows.size(); ++i) {
+            if (removed[i]) continue;
+            br[r.size()] = b[i];
+            r.add(rows.get(i));
+        }
+        rows.clear();
+        rows.addAll(r);
+        return Arrays.copyOf(br, r.size());
+    }
+
+    // the nonzeros of each row of A, read from the compressed arrays of a CSRRealMatrix
+    private void addRows(RealMatrix A, RealVector b, ArrayList<Row> rows, ArrayList<Double> bs) {
+        if (A.getColumnDimension() != n) throw new DimensionMismatchException(A.getColumnDimension(), n);
+        final int m = A.getRowDimension();
+        if (A instanceof CSRRealMatrix) {
+            CSRRealMatrix S = (CSRRealMatrix)A;
+            final IntBuffer rowPtr = S.getRowPointers();
+            final IntBuffer colIdx = S.getColumnIndices();
+            final DoubleBuffer values = S.getValues();
+            for (int i = 0; i < m; ++i) {
+                final int rb = rowPtr.get(i);
+                final int nz = rowPtr.get(i + 1) - rb;
+                Row row = new Row(nz, rows.size());
+                for (int k = 0; k < nz; ++k) {
+                    row.idx[k] = colIdx.get(rb + k);
+                    row.val[k] = values.get(rb + k);
+                }
+                rows.add(row.nonzero());
+                bs.add(b.getEntry(i));
+            }
+            return;
+        }
+        for (int i = 0; i < m; ++i) {
+            double[] a = (A instanceof Array2DRowRealMatrix) ? ((Array2DRowRealMatrix)A).getDataRef()[i] : A.getRow(i);
+            int nz = 0;
+            for (int j = 0; j < n; ++j) if (a[j] != 0.0) ++nz;
+            Row row = new Row(nz, rows.size());
+            for (int j = 0, k = 0; j < n; ++j) {
+                if (a[j] == 0.0) continue;
+                row.idx[k] = j;
+                row.val[k++] = a[j];
+            }
+            rows.add(row);
+            bs.add(b.getEntry(i));
+        }
+    }
+
+    private static double[] unbox(ArrayList<Double> v) {
+        double[] r = new double[v.size()];
+        for (int j = 0; j < r.length; ++j) r[j] = v.get(j);
+        return r;
+    }
+
+    // The nonzeros of a constraint row, in increasing column order
+    private static final class Row {
+        final int origin;
+        int[] idx;
+        double[] val;
+
+        Row(int nz, int origin) {
+            this.origin = origin;
+            idx = new int[nz];
+            val = new double[nz];
+        }
+
+        // drop explicitly stored zeros
+        Row nonzero() {
+            int nz = 0;
+            for (double a: val) if (a != 0.0) ++nz;
+            if (nz == val.length) return this;
+            Row r = new Row(nz, origin);
+            for (int k = 0, q = 0; k < val.length; ++k) {
+                if (val[k] == 0.0) continue;
+                r.idx[q] = idx[k];
+                r.val[q++] = val[k];
+            }
+            return r;
+        }
+    }
+
+    // A hash key for a normalized row, with coefficients rounded to a coarse grid. Rows with
+    // equal keys are candidate duplicates, which are then compared with tolerance.
+    // Coefficients that round to zero are left out, as they compare equal to absent entries.
+    private static final class RowKey {
+        private final int[] j;
+        private final long[] k;
+
+        RowKey(Row row, double s) {
+            int nz = 0;
+            long[] r = new long[row.idx.length];
+            for (int q = 0; q < r.length; ++q) {
+                r[q] = Math.round(row.val[q] * s * KEY_GRID);
+                if (r[q] != 0L) ++nz;
+            }
+            j = new int[nz];
+            k = new long[nz];
+            for (int q = 0, p = 0; q < r.length; ++q) {
+                if (r[q] == 0L) continue;
+                j[p] = row.idx[q];
+                k[p++] = r[q];
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof RowKey) && Arrays.equals(j, ((RowKey)o).j) && Arrays.equals(k, ((RowKey)o).k);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(j) + Arrays.hashCode(k);
+        }
+    }
+
+    private static final double KEY_GRID = 1e6;
+}
@@ -0,0 +1,133 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+/**
+ * A convex problem with a quadratic or linear objective 0.5*(x^T)P(x) + q.x + r, subject to linear
+ * inequality constraints, linear equality constraints and bounds, with a map of metadata.
+ * <p>
+ * Constraint matrices are held as {@link CSRRealMatrix}, which {@link ProblemFile} can read directly
+ * from memory-mapped files. Any of P, the constraints and the bounds may be null.
+ */
+public class ProblemData {
+    /** The quadratic objective weights P, or null for a linear objective */
+    public final CSRRealMatrix P;
+    /** The linear objective weights q */
+    public final RealVector q;
+    /** The objective constant r */
+    public final double r;
+    /** Linear inequality constraints Ax &lt; b, or null */
+    public final LinearInequalityConstraint inequalities;
+    /** Linear equality constraints Ax = b, or null */
+    public final LinearEqualityConstraint equalities;
+    /** Bounds on the variables, or null */
+    public final BoxConstraint bounds;
+    /** Problem metadata, as an unmodifiable map of key/value pairs */
+    public final Map<String, String> metadata;
+
+    /**
+     * Construct a problem. Constraint matrices that are not already {@link CSRRealMatrix} are converted.
+     * @param P symmetric quadratic objective weights, or null for a linear objective
+     * @param q linear objective weights
+     * @param r objective constant
+     * @param inequalities linear inequality constraints, or null
+     * @param equalities linear equality constraints, or null
+     * @param bounds bounds on the variables, or null
+     * @param metadata key/value pairs describing the problem, or null. Keys may not contain
+     * '=' or line breaks, and values may not contain line breaks.
+     */
+    public ProblemData(
+        RealMatrix P, RealVector q, double r,
+        LinearInequalityConstraint inequalities,
+        LinearEqualityConstraint equalities,
+        BoxConstraint bounds,
+        Map<String, String> metadata) {
+        final int n = q.getDimension();
+        if (n < 1) throw new IllegalArgumentException("Dimension must be nonzero");
+        if (P != null) {
+            if (P.getRowDimension() != n) throw new DimensionMismatchException(P.getRowDimension(), n);
+            if (P.getColumnDimension() != n) throw new DimensionMismatchException(P.getColumnDimension(), n);
+        }
+        if ((inequalities != null) && (inequalities.A.getColumnDimension() != n))
+            throw new DimensionMismatchException(inequalities.A.getColumnDimension(), n);
+        if ((equalities != null) && (equalities.A.getColumnDimension() != n))
+            throw new DimensionMismatchException(equalities.A.getColumnDimension(), n);
+        if ((bounds != null) && (bounds.dim() != n))
+            throw new DimensionMismatchException(bounds.dim(), n);
+        Map<String, String> meta = new LinkedHashMap<String, String>();
+        if (metadata != null) {
+            for (Map.Entry<String, String> e: metadata.entrySet()) {
+                String key = e.getKey();
+                String value = e.getValue();
+                if (key.isEmpty() || (key.indexOf('=') >= 0) || hasLineBreak(key))
+                    throw new IllegalArgumentException("invalid metadata key: " + key);
+                if (hasLineBreak(value))
+                    throw new IllegalArgumentException("invalid metadata value for key: " + key);
+                meta.put(key, value);
+            }
+        }
+        this.P = (P == null) ? null : csr(P);
+        this.q = q;
+        this.r = r;
+        this.inequalities = ((inequalities == null) || (inequalities.A instanceof CSRRealMatrix)) ?
+            inequalities :
+            new LinearInequalityConstraint(csr(inequalities.A), inequalities.b);
+        this.equalities = ((equalities == null) || (equalities.A instanceof CSRRealMatrix)) ?
+            equalities :
+            new LinearEqualityConstraint(csr(equalities.A), equalities.b);
+        this.bounds = bounds;
+        this.metadata = Collections.unmodifiableMap(meta);
+    }
+
+    /** @return the dimension of the problem domain */
+    public int dim() { return q.getDimension(); }
+
+    /** @return the objective function, a {@link QuadraticFunction} or a {@link LinearFunction} */
+    public TwiceDifferentiableFunction objective() {
+        if (P == null) return new LinearFunction(q, r);
+        return new QuadraticFunction(P, q, r);
+    }
+
+    /**
+     * @return the objective and constraints, as arguments for
+     * {@link ConvexOptimizer#optimize(OptimizationData...)}. An initial guess is not included.
+     */
+    public OptimizationData[] toOptimizationData() {
+        ArrayList<OptimizationData> od = new ArrayList<OptimizationData>();
+        od.add(new ObjectiveFunction(objective()));
+        if (inequalities != null) od.add(inequalities);
+        if (equalities != null) od.add(equalities);
+        if (bounds != null) od.add(bounds);
+        return od.toArray(new OptimizationData[0]);
+    }
+
+    private static CSRRealMatrix csr(RealMatrix M) {
+        return (M instanceof CSRRealMatrix) ? (CSRRealMatrix)M : new CSRRealMatrix(M);
+    }
+
+    private static boolean hasLineBreak(String s) {
+        return (s.indexOf('\n') >= 0) || (s.indexOf('\r') >= 0);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+/**
+ * Reads and writes {@link ProblemData} in a compact binary format, whose constraint matrices
+ * are memory-mapped on read, so that large problems can be loaded without copying their
+ * coefficients onto the heap. This also allows a problem to be snapshot to a file and replayed.
+ * <p>
+ * The format is little-endian. A fixed-size header holds:
+ * <pre>
+ * int magic, int version, int n, int mIneq, int mEq, int nnzP, int nnzIneq, int nnzEq,
+ * int flags, int metadataLength, double r
+ * </pre>
+ * where flags bit 0 is set if the objective has a quadratic term P, and bit 1 is set if bounds
+ * are present. It is followed by these sections, each starting on an 8-byte boundary:
+ * <ul>
+ *   <li>metadata: UTF-8 text, one key=value pair per line</li>
+ *   <li>objective: q, followed by P in CSR form (row pointers, column indices, values), if present</li>
+ *   <li>inequality constraints: A in CSR form, followed by b, if mIneq &gt; 0</li>
+ *   <li>equality constraints: A in CSR form, followed by b, if mEq &gt; 0</li>
+ *   <li>bounds: lower bounds, followed by upper bounds, if present. Infinite bounds are allowed.</li>
+ * </ul>
+ * <p>
+ * The CSR arrays of {@link ProblemData#P} and of the constraint matrices read by {@link #read(File)}
+ * are read-only views of the mapped file, which remain valid after the file is closed.
+ * The vectors q and b, and the bounds, are copied onto the heap.
+ * Each mapped array is limited to 2GB.
+ */
+public final class ProblemFile {
+    private ProblemFile() {}
+
+    /**
+     * Write a problem to a file, replacing any existing contents.
+     * @param file the file to write
+     * @param problem the problem to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, ProblemData problem) throws IOException {
+        final int n = problem.dim();
+        final CSRRealMatrix P = problem.P;
+        final CSRRealMatrix Ai = (problem.inequalities == null) ? null : (CSRRealMatrix)problem.inequalities.A;
+        final CSRRealMatrix Ae = (problem.equalities == null) ? null : (CSRRealMatrix)problem.equalities.A;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e: problem.metadata.entrySet())
+            sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        final byte[] meta = sb.toString().getBytes(StandardCharsets.UTF_8);
+        int flags = 0;
+        if (P != null) flags |= FLAG_QUADRATIC;
+        if (problem.bounds != null) flags |= FLAG_BOUNDS;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            Writer w = new Writer(raf.getChannel());
+            w.putInt(MAGIC);
+            w.putInt(VERSION);
+            w.putInt(n);
+            w.putInt((Ai == null) ? 0 : Ai.getRowDimension());
+            w.putInt((Ae == null) ? 0 : Ae.getRowDimension());
+            w.putInt((P == null) ? 0 : P.getNonZeroCount());
+            w.putInt((Ai == null) ? 0 : Ai.getNonZeroCount());
+            w.putInt((Ae == null) ? 0 : Ae.getNonZeroCount());
+            w.putInt(flags);
+            w.putInt(meta.length);
+            w.putDouble(problem.r);
+            for (byte x: meta) w.putByte(x);
+            w.align();
+            w.putVector(problem.q);
+            if (P != null) w.putCSR(P);
+            if (Ai != null) {
+                w.putCSR(Ai);
+                w.putVector(problem.inequalities.b);
+            }
+            if (Ae != null) {
+                w.putCSR(Ae);
+                w.putVector(problem.equalities.b);
+            }
+            if (problem.bounds != null) {
+                for (double x: problem.bounds.lower) w.putDouble(x);
+                for (double x: problem.bounds.upper) w.putDouble(x);
+            }
+            w.flush();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a problem from a file, memory-mapping its sparse matrices.
+     * @param file the file to read
+     * @return the problem
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid problem file
+     */
+    public static ProblemData read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            Reader rd = new Reader(raf.getChannel());
+            ByteBuffer header = rd.bytes(HEADER_BYTES);
+            if (header.getInt() != MAGIC) throw new IllegalArgumentException("not a problem file");
+            final int version = header.getInt();
+            if (version != VERSION) throw new IllegalArgumentException("unsupported version: " + version);
+            final int n = header.getInt();
+            final int mIneq = header.getInt();
+            final int mEq = header.getInt();
+            final int nnzP = header.getInt();
+            final int nnzIneq = header.getInt();
+            final int nnzEq = header.getInt();
+            final int flags = header.getInt();
+            final int metaLength = header.getInt();
+            final double r = header.getDouble();
+            if ((n < 1) || (mIneq < 0) || (mEq < 0) || (nnzP < 0) || (nnzIneq < 0) || (nnzEq < 0) || (metaLength < 0))
+                throw new IllegalArgumentException("invalid problem file header");
+            byte[] meta = new byte[metaLength];
+            rd.bytes(metaLength).get(meta);
+            Map<String, String> metadata = new LinkedHashMap<String, String>();
+            for (String line: new String(meta, StandardCharsets.UTF_8).split("\n")) {
+                if (line.isEmpty()) continue;
+                int eq = line.indexOf('=');
+                if (eq < 1) throw new IllegalArgumentException("invalid metadata line: " + line);
+                metadata.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+            RealVector q = rd.vector(n);
+            CSRRealMatrix P = ((flags & FLAG_QUADRATIC) != 0) ? rd.csr(n, n, nnzP) : null;
+            LinearInequalityConstraint ineq = null;
+            if (mIneq > 0) {
+                CSRRealMatrix A = rd.csr(mIneq, n, nnzIneq);
+                ineq = new LinearInequalityConstraint(A, rd.vector(mIneq));
+            }
+            LinearEqualityConstraint eq = null;
+            if (mEq > 0) {
+                CSRRealMatrix A = rd.csr(mEq, n, nnzEq);
+                eq = new LinearEqualityConstraint(A, rd.vector(mEq));
+            }
+            BoxConstraint bounds = null;
+            if ((flags & FLAG_BOUNDS) != 0) {
+                double[] lower = new double[n];
+                double[] upper = new double[n];
+                rd.doubles(n).get(lower);
+                rd.doubles(n).get(upper);
+                bounds = new BoxConstraint(lower, upper);
+            }
+            return new ProblemData(P, q, r, ineq, eq, bounds, metadata);
+        } finally {
+            raf.close();
+        }
+    }
+
+    // streams values through a fixed-size buffer, tracking the file position for section alignment
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = 0;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte x) throws IOException {
+            reserve(1);
+            buf.put(x);
+        }
+
+        void putInt(int x) throws IOException {
+            reserve(4);
+            buf.putInt(x);
+        }
+
+        void putDouble(double x) throws IOException {
+            reserve(8);
+            buf.putDouble(x);
+        }
+
+        void putVector(RealVector v) throws IOException {
+            for (int j = 0; j < v.getDimension(); ++j) putDouble(v.getEntry(j));
+        }
+
+        void putCSR(CSRRealMatrix M) throws IOException {
+            IntBuffer rowPtr = M.getRowPointers();
+            IntBuffer colIdx = M.getColumnIndices();
+            DoubleBuffer values = M.getValues();
+            for (int i = 0; i < rowPtr.limit(); ++i) putInt(rowPtr.get(i));
+            align();
+            for (int k = 0; k < colIdx.limit(); ++k) putInt(colIdx.get(k));
+            align();
+            for (int k = 0; k < values.limit(); ++k) putDouble(values.get(k));
+        }
+
+        // pad with zeros to the next 8-byte boundary
+        void align() throws IOException {
+            while (((position + buf.position()) & 7L) != 0) putByte((byte)0);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) position += channel.write(buf);
+            buf.clear();
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+    }
+
+    // maps consecutive sections of a file
+    private static final class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private long position = 0;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        ByteBuffer bytes(long length) throws IOException {
+            if (length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("problem file section exceeds 2GB");
+            if (position + length > size)
+                throw new IllegalArgumentException("problem file is truncated");
+            MappedByteBuffer mb = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            // sections start on 8-byte boundaries
+            position = (position + length + 7L) & ~7L;
+            return mb;
+        }
+
+        IntBuffer ints(int length) throws IOException {
+            return bytes(4L * length).asIntBuffer();
+        }
+
+        DoubleBuffer doubles(int length) throws IOException {
+            return bytes(8L * length).asDoubleBuffer();
+        }
+
+        RealVector vector(int length) throws IOException {
+            double[] v = new double[length];
+            doubles(length).get(v);
+            return new ArrayRealVector(v, false);
+        }
+
+        CSRRealMatrix csr(int rows, int cols, int nnz) throws IOException {
+            IntBuffer rowPtr = ints(rows + 1);
+            IntBuffer colIdx = ints(nnz);
+            DoubleBuffer values = doubles(nnz);
+            return new CSRRealMatrix(rows, cols, rowPtr, colIdx, values);
+        }
+    }
+
+    // "GBPF", read as a little-endian int
+    private static final int MAGIC = 0x46504247;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+    private static final int FLAG_QUADRATIC = 1;
+    private static final int FLAG_BOUNDS = 2;
+    private static final int CHUNK_BYTES = 1 << 16;
+}
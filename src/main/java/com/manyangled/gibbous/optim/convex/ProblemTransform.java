@@ -0,0 +1,55 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+
+/**
+ * A transformation of an optimization problem that is applied by {@link ConvexOptimizer}
+ * before optimization, together with the inverse mapping of the solution.
+ */
+abstract class ProblemTransform {
+    /**
+     * Transform the problem
+     * @param optData the problem arguments
+     * @return the transformed problem arguments, or null if the transform fully determines the solution,
+     * in which case it is returned by {@link #postsolve(PointValuePair)} with a null argument.
+     */
+    abstract OptimizationData[] presolve(OptimizationData[] optData);
+
+    /**
+     * Map a solution of the transformed problem back to the original problem
+     * @param pvp a solution of the transformed problem
+     * @return the corresponding solution of the original problem
+     */
+    abstract PointValuePair postsolve(PointValuePair pvp);
+
+    /**
+     * Map a solve result of the transformed problem back to the original problem. By default, the
+     * solution is mapped by {@link #postsolve(PointValuePair)}, and duals are dropped, since
+     * they do not in general correspond to the original constraints.
+     * @param result a result for the transformed problem, or null if the transform fully determined the solution
+     * @return the corresponding result for the original problem
+     */
+    ConvexSolveResult postsolveResult(ConvexSolveResult result) {
+        PointValuePair pvp = postsolve(result);
+        if (result == null) {
+            return new ConvexSolveResult(pvp.getPoint(), pvp.getValue(), SolveStatus.CONVERGED, 0.0, Double.NaN,
+                null, null, null, null, SolveStatistics.NONE);
+        }
+        return new ConvexSolveResult(pvp.getPoint(), pvp.getValue(), result.getStatus(), result.getDualityGap(),
+            result.getBarrierT(), null, null, null, null, result.getStatistics());
+    }
+}
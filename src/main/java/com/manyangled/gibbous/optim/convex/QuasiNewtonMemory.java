@@ -0,0 +1,40 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * The number of correction pairs retained by the L-BFGS update in {@link QuasiNewtonOptimizer}.
+ * As described in (Algorithm 7.5) of
+ * Numerical Optimization, Nocedal and Wright, Springer, 2006.
+ */
+public class QuasiNewtonMemory implements OptimizationData {
+    /** The number of retained correction pairs */
+    public final int m;
+
+    /**
+     * Construct an L-BFGS memory parameter
+     *
+     * @param m the number of correction pairs to retain. Must be &gt; 0.
+     */
+    public QuasiNewtonMemory(int m) {
+        if (m < 1)
+            throw new IllegalArgumentException("memory must be > 0");
+        this.m = m;
+    }
+
+    /** Default L-BFGS memory */
+    public static final int QUASI_NEWTON_MEMORY_DEFAULT = 10;
+}
@@ -0,0 +1,327 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.util.Pair;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
+/**
+ * Implements convex optimization using a limited-memory BFGS (L-BFGS) quasi-Newton method.
+ * Supports linear equality constraints, by projecting the starting point onto the
+ * constraint set and projecting all search directions onto the null space of the constraints.
+ * <p>
+ * Each iteration requires only function values and gradients. The Hessian is evaluated only
+ * for periodic refreshes configured with {@link HessianRefresh}, so this optimizer is suited
+ * to functions whose Hessians are expensive to compute, in exchange for a larger number of
+ * (cheaper) iterations than {@link NewtonOptimizer}.
+ * <p>
+ * (Algorithm 7.4) and (Algorithm 7.5) from
+ * Numerical Optimization, Nocedal and Wright, Springer, 2006.
+ * <p>
+ * {@link QuasiNewtonOptimizer} supports the following {@link OptimizationData} parameters as arguments
+ * to {@link #optimize(OptimizationData...)}:
+ * <ul>
+ *   <li>convex objective function: ObjectiveFunction - mandatory: must contain a {@link TwiceDifferentiableFunction} </li>
+ *   <li>initial guess: InitialGuess - mandatory: need not satisfy equality constraints </li>
+ *   <li>linear equality constraints: {@link LinearEqualityConstraint} - optional </li>
+ *   <li>convergence epsilon: {@link ConvergenceEpsilon} - optional </li>
+ *   <li>backtracking alpha: {@link BacktrackAlpha} - optional </li>
+ *   <li>backtracking beta: {@link BacktrackBeta} - optional </li>
+ *   <li>L-BFGS memory: {@link QuasiNewtonMemory} - optional </li>
+ *   <li>Hessian refresh period: {@link HessianRefresh} - optional </li>
+ *   <li>KKT equations solver: {@link KKTSolver} - optional: used only for Hessian refresh steps </li>
+ *   <li>wall-clock deadline: {@link Deadline} - optional </li>
+ *   <li>cancellation token: {@link Cancellation} - optional </li>
+ * </ul>
+ * <p>
+ * This optimizer can be used for the centering steps of {@link BarrierOptimizer} by passing
+ * an {@link InnerOptimizer} argument via {@link InnerOptimizationData}.
+ */
+public class QuasiNewtonOptimizer extends ConvexOptimizer {
+    private LinearEqualityConstraint eqConstraint;
+    private KKTSolver kktSolver;
+    private RealVector xStart;
+    private double epsilon = ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
+    private double alpha = BacktrackAlpha.BACKTRACK_ALPHA_DEFAULT;
+    private double beta = BacktrackBeta.BACKTRACK_BETA_DEFAULT;
+    private int memory = QuasiNewtonMemory.QUASI_NEWTON_MEMORY_DEFAULT;
+    private int refresh = HessianRefresh.HESSIAN_REFRESH_DEFAULT;
+    private HaltingCondition halting;
+
+    public QuasiNewtonOptimizer() {
+        super();
+    }
+
+    @Override
+    public ConvexSolveResult optimize(OptimizationData... optData) {
+        return super.optimize(optData);
+    }
+
+    @Override
+    protected void parseOptimizationData(OptimizationData... optData) {
+        super.parseOptimizationData(optData);
+        for (OptimizationData data: optData) {
+            if (data instanceof LinearEqualityConstraint) {
+                eqConstraint = (LinearEqualityConstraint)data;
+                continue;
+            }
+            if (data instanceof KKTSolver) {
+                kktSolver = (KKTSolver)data;
+                continue;
+            }
+            if (data instanceof ConvergenceEpsilon) {
+                epsilon = ((ConvergenceEpsilon)data).epsilon;
+                continue;
+            }
+            if (data instanceof BacktrackAlpha) {
+                alpha = ((BacktrackAlpha)data).alpha;
+                continue;
+            }
+            if (data instanceof BacktrackBeta) {
+                beta = ((BacktrackBeta)data).beta;
+                continue;
+            }
+            if (data instanceof QuasiNewtonMemory) {
+                memory = ((QuasiNewtonMemory)data).m;
+                continue;
+            }
+            if (data instanceof HessianRefresh) {
+                refresh = ((HessianRefresh)data).period;
+                continue;
+            }
+            if (data instanceof HaltingCondition) {
+                halting = (HaltingCondition)data;
+                continue;
+            }
+        }
+        // if we got here, convexObjective exists
+        int n = convexObjective.dim();
+        if (eqConstraint != null) {
+            int nDual = eqConstraint.b.getDimension();
+            if (nDual >= n)
+                throw new IllegalArgumentException("Rank of constraints must be < domain dimension");
+            int nTest = eqConstraint.A.getColumnDimension();
+            if ((nDual > 0) && (nTest != n))
+                throw new DimensionMismatchException(nTest, n);
+        }
+        if (this.getStartPoint() != null) {
+            xStart = new ArrayRealVector(this.getStartPoint());
+            if (xStart.getDimension() != n)
+                throw new DimensionMismatchException(xStart.getDimension(), n);
+        } else {
+            xStart = new ArrayRealVector(n, 0.0);
+        }
+    }
+
+    @Override
+    public ConvexSolveResult doOptimize() {
+        final int n = convexObjective.dim();
+        final Projection proj = ((eqConstraint == null) || (eqConstraint.b.getDimension() < 1)) ?
+            null : new Projection(eqConstraint.A, eqConstraint.b);
+        // correction pairs (s, y), stored as a ring buffer
+        final double[][] S = new double[memory][];
+        final double[][] Y = new double[memory][];
+        final double[] rho = new double[memory];
+        final double[] a = new double[memory];
+        int head = 0;
+        int size = 0;
+        RealVector x = (proj == null) ? xStart : proj.feasible(xStart);
+        double v = convexObjective.value(x);
+        ++evaluations;
+        double[] g = projected(proj, convexObjective.gradient(x));
+        while (true) {
+            if (stopRequested()) {
+                status = stopStatus();
+                break;
+            }
+            incrementIterationCount();
+            double[] d;
+            if ((refresh > 0) && ((getIterations() % refresh) == 0)) {
+                // periodic Hessian refresh: take an exact Newton step
+                RealVector grad = convexObjective.gradient(x);
+                RealMatrix hess = convexObjective.hessian(x);
+                KKTSolution sol = (proj == null) ?
+                    KKTSolver.solve(kktSolver, hess, grad) :
+                    KKTSolver.solve(kktSolver, hess, eqConstraint.A, proj.AT, grad,
+                        eqConstraint.A.operate(x).subtract(eqConstraint.b));
+                ++kktSolves;
+                d = sol.xDelta.toArray();
+            } else if (size == 0) {
+                // steepest descent, scaled to a unit length first step
+                d = g.clone();
+                double gn = Math.sqrt(dot(g, g, n));
+                scal((gn > 1.0) ? (-1.0 / gn) : -1.0, d, n);
+            } else {
+                // L-BFGS two-loop recursion
+                d = g.clone();
+                for (int k = 0, j = prev(head, memory); k < size; ++k, j = prev(j, memory)) {
+                    a[j] = rho[j] * dot(S[j], d, n);
+                    axpy(-a[j], Y[j], d, n);
+                }
+                int jn = prev(head, memory);
+                scal(dot(S[jn], Y[jn], n) / dot(Y[jn], Y[jn], n), d, n);
+                for (int k = 0, j = (head - size + memory) % memory; k < size; ++k, j = (j + 1) % memory) {
+                    double b = rho[j] * dot(Y[j], d, n);
+                    axpy(a[j] - b, S[j], d, n);
+                }
+                scal(-1.0, d, n);
+                if (proj != null) d = proj.project(d);
+            }
+            double gdd = dot(g, d, n);
+            // -g.d is the quasi-Newton analog of lambda-squared
+            dualityGap = 0.5 * Math.max(0.0, -gdd);
+            if (-gdd <= (2.0 * epsilon)) break;
+            RealVector xDelta = new ArrayRealVector(d, false);
+            RealVector tx = null;
+            double tv = 0.0;
+            double tt = 0.0;
+            boolean foundStep = false;
+            int trials = 0;
+            double t0 = NewtonOptimizer.initialStep(convexObjective, x, xDelta);
+            for (double t = t0; t >= NewtonOptimizer.BT_T_LB; t *= beta) {
+                if (stopRequested()) break;
+                tx = x.add(xDelta.mapMultiply(t));
+                tv = convexObjective.value(tx);
+                ++trials;
+                if (Double.isInfinite(tv)) {
+                    // this is barrier convention for "outside the feasible domain",
+                    // so try a smaller step
+                    continue;
+                }
+                double vtt = v + (t * alpha * gdd);
+                if (vtt == v) {
+                    // (t)(alpha)(gdd) is less than (v)(machine-epsilon)
+                    // Further tests for improvement are going to fail
+                    break;
+                }
+                if (tv <= vtt) {
+                    // This step resulted in an improvement, so halt with success
+                    tt = t;
+                    foundStep = true;
+                    break;
+                }
+            }
+            evaluations += trials;
+            backtracks += foundStep ? (trials - 1) : trials;
+            if (!foundStep) {
+                if (stopRequested()) {
+                    status = stopStatus();
+                    break;
+                }
+                // a stale curvature model may produce a poor direction, so retry
+                // from steepest descent before concluding we are at a minimum
+                if (size > 0) {
+                    size = 0;
+                    continue;
+                }
+                break;
+            }
+            double[] tg = projected(proj, convexObjective.gradient(tx));
+            // update the correction pairs, if the curvature condition holds
+            double[] s = xDelta.mapMultiply(tt).toArray();
+            double[] y = tg.clone();
+            axpy(-1.0, g, y, n);
+            double sy = dot(s, y, n);
+            if (sy > CURVATURE_EPSILON * Math.sqrt(dot(s, s, n) * dot(y, y, n))) {
+                S[head] = s;
+                Y[head] = y;
+                rho[head] = 1.0 / sy;
+                head = (head + 1) % memory;
+                if (size < memory) ++size;
+            }
+            ++newtonSteps;
+            // update for next iteration
+            RealVector xprv = x;
+            double vprv = v;
+            x = tx;
+            v = tv;
+            g = tg;
+            // if improvement becomes very small then we are converged
+            if (Math.abs(1.0 - (v / vprv)) < epsilon) break;
+            // check halting condition, if it was configured
+            if ((halting != null) && halting.checker.converged(
+                    getIterations(),
+                    new Pair<RealVector, Double>(xprv, vprv),
+                    new Pair<RealVector, Double>(x, v))) {
+                status = SolveStatus.HALTED;
+                break;
+            }
+        }
+        // least-squares equality duals, from the stationarity condition grad f + (A^T)nu = 0
+        double[] nu = (proj == null) ? null : proj.duals(convexObjective.gradient(x));
+        return new ConvexSolveResult(x.toArray(), v, status, dualityGap, Double.NaN,
+            null, null, null, nu, getStatistics());
+    }
+
+    private static int prev(int j, int m) {
+        return (j - 1 + m) % m;
+    }
+
+    private static double[] projected(Projection proj, RealVector g) {
+        return (proj == null) ? g.toArray() : proj.project(g.toArray());
+    }
+
+    // Orthogonal projection onto the null space of A, and onto the affine set Ax = b:
+    // P = I - (A^T)((A)(A^T))^-1(A)
+    private static class Projection {
+        final RealMatrix A;
+        final RealMatrix AT;
+        final RealVector b;
+        final double[] L;
+        final int p;
+        final DenseLinearAlgebra la = new BlockedDenseLinearAlgebra();
+
+        Projection(RealMatrix A, RealVector b) {
+            this.A = A;
+            this.AT = A.transpose();
+            this.b = b;
+            this.p = b.getDimension();
+            this.L = DenseLinearAlgebra.toArray(A.multiply(AT));
+            la.cholesky(L, p);
+        }
+
+        // returns v - (A^T)((A)(A^T))^-1(r), where r = Av - c
+        private double[] correct(double[] v, RealVector r) {
+            double[] w = r.toArray();
+            la.choleskySolve(L, p, w, 1);
+            double[] z = v.clone();
+            axpy(-1.0, data(AT.operate(new ArrayRealVector(w, false))), z, z.length);
+            return z;
+        }
+
+        // returns -((A)(A^T))^-1(A)(g)
+        double[] duals(RealVector g) {
+            double[] w = A.operate(g).mapMultiply(-1.0).toArray();
+            la.choleskySolve(L, p, w, 1);
+            return w;
+        }
+
+        double[] project(double[] v) {
+            return correct(v, A.operate(new ArrayRealVector(v, false)));
+        }
+
+        RealVector feasible(RealVector x) {
+            return new ArrayRealVector(correct(x.toArray(), A.operate(x).subtract(b)), false);
+        }
+    }
+
+    // relative tolerance for the curvature condition (s.y) > 0
+    private static final double CURVATURE_EPSILON = 1e-10;
+}
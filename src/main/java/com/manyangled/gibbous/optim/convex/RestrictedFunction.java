@@ -0,0 +1,76 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.data;
+
+/**
+ * Restricts a function f(x) to a subset of its variables, with the remaining variables fixed:
+ * g(z) = f(x), where x[free[j]] = z[j], and all other entries of x are taken from a fixed point.
+ */
+class RestrictedFunction extends TwiceDifferentiableFunction {
+    private final TwiceDifferentiableFunction f;
+    private final int[] free;
+    private final double[] fixed;
+
+    /**
+     * @param f the function to restrict
+     * @param free the indices of the free variables of f
+     * @param fixed a point of dimension f.dim() holding the values of the fixed variables
+     */
+    RestrictedFunction(TwiceDifferentiableFunction f, int[] free, double[] fixed) {
+        this.f = f;
+        this.free = free;
+        this.fixed = fixed;
+    }
+
+    /** @return the point x corresponding to (z) */
+    static double[] expand(final double[] z, final int[] free, final double[] fixed) {
+        double[] x = fixed.clone();
+        for (int j = 0; j < free.length; ++j) x[free[j]] = z[j];
+        return x;
+    }
+
+    /** @return the entries of (x) at the free variables */
+    static double[] restrict(final double[] x, final int[] free) {
+        double[] z = new double[free.length];
+        for (int j = 0; j < free.length; ++j) z[j] = x[free[j]];
+        return z;
+    }
+
+    @Override
+    public int dim() { return free.length; }
+
+    @Override
+    public double value(final RealVector z) {
+        return f.value(new ArrayRealVector(expand(data(z), free, fixed), false));
+    }
+
+    @Override
+    public RealVector gradient(final RealVector z) {
+        RealVector g = f.gradient(new ArrayRealVector(expand(data(z), free, fixed), false));
+        return new ArrayRealVector(restrict(data(g), free), false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector z) {
+        RealMatrix h = f.hessian(new ArrayRealVector(expand(data(z), free, fixed), false));
+        return h.getSubMatrix(free, free);
+    }
+}
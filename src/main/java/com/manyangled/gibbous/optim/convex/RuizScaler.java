@@ -0,0 +1,279 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.nio.IntBuffer;
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+
+/**
+ * Implements the problem scaling configured by {@link RuizScaling}
+ * <p>
+ * The linear constraint rows are stacked in compressed sparse row form, so that equilibration
+ * costs O(nonzeros) per iteration, and the scaled constraints are {@link CSRRealMatrix}.
+ */
+final class RuizScaler extends ProblemTransform {
+    private final RuizScaling config;
+    private TwiceDifferentiableFunction objective;
+    // column scaling: x = Dz
+    private double[] d;
+    // objective scale: g(z) = s f(Dz)
+    private double s = 1.0;
+    // row scaling of the stacked linear constraints, equalities first
+    private double[] r;
+    private int equalityRows = 0;
+    private int functionConstraints = 0;
+
+    RuizScaler(RuizScaling config) {
+        this.config = config;
+    }
+
+    @Override
+    OptimizationData[] presolve(OptimizationData[] optData) {
+        LinearEqualityConstraint eqc = null;
+        ArrayList<LinearInequalityConstraint> ineqc = new ArrayList<LinearInequalityConstraint>();
+        double[] x0 = null;
+        double epsilon = ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT;
+        for (OptimizationData data: optData) {
+            if (data instanceof ConvergenceEpsilon) epsilon = ((ConvergenceEpsilon)data).epsilon;
+            if (data instanceof ObjectiveFunction)
+                objective = (TwiceDifferentiableFunction)((ObjectiveFunction)data).getObjectiveFunction();
+            if (data instanceof InitialGuess) x0 = ((InitialGuess)data).getInitialGuess();
+            if (data instanceof LinearEqualityConstraint) eqc = (LinearEqualityConstraint)data;
+            if (data instanceof LinearInequalityConstraint) ineqc.add((LinearInequalityConstraint)data);
+        }
+        if (objective == null)
+            throw new IllegalStateException("Expected a TwiceDifferentiableFunction argument");
+        final int n = objective.dim();
+        // stack all linear constraint rows, equalities first
+        Rows M = new Rows();
+        if (eqc != null) M.add(eqc.A);
+        for (LinearInequalityConstraint c: ineqc) M.add(c.A);
+        r = new double[M.m];
+        d = new double[n];
+        Arrays.fill(r, 1.0);
+        Arrays.fill(d, 1.0);
+        equilibrate(M, r, d, n);
+
+        double[] z0 = (x0 == null) ? null : x0.clone();
+        if (z0 != null) for (int j = 0; j < n; ++j) z0[j] /= d[j];
+        if (config.scaleObjective) {
+            // normalize the largest gradient entry of the scaled objective at the initial guess
+            RealVector g = objective.gradient(new ArrayRealVector((x0 == null) ? new double[n] : x0, false));
+            double gmax = 0.0;
+            for (int j = 0; j < n; ++j) gmax = Math.max(gmax, Math.abs(d[j] * g.getEntry(j)));
+            s = 1.0 / Math.min(OBJECTIVE_SCALE_MAX, Math.max(1.0, gmax));
+        }
+
+        ArrayList<OptimizationData> args = new ArrayList<OptimizationData>();
+        int row = 0;
+        if (eqc != null) {
+            int k = eqc.b.getDimension();
+            equalityRows = k;
+            args.add(new LinearEqualityConstraint(M.slice(row, k, n), scaledConstants(eqc.b, r, row)));
+            row += k;
+        }
+        for (OptimizationData data: optData) {
+            if (data instanceof ObjectiveFunction) {
+                args.add(new ObjectiveFunction(ScaledFunction.scale(objective, d, s)));
+                continue;
+            }
+            if (data instanceof InitialGuess) {
+                args.add(new InitialGuess(z0));
+                continue;
+            }
+            if (data instanceof LinearEqualityConstraint) continue;
+            if (data instanceof ConvergenceEpsilon) continue;
+            if (data instanceof LinearInequalityConstraint) {
+                LinearInequalityConstraint c = (LinearInequalityConstraint)data;
+                int k = c.b.getDimension();
+                args.add(new LinearInequalityConstraint(M.slice(row, k, n), scaledConstants(c.b, r, row)));
+                row += k;
+                continue;
+            }
+            if (data instanceof BoxConstraint) {
+                BoxConstraint box = (BoxConstraint)data;
+                double[] l = box.lower.clone();
+                double[] u = box.upper.clone();
+                for (int j = 0; j < n; ++j) {
+                    l[j] /= d[j];
+                    u[j] /= d[j];
+                }
+                args.add(new BoxConstraint(l, u));
+                continue;
+            }
+            if (data instanceof InequalityConstraintSet) {
+                // general constraints are only subject to the change of variables
+                ArrayList<TwiceDifferentiableFunction> fk = new ArrayList<TwiceDifferentiableFunction>();
+                for (TwiceDifferentiableFunction f: ((InequalityConstraintSet)data).constraints)
+                    fk.add(ScaledFunction.scale(f, d, 1.0));
+                functionConstraints += fk.size();
+                args.add(new InequalityConstraintSet(fk));
+                continue;
+            }
+            args.add(data);
+        }
+        // Newton decrements and barrier duality gaps scale with the objective, so epsilon is scaled to match
+        args.add(new ConvergenceEpsilon(epsilon * s));
+        return args.toArray(new OptimizationData[0]);
+    }
+
+    @Override
+    PointValuePair postsolve(PointValuePair pvp) {
+        double[] x = ScaledFunction.unscale(pvp.getPoint(), d);
+        return new PointValuePair(x, objective.value(x));
+    }
+
+    // With scaled objective s f(Dz) and rows r[i]a[i].(Dz) <= r[i]b[i], stationarity in (x) gives
+    // duals lambda[i] = r[i]lambda'[i]/s for linear rows, and lambda'[j]/(s d[j]) for the bounds z[j] = x[j]/d[j].
+    // The barrier parameter and duality gap scale with the objective.
+    @Override
+    ConvexSolveResult postsolveResult(ConvexSolveResult result) {
+        PointValuePair pvp = postsolve(result);
+        double[] ineq = result.getInequalityDuals();
+        if (ineq != null) {
+            for (int k = 0; k < ineq.length; ++k) {
+                ineq[k] /= s;
+                if (k >= functionConstraints) ineq[k] *= r[equalityRows + k - functionConstraints];
+            }
+        }
+        double[] nu = result.getEqualityDuals();
+        if (nu != null) for (int i = 0; i < nu.length; ++i) nu[i] *= r[i] / s;
+        return new ConvexSolveResult(pvp.getPoint(), pvp.getValue(), result.getStatus(),
+            result.getDualityGap() / s, result.getBarrierT() * s,
+            ineq, unscaleBounds(result.getLowerBoundDuals()), unscaleBounds(result.getUpperBoundDuals()), nu,
+            result.getStatistics());
+    }
+
+    private double[] unscaleBounds(double[] lambda) {
+        if (lambda == null) return null;
+        for (int j = 0; j < lambda.length; ++j) lambda[j] /= s * d[j];
+        return lambda;
+    }
+
+    // Ruiz equilibration of the m x n matrix M, in place, accumulating row scales (r) and column scales (c)
+    private void equilibrate(Rows M, double[] r, double[] c, int n) {
+        final int m = M.m;
+        if (m == 0) return;
+        final int[] ptr = M.ptr;
+        final int[] col = M.col;
+        final double[] val = M.val;
+        double[] rmax = new double[m];
+        double[] cmax = new double[n];
+        for (int it = 0; it < config.maxIterations; ++it) {
+            Arrays.fill(cmax, 0.0);
+            double dev = 0.0;
+            for (int i = 0; i < m; ++i) {
+                double a = 0.0;
+                for (int k = ptr[i]; k < ptr[i + 1]; ++k) {
+                    final int j = col[k];
+                    double v = Math.abs(val[k]);
+                    if (v > a) a = v;
+                    if (v > cmax[j]) cmax[j] = v;
+                }
+                rmax[i] = a;
+                if (a > 0.0) dev = Math.max(dev, Math.abs(1.0 - a));
+            }
+            for (int j = 0; j < n; ++j) if (cmax[j] > 0.0) dev = Math.max(dev, Math.abs(1.0 - cmax[j]));
+            if (dev <= config.tolerance) break;
+            for (int j = 0; j < n; ++j) {
+                cmax[j] = (cmax[j] > 0.0) ? (1.0 / Math.sqrt(cmax[j])) : 1.0;
+                c[j] *= cmax[j];
+            }
+            for (int i = 0; i < m; ++i) {
+                final double ri = (rmax[i] > 0.0) ? (1.0 / Math.sqrt(rmax[i])) : 1.0;
+                r[i] *= ri;
+                for (int k = ptr[i]; k < ptr[i + 1]; ++k) val[k] *= ri * cmax[col[k]];
+            }
+        }
+    }
+
+    private static RealVector scaledConstants(RealVector b, double[] r, int row) {
+        double[] br = b.toArray();
+        for (int i = 0; i < br.length; ++i) br[i] *= r[row + i];
+        return new ArrayRealVector(br, false);
+    }
+
+    // Stacked constraint rows in compressed sparse row form: the nonzeros of row i are
+    // val[k] at columns col[k], for k in ptr[i] to ptr[i+1]-1
+    private static final class Rows {
+        int m = 0;
+        int nnz = 0;
+        int[] ptr = new int[1];
+        int[] col = new int[0];
+        double[] val = new double[0];
+
+        void add(RealMatrix A) {
+            final int k = A.getRowDimension();
+            final int c = A.getColumnDimension();
+            ptr = Arrays.copyOf(ptr, m + k + 1);
+            if (A instanceof CSRRealMatrix) {
+                CSRRealMatrix S = (CSRRealMatrix)A;
+                final IntBuffer rowPtr = S.getRowPointers();
+                final IntBuffer colIdx = S.getColumnIndices();
+                final DoubleBuffer values = S.getValues();
+                reserve(S.getNonZeroCount());
+                for (int i = 0; i < k; ++i) {
+                    for (int q = rowPtr.get(i); q < rowPtr.get(i + 1); ++q) {
+                        col[nnz] = colIdx.get(q);
+                        val[nnz++] = values.get(q);
+                    }
+                    ptr[++m] = nnz;
+                }
+                return;
+            }
+            for (int i = 0; i < k; ++i) {
+                double[] a = (A instanceof Array2DRowRealMatrix) ? ((Array2DRowRealMatrix)A).getDataRef()[i] : A.getRow(i);
+                int nz = 0;
+                for (int j = 0; j < c; ++j) if (a[j] != 0.0) ++nz;
+                reserve(nz);
+                for (int j = 0; j < c; ++j) {
+                    if (a[j] == 0.0) continue;
+                    col[nnz] = j;
+                    val[nnz++] = a[j];
+                }
+                ptr[++m] = nnz;
+            }
+        }
+
+        private void reserve(int extra) {
+            if (nnz + extra <= col.length) return;
+            final int cap = Math.max(nnz + extra, 2 * col.length);
+            col = Arrays.copyOf(col, cap);
+            val = Arrays.copyOf(val, cap);
+        }
+
+        // rows (row) to (row + k - 1), as an (k x n) matrix
+        CSRRealMatrix slice(int row, int k, int n) {
+            final int b = ptr[row];
+            final int e = ptr[row + k];
+            int[] rp = new int[k + 1];
+            for (int i = 0; i <= k; ++i) rp[i] = ptr[row + i] - b;
+            return new CSRRealMatrix(k, n, rp, Arrays.copyOfRange(col, b, e), Arrays.copyOfRange(val, b, e));
+        }
+    }
+
+    // bound on the objective scale, so that a steep initial guess does not flatten the objective
+    private static final double OBJECTIVE_SCALE_MAX = 1e6;
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.optim.OptimizationData;
+
+/**
+ * Enables automatic problem scaling, applied by {@link ConvexOptimizer} subclasses before optimization.
+ * <p>
+ * Rows and columns of the linear constraints given by {@link LinearEqualityConstraint} and
+ * {@link LinearInequalityConstraint} are equilibrated with Ruiz's algorithm: each iteration divides every
+ * row and column by the square root of its largest absolute entry, until all rows and columns have
+ * largest entries near 1. With column scaling D, the problem is solved in variables z, where x = Dz.
+ * The objective is also multiplied by a scale factor that normalizes its gradient at the initial guess.
+ * The solution is mapped back to the original variables, and the objective value is that of the
+ * original objective.
+ * <p>
+ * NOTE: {@link ConvergenceEpsilon} is multiplied by the objective scale factor, so that Newton decrements
+ * and barrier duality gaps are measured in units of the original objective. Any {@link HaltingCondition}
+ * operates on the scaled variables. If {@link Presolve} is also given, presolve is applied first.
+ * Constraints passed via {@link InnerOptimizationData} are not scaled.
+ */
+public class RuizScaling implements OptimizationData {
+    /** The maximum number of equilibration iterations */
+    public final int maxIterations;
+    /** Equilibration halts when the largest entry of every row and column is within this of 1 */
+    public final double tolerance;
+    /** If true, the objective is also scaled */
+    public final boolean scaleObjective;
+
+    /**
+     * Enable problem scaling
+     * @param maxIterations the maximum number of equilibration iterations. Must be &gt;= 0.
+     * @param tolerance equilibration halts when the largest entry of every row and column is within
+     * tolerance of 1. Must be &gt; 0.
+     * @param scaleObjective if true, the objective is also scaled
+     */
+    public RuizScaling(int maxIterations, double tolerance, boolean scaleObjective) {
+        if (maxIterations < 0) throw new IllegalArgumentException("maxIterations must be >= 0");
+        if (tolerance <= 0.0) throw new IllegalArgumentException("tolerance must be > 0");
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.scaleObjective = scaleObjective;
+    }
+
+    /** Enable problem scaling, with default parameters */
+    public RuizScaling() {
+        this(MAX_ITERATIONS_DEFAULT, TOLERANCE_DEFAULT, true);
+    }
+
+    /** Default maximum number of equilibration iterations */
+    public static final int MAX_ITERATIONS_DEFAULT = 20;
+    /** Default equilibration tolerance */
+    public static final double TOLERANCE_DEFAULT = 1e-3;
+}
@@ -0,0 +1,91 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.data;
+
+/**
+ * Applies a diagonal change of variables and a scale factor to a function: g(z) = (s)f(Dz)
+ */
+class ScaledFunction extends TwiceDifferentiableFunction {
+    private final TwiceDifferentiableFunction f;
+    private final double[] d;
+    private final double s;
+
+    /**
+     * @param f the function to scale
+     * @param d the diagonal of D
+     * @param s the scale factor. Must be &gt; 0 for g to remain convex.
+     */
+    ScaledFunction(TwiceDifferentiableFunction f, double[] d, double s) {
+        this.f = f;
+        this.d = d;
+        this.s = s;
+    }
+
+    /**
+     * Scale a function, keeping linear functions linear so their zero Hessians remain recognizable
+     */
+    static TwiceDifferentiableFunction scale(TwiceDifferentiableFunction f, double[] d, double s) {
+        if (f instanceof LinearFunction) {
+            RealVector x0 = new ArrayRealVector(d.length, 0.0);
+            double[] a = f.gradient(x0).toArray();
+            for (int j = 0; j < d.length; ++j) a[j] *= s * d[j];
+            return new LinearFunction(a, s * f.value(x0));
+        }
+        return new ScaledFunction(f, d, s);
+    }
+
+    /** @return the point Dz */
+    static double[] unscale(final double[] z, final double[] d) {
+        double[] x = new double[d.length];
+        for (int j = 0; j < d.length; ++j) x[j] = d[j] * z[j];
+        return x;
+    }
+
+    @Override
+    public int dim() { return d.length; }
+
+    @Override
+    public double value(final RealVector z) {
+        return s * f.value(new ArrayRealVector(unscale(data(z), d), false));
+    }
+
+    @Override
+    public RealVector gradient(final RealVector z) {
+        double[] g = f.gradient(new ArrayRealVector(unscale(data(z), d), false)).toArray();
+        for (int j = 0; j < d.length; ++j) g[j] *= s * d[j];
+        return new ArrayRealVector(g, false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector z) {
+        final int n = d.length;
+        RealMatrix h = f.hessian(new ArrayRealVector(unscale(data(z), d), false));
+        double[][] hs = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            final double sdi = s * d[i];
+            for (int j = 0; j < n; ++j) {
+                double hij = h.getEntry(i, j);
+                if (hij != 0.0) hs[i][j] = sdi * hij * d[j];
+            }
+        }
+        return new Array2DRowRealMatrix(hs, false);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+import org.apache.commons.math3.analysis.MultivariateFunction;
+import org.apache.commons.math3.exception.DimensionMismatchException;
+
+import static com.manyangled.gibbous.optim.convex.VectorKernels.syrk;
+
+/**
+ * A problem that is separable into blocks, linked by coupling constraints, for {@link ADMMOptimizer}:
+ * <p>
+ * minimize sum(f[i](x[i])), subject to sum(A[i]x[i]) = b
+ * <p>
+ * where each block variable x[i] is also subject to the constraints of its own block. A block is
+ * given as a coupling matrix A[i] and the arguments of a {@link BarrierOptimizer} solve for the block,
+ * which must include its {@link ObjectiveFunction}, and may include an {@link InitialGuess}, and any
+ * constraints that involve only x[i]. The initial guess must be strictly feasible w.r.t. the block's
+ * inequality constraints, and defaults to zero.
+ * <pre>
+ * SeparableProblem problem = new SeparableProblem(b)
+ *     .addBlock(A1, new ObjectiveFunction(f1), new BoxConstraint(lower1, upper1))
+ *     .addBlock(A2, new ObjectiveFunction(f2), new InitialGuess(x2));
+ * </pre>
+ */
+public class SeparableProblem implements OptimizationData {
+    /** The right hand side of the coupling constraints */
+    public final RealVector b;
+    final ArrayList<Block> blocks = new ArrayList<Block>();
+
+    /**
+     * Construct a separable problem with coupling constraints sum(A[i]x[i]) = b, and no blocks
+     * @param b the right hand side of the coupling constraints
+     */
+    public SeparableProblem(RealVector b) {
+        if (b.getDimension() < 1) throw new IllegalArgumentException("b must be non-empty");
+        this.b = b.copy();
+    }
+
+    /**
+     * Construct a separable problem with coupling constraints sum(A[i]x[i]) = b, and no blocks
+     * @param b the right hand side of the coupling constraints
+     */
+    public SeparableProblem(double[] b) {
+        this(new ArrayRealVector(b));
+    }
+
+    /**
+     * Add a block to this problem
+     * @param A the coupling matrix of the block, with one row per coupling constraint.
+     * May be a {@link CSRRealMatrix}.
+     * @param blockData the arguments for solving the block, including its objective function
+     * @return this problem
+     */
+    public SeparableProblem addBlock(RealMatrix A, OptimizationData... blockData) {
+        if (A.getRowDimension() != b.getDimension())
+            throw new DimensionMismatchException(A.getRowDimension(), b.getDimension());
+        blocks.add(new Block(A, blockData));
+        return this;
+    }
+
+    /** @return the number of blocks */
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    /** @return the dimension of the full variable, which is the concatenation of the block variables */
+    public int dim() {
+        int n = 0;
+        for (Block bk: blocks) n += bk.n;
+        return n;
+    }
+
+    static final class Block {
+        final RealMatrix A;
+        final TwiceDifferentiableFunction f;
+        final OptimizationData[] data;
+        final double[] x0;
+        final int n;
+        // (A^T)A, for the Hessian of the block's penalty term
+        final double[][] gram;
+
+        Block(RealMatrix A, OptimizationData[] blockData) {
+            TwiceDifferentiableFunction f = null;
+            double[] x0 = null;
+            ArrayList<OptimizationData> data = new ArrayList<OptimizationData>();
+            for (OptimizationData d: blockData) {
+                if (d instanceof ObjectiveFunction) {
+                    MultivariateFunction mf = ((ObjectiveFunction)d).getObjectiveFunction();
+                    if (!(mf instanceof TwiceDifferentiableFunction))
+                        throw new IllegalArgumentException("TwiceDifferentiableFunction objective required");
+                    f = (TwiceDifferentiableFunction)mf;
+                    continue;
+                }
+                if (d instanceof InitialGuess) {
+                    x0 = ((InitialGuess)d).getInitialGuess();
+                    continue;
+                }
+                data.add(d);
+            }
+            if (f == null) throw new IllegalArgumentException("block objective function required");
+            this.n = f.dim();
+            if (A.getColumnDimension() != n) throw new DimensionMismatchException(A.getColumnDimension(), n);
+            if ((x0 != null) && (x0.length != n)) throw new DimensionMismatchException(x0.length, n);
+            this.A = A;
+            this.f = f;
+            this.data = data.toArray(new OptimizationData[0]);
+            this.x0 = (x0 != null) ? x0.clone() : new double[n];
+            final int p = A.getRowDimension();
+            double[] ones = new double[p];
+            Arrays.fill(ones, 1.0);
+            this.gram = new double[n][n];
+            if (A instanceof CSRRealMatrix) {
+                ((CSRRealMatrix)A).addWeightedGram(ones, gram);
+            } else {
+                syrk(ones, A.getData(), p, gram, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+/**
+ * Lifts a function f(x) on n dimensions to g(z) = f(x) - s on a larger domain z = (x, slacks),
+ * where x is the first n entries of z, and s is the entry of z at a given slack index.
+ * Used to formulate phase I feasibility problems.
+ */
+class SlackFunction extends TwiceDifferentiableFunction {
+    private final TwiceDifferentiableFunction f;
+    private final int n;
+    private final int dim;
+    private final int slack;
+
+    private SlackFunction(TwiceDifferentiableFunction f, int dim, int slack) {
+        this.f = f;
+        this.n = f.dim();
+        this.dim = dim;
+        this.slack = slack;
+    }
+
+    /**
+     * Lift f(x) to f(x) - z[slack], on a domain of dimension dim.
+     * Linear functions are lifted to linear functions, so that their zero Hessians
+     * remain recognizable.
+     */
+    static TwiceDifferentiableFunction lift(TwiceDifferentiableFunction f, int dim, int slack) {
+        final int n = f.dim();
+        if (f instanceof LinearFunction) {
+            RealVector x0 = new ArrayRealVector(n, 0.0);
+            double[] a = new double[dim];
+            System.arraycopy(f.gradient(x0).toArray(), 0, a, 0, n);
+            a[slack] = -1.0;
+            return new LinearFunction(a, f.value(x0));
+        }
+        return new SlackFunction(f, dim, slack);
+    }
+
+    @Override
+    public int dim() { return dim; }
+
+    @Override
+    public double value(final RealVector z) {
+        return f.value(z.getSubVector(0, n)) - z.getEntry(slack);
+    }
+
+    @Override
+    public RealVector gradient(final RealVector z) {
+        double[] g = new double[dim];
+        System.arraycopy(f.gradient(z.getSubVector(0, n)).toArray(), 0, g, 0, n);
+        g[slack] = -1.0;
+        return new ArrayRealVector(g, false);
+    }
+
+    @Override
+    public RealMatrix hessian(final RealVector z) {
+        double[][] h = new double[dim][dim];
+        RealMatrix hf = f.hessian(z.getSubVector(0, n));
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                h[i][j] = hf.getEntry(i, j);
+        return new Array2DRowRealMatrix(h, false);
+    }
+}
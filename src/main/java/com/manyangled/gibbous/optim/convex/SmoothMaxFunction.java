@@ -20,6 +20,8 @@ import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
 
+import static com.manyangled.gibbous.optim.convex.VectorKernels.*;
+
 /**
  * Given a set of convex functions f[k] for k = 1,2,..., implements the smooth-max
  * over f[k]: (1/a)log(sum(e^(a f[k]))).
@@ -58,15 +60,15 @@ public class SmoothMaxFunction extends TwiceDifferentiableFunction {
     public RealVector gradient(final RealVector x) {
         Pair<Double, double[]> pre = precompute(x);
         double[] exp = pre.getSecond();
-        RealVector g = new ArrayRealVector(dim(), 0.0);
+        int n = dim();
+        double[] g = new double[n];
         double d = 0.0;
         for (int k = 0; k < f.length; ++k) {
-            RealVector gk = f[k].gradient(x);
             d += exp[k];
-            g.combineToSelf(1.0, exp[k], gk);
+            axpy(exp[k], data(f[k].gradient(x)), g, n);
         }
-        g.mapDivideToSelf(d);
-        return g;
+        scal(1.0 / d, g, n);
+        return new ArrayRealVector(g, false);
     }
 
     @Override
@@ -74,26 +76,24 @@ public class SmoothMaxFunction extends TwiceDifferentiableFunction {
         Pair<Double, double[]> pre = precompute(x);
         double[] exp = pre.getSecond();
         int n = dim();
-        RealMatrix h = new Array2DRowRealMatrix(n, n);
         double d = 0.0;
+        for (double e: exp) d += e;
+        d = 1.0 / d;
+        // the gradient is accumulated in the same pass, instead of re-evaluating it
+        double[][] h = new double[n][n];
+        double[] g = new double[n];
+        double[] w = new double[f.length];
+        double[][] gf = new double[f.length][];
         for (int k = 0; k < f.length; ++k) {
-            d += exp[k];
-            RealVector gfk = f[k].gradient(x);
-            RealMatrix hfk = f[k].hessian(x);
-            for (int i = 0; i < n; ++i)
-                for (int j = 0; j < n; ++j) {
-                    h.addToEntry(i, j, exp[k] * hfk.getEntry(i, j));
-                    h.addToEntry(i, j, alpha * exp[k] * gfk.getEntry(i) * gfk.getEntry(j));
-                }
+            double ek = exp[k] * d;
+            gf[k] = data(f[k].gradient(x));
+            w[k] = alpha * ek;
+            axpy(ek, gf[k], g, n);
+            if (!(f[k] instanceof LinearFunction)) addScaled(ek, f[k].hessian(x), h, n);
         }
-        d = 1.0 / d;
-        RealVector g = gradient(x);
-        for (int i = 0; i < n; ++i)
-            for (int j = 0; j < n; ++j) {
-                h.multiplyEntry(i, j, d);
-                h.addToEntry(i, j, (-alpha) * g.getEntry(i) * g.getEntry(j));
-            }
-        return h;
+        syrk(w, gf, f.length, h, n);
+        syr(-alpha, g, h, n);
+        return new Array2DRowRealMatrix(h, false);
     }
 
     // Pre-computes z, the maximum of f[k](x), and also e^(α(f[k]-z)) for each f[k].
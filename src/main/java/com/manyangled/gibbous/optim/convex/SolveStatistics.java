@@ -0,0 +1,67 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.io.Serializable;
+
+/**
+ * Work counts for a {@link ConvexOptimizer} solve, including any inner solves.
+ */
+public class SolveStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The number of Newton or quasi-Newton steps taken */
+    public final int newtonSteps;
+    /** The number of rejected backtracking line search steps */
+    public final int backtracks;
+    /** The number of objective function value evaluations */
+    public final int evaluations;
+    /** The number of KKT systems solved */
+    public final int kktSolves;
+
+    /**
+     * Construct solve statistics
+     * @param newtonSteps the number of Newton or quasi-Newton steps taken
+     * @param backtracks the number of rejected backtracking line search steps
+     * @param evaluations the number of objective function value evaluations
+     * @param kktSolves the number of KKT systems solved
+     */
+    public SolveStatistics(int newtonSteps, int backtracks, int evaluations, int kktSolves) {
+        this.newtonSteps = newtonSteps;
+        this.backtracks = backtracks;
+        this.evaluations = evaluations;
+        this.kktSolves = kktSolves;
+    }
+
+    /**
+     * @param that the statistics to add
+     * @return the sum of these statistics and (that)
+     */
+    public SolveStatistics plus(SolveStatistics that) {
+        return new SolveStatistics(
+            newtonSteps + that.newtonSteps,
+            backtracks + that.backtracks,
+            evaluations + that.evaluations,
+            kktSolves + that.kktSolves);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SolveStatistics(newtonSteps=%d, backtracks=%d, evaluations=%d, kktSolves=%d)",
+            newtonSteps, backtracks, evaluations, kktSolves);
+    }
+
+    /** Statistics for no work */
+    public static final SolveStatistics NONE = new SolveStatistics(0, 0, 0, 0);
+}
@@ -0,0 +1,28 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+/**
+ * The reason that a {@link ConvexOptimizer} solve terminated, returned by {@link ConvexOptimizer#getStatus()}.
+ */
+public enum SolveStatus {
+    /** the solve converged to the configured {@link ConvergenceEpsilon} */
+    CONVERGED,
+    /** a {@link HaltingCondition} stopped the solve, or a line search failed before convergence */
+    HALTED,
+    /** a {@link Deadline} passed, and the best iterate found so far was returned */
+    DEADLINE,
+    /** a {@link Cancellation} was cancelled or the solving thread was interrupted, and the best iterate found so far was returned */
+    CANCELLED
+}
@@ -0,0 +1,301 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import java.util.Arrays;
+
+/**
+ * A record of scalar operations, for reverse mode automatic differentiation by {@link AutoDiffFunction}.
+ * <p>
+ * Each operation on a {@link Var} appends a node to the tape, holding its value and the first and second
+ * partial derivatives with respect to its (at most two) arguments. The gradient is then one reverse sweep
+ * over the nodes, and each column of the Hessian is one forward tangent sweep followed by one reverse sweep
+ * (forward-over-reverse), with no re-evaluation of the recorded function.
+ * <p>
+ * A tape is reset for each evaluation, and keeps its arrays and {@link Var} objects, so recording the same
+ * function again allocates nothing once the tape has grown to its size.
+ * A {@link Var} is only valid until its tape is reset, and a tape must only be used by one thread at a time.
+ */
+public final class Tape {
+    /**
+     * A scalar value recorded on a {@link Tape}.
+     * Operations with another {@link Var} require that both are recorded on the same tape.
+     */
+    public static final class Var {
+        private final Tape tape;
+        private final int index;
+
+        private Var(Tape tape, int index) {
+            this.tape = tape;
+            this.index = index;
+        }
+
+        /** @return the value of this variable */
+        public double value() {
+            return tape.val[index];
+        }
+
+        /**
+         * @param y a variable
+         * @return this + y
+         */
+        public Var plus(Var y) {
+            return tape.push(index, tape.arg(y), value() + y.value(), 1.0, 1.0, 0.0, 0.0, 0.0);
+        }
+
+        /**
+         * @param c a constant
+         * @return this + c
+         */
+        public Var plus(double c) {
+            return tape.push(index, -1, value() + c, 1.0, 0.0, 0.0, 0.0, 0.0);
+        }
+
+        /**
+         * @param y a variable
+         * @return this - y
+         */
+        public Var minus(Var y) {
+            return tape.push(index, tape.arg(y), value() - y.value(), 1.0, -1.0, 0.0, 0.0, 0.0);
+        }
+
+        /**
+         * @param c a constant
+         * @return this - c
+         */
+        public Var minus(double c) {
+            return plus(-c);
+        }
+
+        /**
+         * @param y a variable
+         * @return (this)(y)
+         */
+        public Var times(Var y) {
+            final double a = value();
+            final double b = y.value();
+            return tape.push(index, tape.arg(y), a * b, b, a, 0.0, 1.0, 0.0);
+        }
+
+        /**
+         * @param c a constant
+         * @return (c)(this)
+         */
+        public Var times(double c) {
+            return tape.push(index, -1, c * value(), c, 0.0, 0.0, 0.0, 0.0);
+        }
+
+        /**
+         * @param y a variable
+         * @return this / y
+         */
+        public Var div(Var y) {
+            final double a = value();
+            final double b = y.value();
+            final double r = 1.0 / b;
+            return tape.push(index, tape.arg(y), a * r, r, -a * r * r, 0.0, -r * r, 2.0 * a * r * r * r);
+        }
+
+        /**
+         * @param c a constant
+         * @return this / c
+         */
+        public Var div(double c) {
+            return times(1.0 / c);
+        }
+
+        /** @return -this */
+        public Var negate() {
+            return times(-1.0);
+        }
+
+        /** @return this^2 */
+        public Var square() {
+            final double a = value();
+            return tape.push(index, -1, a * a, 2.0 * a, 0.0, 2.0, 0.0, 0.0);
+        }
+
+        /** @return the square root of this */
+        public Var sqrt() {
+            final double s = Math.sqrt(value());
+            return tape.push(index, -1, s, 0.5 / s, 0.0, -0.25 / (s * s * s), 0.0, 0.0);
+        }
+
+        /**
+         * @param p a constant exponent
+         * @return this^p
+         */
+        public Var pow(double p) {
+            final double a = value();
+            final double v = Math.pow(a, p);
+            return tape.push(index, -1, v,
+                p * Math.pow(a, p - 1.0), 0.0, p * (p - 1.0) * Math.pow(a, p - 2.0), 0.0, 0.0);
+        }
+
+        /** @return e^this */
+        public Var exp() {
+            final double e = Math.exp(value());
+            return tape.push(index, -1, e, e, 0.0, e, 0.0, 0.0);
+        }
+
+        /** @return the natural logarithm of this */
+        public Var log() {
+            final double a = value();
+            return tape.push(index, -1, Math.log(a), 1.0 / a, 0.0, -1.0 / (a * a), 0.0, 0.0);
+        }
+    }
+
+    private int size = 0;
+    private int inputs = 0;
+    private Var[] vars = new Var[0];
+    private Var[] in = new Var[0];
+    // value, arguments, and partial derivatives w.r.t. the arguments, for each node
+    private double[] val = new double[0];
+    private int[] argA = new int[0];
+    private int[] argB = new int[0];
+    private double[] da = new double[0];
+    private double[] db = new double[0];
+    private double[] daa = new double[0];
+    private double[] dab = new double[0];
+    private double[] dbb = new double[0];
+    // adjoints, tangents and adjoint tangents of the sweeps
+    private double[] adj = new double[0];
+    private double[] tan = new double[0];
+    private double[] adjTan = new double[0];
+
+    /**
+     * @param c a constant
+     * @return a variable with value (c), which has no derivatives
+     */
+    public Var constant(double c) {
+        return push(-1, -1, c, 0.0, 0.0, 0.0, 0.0, 0.0);
+    }
+
+    /**
+     * @param x a list of variables
+     * @return the sum of the variables
+     */
+    public Var sum(Var... x) {
+        if (x.length < 1) return constant(0.0);
+        Var s = x[0];
+        for (int k = 1; k < x.length; ++k) s = s.plus(x[k]);
+        return s;
+    }
+
+    // start a new recording with inputs (x)
+    Var[] reset(double[] x) {
+        size = 0;
+        inputs = x.length;
+        for (int j = 0; j < x.length; ++j) push(-1, -1, x[j], 0.0, 0.0, 0.0, 0.0, 0.0);
+        if (in.length != x.length) in = new Var[x.length];
+        System.arraycopy(vars, 0, in, 0, x.length);
+        return in;
+    }
+
+    // the reverse sweep from output (y), which leaves the gradient in adj[0 .. inputs-1]
+    void reverse(Var y) {
+        final int out = arg(y);
+        Arrays.fill(adj, 0, size, 0.0);
+        adj[out] = 1.0;
+        for (int i = out; i >= inputs; --i) {
+            final double w = adj[i];
+            if (w == 0.0) continue;
+            if (argA[i] >= 0) adj[argA[i]] += w * da[i];
+            if (argB[i] >= 0) adj[argB[i]] += w * db[i];
+        }
+    }
+
+    double[] gradient(Var y) {
+        reverse(y);
+        return Arrays.copyOf(adj, inputs);
+    }
+
+    // forward-over-reverse: column j of the Hessian is the tangent of the adjoints in direction e[j]
+    double[][] hessian(Var y) {
+        final int out = arg(y);
+        final int n = inputs;
+        reverse(y);
+        double[][] H = new double[n][n];
+        for (int j = 0; j < n; ++j) {
+            Arrays.fill(tan, 0, n, 0.0);
+            tan[j] = 1.0;
+            for (int i = n; i <= out; ++i) {
+                double t = 0.0;
+                if (argA[i] >= 0) t += da[i] * tan[argA[i]];
+                if (argB[i] >= 0) t += db[i] * tan[argB[i]];
+                tan[i] = t;
+            }
+            Arrays.fill(adjTan, 0, out + 1, 0.0);
+            for (int i = out; i >= n; --i) {
+                final double w = adj[i];
+                final double wt = adjTan[i];
+                if ((w == 0.0) && (wt == 0.0)) continue;
+                final int a = argA[i];
+                final int b = argB[i];
+                final double ta = (a >= 0) ? tan[a] : 0.0;
+                final double tb = (b >= 0) ? tan[b] : 0.0;
+                if (a >= 0) adjTan[a] += (wt * da[i]) + (w * ((daa[i] * ta) + (dab[i] * tb)));
+                if (b >= 0) adjTan[b] += (wt * db[i]) + (w * ((dab[i] * ta) + (dbb[i] * tb)));
+            }
+            for (int k = 0; k < n; ++k) H[k][j] = adjTan[k];
+        }
+        // the columns are symmetric up to rounding
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < i; ++j) {
+                final double h = 0.5 * (H[i][j] + H[j][i]);
+                H[i][j] = h;
+                H[j][i] = h;
+            }
+        }
+        return H;
+    }
+
+    private int arg(Var y) {
+        if (y.tape != this) throw new IllegalArgumentException("variables are recorded on different tapes");
+        return y.index;
+    }
+
+    private Var push(int a, int b, double v, double pa, double pb, double paa, double pab, double pbb) {
+        if (size == val.length) grow();
+        final int i = size++;
+        val[i] = v;
+        argA[i] = a;
+        argB[i] = b;
+        da[i] = pa;
+        db[i] = pb;
+        daa[i] = paa;
+        dab[i] = pab;
+        dbb[i] = pbb;
+        if (vars[i] == null) vars[i] = new Var(this, i);
+        return vars[i];
+    }
+
+    private void grow() {
+        final int c = Math.max(INITIAL_CAPACITY, 2 * val.length);
+        vars = Arrays.copyOf(vars, c);
+        val = Arrays.copyOf(val, c);
+        argA = Arrays.copyOf(argA, c);
+        argB = Arrays.copyOf(argB, c);
+        da = Arrays.copyOf(da, c);
+        db = Arrays.copyOf(db, c);
+        daa = Arrays.copyOf(daa, c);
+        dab = Arrays.copyOf(dab, c);
+        dbb = Arrays.copyOf(dbb, c);
+        adj = new double[c];
+        tan = new double[c];
+        adjTan = new double[c];
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+}
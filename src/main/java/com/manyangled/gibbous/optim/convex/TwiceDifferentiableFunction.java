@@ -85,4 +85,18 @@ public abstract class TwiceDifferentiableFunction implements MultivariateFunctio
     public RealMatrix hessian(final double[] x) {
         return hessian(new ArrayRealVector(x, false));
     }
+
+    /**
+     * The largest step (a) such that x + (a)dx may remain inside the domain of this function,
+     * assuming (x) is inside the domain. Line searches start from a step no larger than this.
+     * <p>
+     * The default returns +inf, meaning that the domain is not known to be bounded.
+     * Functions with bounded domains, such as {@link LogBarrierFunction}, may override it.
+     * @param x a point inside the domain
+     * @param dx a step direction
+     * @return the largest step, or +inf
+     */
+    public double maxStep(final RealVector x, final RealVector dx) {
+        return Double.POSITIVE_INFINITY;
+    }
 }
@@ -0,0 +1,116 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous.optim.convex;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DiagonalMatrix;
+
+/**
+ * Dense vector kernels used when assembling gradients and Hessians.
+ * <p>
+ * All kernels operate directly on primitive arrays with unit-stride inner loops,
+ * which avoids the per-entry virtual accessors of {@link RealMatrix} and
+ * {@link RealVector}. The element-wise updates (axpy, scal, syr, syrk and the dense
+ * path of addScaled) have the loop shape that HotSpot's superword pass can vectorize.
+ * The reduction in dot is not vectorized, since strict floating point semantics fix the
+ * order of its sums, and it runs as a scalar loop.
+ */
+final class VectorKernels {
+    private VectorKernels() {}
+
+    /**
+     * @return the dot product x.y over the first n entries
+     */
+    static double dot(final double[] x, final double[] y, final int n) {
+        double s = 0.0;
+        for (int j = 0; j < n; ++j) s += x[j] * y[j];
+        return s;
+    }
+
+    /**
+     * y = y + (a)x, over the first n entries
+     */
+    static void axpy(final double a, final double[] x, final double[] y, final int n) {
+        if (a == 0.0) return;
+        for (int j = 0; j < n; ++j) y[j] += a * x[j];
+    }
+
+    /**
+     * x = (a)x, over the first n entries
+     */
+    static void scal(final double a, final double[] x, final int n) {
+        if (a == 1.0) return;
+        for (int j = 0; j < n; ++j) x[j] *= a;
+    }
+
+    /**
+     * Symmetric rank-1 update: H = H + (a)x(x^T), for n x n matrix H
+     */
+    static void syr(final double a, final double[] x, final double[][] H, final int n) {
+        if (a == 0.0) return;
+        for (int i = 0; i < n; ++i) {
+            final double axi = a * x[i];
+            if (axi == 0.0) continue;
+            final double[] hi = H[i];
+            for (int j = 0; j < n; ++j) hi[j] += axi * x[j];
+        }
+    }
+
+    /**
+     * Symmetric rank-k update: H = H + sum(w[r] g[r] (g[r]^T)), for r = 0 .. k-1.
+     * Each row of H is updated by all k vectors while it is hot in cache.
+     */
+    static void syrk(final double[] w, final double[][] g, final int k, final double[][] H, final int n) {
+        for (int i = 0; i < n; ++i) {
+            final double[] hi = H[i];
+            for (int r = 0; r < k; ++r) {
+                final double[] gr = g[r];
+                final double c = w[r] * gr[i];
+                if (c == 0.0) continue;
+                for (int j = 0; j < n; ++j) hi[j] += c * gr[j];
+            }
+        }
+    }
+
+    /**
+     * H = H + (a)M, for n x n matrices, with fast paths for common dense and diagonal formats.
+     */
+    static void addScaled(final double a, final RealMatrix M, final double[][] H, final int n) {
+        if (a == 0.0) return;
+        if (M instanceof Array2DRowRealMatrix) {
+            final double[][] m = ((Array2DRowRealMatrix)M).getDataRef();
+            for (int i = 0; i < n; ++i) axpy(a, m[i], H[i], n);
+        } else if (M instanceof DiagonalMatrix) {
+            final double[] d = ((DiagonalMatrix)M).getDataRef();
+            for (int i = 0; i < n; ++i) H[i][i] += a * d[i];
+        } else {
+            for (int i = 0; i < n; ++i) {
+                final double[] hi = H[i];
+                for (int j = 0; j < n; ++j) hi[j] += a * M.getEntry(i, j);
+            }
+        }
+    }
+
+    /**
+     * @return the entries of a vector as an array, without copying when possible.
+     * The result must be treated as read-only.
+     */
+    static double[] data(final RealVector v) {
+        if (v instanceof ArrayRealVector) return ((ArrayRealVector)v).getDataRef();
+        return v.toArray();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+
+public class ADMMTest {
+    private static final ADMMSettings TIGHT = new ADMMSettings(1.0, 1.6, 10.0, 2.0, 1e-7, 1e-7, 1000);
+
+    @Test
+    public void testSharing() {
+        // minimize sum((1/2)||x[i] - c[i]||^2) subject to sum(x[i]) = b,
+        // with solution x[i] = c[i] + (b - sum(c))/N, and coupling duals (sum(c) - b)/N
+        double[][] c = { { 1.0, 2.0 }, { -3.0, 0.5 }, { 4.0, -1.0 }, { 0.0, 0.0 } };
+        double[] b = { 1.0, 1.0 };
+        RealMatrix I = MatrixUtils.createRealIdentityMatrix(2);
+        SeparableProblem problem = new SeparableProblem(b);
+        for (double[] ci: c) problem.addBlock(I, new ObjectiveFunction(translatedQF(0.0, ci)));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            ADMMOptimizer admm = new ADMMOptimizer(pool);
+            ConvexSolveResult r = admm.optimize(problem, TIGHT);
+            assertEquals(SolveStatus.CONVERGED, r.getStatus());
+            double[] shift = { (1.0 - 2.0) / 4.0, (1.0 - 1.5) / 4.0 };
+            for (int i = 0; i < c.length; ++i) {
+                assertEquals(c[i][0] + shift[0], r.getPoint()[2 * i], 1e-6);
+                assertEquals(c[i][1] + shift[1], r.getPoint()[(2 * i) + 1], 1e-6);
+            }
+            assertArrayEquals(new double[] { -shift[0], -shift[1] }, r.getEqualityDuals(), 1e-6);
+            assertTrue(admm.getIterations() > 1);
+            assertTrue(r.getNewtonSteps() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlockConstraints() {
+        // two blocks share x0 + y0 = 3, and block x is bounded by x0 < 1,
+        // so that x = (1, 1) and y = (2, -1)
+        SeparableProblem problem = new SeparableProblem(new double[] { 3.0 })
+            .addBlock(MatrixUtils.createRealMatrix(new double[][] { { 1.0, 0.0 } }),
+                new ObjectiveFunction(translatedQF(0.0, new double[] { 2.0, 1.0 })),
+                new BoxConstraint(
+                    new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY },
+                    new double[] { 1.0, Double.POSITIVE_INFINITY }))
+            .addBlock(MatrixUtils.createRealMatrix(new double[][] { { 1.0, 0.0 } }),
+                new ObjectiveFunction(translatedQF(0.0, new double[] { 0.0, -1.0 })),
+                new InitialGuess(new double[] { 5.0, 5.0 }));
+        ConvexSolveResult r = (new ADMMOptimizer()).optimize(problem, TIGHT);
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        assertArrayEquals(new double[] { 1.0, 1.0, 2.0, -1.0 }, r.getPoint(), 1e-5);
+        // the dual of the coupling constraint is -(y0 - 0) = -2
+        assertEquals(-2.0, r.getEqualityDuals()[0], 1e-4);
+    }
+
+    @Test
+    public void testCancellation() {
+        Cancellation token = new Cancellation();
+        token.cancel();
+        SeparableProblem problem = new SeparableProblem(new double[] { 1.0 })
+            .addBlock(MatrixUtils.createRealMatrix(new double[][] { { 1.0 } }),
+                new ObjectiveFunction(translatedQF(0.0, new double[] { 0.0 })));
+        ConvexSolveResult r = (new ADMMOptimizer()).optimize(problem, token);
+        assertEquals(SolveStatus.CANCELLED, r.getStatus());
+        assertEquals(0, r.getNewtonSteps());
+    }
+}
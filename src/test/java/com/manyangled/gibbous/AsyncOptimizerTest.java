@@ -0,0 +1,128 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class AsyncOptimizerTest {
+    @Test
+    public void testAsyncSolve() throws Exception {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<ConvexSolveResult> future = (new AsyncOptimizer(executor)).optimize(
+                new BarrierOptimizer(),
+                new ObjectiveFunction(q),
+                new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+                new InitialGuess(new double[] { 10.0, 10.0 }));
+            ConvexSolveResult r = future.get(10, TimeUnit.SECONDS);
+            assertEquals(SolveStatus.CONVERGED, r.getStatus());
+            assertArrayEquals(new double[] { 0.5, 0.5 }, r.getFirst(), eps);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        final CountDownLatch started = new CountDownLatch(1);
+        // an objective that is slow enough to still be running when the future is cancelled
+        TwiceDifferentiableFunction slow = new TwiceDifferentiableFunction() {
+            @Override
+            public int dim() { return 2; }
+            @Override
+            public double value(RealVector x) {
+                started.countDown();
+                try { Thread.sleep(1); } catch (InterruptedException e) { throw new RuntimeException(e); }
+                return q.value(x);
+            }
+            @Override
+            public RealVector gradient(RealVector x) { return q.gradient(x); }
+            @Override
+            public RealMatrix hessian(RealVector x) { return q.hessian(x); }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        try {
+            CompletableFuture<ConvexSolveResult> future = (new AsyncOptimizer(executor)).optimize(
+                barrier,
+                new ObjectiveFunction(slow),
+                new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+                new InitialGuess(new double[] { 10.0, 10.0 }),
+                new ConvergenceEpsilon(1e-300));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+        } finally {
+            executor.shutdown();
+        }
+        // the solve stops promptly, rather than running to its (unreachable) tolerance
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(SolveStatus.CANCELLED, barrier.getStatus());
+    }
+
+    @Test
+    public void testCancellationToken() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        Cancellation token = new Cancellation();
+        token.cancel();
+        double[] ig = { 10.0, 10.0 };
+        NewtonOptimizer newton = new NewtonOptimizer();
+        PointValuePair pvp = newton.optimize(new ObjectiveFunction(q), new InitialGuess(ig), token);
+        assertEquals(SolveStatus.CANCELLED, newton.getStatus());
+        assertArrayEquals(ig, pvp.getFirst(), 0.0);
+        // an interrupt of the solving thread also cancels, and leaves the interrupt status set
+        Thread.currentThread().interrupt();
+        try {
+            pvp = newton.optimize(new ObjectiveFunction(q), new InitialGuess(ig));
+            assertEquals(SolveStatus.CANCELLED, newton.getStatus());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testSolveFailure() throws Exception {
+        // a solve that throws completes its future exceptionally
+        CompletableFuture<ConvexSolveResult> future = (new AsyncOptimizer()).optimize(
+            new NewtonOptimizer(), new InitialGuess(new double[] { 0.0 }));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("expected an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.eps;
+import static com.manyangled.gibbous.DerivativesTest.checkDerivatives;
+
+public class AutoDiffTest {
+    @Test
+    public void testAutoDiffDerivatives() {
+        TwiceDifferentiableFunction f = new AutoDiffFunction(3) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                return tape.sum(
+                    x[0].times(x[1]).div(x[2].plus(3.0)),
+                    x[0].square().plus(1.0).sqrt(),
+                    x[1].plus(2.0).pow(1.5),
+                    x[2].exp().times(0.5),
+                    x[0].plus(5.0).log().negate(),
+                    x[1].times(x[1]).minus(x[2]),
+                    tape.constant(2.0).div(x[0].minus(4.0)));
+            }
+        };
+        checkDerivatives(f, new double[] { 0.5, 0.25, -0.5 });
+        checkDerivatives(f, new double[] { 1.5, -1.0, 2.0 });
+    }
+
+    @Test
+    public void testMatchesSmoothMax() {
+        // smooth-max with alpha = 1 over linear functions is log-sum-exp
+        final double[][] a = { { 1.0, -2.0 }, { 0.5, 1.0 }, { -1.0, 0.0 } };
+        TwiceDifferentiableFunction lse = new AutoDiffFunction(2) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                Tape.Var s = tape.constant(0.0);
+                for (double[] ak: a) s = s.plus(x[0].times(ak[0]).plus(x[1].times(ak[1])).exp());
+                return s.log();
+            }
+        };
+        TwiceDifferentiableFunction sm = new SmoothMaxFunction(1.0,
+            new LinearFunction(a[0], 0.0), new LinearFunction(a[1], 0.0), new LinearFunction(a[2], 0.0));
+        RealVector x = new ArrayRealVector(new double[] { 0.3, -0.7 });
+        assertEquals(sm.value(x), lse.value(x), eps);
+        assertArrayEquals(sm.gradient(x).toArray(), lse.gradient(x).toArray(), eps);
+        RealMatrix H = lse.hessian(x);
+        for (int i = 0; i < 2; ++i) assertArrayEquals(sm.hessian(x).getRow(i), H.getRow(i), eps);
+    }
+
+    @Test
+    public void testTapeReuse() {
+        final Tape.Var[] last = new Tape.Var[1];
+        TwiceDifferentiableFunction f = new AutoDiffFunction(2) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                last[0] = x[0].times(x[1]).plus(x[0].square());
+                return last[0];
+            }
+        };
+        f.hessian(new ArrayRealVector(new double[] { 1.0, 2.0 }));
+        Tape.Var v = last[0];
+        assertEquals(1.0 * 2.0 + 1.0, v.value(), 0.0);
+        // a second recording of the same function reuses the same nodes
+        assertEquals(12.0, f.value(new ArrayRealVector(new double[] { 2.0, 4.0 })), 0.0);
+        assertSame(v, last[0]);
+        assertArrayEquals(new double[] { 8.0, 2.0 }, f.gradient(new double[] { 2.0, 4.0 }).toArray(), 0.0);
+        // an input returned directly
+        TwiceDifferentiableFunction g = new AutoDiffFunction(2) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                return x[1];
+            }
+        };
+        assertArrayEquals(new double[] { 0.0, 1.0 }, g.gradient(new double[] { 2.0, 4.0 }).toArray(), 0.0);
+        assertEquals(0.0, g.hessian(new double[] { 2.0, 4.0 }).getNorm(), 0.0);
+    }
+
+    @Test
+    public void testDifferentTapes() {
+        final Tape other = new Tape();
+        TwiceDifferentiableFunction f = new AutoDiffFunction(1) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                return x[0].plus(other.constant(1.0));
+            }
+        };
+        try {
+            f.value(new double[] { 1.0 });
+            fail("expected variables of different tapes to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAutoDiffSolve() {
+        // minimize e^x + e^(-x) + (y - 1)^2, with minimum at (0, 1)
+        TwiceDifferentiableFunction f = new AutoDiffFunction(2) {
+            @Override
+            protected Tape.Var value(Tape tape, Tape.Var[] x) {
+                return x[0].exp().plus(x[0].negate().exp()).plus(x[1].minus(1.0).square());
+            }
+        };
+        PointValuePair pvp = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(f), new InitialGuess(new double[] { 2.0, -3.0 }));
+        assertArrayEquals(new double[] { 0.0, 1.0 }, pvp.getFirst(), 1e-6);
+        assertEquals(2.0, pvp.getSecond(), eps);
+    }
+}
@@ -13,6 +13,11 @@ limitations under the License.
 
 package com.manyangled.gibbous;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -169,4 +174,292 @@ public class BarrierOptimizerTest {
         assertArrayEquals(xminTarget, xmin, eps);
         assertEquals(vminTarget, vmin, eps);
     }
+
+    @Test
+    public void testBoxConstraint() {
+        double inf = Double.POSITIVE_INFINITY;
+        double[] center = { 10.0, 10.0, 10.0 };
+        double h = 10.0;
+        QuadraticFunction q = translatedQF(h, center);
+        double[] ig = { 1.5, 0.0, 1.0 };
+        // x < 2, y < 3, z < 10.5, with z bounded below and x unbounded below
+        BoxConstraint box = new BoxConstraint(
+            new double[] { -inf, -1.0, 0.5 },
+            new double[] { 2.0, 3.0, 10.5 });
+        double[] xminTarget = { 2.0, 3.0, 10.0 };
+        double vminTarget = h + 0.5 * (64.0 + 49.0);
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(
+            new ObjectiveFunction(q),
+            box,
+            new InitialGuess(ig));
+        assertArrayEquals(xminTarget, pvp.getFirst(), eps);
+        assertEquals(vminTarget, pvp.getSecond(), eps);
+        // the same bounds, as linear constraints
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] {
+                { 1.0, 0.0, 0.0 }, { 0.0, 1.0, 0.0 }, { 0.0, 0.0, 1.0 },
+                { 0.0, -1.0, 0.0 }, { 0.0, 0.0, -1.0 } },
+            new double[] { 2.0, 3.0, 10.5, 1.0, -0.5 });
+        PointValuePair ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            ineqc,
+            new InitialGuess(ig));
+        assertArrayEquals(ref.getFirst(), pvp.getFirst(), eps);
+        // bounds from a box and from feasiblePoint, with an initial guess outside the box
+        FeasibilityResult fr = ConvexOptimizer.feasiblePoint(
+            box,
+            new InequalityConstraintSet(new LinearFunction(new double[] { -1.0, -1.0, 0.0 }, 4.0)),
+            new InitialGuess(new double[] { 5.0, 5.0, 20.0 }));
+        assertTrue(fr.isFeasible());
+    }
+
+    @Test
+    public void testAdaptiveCentering() {
+        double[] center = { 10.0, 10.0, 10.0 };
+        double h = 10.0;
+        QuadraticFunction q = translatedQF(h, center);
+        double[] ig = { 15.0, 15.0, 15.0 };
+        double[][] A = { { -1.0, -1.0, -1.0 },   // constraint x + y + z > 31
+                         { 0.0, 0.0, -1.0 } };   // constraint z > 10.5
+        double[] b = { -31.0, -10.5 };
+        double[] xminTarget = { 10.25, 10.25, 10.5 };
+        double vminTarget = h + (3.0 / 16.0);
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        ConvexSolveResult pvp = barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(A, b),
+            new AdaptiveCentering(),
+            new InitialGuess(ig));
+        double[] xmin = pvp.getFirst();
+        double vmin = pvp.getSecond();
+        assertArrayEquals(xminTarget, xmin, eps);
+        assertEquals(vminTarget, vmin, eps);
+        // the gap is bounded only by the final center, which is solved to the full epsilon
+        assertEquals(SolveStatus.CONVERGED, pvp.getStatus());
+        assertEquals(2.0 / pvp.getBarrierT(), pvp.getDualityGap(), eps);
+    }
+
+    private void testPredictor(CentralPathPredictor.Mode mode) {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        double[] xminTarget = { 1.0, 1.0, 0.0 };
+        double vminTarget = 1.0;
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(
+                new double[][] { { -1.0, 0.0, 0.0 }, { 0.0, 0.0, 1.0 } }, // constraint x > 1, z < 5
+                new double[] { -1.0, 5.0 }),
+            new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0, 0.0 } },  // constraint y = 1,
+                new double[] { 1.0 }),
+            new CentralPathPredictor(mode),
+            new InitialGuess(new double[] { 10.0, 10.0, 0.0 }));
+        double[] xmin = pvp.getFirst();
+        double vmin = pvp.getSecond();
+        assertArrayEquals(xminTarget, xmin, eps);
+        assertEquals(vminTarget, vmin, eps);
+    }
+
+    @Test
+    public void testTangentPredictor() {
+        testPredictor(CentralPathPredictor.Mode.TANGENT);
+    }
+
+    @Test
+    public void testExtrapolationPredictor() {
+        testPredictor(CentralPathPredictor.Mode.EXTRAPOLATION);
+    }
+
+    @Test
+    public void testConstraintScreening() {
+        // constraint x + y > 1 is active, and the others are far from active at the optimum
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        final int m = 200;
+        double[][] A = new double[m + 1][];
+        double[] b = new double[m + 1];
+        A[0] = new double[] { -1.0, -1.0 };
+        b[0] = -1.0;
+        for (int k = 1; k <= m; ++k) {
+            double a = (2.0 * Math.PI * k) / m;
+            A[k] = new double[] { Math.cos(a), Math.sin(a) };
+            b[k] = 50.0;
+        }
+        InequalityConstraintSet far = new InequalityConstraintSet(translatedQF(-1000.0, new double[] { 0.0, 0.0 }));
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(A, b),
+            far,
+            new ConstraintScreening(),
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        ConvexSolveResult exact = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(A, b),
+            far,
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        assertArrayEquals(new double[] { 0.5, 0.5 }, r.getPoint(), eps);
+        assertEquals(0.25, r.getValue(), eps);
+        assertArrayEquals(exact.getPoint(), r.getPoint(), eps);
+        // duals are ordered with the constraint functions first, and the active constraint has dual 0.5
+        double[] lambda = r.getInequalityDuals();
+        assertEquals(0.5, lambda[1], 1e-1);
+        assertTrue(lambda[0] < 1e-6);
+        assertTrue(lambda[2] < 1e-6);
+        try {
+            new ConstraintScreening(0.0, 4);
+            fail("expected a non-positive dual threshold to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDualityGap() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }),
+            new Deadline(1, java.util.concurrent.TimeUnit.HOURS));
+        assertEquals(SolveStatus.CONVERGED, barrier.getStatus());
+        assertTrue(barrier.getDualityGap() >= 0.0);
+        // the final value of (t) is within a factor of mu of m/epsilon
+        assertTrue(barrier.getDualityGap() <=
+            BarrierMu.BARRIER_MU_DEFAULT * ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT);
+    }
+
+    @Test
+    public void testLineSearchFailure() {
+        final QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // a gradient of the wrong sign, so that centering cannot make progress
+        TwiceDifferentiableFunction f = new TwiceDifferentiableFunction() {
+            @Override
+            public int dim() { return 2; }
+            @Override
+            public double value(RealVector x) { return q.value(x); }
+            @Override
+            public RealVector gradient(RealVector x) { return q.gradient(x).mapMultiply(-1.0); }
+            @Override
+            public RealMatrix hessian(RealVector x) { return q.hessian(x); }
+        };
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(f),
+            new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        assertEquals(SolveStatus.HALTED, r.getStatus());
+        // no central point was reached, so there is no bound on the gap
+        assertTrue(Double.isNaN(r.getDualityGap()));
+    }
+
+    @Test
+    public void testDeadline() {
+        final QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // an objective that is slow enough to exhaust the deadline
+        TwiceDifferentiableFunction slow = new TwiceDifferentiableFunction() {
+            @Override
+            public int dim() { return 2; }
+            @Override
+            public double value(RealVector x) {
+                try { Thread.sleep(1); } catch (InterruptedException e) { throw new RuntimeException(e); }
+                return q.value(x);
+            }
+            @Override
+            public RealVector gradient(RealVector x) { return q.gradient(x); }
+            @Override
+            public RealMatrix hessian(RealVector x) { return q.hessian(x); }
+        };
+        double[] ig = { 10.0, 10.0 };
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(
+            new ObjectiveFunction(slow),
+            new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+            new InitialGuess(ig),
+            new Deadline(java.time.Duration.ofMillis(20)));
+        assertEquals(SolveStatus.DEADLINE, barrier.getStatus());
+        double[] x = pvp.getFirst();
+        // the best iterate is strictly feasible, and the gap bounds its suboptimality
+        assertTrue(x[0] + x[1] > 1.0);
+        assertTrue(pvp.getSecond() <= q.value(new ArrayRealVector(ig)));
+        assertTrue(pvp.getSecond() - barrier.getDualityGap() <= 0.25 + eps);
+
+        // an expired deadline returns the initial guess
+        barrier = new BarrierOptimizer();
+        pvp = barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+            new InitialGuess(ig),
+            new Deadline(java.time.Instant.now().minusSeconds(1)));
+        assertEquals(SolveStatus.DEADLINE, barrier.getStatus());
+        assertArrayEquals(ig, pvp.getFirst(), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, barrier.getDualityGap(), 0.0);
+    }
+
+    @Test
+    public void testSolveResult() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        ConvexSolveResult r = barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(
+                new double[][] { { -1.0, 0.0, 0.0 }, { 0.0, 0.0, 1.0 } }, // constraint x > 1, z < 5
+                new double[] { -1.0, 5.0 }),
+            new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0, 0.0 } },  // constraint y = 1,
+                new double[] { 1.0 }),
+            new BoxConstraint(
+                new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, -2.0 },
+                new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY }),
+            new InitialGuess(new double[] { 10.0, 1.0, 0.0 }));
+        assertArrayEquals(new double[] { 1.0, 1.0, 0.0 }, r.getFirst(), eps);
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        // stationarity: x - lambda[0] = 0, y + nu = 0, and inactive constraints have vanishing duals;
+        // the inequality duals are exact only at an exact center
+        double tol = 10.0 * r.getDualityGap();
+        assertArrayEquals(new double[] { 1.0, 0.0 }, r.getInequalityDuals(), 1e-2);
+        assertArrayEquals(new double[] { -1.0 }, r.getEqualityDuals(), tol);
+        assertArrayEquals(new double[] { 0.0, 0.0, 0.0 }, r.getLowerBoundDuals(), tol);
+        assertArrayEquals(new double[] { 0.0, 0.0, 0.0 }, r.getUpperBoundDuals(), 0.0);
+        // the gap is the sum of complementary slackness terms, m/t
+        assertEquals(4.0 / r.getBarrierT(), r.getDualityGap(), eps);
+        assertEquals(r.getDualityGap(), barrier.getDualityGap(), 0.0);
+        assertTrue(r.getNewtonSteps() > 0);
+        assertTrue(r.getKKTSolves() >= r.getNewtonSteps());
+        assertTrue(r.getEvaluations() >= r.getNewtonSteps() + r.getBacktracks());
+    }
+
+    @Test
+    public void testSolveResultSerialization() throws Exception {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(new double[][] { { -1.0, -1.0 } }, new double[] { -1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        ConvexSolveResult c = roundTrip(r);
+        assertArrayEquals(r.getPoint(), c.getPoint(), 0.0);
+        assertEquals(r.getValue(), c.getValue(), 0.0);
+        assertEquals(r.getStatus(), c.getStatus());
+        assertArrayEquals(r.getInequalityDuals(), c.getInequalityDuals(), 0.0);
+        assertEquals(r.getNewtonSteps(), c.getNewtonSteps());
+        assertEquals(r.getKKTSolves(), c.getKKTSolves());
+
+        FeasibilityResult fr = ConvexOptimizer.feasiblePoint(
+            new InequalityConstraintSet(new LinearFunction(new double[] { -1.0, -1.0 }, 1.0)),
+            new InitialGuess(new double[] { 0.0, 0.0 }));
+        FeasibilityResult fc = roundTrip(fr);
+        assertArrayEquals(fr.getPoint(), fc.getPoint(), 0.0);
+        assertEquals(fr.isFeasible(), fc.isFeasible());
+        assertEquals(fr.getEvaluations(), fc.getEvaluations());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T obj) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (T)in.readObject();
+    }
 }
@@ -0,0 +1,146 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DiagonalMatrix;
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class CSRRealMatrixTest {
+    private static double[][] randomSparse(Random rng, int r, int c, double density) {
+        double[][] d = new double[r][c];
+        for (int i = 0; i < r; ++i)
+            for (int j = 0; j < c; ++j)
+                if (rng.nextDouble() < density) d[i][j] = rng.nextGaussian();
+        return d;
+    }
+
+    private static void assertMatrixEquals(RealMatrix expected, RealMatrix actual, double tol) {
+        assertEquals(expected.getRowDimension(), actual.getRowDimension());
+        assertEquals(expected.getColumnDimension(), actual.getColumnDimension());
+        for (int i = 0; i < expected.getRowDimension(); ++i)
+            assertArrayEquals(expected.getRow(i), actual.getRow(i), tol);
+    }
+
+    @Test
+    public void testKernels() {
+        Random rng = new Random(7);
+        double[][] d = randomSparse(rng, 13, 7, 0.3);
+        RealMatrix D = new Array2DRowRealMatrix(d);
+        CSRRealMatrix S = new CSRRealMatrix(d);
+        assertMatrixEquals(D, S, 0.0);
+        assertMatrixEquals(D.transpose(), S.transpose(), 0.0);
+        double[] x = new double[7];
+        double[] y = new double[13];
+        for (int j = 0; j < x.length; ++j) x[j] = rng.nextGaussian();
+        for (int i = 0; i < y.length; ++i) y[i] = rng.nextGaussian();
+        assertArrayEquals(D.operate(x), S.operate(x), 1e-12);
+        assertArrayEquals(D.preMultiply(y), S.preMultiply(y), 1e-12);
+        RealMatrix M = new Array2DRowRealMatrix(randomSparse(rng, 7, 4, 1.0));
+        assertMatrixEquals(D.multiply(M), S.multiply(M), 1e-12);
+        // (A^T)diag(w)A
+        double[] w = new double[13];
+        for (int i = 0; i < w.length; ++i) w[i] = rng.nextDouble();
+        double[][] H = new double[7][7];
+        S.addWeightedGram(w, H);
+        RealMatrix G = D.transpose().multiply(new DiagonalMatrix(w).multiply(D));
+        assertMatrixEquals(G, new Array2DRowRealMatrix(H), 1e-12);
+    }
+
+    @Test
+    public void testTriplets() {
+        // duplicates are summed, and order does not matter
+        CSRRealMatrix S = CSRRealMatrix.fromTriplets(
+            3, 4,
+            new int[] { 2, 0, 2, 0, 1 },
+            new int[] { 1, 3, 1, 0, 2 },
+            new double[] { 1.0, 2.0, 3.0, 4.0, 5.0 });
+        assertEquals(4, S.getNonZeroCount());
+        assertMatrixEquals(new Array2DRowRealMatrix(new double[][] {
+                    { 4.0, 0.0, 0.0, 2.0 },
+                    { 0.0, 0.0, 5.0, 0.0 },
+                    { 0.0, 4.0, 0.0, 0.0 } }),
+            S, 0.0);
+        S.setEntry(1, 2, 6.0);
+        assertEquals(6.0, S.getEntry(1, 2), 0.0);
+    }
+
+    @Test
+    public void testSparseConstraints() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0, 0.0 });
+        double[][] A = { { -1.0, -1.0, 0.0, 0.0 }, { 0.0, 0.0, -1.0, 0.0 } }; // x + y > 2, z > 1
+        double[] b = { -2.0, -1.0 };
+        double[][] Aeq = { { 0.0, 0.0, 1.0, 1.0 } };                        // z + w = 3
+        double[] beq = { 3.0 };
+        double[] ig = { 2.0, 2.0, 2.0, 1.0 };
+        PointValuePair ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(A, b),
+            new LinearEqualityConstraint(Aeq, beq),
+            new InitialGuess(ig));
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(new CSRRealMatrix(A), new ArrayRealVector(b)),
+            new LinearEqualityConstraint(new CSRRealMatrix(Aeq), new ArrayRealVector(beq)),
+            new InitialGuess(ig));
+        assertArrayEquals(new double[] { 1.0, 1.0, 1.5, 1.5 }, pvp.getFirst(), eps);
+        assertArrayEquals(ref.getFirst(), pvp.getFirst(), eps);
+        assertEquals(ref.getSecond(), pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testOpenMapConstraints() {
+        double[][] A = { { -1.0, -1.0, 0.0, 0.0 }, { 0.0, 0.0, -1.0, 0.0 } };
+        double[] b = { -2.0, -1.0 };
+        OpenMapRealMatrix M = new OpenMapRealMatrix(2, 4);
+        for (int i = 0; i < 2; ++i)
+            for (int j = 0; j < 4; ++j)
+                if (A[i][j] != 0.0) M.setEntry(i, j, A[i][j]);
+        ArrayRealVector bv = new ArrayRealVector(b);
+        LinearInequalityConstraint lic = new LinearInequalityConstraint(M, bv);
+        // the constants are copied
+        bv.setEntry(0, 100.0);
+        assertTrue(lic.A instanceof CSRRealMatrix);
+        assertEquals(3, ((CSRRealMatrix)lic.A).getNonZeroCount());
+        LinearEqualityConstraint lec = new LinearEqualityConstraint(M, new ArrayRealVector(b));
+        assertTrue(lec.A instanceof CSRRealMatrix);
+        // constraint functions are built on request
+        ArrayRealVector x = new ArrayRealVector(new double[] { 1.0, 2.0, 3.0, 4.0 });
+        List<TwiceDifferentiableFunction> fk = lic.constraintFunctions();
+        assertEquals(2, fk.size());
+        assertEquals(-1.0, fk.get(0).value(x), 0.0);
+        assertEquals(-2.0, fk.get(1).value(x), 0.0);
+        @SuppressWarnings("deprecation")
+        LinearFunction[] lcf = lic.lcf();
+        assertEquals(2, lcf.length);
+        assertEquals(-1.0, lcf[0].value(x), 0.0);
+    }
+}
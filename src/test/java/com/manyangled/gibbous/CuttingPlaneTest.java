@@ -0,0 +1,92 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+
+public class CuttingPlaneTest {
+    // the unit disk, as the intersection of N tangent half-planes cos(a)x + sin(a)y < 1,
+    // generated only near the direction of a point
+    private static final class DiskOracle extends ConstraintOracle {
+        final int N;
+        int generated = 0;
+
+        DiskOracle(int N) { this.N = N; }
+
+        LinearFunction halfPlane(int k) {
+            double a = (2.0 * Math.PI * k) / N;
+            ++generated;
+            return new LinearFunction(new double[] { Math.cos(a), Math.sin(a) }, -1.0);
+        }
+
+        @Override
+        public List<TwiceDifferentiableFunction> mostViolated(double[] x, int maxCuts) {
+            // the most violated half-planes are those nearest to the direction of x
+            int k0 = (int)Math.round((Math.atan2(x[1], x[0]) * N) / (2.0 * Math.PI));
+            List<TwiceDifferentiableFunction> cuts = new ArrayList<TwiceDifferentiableFunction>();
+            for (int j = 0; cuts.size() < maxCuts; ++j) {
+                cuts.add(halfPlane(k0 + j));
+                if ((j > 0) && (cuts.size() < maxCuts)) cuts.add(halfPlane(k0 - j));
+            }
+            return cuts;
+        }
+    }
+
+    @Test
+    public void testCuttingPlanes() {
+        DiskOracle oracle = new DiskOracle(10000000);
+        CuttingPlaneOptimizer cp = new CuttingPlaneOptimizer();
+        ConvexSolveResult r = cp.optimize(
+            new ObjectiveFunction(translatedQF(0.0, new double[] { 10.0, 10.0 })),
+            oracle,
+            new CutGeneration(3, 1e-9, 50),
+            new InitialGuess(new double[] { 0.0, 0.0 }));
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        double c = Math.sqrt(0.5);
+        assertArrayEquals(new double[] { c, c }, r.getPoint(), 1e-6);
+        assertTrue(cp.getRounds() > 1);
+        // only a handful of the constraints were ever materialized
+        assertTrue(oracle.generated < 100);
+        assertEquals(cp.getWorkingSet().size(), r.getInequalityDuals().length);
+        for (TwiceDifferentiableFunction f: cp.getWorkingSet()) assertTrue(f.value(r.getPoint()) < 0.0);
+    }
+
+    @Test
+    public void testInitialWorkingSetAndBounds() {
+        // with x < 0.5 in the initial working set, the disk constraints are never active
+        DiskOracle oracle = new DiskOracle(1000);
+        CuttingPlaneOptimizer cp = new CuttingPlaneOptimizer();
+        ConvexSolveResult r = cp.optimize(
+            new ObjectiveFunction(translatedQF(0.0, new double[] { 10.0, 0.0 })),
+            oracle,
+            new InequalityConstraintSet(new LinearFunction(new double[] { 1.0, 0.0 }, -0.5)),
+            new BoxConstraint(new double[] { -1.0, -1.0 }, new double[] { 2.0, 2.0 }),
+            new InitialGuess(new double[] { 0.0, 0.0 }));
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        assertArrayEquals(new double[] { 0.5, 0.0 }, r.getPoint(), 1e-6);
+        assertEquals(1, cp.getRounds());
+        assertEquals(1, cp.getWorkingSet().size());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+
+import com.manyangled.gibbous.optim.convex.DenseLinearAlgebra;
+import com.manyangled.gibbous.optim.convex.BlockedDenseLinearAlgebra;
+import com.manyangled.gibbous.optim.convex.CommonsMathDenseLinearAlgebra;
+
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class DenseLinearAlgebraTest {
+    private final DenseLinearAlgebra ref = new CommonsMathDenseLinearAlgebra();
+    // small block size, so that blocking is exercised on small matrices
+    private final DenseLinearAlgebra blk = new BlockedDenseLinearAlgebra(3);
+
+    private static double[] randomMatrix(Random rng, int r, int c) {
+        double[] a = new double[r * c];
+        for (int j = 0; j < a.length; ++j) a[j] = rng.nextDouble() - 0.5;
+        return a;
+    }
+
+    // (M^T)M + nI is comfortably positive definite
+    private static double[] randomSPD(Random rng, int n) {
+        double[] m = randomMatrix(rng, n, n);
+        double[] a = new double[n * n];
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j) {
+                double s = (i == j) ? n : 0.0;
+                for (int k = 0; k < n; ++k) s += m[k * n + i] * m[k * n + j];
+                a[i * n + j] = s;
+            }
+        return a;
+    }
+
+    @Test
+    public void testCholesky() {
+        Random rng = new Random(7);
+        for (int n: new int[] { 1, 2, 5, 10, 17 }) {
+            double[] a = randomSPD(rng, n);
+            double[] l1 = a.clone();
+            double[] l2 = a.clone();
+            ref.cholesky(l1, n);
+            blk.cholesky(l2, n);
+            assertArrayEquals(l1, l2, eps);
+        }
+    }
+
+    @Test
+    public void testLDLT() {
+        Random rng = new Random(11);
+        int n = 13;
+        double[] a = randomSPD(rng, n);
+        double[] l1 = a.clone();
+        double[] l2 = a.clone();
+        double[] d1 = new double[n];
+        double[] d2 = new double[n];
+        ref.ldlt(l1, d1, n);
+        blk.ldlt(l2, d2, n);
+        assertArrayEquals(l1, l2, eps);
+        assertArrayEquals(d1, d2, eps);
+    }
+
+    @Test
+    public void testTriangularSolve() {
+        Random rng = new Random(13);
+        int n = 11;
+        int nrhs = 4;
+        double[] l = randomSPD(rng, n);
+        blk.cholesky(l, n);
+        for (boolean transpose: new boolean[] { false, true }) {
+            double[] b = randomMatrix(rng, n, nrhs);
+            double[] x1 = b.clone();
+            double[] x2 = b.clone();
+            ref.solveLower(l, n, transpose, x1, nrhs);
+            blk.solveLower(l, n, transpose, x2, nrhs);
+            assertArrayEquals(x1, x2, eps);
+        }
+    }
+
+    @Test
+    public void testGEMM() {
+        Random rng = new Random(17);
+        int m = 7, n = 5, k = 9;
+        for (boolean ta: new boolean[] { false, true })
+            for (boolean tb: new boolean[] { false, true }) {
+                double[] a = randomMatrix(rng, m, k);
+                double[] b = randomMatrix(rng, k, n);
+                double[] c = randomMatrix(rng, m, n);
+                double[] c1 = c.clone();
+                double[] c2 = c.clone();
+                ref.gemm(ta, tb, m, n, k, 1.5, a, b, -0.5, c1);
+                blk.gemm(ta, tb, m, n, k, 1.5, a, b, -0.5, c2);
+                assertArrayEquals(c1, c2, eps);
+            }
+    }
+
+    @Test
+    public void testSYRK() {
+        Random rng = new Random(19);
+        int n = 8, k = 5;
+        for (boolean trans: new boolean[] { false, true }) {
+            double[] a = randomMatrix(rng, n, k);
+            double[] c = randomSPD(rng, n);
+            double[] c1 = c.clone();
+            double[] c2 = c.clone();
+            ref.syrk(trans, n, k, 2.0, a, 1.0, c1);
+            blk.syrk(trans, n, k, 2.0, a, 1.0, c2);
+            assertArrayEquals(c1, c2, eps);
+        }
+    }
+
+    @Test(expected = NonPositiveDefiniteMatrixException.class)
+    public void testNotPositiveDefinite() {
+        double[] a = { 1.0, 2.0, 2.0, 1.0 };
+        blk.cholesky(a, 2);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+
+import com.manyangled.gibbous.optim.convex.TwiceDifferentiableFunction;
+import com.manyangled.gibbous.optim.convex.QuadraticFunction;
+import com.manyangled.gibbous.optim.convex.LinearFunction;
+import com.manyangled.gibbous.optim.convex.LogBarrierFunction;
+import com.manyangled.gibbous.optim.convex.SmoothMaxFunction;
+import com.manyangled.gibbous.optim.convex.BoxConstraint;
+import com.manyangled.gibbous.optim.convex.AffineCompositionFunction;
+import com.manyangled.gibbous.optim.convex.CSRRealMatrix;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class DerivativesTest {
+    // central finite differences are accurate to roughly sqrt(machine-epsilon)
+    private static final double fdeps = 1e-5;
+
+    public static void checkDerivatives(TwiceDifferentiableFunction f, double[] xdata) {
+        final double h = 1e-6;
+        int n = f.dim();
+        RealVector x = new ArrayRealVector(xdata);
+        RealVector g = f.gradient(x);
+        RealMatrix H = f.hessian(x);
+        for (int j = 0; j < n; ++j) {
+            RealVector xp = x.copy();
+            RealVector xm = x.copy();
+            xp.addToEntry(j, h);
+            xm.addToEntry(j, -h);
+            double gj = (f.value(xp) - f.value(xm)) / (2.0 * h);
+            assertEquals(gj, g.getEntry(j), fdeps * Math.max(1.0, Math.abs(gj)));
+            RealVector dg = f.gradient(xp).subtract(f.gradient(xm)).mapDivide(2.0 * h);
+            for (int k = 0; k < n; ++k) {
+                double hjk = dg.getEntry(k);
+                assertEquals(hjk, H.getEntry(j, k), fdeps * Math.max(1.0, Math.abs(hjk)));
+                assertEquals(H.getEntry(k, j), H.getEntry(j, k), 1e-12 * Math.max(1.0, Math.abs(hjk)));
+            }
+        }
+    }
+
+    @Test
+    public void testLogBarrierDerivatives() {
+        TwiceDifferentiableFunction f = new LogBarrierFunction(
+            3.0,
+            translatedQF(1.0, new double[] { 1.0, 2.0, 3.0 }),
+            new TwiceDifferentiableFunction[] {
+                new LinearFunction(new double[] { 1.0, 1.0, 1.0 }, -10.0),
+                new LinearFunction(new double[] { -1.0, 0.0, 0.5 }, -2.0),
+                QuadraticFunction.nBallConstraintFunction(new double[] { 0.0, 0.0, 0.0 }, 5.0)
+            });
+        checkDerivatives(f, new double[] { 0.5, 0.25, -0.5 });
+        checkDerivatives(f, new double[] { 1.5, -1.0, 2.0 });
+    }
+
+    @Test
+    public void testLogBarrierBoxDerivatives() {
+        double inf = Double.POSITIVE_INFINITY;
+        LogBarrierFunction f = new LogBarrierFunction(
+            3.0,
+            translatedQF(1.0, new double[] { 1.0, 2.0, 3.0 }),
+            new TwiceDifferentiableFunction[] {
+                new LinearFunction(new double[] { 1.0, 1.0, 1.0 }, -10.0)
+            },
+            new BoxConstraint(new double[] { -1.0, -inf, 0.0 }, new double[] { 2.0, 3.0, inf }));
+        checkDerivatives(f, new double[] { 0.5, 0.25, 0.5 });
+        checkDerivatives(f, new double[] { 1.5, -1.0, 2.0 });
+        assertEquals(Double.POSITIVE_INFINITY, f.value(new double[] { 2.5, 0.0, 1.0 }), 0.0);
+        // steps to the boundary: x[0] = 2 at a = 0.75, and x + y + z = 10 at a = 2
+        RealVector x = new ArrayRealVector(new double[] { 0.5, 0.25, 0.5 });
+        assertEquals(0.75, f.maxStep(x, new ArrayRealVector(new double[] { 2.0, 0.0, 0.0 })), eps);
+        assertEquals(2.0, f.maxStep(x, new ArrayRealVector(new double[] { 0.0, 0.0, 4.375 })), eps);
+        assertEquals(Double.POSITIVE_INFINITY,
+            f.maxStep(x, new ArrayRealVector(new double[] { 0.0, -1.0, 0.0 })), 0.0);
+    }
+
+    @Test
+    public void testSmoothMaxDerivatives() {
+        TwiceDifferentiableFunction f = new SmoothMaxFunction(
+            2.0,
+            new LinearFunction(new double[] { 1.0, -1.0 }, 0.5),
+            new LinearFunction(new double[] { -2.0, 1.0 }, -1.0),
+            QuadraticFunction.nBallConstraintFunction(new double[] { 1.0, 1.0 }, 2.0));
+        checkDerivatives(f, new double[] { 0.0, 0.0 });
+        checkDerivatives(f, new double[] { 0.7, -0.3 });
+    }
+
+    @Test
+    public void testAffineCompositionDerivatives() {
+        // smooth-max has a dense Hessian, and the n-ball a diagonal one
+        TwiceDifferentiableFunction sm = new SmoothMaxFunction(
+            2.0,
+            QuadraticFunction.nBallConstraintFunction(new double[] { 0.0, 1.0, 0.0 }, 2.0),
+            new LinearFunction(new double[] { 1.0, -1.0, 0.5 }, 0.0));
+        TwiceDifferentiableFunction ball = QuadraticFunction.nBallConstraintFunction(new double[] { 1.0, 0.0, 0.0 }, 3.0);
+        double[][] G = { { 1.0, 0.0, 2.0, 0.0 }, { 0.0, -1.0, 0.0, 0.5 }, { 0.5, 0.0, 0.0, 1.0 } };
+        double[] h = { 0.5, -1.0, 0.0 };
+        double[] x = { 0.3, -0.2, 0.1, 0.4 };
+        RealMatrix U = new Array2DRowRealMatrix(new double[][] { { 1.0, 0.0 }, { 2.0, 1.0 }, { 0.0, -1.0 } });
+        RealMatrix V = new Array2DRowRealMatrix(new double[][] { { 1.0, 0.5 }, { 0.0, 1.0 }, { -1.0, 0.0 }, { 0.5, 0.5 } });
+        for (TwiceDifferentiableFunction f: new TwiceDifferentiableFunction[] { sm, ball }) {
+            checkDerivatives(new AffineCompositionFunction(f, G, h), x);
+            checkDerivatives(new AffineCompositionFunction(f, new CSRRealMatrix(G), new ArrayRealVector(h)), x);
+            checkDerivatives(new AffineCompositionFunction(f, U, V, null), x);
+            // all forms of the same map agree
+            TwiceDifferentiableFunction dense = new AffineCompositionFunction(f, U.multiply(V.transpose()), null);
+            TwiceDifferentiableFunction lowRank = new AffineCompositionFunction(f, U, V, null);
+            RealVector xv = new ArrayRealVector(x);
+            assertEquals(dense.value(xv), lowRank.value(xv), eps);
+            assertArrayEquals(dense.gradient(xv).toArray(), lowRank.gradient(xv).toArray(), eps);
+            for (int i = 0; i < x.length; ++i)
+                assertArrayEquals(dense.hessian(xv).getRow(i), lowRank.hessian(xv).getRow(i), eps);
+        }
+    }
+}
@@ -33,13 +33,21 @@ import com.manyangled.gibbous.optim.convex.LinearEqualityConstraint;
 import com.manyangled.gibbous.optim.convex.InequalityConstraintSet;
 
 import com.manyangled.gibbous.optim.convex.ConvexOptimizer;
+import com.manyangled.gibbous.optim.convex.FeasibilityMethod;
+import com.manyangled.gibbous.optim.convex.FeasibilityResult;
+import com.manyangled.gibbous.optim.convex.SolveStatus;
 
 import static com.manyangled.gibbous.COTestingUtils.translatedQF;
 import static com.manyangled.gibbous.COTestingUtils.eps;
 
 public class FeasiblePointTest {
     private void testFeasibleConstraints(InequalityConstraintSet constraints) {
-        PointValuePair pvp = ConvexOptimizer.feasiblePoint(constraints);
+        for (FeasibilityMethod.Method method: FeasibilityMethod.Method.values())
+            testFeasibleConstraints(constraints, method);
+    }
+
+    private void testFeasibleConstraints(InequalityConstraintSet constraints, FeasibilityMethod.Method method) {
+        PointValuePair pvp = ConvexOptimizer.feasiblePoint(constraints, new FeasibilityMethod(method));
         //System.out.format("fkmax= %s\n", pvp.getSecond());
         assertTrue(pvp.getSecond() < 0.0);
         for (TwiceDifferentiableFunction f: constraints.constraints) {
@@ -70,4 +78,116 @@ public class FeasiblePointTest {
         testFeasibleConstraints(hp);
     }
 
+    @Test
+    public void test2DSquareRegionEquality() {
+        InequalityConstraintSet hp = new InequalityConstraintSet(
+            new LinearFunction(new double[] { 1.0, 0.0 }, -5.0),
+            new LinearFunction(new double[] { -1.0, 0.0 }, 1.0),
+            new LinearFunction(new double[] { 0.0, 1.0 }, -5.0),
+            new LinearFunction(new double[] { 0.0, -1.0 }, 1.0)
+        );
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 1.0 } },
+            new double[] { 7.0 });
+        for (FeasibilityMethod.Method method: FeasibilityMethod.Method.values()) {
+            FeasibilityResult fr = ConvexOptimizer.feasiblePoint(hp, eqc, new FeasibilityMethod(method));
+            assertTrue(fr.isFeasible());
+            double[] x = fr.getFirst();
+            assertEquals(7.0, x[0] + x[1], eps);
+        }
+    }
+
+    @Test
+    public void test2DDiskRegion() {
+        InequalityConstraintSet disk = new InequalityConstraintSet(
+            QuadraticFunction.nBallConstraintFunction(new ArrayRealVector(new double[] { 10.0, 10.0 }), 1.0, 1.0),
+            new LinearFunction(new double[] { -1.0, 0.0 }, 10.0)
+        );
+        testFeasibleConstraints(disk);
+    }
+
+    @Test
+    public void testInfeasibleConstraints() {
+        // x < 1, x > 2, y < 5
+        InequalityConstraintSet hp = new InequalityConstraintSet(
+            new LinearFunction(new double[] { 1.0, 0.0 }, -1.0),
+            new LinearFunction(new double[] { -1.0, 0.0 }, 2.0),
+            new LinearFunction(new double[] { 0.0, 1.0 }, -5.0)
+        );
+        for (FeasibilityMethod.Method method: FeasibilityMethod.Method.values()) {
+            FeasibilityResult fr = ConvexOptimizer.feasiblePoint(hp, new FeasibilityMethod(method));
+            assertFalse(fr.isFeasible());
+            assertTrue(fr.getSecond() > 0.0);
+            // the constraint on y is not in conflict
+            assertTrue(fr.getConstraintValues()[2] < 0.0);
+        }
+    }
+
+    @Test
+    public void testInfeasibilityCertificate() {
+        // x < 1, x > 2, y < 5
+        double[][] a = new double[][] { { 1.0, 0.0 }, { -1.0, 0.0 }, { 0.0, 1.0 } };
+        double[] b = new double[] { -1.0, 2.0, -5.0 };
+        InequalityConstraintSet hp = new InequalityConstraintSet(
+            new LinearFunction(a[0], b[0]),
+            new LinearFunction(a[1], b[1]),
+            new LinearFunction(a[2], b[2])
+        );
+        FeasibilityMethod.Method[] methods = new FeasibilityMethod.Method[] {
+            FeasibilityMethod.Method.BARRIER, FeasibilityMethod.Method.SUM_OF_INFEASIBILITIES };
+        for (FeasibilityMethod.Method method: methods) {
+            FeasibilityResult fr = ConvexOptimizer.feasiblePoint(hp, new FeasibilityMethod(method));
+            assertTrue(fr.isInfeasible());
+            assertTrue(fr.getDualBound() > 0.0);
+            assertArrayEquals(new int[] { 0, 1 }, fr.getConflictingConstraints());
+            // Farkas: sum(lambda[k] a[k]) ~ 0 and sum(lambda[k] b[k]) > 0
+            double[] lambda = fr.getCertificate();
+            double lb = 0.0;
+            for (int k = 0; k < lambda.length; ++k) {
+                assertTrue(lambda[k] >= 0.0);
+                lb += lambda[k] * b[k];
+            }
+            assertTrue(lb > 0.0);
+            for (int j = 0; j < 2; ++j) {
+                double la = 0.0;
+                for (int k = 0; k < lambda.length; ++k) la += lambda[k] * a[k][j];
+                assertEquals(0.0, la, 1e-3);
+            }
+        }
+        FeasibilityResult fr = ConvexOptimizer.feasiblePoint(
+            new InequalityConstraintSet(new LinearFunction(a[2], b[2])),
+            new FeasibilityMethod(FeasibilityMethod.Method.BARRIER));
+        assertFalse(fr.isInfeasible());
+        assertNull(fr.getCertificate());
+        assertEquals(0, fr.getConflictingConstraints().length);
+    }
+
+    @Test
+    public void testBarrierPhaseOneStatus() {
+        FeasibilityMethod.Method[] methods = new FeasibilityMethod.Method[] {
+            FeasibilityMethod.Method.BARRIER, FeasibilityMethod.Method.SUM_OF_INFEASIBILITIES };
+        // x < 1, y < 5
+        InequalityConstraintSet hp = new InequalityConstraintSet(
+            new LinearFunction(new double[] { 1.0, 0.0 }, -1.0),
+            new LinearFunction(new double[] { 0.0, 1.0 }, -5.0)
+        );
+        // x < 0 and x > 0, which is neither feasible nor certifiably infeasible
+        InequalityConstraintSet weak = new InequalityConstraintSet(
+            new LinearFunction(new double[] { 1.0 }, 0.0),
+            new LinearFunction(new double[] { -1.0 }, 0.0)
+        );
+        for (FeasibilityMethod.Method method: methods) {
+            // a strictly feasible initial guess is returned unchanged
+            double[] ig = { -3.0, 2.0 };
+            FeasibilityResult fr = ConvexOptimizer.feasiblePoint(hp, new InitialGuess(ig), new FeasibilityMethod(method));
+            assertTrue(fr.isFeasible());
+            assertArrayEquals(ig, fr.getPoint(), 0.0);
+            assertEquals(SolveStatus.CONVERGED, fr.getStatus());
+            assertEquals(0, fr.getNewtonSteps());
+            fr = ConvexOptimizer.feasiblePoint(weak, new InitialGuess(new double[] { 1.0 }), new FeasibilityMethod(method));
+            assertFalse(fr.isFeasible());
+            assertFalse(fr.isInfeasible());
+            assertEquals(SolveStatus.HALTED, fr.getStatus());
+        }
+    }
 }
@@ -17,6 +17,9 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
 
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
@@ -28,6 +31,9 @@ import com.manyangled.gibbous.optim.convex.KKTSolver;
 import com.manyangled.gibbous.optim.convex.KKTSolution;
 import com.manyangled.gibbous.optim.convex.CholeskySchurKKTSolver;
 import com.manyangled.gibbous.optim.convex.SVDSchurKKTSolver;
+import com.manyangled.gibbous.optim.convex.CommonsMathDenseLinearAlgebra;
+import com.manyangled.gibbous.optim.convex.BlockDiagonalKKTSolver;
+import com.manyangled.gibbous.optim.convex.BlockedDenseLinearAlgebra;
 
 import static com.manyangled.gibbous.COTestingUtils.eps;
 
@@ -84,6 +90,7 @@ public class KKTSolverTest {
         double[] h = { 3.0 };
         testWithConstraints(new CholeskySchurKKTSolver(), H, A, g, h);
         testWithConstraints(new SVDSchurKKTSolver(), H, A, g, h);
+        testWithConstraints(new CholeskySchurKKTSolver(new CommonsMathDenseLinearAlgebra()), H, A, g, h);
     }
 
     @Test
@@ -97,6 +104,7 @@ public class KKTSolverTest {
         double[] h = { 3.0, 7.0 };
         testWithConstraints(new CholeskySchurKKTSolver(), H, A, g, h);
         testWithConstraints(new SVDSchurKKTSolver(), H, A, g, h);
+        testWithConstraints(new CholeskySchurKKTSolver(new CommonsMathDenseLinearAlgebra()), H, A, g, h);
     }
 
     @Test
@@ -105,6 +113,7 @@ public class KKTSolverTest {
         double[] g = { 3.0, 7.0 };
         testNoConstraints(new CholeskySchurKKTSolver(), H, g);
         testNoConstraints(new SVDSchurKKTSolver(), H, g);
+        testNoConstraints(new CholeskySchurKKTSolver(new CommonsMathDenseLinearAlgebra()), H, g);
     }
 
     @Test
@@ -115,5 +124,93 @@ public class KKTSolverTest {
         double[] g = { 9.0, 4.0, 1.0 };
         testNoConstraints(new CholeskySchurKKTSolver(), H, g);
         testNoConstraints(new SVDSchurKKTSolver(), H, g);
+        testNoConstraints(new CholeskySchurKKTSolver(new CommonsMathDenseLinearAlgebra()), H, g);
+    }
+
+    // blocks { 0, 2 }, { 1 } and { 3, 4 }, coupled by the rows of A
+    private static final double[][] blockH = {
+        { 4.0, 0.0, 1.0, 0.0, 0.0 },
+        { 0.0, 3.0, 0.0, 0.0, 0.0 },
+        { 1.0, 0.0, 5.0, 0.0, 0.0 },
+        { 0.0, 0.0, 0.0, 6.0, 2.0 },
+        { 0.0, 0.0, 0.0, 2.0, 3.0 } };
+
+    @Test
+    public void testBlockDetection() {
+        int[][] blocks = BlockDiagonalKKTSolver.detectBlocks(new Array2DRowRealMatrix(blockH));
+        assertEquals(3, blocks.length);
+        assertArrayEquals(new int[] { 0, 2 }, blocks[0]);
+        assertArrayEquals(new int[] { 1 }, blocks[1]);
+        assertArrayEquals(new int[] { 3, 4 }, blocks[2]);
+    }
+
+    @Test
+    public void testBlockDiagonalConstrained() {
+        double[][] A = { { 1.0, 1.0, 1.0, 1.0, 1.0 },
+                         { 0.0, 0.0, 2.0, 0.0, -1.0 } };
+        double[] g = { 1.0, -2.0, 3.0, 0.5, 2.0 };
+        double[] h = { 3.0, -1.0 };
+        int[][] partition = { { 0, 2 }, { 1 }, { 3, 4 } };
+        testWithConstraints(new BlockDiagonalKKTSolver(), blockH, A, g, h);
+        testWithConstraints(
+            new BlockDiagonalKKTSolver(partition, new BlockedDenseLinearAlgebra(), ForkJoinPool.commonPool()),
+            blockH, A, g, h);
+        // a single declared block is the dense Schur solve
+        testWithConstraints(new BlockDiagonalKKTSolver(new int[] { 5 }), blockH, A, g, h);
+        // arrow structure: block { 1 } is not coupled
+        double[][] A2 = { { 1.0, 0.0, 1.0, 1.0, 1.0 } };
+        testWithConstraints(new BlockDiagonalKKTSolver(), blockH, A2, g, new double[] { 2.0 });
+    }
+
+    @Test
+    public void testBlockDiagonalUnconstrained() {
+        double[] g = { 1.0, -2.0, 3.0, 0.5, 2.0 };
+        testNoConstraints(new BlockDiagonalKKTSolver(), blockH, g);
+        testNoConstraints(new BlockDiagonalKKTSolver(new int[] { 5 }), blockH, g);
+    }
+
+    @Test
+    public void testBlockDiagonalParallel() {
+        // enough work per solve to factor blocks in parallel
+        final int nb = 4;
+        final int m = 80;
+        final int n = nb * m;
+        final int p = 3;
+        Random rng = new Random(7);
+        double[][] H = new double[n][n];
+        for (int k = 0; k < nb; ++k) {
+            double[][] B = new double[m][m];
+            for (int i = 0; i < m; ++i)
+                for (int j = 0; j < m; ++j) B[i][j] = rng.nextGaussian();
+            for (int i = 0; i < m; ++i)
+                for (int j = 0; j < m; ++j) {
+                    double s = (i == j) ? m : 0.0;
+                    for (int l = 0; l < m; ++l) s += B[i][l] * B[j][l];
+                    H[k * m + i][k * m + j] = s;
+                }
+        }
+        double[][] A = new double[p][n];
+        for (int i = 0; i < p; ++i)
+            for (int j = 0; j < n; ++j) A[i][j] = rng.nextGaussian();
+        double[] g = new double[n];
+        for (int j = 0; j < n; ++j) g[j] = rng.nextGaussian();
+        double[] h = { 1.0, -1.0, 0.5 };
+        RealMatrix Hm = new Array2DRowRealMatrix(H);
+        RealMatrix Am = new Array2DRowRealMatrix(A);
+        RealVector gv = new ArrayRealVector(g);
+        RealVector hv = new ArrayRealVector(h);
+        KKTSolution target = (new CholeskySchurKKTSolver()).solve(Hm, Am, Am.transpose(), gv, hv);
+        KKTSolver[] solvers = {
+            new BlockDiagonalKKTSolver(),
+            new BlockDiagonalKKTSolver(new int[] { m, m, m, m }) };
+        for (KKTSolver kkts: solvers) {
+            KKTSolution sol = kkts.solve(Hm, Am, Am.transpose(), gv, hv);
+            assertArrayEquals(target.xDelta.toArray(), sol.xDelta.toArray(), eps);
+            assertArrayEquals(target.nuPlus.toArray(), sol.nuPlus.toArray(), eps);
+            KKTSolution usol = kkts.solve(Hm, gv);
+            KKTSolution utarget = (new CholeskySchurKKTSolver()).solve(Hm, gv);
+            assertArrayEquals(utarget.xDelta.toArray(), usol.xDelta.toArray(), eps);
+            assertEquals(utarget.lambdaSquared, usol.lambdaSquared, eps);
+        }
     }
 }
@@ -0,0 +1,132 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class ModelReaderTest {
+    private static final String LP =
+        "\\ a small quadratic program\n" +
+        "Minimize\n" +
+        " obj: x + y + [ x^2 + y^2 + z^2 ] / 2 + 1\n" +
+        "Subject To\n" +
+        " c1: x + y >= 2\n" +
+        " c2: -1 <= z - w <= 1\n" +
+        " c3: z + w\n" +
+        "     = 3\n" +
+        "Bounds\n" +
+        " w <= 1.4\n" +
+        " -inf <= x <= 10\n" +
+        " y free\n" +
+        " z free\n" +
+        "End\n";
+
+    private static final String MPS =
+        "NAME          TESTQP\n" +
+        "* the same program, in MPS format\n" +
+        "ROWS\n" +
+        " N  obj\n" +
+        " G  c1\n" +
+        " L  c2\n" +
+        " E  c3\n" +
+        "COLUMNS\n" +
+        "    x         obj       1.0        c1        1.0\n" +
+        "    y         obj       1.0        c1        1.0\n" +
+        "    z         c2        1.0        c3        1.0\n" +
+        "    w         c2        -1.0       c3        1.0\n" +
+        "RHS\n" +
+        "    RHS       obj       -1.0\n" +
+        "    RHS       c1        2.0        c3        3.0\n" +
+        "    RHS       c2        1.0\n" +
+        "RANGES\n" +
+        "    RNG       c2        2.0\n" +
+        "BOUNDS\n" +
+        " UP BND       w         1.4\n" +
+        " MI BND       x\n" +
+        " UP BND       x         10\n" +
+        " FR BND       y\n" +
+        " FR BND       z\n" +
+        "QUADOBJ\n" +
+        "    x         x         1.0\n" +
+        "    y         y         1.0\n" +
+        "    z         z         1.0\n" +
+        "ENDATA\n";
+
+    private static PointValuePair solve(ProblemData p, double[] ig) {
+        OptimizationData[] od = p.toOptimizationData();
+        OptimizationData[] args = java.util.Arrays.copyOf(od, od.length + 1);
+        args[od.length] = new InitialGuess(ig);
+        return (new BarrierOptimizer()).optimize(args);
+    }
+
+    private static void checkProblem(ProblemData p) {
+        assertEquals(4, p.dim());
+        assertTrue(p.objective() instanceof QuadraticFunction);
+        assertTrue(p.inequalities.A instanceof CSRRealMatrix);
+        // c1, and the two sides of the ranged row c2
+        assertEquals(3, p.inequalities.A.getRowDimension());
+        assertEquals(1, p.equalities.A.getRowDimension());
+        PointValuePair pvp = solve(p, new double[] { 2.0, 2.0, 2.0, 1.2 });
+        assertArrayEquals(new double[] { 1.0, 1.0, 1.6, 1.4 }, pvp.getFirst(), 1e-6);
+        assertEquals(5.28, pvp.getSecond(), 1e-6);
+    }
+
+    @Test
+    public void testLP() throws IOException {
+        LPReader reader = new LPReader();
+        ProblemData p = reader.read(new StringReader(LP));
+        assertArrayEquals(new String[] { "x", "y", "z", "w" }, reader.getVariableNames());
+        assertEquals("obj", p.metadata.get("objective"));
+        checkProblem(p);
+    }
+
+    @Test
+    public void testMPS() throws IOException {
+        MPSReader reader = new MPSReader();
+        ProblemData p = reader.read(new StringReader(MPS));
+        assertArrayEquals(new String[] { "x", "y", "z", "w" }, reader.getVariableNames());
+        assertEquals("TESTQP", p.metadata.get("name"));
+        checkProblem(p);
+    }
+
+    @Test
+    public void testMaximizeAndFixed() throws IOException {
+        // maximize -x - y, with x + y >= 1 and y fixed at 0.25
+        ProblemData p = (new LPReader()).read(new StringReader(
+            "Maximize\n -x - y\nSubject To\n x + y >= 1\nBounds\n y = 0.25\n x <= 2\nEnd\n"));
+        assertNull(p.P);
+        assertEquals(1, p.equalities.A.getRowDimension());
+        PointValuePair pvp = solve(p, new double[] { 1.5, 0.25 });
+        assertArrayEquals(new double[] { 0.75, 0.25 }, pvp.getFirst(), 1e-6);
+        assertEquals(1.0, pvp.getSecond(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntegerMarker() throws IOException {
+        (new MPSReader()).read(new StringReader(
+            "NAME T\nROWS\n N obj\nCOLUMNS\n    M1 'MARKER' 'INTORG'\n    x obj 1.0\nENDATA\n"));
+    }
+}
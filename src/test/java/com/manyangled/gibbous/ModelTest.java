@@ -0,0 +1,145 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+import static com.manyangled.gibbous.DerivativesTest.checkDerivatives;
+
+public class ModelTest {
+    @Test
+    public void testCompiledDerivatives() {
+        Model m = new Model();
+        Expr[] x = m.variables("x", 3);
+        Expr f = Expr.sum(
+            Expr.logSumExp(
+                Expr.sumSquares(x[0].minus(1.0), x[1]),
+                x[0].times(2.0).plus(x[1]),
+                Expr.quadForm(new Expr[] { x[1], x[2] }, new double[][] { { 2.0, 1.0 }, { 0.0, 1.0 } })),
+            Expr.norm2(x[0].plus(x[2]), x[1].minus(1.0)).times(0.5),
+            x[0].times(-3.0));
+        assertEquals(Expr.Curvature.CONVEX, f.curvature());
+        TwiceDifferentiableFunction cf = m.compile(f);
+        assertEquals(3, cf.dim());
+        checkDerivatives(cf, new double[] { 0.5, 0.25, -0.5 });
+        checkDerivatives(cf, new double[] { 1.5, -1.0, 2.0 });
+        // a shared subexpression, and an expression that is a sum of itself
+        Expr s = Expr.norm2(x[0], x[1], x[2]);
+        checkDerivatives(m.compile(s.plus(s).plus(Expr.logSumExp(s, x[2]))), new double[] { 1.0, -2.0, 0.5 });
+    }
+
+    @Test
+    public void testCompiledSparseSupports() {
+        Model m = new Model();
+        Expr[] x = m.variables("x", 6);
+        // atoms over overlapping, unordered subsets of the variables
+        Expr f = Expr.sum(
+            Expr.quadForm(new Expr[] { x[4].minus(x[1]), x[1] }, new double[][] { { 2.0, 1.0 }, { 1.0, 3.0 } }),
+            Expr.norm2(x[3].plus(1.0), x[1].times(2.0)),
+            Expr.logSumExp(x[0], x[4].times(-1.0), Expr.square(x[1].plus(x[3]))));
+        TwiceDifferentiableFunction cf = m.compile(f);
+        double[] x0 = { 0.5, -1.0, 7.0, 0.25, 1.5, -3.0 };
+        checkDerivatives(cf, x0);
+        // variables that appear in no atom have no curvature
+        RealMatrix H = cf.hessian(new ArrayRealVector(x0));
+        for (int j = 0; j < 6; ++j) {
+            assertEquals(0.0, H.getEntry(2, j), 0.0);
+            assertEquals(0.0, H.getEntry(j, 5), 0.0);
+        }
+    }
+
+    @Test
+    public void testCompiledValues() {
+        Model m = new Model();
+        Expr x = m.variable("x");
+        Expr y = m.variable("y");
+        assertEquals(1, m.index("y"));
+        assertEquals(-1, m.index("z"));
+        QuadraticFunction q = translatedQF(2.0, new double[] { 1.0, -2.0 });
+        TwiceDifferentiableFunction cf = m.compile(
+            Expr.sumSquares(x.minus(1.0), y.plus(2.0)).times(0.5).plus(2.0));
+        RealVector v = new ArrayRealVector(new double[] { 3.0, 5.0 });
+        assertEquals(q.value(v), cf.value(v), eps);
+        assertArrayEquals(q.gradient(v).toArray(), cf.gradient(v).toArray(), eps);
+        for (int i = 0; i < 2; ++i)
+            assertArrayEquals(q.hessian(v).getRow(i), cf.hessian(v).getRow(i), eps);
+        // an affine expression
+        TwiceDifferentiableFunction af = m.compile(Expr.dot(new double[] { 2.0, -1.0 }, new Expr[] { x, y }).plus(1.0));
+        assertEquals(2.0, af.value(v), eps);
+        assertArrayEquals(new double[] { 2.0, -1.0 }, af.gradient(v).toArray(), 0.0);
+        // log-sum-exp is stable for large arguments
+        TwiceDifferentiableFunction lse = m.compile(Expr.logSumExp(x.times(1000.0), y.times(1000.0)));
+        assertEquals(5000.0, lse.value(v), eps);
+    }
+
+    @Test
+    public void testCurvatureRules() {
+        Model m = new Model();
+        Expr x = m.variable("x");
+        Expr y = m.variable("y");
+        assertEquals(Expr.Curvature.CONSTANT, Expr.constant(1.0).plus(2.0).curvature());
+        assertEquals(Expr.Curvature.AFFINE, x.minus(y).times(-2.0).curvature());
+        assertEquals(Expr.Curvature.CONCAVE, Expr.square(x).negate().curvature());
+        assertEquals(Expr.Curvature.CONVEX, Expr.square(x).negate().negate().curvature());
+        assertEquals(Expr.Curvature.UNKNOWN, Expr.square(x).minus(Expr.square(y)).curvature());
+        // atoms of non-affine arguments
+        assertEquals(Expr.Curvature.UNKNOWN, Expr.square(Expr.square(x)).curvature());
+        assertEquals(Expr.Curvature.UNKNOWN, Expr.norm2(Expr.square(x)).curvature());
+        assertEquals(Expr.Curvature.CONVEX, Expr.logSumExp(Expr.square(x), y).curvature());
+        assertEquals(Expr.Curvature.UNKNOWN, Expr.logSumExp(Expr.square(x).negate(), y).curvature());
+        // quadratic forms take the curvature of their matrix
+        Expr[] xy = { x, y };
+        assertEquals(Expr.Curvature.CONVEX, Expr.quadForm(xy, new double[][] { { 1.0, 1.0 }, { 1.0, 1.0 } }).curvature());
+        assertEquals(Expr.Curvature.CONCAVE, Expr.quadForm(xy, new double[][] { { -1.0, 0.0 }, { 0.0, 0.0 } }).curvature());
+        assertEquals(Expr.Curvature.UNKNOWN, Expr.quadForm(xy, new double[][] { { 1.0, 0.0 }, { 0.0, -1.0 } }).curvature());
+        try {
+            m.compile(Expr.square(x).negate());
+            fail("expected a non-convex expression to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            m.compile((new Model()).variable("x"));
+            fail("expected a variable of another model to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testModelSolve() {
+        Model m = new Model();
+        Expr x = m.variable("x");
+        Expr y = m.variable("y");
+        // minimize distance to (3, 3) on the unit disk
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(m.compile(Expr.sumSquares(x.minus(3.0), y.minus(3.0)))),
+            m.constraints(Expr.norm2(x, y).minus(1.0)),
+            new InitialGuess(new double[] { 0.1, 0.2 }));
+        double r = Math.sqrt(0.5);
+        assertArrayEquals(new double[] { r, r }, pvp.getFirst(), 1e-6);
+    }
+}
@@ -16,6 +16,9 @@ package com.manyangled.gibbous;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNotSame;
 
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -30,6 +33,11 @@ import org.apache.commons.math3.optim.InitialGuess;
 import com.manyangled.gibbous.optim.convex.NewtonOptimizer;
 import com.manyangled.gibbous.optim.convex.QuadraticFunction;
 import com.manyangled.gibbous.optim.convex.LinearEqualityConstraint;
+import com.manyangled.gibbous.optim.convex.ConvexSolveResult;
+import com.manyangled.gibbous.optim.convex.SolveStatus;
+import com.manyangled.gibbous.optim.convex.CachedFunction;
+import com.manyangled.gibbous.optim.convex.TwiceDifferentiableFunction;
+import com.manyangled.gibbous.optim.convex.BlockDiagonalKKTSolver;
 
 import static com.manyangled.gibbous.COTestingUtils.translatedQF;
 import static com.manyangled.gibbous.COTestingUtils.eps;
@@ -158,4 +166,121 @@ public class NewtonOptimizerTest {
         assertArrayEquals(xminTarget, xmin, eps);
         assertEquals(vminTarget, vmin, eps);
     }
+
+    @Test
+    public void testBlockDiagonalKKT() {
+        double[] center = { 10.0, 10.0, 10.0 };
+        double h = -100.0;
+        QuadraticFunction q = translatedQF(h, center);
+        double[][] A = { { 1.0, 1.0, 1.0 } }; // equality constraint x + y + z = 31
+        double[] b = { 31.0 };
+        double[] xminTarget = { 10.0 + (1.0 / 3.0), 10.0 + (1.0 / 3.0), 10.0 + (1.0 / 3.0) };
+        double vminTarget = -100.0 + (1.0 / 6.0);
+        NewtonOptimizer nopt = new NewtonOptimizer();
+        PointValuePair pvp = nopt.optimize(
+            new ObjectiveFunction(q),
+            new LinearEqualityConstraint(A, b),
+            new BlockDiagonalKKTSolver());
+        assertArrayEquals(xminTarget, pvp.getFirst(), eps);
+        assertEquals(vminTarget, pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testSolveResult() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // equality constraint x + y = 1, for which x + nu = 0 at the minimum
+        ConvexSolveResult r = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearEqualityConstraint(new double[][] { { 1.0, 1.0 } }, new double[] { 1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        assertEquals(SolveStatus.CONVERGED, r.getStatus());
+        assertArrayEquals(new double[] { -0.5 }, r.getEqualityDuals(), eps);
+        assertNull(r.getInequalityDuals());
+        assertTrue(Double.isNaN(r.getBarrierT()));
+        assertTrue(r.getNewtonSteps() > 0);
+        assertEquals(r.getNewtonSteps(), r.getKKTSolves());
+        assertTrue(r.getEvaluations() > r.getNewtonSteps());
+    }
+
+    @Test
+    public void testLineSearchFailure() {
+        final QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // a gradient of the wrong sign gives Newton steps that increase the objective
+        TwiceDifferentiableFunction f = new TwiceDifferentiableFunction() {
+            @Override
+            public int dim() { return 2; }
+            @Override
+            public double value(RealVector x) { return q.value(x); }
+            @Override
+            public RealVector gradient(RealVector x) { return q.gradient(x).mapMultiply(-1.0); }
+            @Override
+            public RealMatrix hessian(RealVector x) { return q.hessian(x); }
+        };
+        double[] ig = { 1.0, 2.0 };
+        ConvexSolveResult r = (new NewtonOptimizer()).optimize(new ObjectiveFunction(f), new InitialGuess(ig));
+        assertEquals(SolveStatus.HALTED, r.getStatus());
+        assertArrayEquals(ig, r.getPoint(), 0.0);
+        assertEquals(0, r.getNewtonSteps());
+    }
+
+    // counts evaluations of q at each point
+    private static final class CountingFunction extends TwiceDifferentiableFunction {
+        final QuadraticFunction q;
+        final java.util.Map<java.util.List<Double>, int[]> counts = new java.util.HashMap<java.util.List<Double>, int[]>();
+
+        CountingFunction(QuadraticFunction q) { this.q = q; }
+
+        int[] count(RealVector x) {
+            java.util.List<Double> key = new java.util.ArrayList<Double>();
+            for (double v: x.toArray()) key.add(v);
+            if (!counts.containsKey(key)) counts.put(key, new int[3]);
+            return counts.get(key);
+        }
+
+        @Override
+        public int dim() { return q.dim(); }
+
+        @Override
+        public double value(RealVector x) { ++count(x)[0]; return q.value(x); }
+
+        @Override
+        public RealVector gradient(RealVector x) { ++count(x)[1]; return q.gradient(x); }
+
+        @Override
+        public RealMatrix hessian(RealVector x) { ++count(x)[2]; return q.hessian(x); }
+    }
+
+    @Test
+    public void testCachedFunction() {
+        CountingFunction f = new CountingFunction(translatedQF(0.0, new double[] { 1.0, 2.0 }));
+        CachedFunction c = new CachedFunction(f, 2);
+        RealVector x = new ArrayRealVector(new double[] { 3.0, 4.0 });
+        RealVector y = new ArrayRealVector(new double[] { 5.0, 6.0 });
+        assertEquals(f.value(x), c.value(x.copy()), 0.0);
+        assertEquals(c.value(x), c.value(x.copy()), 0.0);
+        RealVector g = c.gradient(x);
+        g.setEntry(0, 100.0);
+        assertArrayEquals(new double[] { 2.0, 2.0 }, c.gradient(x).toArray(), 0.0);
+        assertNotSame(c.hessian(y), c.hessian(y));
+        // x and y are cached, and z evicts the least recently used x
+        c.value(y);
+        c.value(new ArrayRealVector(new double[] { 7.0, 8.0 }));
+        c.value(x);
+        assertArrayEquals(new int[] { 3, 1, 0 }, f.count(x));
+        assertArrayEquals(new int[] { 1, 0, 1 }, f.count(y));
+        assertTrue(CachedFunction.of(c) == c);
+    }
+
+    @Test
+    public void testCachedObjective() {
+        // an infeasible start takes damped steps, whose line search evaluates the gradient at each trial
+        CountingFunction f = new CountingFunction(translatedQF(0.0, new double[] { 0.0, 0.0 }));
+        PointValuePair pvp = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(f),
+            new LinearEqualityConstraint(new double[][] { { 1.0, 1.0 } }, new double[] { 1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }));
+        assertArrayEquals(new double[] { 0.5, 0.5 }, pvp.getFirst(), eps);
+        // each quantity is evaluated at most once at each point
+        for (int[] k: f.counts.values()) assertTrue(k[0] <= 1 && k[1] <= 1 && k[2] <= 1);
+    }
 }
@@ -0,0 +1,187 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class PresolveTest {
+    @Test
+    public void testBarrierReductions() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 1.0, 2.0, 3.0 });
+        // duplicate rows, and a singleton that fixes z = 2
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 1.0, 0.0 }, { 2.0, 2.0, 0.0 }, { 0.0, 0.0, 2.0 } },
+            new double[] { 1.0, 2.0, 4.0 });
+        // duplicate singletons (x > -1), parallel rows, and an empty row
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] {
+                { -1.0, 0.0, 0.0 }, { -2.0, 0.0, 0.0 },
+                { 1.0, 1.0, 1.0 }, { 2.0, 2.0, 2.0 },
+                { 0.0, 0.0, 0.0 } },
+            new double[] { 1.0, 2.0, 10.0, 30.0, 1.0 });
+        double[] ig = { 0.5, 0.5, 2.0 };
+        double[] xminTarget = { 0.0, 1.0, 2.0 };
+        double vminTarget = 1.5;
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(ig), new Presolve());
+        assertArrayEquals(xminTarget, pvp.getFirst(), eps);
+        assertEquals(vminTarget, pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testSparseReductions() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 1.0, 2.0, 3.0 });
+        // the constraints of testBarrierReductions, in CSR form
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new CSRRealMatrix(new double[][] { { 1.0, 1.0, 0.0 }, { 2.0, 2.0, 0.0 }, { 0.0, 0.0, 2.0 } }),
+            new ArrayRealVector(new double[] { 1.0, 2.0, 4.0 }));
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new CSRRealMatrix(new double[][] {
+                { -1.0, 0.0, 0.0 }, { -2.0, 0.0, 0.0 },
+                { 1.0, 1.0, 1.0 }, { 2.0, 2.0, 2.0 },
+                { 0.0, 0.0, 0.0 } }),
+            new ArrayRealVector(new double[] { 1.0, 2.0, 10.0, 30.0, 1.0 }));
+        double[] ig = { 0.5, 0.5, 2.0 };
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(ig), new Presolve());
+        assertArrayEquals(new double[] { 0.0, 1.0, 2.0 }, pvp.getFirst(), eps);
+        assertEquals(1.5, pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testNewtonFixedVariables() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 1.0, 2.0, 3.0, 4.0 });
+        // x[0] = 3, and x[1] + x[2] = 1 after substitution
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 0.0, 0.0, 0.0 }, { 1.0, 1.0, 1.0, 0.0 } },
+            new double[] { 3.0, 4.0 });
+        double[] xminTarget = { 3.0, 0.0, 1.0, 4.0 };
+        double vminTarget = 6.0;
+        PointValuePair pvp = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, new InitialGuess(new double[4]), new Presolve());
+        assertArrayEquals(xminTarget, pvp.getFirst(), eps);
+        assertEquals(vminTarget, pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testAllVariablesFixed() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 2.0, 0.0 }, { 1.0, 1.0 } },
+            new double[] { 2.0, 3.0 });
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 1.0, 1.0 } },
+            new double[] { 5.0 });
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(new double[] { 1.0, 2.0 }), new Presolve());
+        assertArrayEquals(new double[] { 1.0, 2.0 }, pvp.getFirst(), eps);
+        assertEquals(2.5, pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testPresolvedDuals() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 1.0, 2.0, 3.0 });
+        // x[0] = 3 fixes x[0], leaving x[1] + x[2] = 1
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 0.0, 0.0 }, { 1.0, 1.0, 1.0 } },
+            new double[] { 3.0, 4.0 });
+        // x[1] > 0.6 becomes an active bound, x[1] + 2x[2] < 10 is kept, and an empty row is removed
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 0.0, 0.0, 0.0 }, { 0.0, -2.0, 0.0 }, { 0.0, 1.0, 2.0 } },
+            new double[] { 1.0, -1.2, 10.0 });
+        double[] ig = { 3.0, 0.7, 0.3 };
+        ConvexSolveResult ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(ig));
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(ig), new Presolve());
+        assertArrayEquals(new double[] { 3.0, 0.6, 0.4 }, r.getPoint(), 1e-6);
+        // stationarity at (3, 0.6, 0.4): nu = (-4.6, 2.6), and 2 lambda[1] = 1.2
+        assertArrayEquals(new double[] { -4.6, 2.6 }, r.getEqualityDuals(), 1e-4);
+        // barrier duals of active constraints are only as accurate as centering, and so are checked loosely
+        double[] lambda = r.getInequalityDuals();
+        assertEquals(3, lambda.length);
+        assertEquals(0.0, lambda[0], 0.0);
+        assertTrue(lambda[1] > 0.1);
+        assertEquals(0.0, lambda[2], 1e-6);
+        assertArrayEquals(ref.getEqualityDuals(), r.getEqualityDuals(), 1e-4);
+        assertNull(r.getLowerBoundDuals());
+    }
+
+    @Test
+    public void testAllVariablesFixedDuals() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 2.0, 0.0 }, { 1.0, 1.0 } },
+            new double[] { 2.0, 3.0 });
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 1.0, 1.0 } },
+            new double[] { 5.0 });
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(new double[] { 1.0, 2.0 }), new Presolve());
+        // grad(f) + (A^T)nu = 0 at (1, 2)
+        assertArrayEquals(new double[] { 0.5, -2.0 }, r.getEqualityDuals(), eps);
+        assertArrayEquals(new double[] { 0.0 }, r.getInequalityDuals(), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAllVariablesFixedInfeasible() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 2.0, 0.0 }, { 1.0, 1.0 } },
+            new double[] { 2.0, 3.0 });
+        // (x^2 + y^2)/2 < 3 holds at (1, 2), but (x^2 + y^2)/2 < 2 does not
+        InequalityConstraintSet nlc = new InequalityConstraintSet(
+            translatedQF(-3.0, new double[] { 0.0, 0.0 }),
+            translatedQF(-2.0, new double[] { 0.0, 0.0 }));
+        (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, nlc, new InitialGuess(new double[] { 1.0, 2.0 }), new Presolve());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInfeasibleBounds() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // x < 0 and x > 1
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 1.0, 0.0 }, { -1.0, 0.0 } },
+            new double[] { 0.0, -1.0 });
+        (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, new InitialGuess(new double[2]), new Presolve());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInfeasibleFixedVariable() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        // x = 1 and x + y < 0, y > 0
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1.0, 0.0 } },
+            new double[] { 1.0 });
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 1.0, 1.0 }, { 0.0, -1.0 } },
+            new double[] { 0.0, 0.0 });
+        (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), eqc, ineqc, new InitialGuess(new double[2]), new Presolve());
+    }
+}
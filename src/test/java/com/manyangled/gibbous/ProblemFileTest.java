@@ -0,0 +1,147 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DiagonalMatrix;
+
+import org.apache.commons.math3.optim.OptimizationData;
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class ProblemFileTest {
+    private static OptimizationData[] withGuess(ProblemData p, double[] ig) {
+        OptimizationData[] od = p.toOptimizationData();
+        OptimizationData[] r = java.util.Arrays.copyOf(od, od.length + 1);
+        r[od.length] = new InitialGuess(ig);
+        return r;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // x + y > 2, z > 1, z + w = 3, w < 1.4
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { -1.0, -1.0, 0.0, 0.0 }, { 0.0, 0.0, -1.0, 0.0 } },
+            new double[] { -2.0, -1.0 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 0.0, 0.0, 1.0, 1.0 } },
+            new double[] { 3.0 });
+        double inf = Double.POSITIVE_INFINITY;
+        BoxConstraint box = new BoxConstraint(
+            new double[] { -inf, -inf, -inf, -inf },
+            new double[] { inf, inf, inf, 1.4 });
+        Map<String, String> meta = new LinkedHashMap<String, String>();
+        meta.put("name", "round-trip");
+        meta.put("source", "x=y");
+        ProblemData problem = new ProblemData(
+            new DiagonalMatrix(new double[] { 1.0, 1.0, 1.0, 1.0 }),
+            new ArrayRealVector(4), 0.5, ineqc, eqc, box, meta);
+
+        File file = File.createTempFile("problem", ".bin");
+        file.deleteOnExit();
+        ProblemFile.write(file, problem);
+        ProblemData mapped = ProblemFile.read(file);
+
+        assertEquals(meta, mapped.metadata);
+        assertEquals(4, mapped.dim());
+        assertEquals(0.5, mapped.r, 0.0);
+        assertEquals(4, mapped.P.getNonZeroCount());
+        assertTrue(mapped.inequalities.A instanceof CSRRealMatrix);
+        assertEquals(3, ((CSRRealMatrix)mapped.inequalities.A).getNonZeroCount());
+        assertEquals(problem.inequalities.A, mapped.inequalities.A);
+        assertEquals(problem.equalities.A, mapped.equalities.A);
+        assertEquals(problem.equalities.b, mapped.equalities.b);
+        assertArrayEquals(box.upper, mapped.bounds.upper, 0.0);
+        assertTrue(Double.isInfinite(mapped.bounds.lower[0]));
+
+        double[] ig = { 2.0, 2.0, 2.0, 1.0 };
+        PointValuePair ref = (new BarrierOptimizer()).optimize(withGuess(problem, ig));
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(withGuess(mapped, ig));
+        assertArrayEquals(new double[] { 1.0, 1.0, 1.6, 1.4 }, pvp.getFirst(), 1e-6);
+        assertArrayEquals(ref.getFirst(), pvp.getFirst(), eps);
+        assertEquals(ref.getSecond(), pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testMappedRows() throws IOException {
+        // one nonzero per row: x[i mod n] > -1
+        final int m = 10000;
+        final int n = 10;
+        int[] rowPtr = new int[m + 1];
+        int[] colIdx = new int[m];
+        double[] values = new double[m];
+        for (int i = 0; i < m; ++i) {
+            rowPtr[i + 1] = i + 1;
+            colIdx[i] = i % n;
+            values[i] = -1.0;
+        }
+        double[] b = new double[m];
+        java.util.Arrays.fill(b, 1.0);
+        ProblemData problem = new ProblemData(
+            null, new ArrayRealVector(n, 1.0), 0.0,
+            new LinearInequalityConstraint(new CSRRealMatrix(m, n, rowPtr, colIdx, values), new ArrayRealVector(b)),
+            null, null, null);
+        File file = File.createTempFile("problem", ".bin");
+        file.deleteOnExit();
+        ProblemFile.write(file, problem);
+        ProblemData mapped = ProblemFile.read(file);
+        // the constraint holds the mapped matrix itself, and no per-row copies of it
+        assertTrue(mapped.inequalities.A instanceof CSRRealMatrix);
+        CSRRealMatrix A = (CSRRealMatrix)mapped.inequalities.A;
+        assertTrue(A.getRowPointers().isDirect());
+        assertTrue(A.getColumnIndices().isDirect());
+        assertTrue(A.getValues().isDirect());
+        for (java.lang.reflect.Field f: LinearInequalityConstraint.class.getDeclaredFields())
+            assertFalse(f.getName(), f.getType().isArray() || java.util.Collection.class.isAssignableFrom(f.getType()));
+        assertEquals(m, mapped.inequalities.constraintFunctions().size());
+    }
+
+    @Test
+    public void testLinearObjective() throws IOException {
+        ProblemData problem = new ProblemData(
+            null, new ArrayRealVector(new double[] { 1.0, 2.0 }), 0.0,
+            null, null, new BoxConstraint(new double[] { 0.0, 1.0 }, new double[] { 3.0, 4.0 }), null);
+        File file = File.createTempFile("problem", ".bin");
+        file.deleteOnExit();
+        ProblemFile.write(file, problem);
+        ProblemData mapped = ProblemFile.read(file);
+        assertNull(mapped.P);
+        assertNull(mapped.inequalities);
+        assertNull(mapped.equalities);
+        assertTrue(mapped.metadata.isEmpty());
+        assertTrue(mapped.objective() instanceof LinearFunction);
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(withGuess(mapped, new double[] { 1.0, 2.0 }));
+        assertArrayEquals(new double[] { 0.0, 1.0 }, pvp.getFirst(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFile() throws IOException {
+        File file = File.createTempFile("problem", ".bin");
+        file.deleteOnExit();
+        java.nio.file.Files.write(file.toPath(), new byte[64]);
+        ProblemFile.read(file);
+    }
+}
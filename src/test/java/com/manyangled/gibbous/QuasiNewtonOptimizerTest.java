@@ -0,0 +1,106 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+
+public class QuasiNewtonOptimizerTest {
+    private static final double qneps = 1e-6;
+
+    // fails the test if the Hessian is ever requested
+    private static class NoHessian extends TwiceDifferentiableFunction {
+        private final TwiceDifferentiableFunction f;
+        NoHessian(TwiceDifferentiableFunction f) { this.f = f; }
+        public int dim() { return f.dim(); }
+        public double value(RealVector x) { return f.value(x); }
+        public RealVector gradient(RealVector x) { return f.gradient(x); }
+        public RealMatrix hessian(RealVector x) {
+            throw new AssertionError("hessian should not be called");
+        }
+    }
+
+    @Test
+    public void testUnconstrained() {
+        QuadraticFunction q = new QuadraticFunction(
+            new double[][] { { 4.0, 1.0, 0.0 }, { 1.0, 3.0, 0.5 }, { 0.0, 0.5, 2.0 } },
+            new double[] { -1.0, 2.0, -3.0 },
+            0.0);
+        // quasi-Newton convergence is superlinear, not quadratic, so tighten epsilon
+        // to obtain accuracy comparable to Newton's method
+        PointValuePair qn = (new QuasiNewtonOptimizer()).optimize(
+            new ObjectiveFunction(new NoHessian(q)),
+            new ConvergenceEpsilon(1e-14),
+            new InitialGuess(new double[] { 10.0, -10.0, 5.0 }));
+        PointValuePair nt = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new InitialGuess(new double[] { 10.0, -10.0, 5.0 }));
+        assertArrayEquals(nt.getFirst(), qn.getFirst(), qneps);
+        assertEquals(nt.getSecond(), qn.getSecond(), qneps);
+    }
+
+    @Test
+    public void testEqualityConstrained() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        PointValuePair pvp = (new QuasiNewtonOptimizer()).optimize(
+            new ObjectiveFunction(new NoHessian(q)),
+            new LinearEqualityConstraint(
+                new double[][] { { 1.0, 1.0, 1.0 } }, // x + y + z = 1
+                new double[] { 1.0 }),
+            new InitialGuess(new double[] { 5.0, 3.0, -2.0 }));
+        assertArrayEquals(new double[] { 1.0/3.0, 1.0/3.0, 1.0/3.0 }, pvp.getFirst(), qneps);
+        assertEquals(1.0/6.0, pvp.getSecond(), qneps);
+    }
+
+    @Test
+    public void testHessianRefresh() {
+        QuadraticFunction q = translatedQF(2.0, new double[] { 1.0, -1.0 });
+        PointValuePair pvp = (new QuasiNewtonOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new HessianRefresh(3),
+            new QuasiNewtonMemory(2),
+            new InitialGuess(new double[] { 7.0, 7.0 }));
+        assertArrayEquals(new double[] { 1.0, -1.0 }, pvp.getFirst(), qneps);
+        assertEquals(2.0, pvp.getSecond(), qneps);
+    }
+
+    @Test
+    public void testBarrierCentering() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        BarrierOptimizer barrier = new BarrierOptimizer();
+        PointValuePair pvp = barrier.optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(
+                new double[][] { { -1.0, 0.0 } }, // constraint x > 1,
+                new double[] { -1.0 }),
+            new LinearEqualityConstraint(
+                new double[][] { { 0.0, 1.0 } },  // constraint y = 1,
+                new double[] { 1.0 }),
+            new InitialGuess(new double[] { 10.0, 10.0 }),
+            new InnerOptimizationData(new InnerOptimizer(InnerOptimizer.Method.QUASI_NEWTON)));
+        assertArrayEquals(new double[] { 1.0, 1.0 }, pvp.getFirst(), qneps);
+        assertEquals(1.0, pvp.getSecond(), qneps);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+Copyright 2018 Erik Erlandson
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+http://www.apache.org/licenses/LICENSE-2.0
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.manyangled.gibbous;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.apache.commons.math3.linear.DiagonalMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+
+import org.apache.commons.math3.optim.PointValuePair;
+import org.apache.commons.math3.optim.nonlinear.scalar.ObjectiveFunction;
+import org.apache.commons.math3.optim.InitialGuess;
+
+import com.manyangled.gibbous.optim.convex.*;
+
+import static com.manyangled.gibbous.COTestingUtils.translatedQF;
+import static com.manyangled.gibbous.COTestingUtils.eps;
+
+public class RuizScalingTest {
+    @Test
+    public void testScaledConstraints() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        // x + y > 1, z < -1, and x + y + z = 2, with badly scaled rows
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { -1e4, -1e4, 0.0 }, { 0.0, 0.0, 1e-4 } },
+            new double[] { -1e4, -1e-4 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1e3, 1e3, 1e3 } },
+            new double[] { 2e3 });
+        double[] ig = { 2.0, 2.0, -2.0 };
+        PointValuePair ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, eqc, new InitialGuess(ig));
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, eqc, new InitialGuess(ig), new RuizScaling());
+        assertArrayEquals(ref.getFirst(), pvp.getFirst(), 1e-6);
+        assertEquals(ref.getSecond(), pvp.getSecond(), 1e-6);
+        double[] x = pvp.getFirst();
+        assertEquals(2.0, x[0] + x[1] + x[2], eps);
+    }
+
+    @Test
+    public void testScaledSparseConstraints() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        double[][] A = { { -1e4, -1e4, 0.0 }, { 0.0, 0.0, 1e-4 } };
+        double[] b = { -1e4, -1e-4 };
+        double[][] Aeq = { { 1e3, 1e3, 1e3 } };
+        double[] beq = { 2e3 };
+        double[] ig = { 2.0, 2.0, -2.0 };
+        PointValuePair ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(A, b), new LinearEqualityConstraint(Aeq, beq),
+            new InitialGuess(ig), new RuizScaling());
+        PointValuePair pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q),
+            new LinearInequalityConstraint(new CSRRealMatrix(A), new ArrayRealVector(b)),
+            new LinearEqualityConstraint(new CSRRealMatrix(Aeq), new ArrayRealVector(beq)),
+            new InitialGuess(ig), new RuizScaling());
+        assertArrayEquals(ref.getFirst(), pvp.getFirst(), eps);
+        assertEquals(ref.getSecond(), pvp.getSecond(), eps);
+    }
+
+    @Test
+    public void testConvergenceEpsilon() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0 });
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { -1e4, -1e4 } },
+            new double[] { -1e4 });
+        double[] ig = { 10.0, 10.0 };
+        // a coarse epsilon is kept when the objective is not scaled
+        double epsilon = 1e-4;
+        ConvexSolveResult ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, new InitialGuess(ig), new ConvergenceEpsilon(epsilon));
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, new InitialGuess(ig), new ConvergenceEpsilon(epsilon),
+            new RuizScaling(RuizScaling.MAX_ITERATIONS_DEFAULT, RuizScaling.TOLERANCE_DEFAULT, false));
+        assertTrue(r.getDualityGap() > BarrierMu.BARRIER_MU_DEFAULT * ConvergenceEpsilon.CONVERGENCE_EPSILON_DEFAULT);
+        assertEquals(ref.getDualityGap(), r.getDualityGap(), 1e-12);
+    }
+
+    @Test
+    public void testScaledObjective() {
+        // an objective with very different curvature in each variable
+        QuadraticFunction q = new QuadraticFunction(
+            new DiagonalMatrix(new double[] { 1e4, 1e-2 }),
+            new ArrayRealVector(new double[] { -1e4, -1e-2 }),
+            0.0);
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { 1.0, 0.0 }, { 0.0, 1.0 } },
+            new double[] { 2.0, 2.0 });
+        PointValuePair pvp = (new NewtonOptimizer()).optimize(
+            new ObjectiveFunction(q), new InitialGuess(new double[] { 0.0, 0.0 }), new RuizScaling());
+        assertArrayEquals(new double[] { 1.0, 1.0 }, pvp.getFirst(), 1e-6);
+        // the barrier biases the weakly curved variable away from its constraint,
+        // by about (1/t)/(1e-2) at the final value of (t)
+        pvp = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, new InitialGuess(new double[] { 0.0, 0.0 }), new RuizScaling());
+        assertArrayEquals(new double[] { 1.0, 1.0 }, pvp.getFirst(), 1e-5);
+    }
+
+    @Test
+    public void testScaledDuals() {
+        QuadraticFunction q = translatedQF(0.0, new double[] { 0.0, 0.0, 0.0 });
+        LinearInequalityConstraint ineqc = new LinearInequalityConstraint(
+            new double[][] { { -1e4, -1e4, 0.0 }, { 0.0, 0.0, 1e-4 } },
+            new double[] { -1e4, -1e-4 });
+        LinearEqualityConstraint eqc = new LinearEqualityConstraint(
+            new double[][] { { 1e3, 1e3, 1e3 } },
+            new double[] { 2e3 });
+        double[] ig = { 2.0, 2.0, -2.0 };
+        ConvexSolveResult ref = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, eqc, new InitialGuess(ig));
+        ConvexSolveResult r = (new BarrierOptimizer()).optimize(
+            new ObjectiveFunction(q), ineqc, eqc, new InitialGuess(ig), new RuizScaling());
+        // duals are mapped back to the original rows and objective
+        double[] lr = ref.getInequalityDuals();
+        double[] l = r.getInequalityDuals();
+        // the active row (z < -1) has dual 2.5e4; both are estimated from inexact centers,
+        // so they agree to the accuracy of centering
+        assertEquals(2.5e4, lr[1], 1e3);
+        assertEquals(1.0, l[1] / lr[1], 5e-2);
+        assertEquals(0.0, l[0], 1e-2);
+        assertEquals(-1.5e-3, ref.getEqualityDuals()[0], 1e-8);
+        assertEquals(-1.5e-3, r.getEqualityDuals()[0], 1e-8);
+        assertEquals(ref.getDualityGap(), r.getDualityGap(), 1e-6);
+    }
+}